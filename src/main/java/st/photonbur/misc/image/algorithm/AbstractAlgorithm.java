@@ -7,6 +7,7 @@ import st.photonbur.misc.image.misc.BufferedImageWithProperties;
 import st.photonbur.misc.image.misc.Utils;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
 import java.time.LocalTime;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -36,6 +37,21 @@ public abstract class AbstractAlgorithm extends BufferedImageWithProperties impl
         this.imageRenderer = buildImageRenderer();
     }
 
+    /**
+     * Creates an ARGB algorithm drawing onto an existing raster.
+     *
+     * @param raster      The raster holding the pixels, see {@link BufferedImageWithProperties#BufferedImageWithProperties(WritableRaster)}
+     * @param targetFrame The frame showing the preview, or {@code null} if there is none
+     */
+    public AbstractAlgorithm(WritableRaster raster, AbstractLauncher targetFrame) {
+        super(raster);
+
+        this.isDone = false;
+        this.targetFrame = targetFrame;
+
+        this.imageRenderer = buildImageRenderer();
+    }
+
     protected abstract ImageRendererImpl buildImageRenderer();
 
     /**
@@ -84,6 +100,13 @@ public abstract class AbstractAlgorithm extends BufferedImageWithProperties impl
      */
     protected abstract void generateImage();
 
+    /**
+     * @return Whether the algorithm is shown in a preview window, which may ask for any of its render types
+     */
+    protected boolean hasPreview() {
+        return targetFrame != null;
+    }
+
     public ImageRendererImpl getImageRenderer() {
         return imageRenderer;
     }
@@ -0,0 +1,384 @@
+package st.photonbur.misc.image.algorithm.dla;
+
+import st.photonbur.misc.image.algorithm.AbstractAlgorithm;
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.display.renderer.ImageRenderType;
+import st.photonbur.misc.image.display.renderer.ImageRendererBuilder;
+import st.photonbur.misc.image.display.renderer.ImageRendererImpl;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Grows a cluster through diffusion-limited aggregation: particles wander around randomly until they bump into the cluster, sticking to it.
+ * Every particle takes on the color of the particle it sticks to, drifting away from it slightly, so colors flow along the branches of the cluster.
+ * <p>
+ * Walking every particle one pixel at a time is far too slow for large clusters, as nearly all steps are taken far away from the cluster.
+ * The image is therefore covered by a coarse grid, holding for every cell the distance in cells to the nearest cell the cluster reaches into.
+ * No part of the cluster is closer to a particle than that distance allows, so the particle may jump to a random point on a circle of that radius:
+ * it would have reached some point of that circle first anyway, each of them as likely as the others.
+ * Only right next to the cluster do particles walk pixel by pixel. Particles far away jump based on the radius of the cluster instead,
+ * which also brings back particles that wandered off the image.
+ * <p>
+ * Particles are launched on a circle just outside the cluster, which grows along with it, and walk on a pool of threads side by side.
+ * Walking only reads the image and the grid; sticking is done one particle at a time, checking that no other particle got there first.
+ * A particle may read a grid that is about to be updated for a particle sticking at the same time, which is the same as both arriving at once.
+ */
+class DlaImage extends AbstractAlgorithm {
+    /**
+     * The width and height of the cells of the distance grid, in pixels.
+     */
+    private static final int CELL_SIZE = 4;
+    /**
+     * The largest distance the grid tracks, in cells. Cells any further from the cluster are all considered this far away.
+     */
+    private static final int MAX_CELL_DISTANCE = 32;
+    /**
+     * The distance between the edges of the image and the furthest the cluster may grow, keeping walking particles near the cluster inside of the image.
+     */
+    private static final int EDGE_MARGIN = 3 * CELL_SIZE;
+    /**
+     * The distance outside of the cluster at which particles are launched.
+     */
+    private static final int LAUNCH_MARGIN = 4;
+    /**
+     * The amount of directions particles can jump in, spread evenly around the circle.
+     */
+    private static final int DIRECTIONS = 4096;
+    private static final double[] COS = new double[DIRECTIONS];
+    private static final double[] SIN = new double[DIRECTIONS];
+
+    static {
+        for (int i = 0; i < DIRECTIONS; i++) {
+            COS[i] = Math.cos(2 * Math.PI * i / DIRECTIONS);
+            SIN[i] = Math.sin(2 * Math.PI * i / DIRECTIONS);
+        }
+    }
+
+    /**
+     * The offsets to the eight neighbors of a pixel, as x and y pairs.
+     */
+    private static final int[] NEIGHBORS = {-1, -1, 0, -1, 1, -1, -1, 0, 1, 0, -1, 1, 0, 1, 1, 1};
+
+    /**
+     * The randomizer from which every thread gets its own, so generating on a single thread is reproducible.
+     */
+    private final SplittableRandom r;
+    /**
+     * The amount of particles to stick to the cluster, or 0 to keep growing until it reaches the edge of the image.
+     */
+    private final int nParticles;
+    /**
+     * The most each color channel of a particle may differ from the particle it sticks to.
+     */
+    private final int colorDrift;
+    /**
+     * The amount of particles walking side by side.
+     */
+    private final int threads;
+
+    /**
+     * The pixel the cluster grows from.
+     */
+    private final int centerX, centerY;
+    /**
+     * The furthest from the center the cluster may grow.
+     */
+    private final int maxRadius;
+    /**
+     * The size of the distance grid, in cells.
+     */
+    private final int gridWidth, gridHeight;
+    /**
+     * The distance in cells from every cell to the nearest cell holding part of the cluster, capped to {@link #MAX_CELL_DISTANCE}.
+     */
+    private final byte[] cellDistances;
+
+    /**
+     * Guards sticking particles to the cluster.
+     */
+    private final Object lock = new Object();
+    /**
+     * The pixels of the image, with every transparent pixel being empty.
+     */
+    private int[] pixels;
+    /**
+     * The distance from the center to the furthest particle, rounded up.
+     */
+    private volatile int clusterRadius = 0;
+    /**
+     * The amount of particles stuck to the cluster.
+     */
+    private volatile int stuckParticles = 0;
+    /**
+     * The amount of jumps and steps taken by the particles stuck to the cluster, telling how well walking is accelerated.
+     */
+    private volatile long moves = 0;
+    /**
+     * Whether the cluster is done growing, or generation got cancelled.
+     */
+    private volatile boolean finished = false;
+
+    DlaImage(int width, int height, int nParticles, long seed, int colorDrift, int threads, AbstractLauncher targetFrame) {
+        super(width, height, BufferedImage.TYPE_INT_ARGB, targetFrame);
+        this.r = new SplittableRandom(seed);
+        this.nParticles = nParticles;
+        this.colorDrift = colorDrift;
+        this.threads = threads;
+
+        this.centerX = width / 2;
+        this.centerY = height / 2;
+        this.maxRadius = Math.max(0, Math.min(width, height) / 2 - EDGE_MARGIN);
+        this.gridWidth = (width + CELL_SIZE - 1) / CELL_SIZE;
+        this.gridHeight = (height + CELL_SIZE - 1) / CELL_SIZE;
+        this.cellDistances = new byte[gridWidth * gridHeight];
+
+        if (targetFrame != null) targetFrame.getPreviewPanel().setProvider(this);
+
+        System.out.printf("\nCreating DLA image with parameters:\n - Image dimensions: %dx%d\n - Particles: %s\n - Seed: %d\n - Color drift: %d\n - Threads: %d\n\n",
+                width, height, nParticles == 0 ? "until the edge is reached" : String.valueOf(nParticles), seed, colorDrift, threads);
+    }
+
+    @Override
+    protected ImageRendererImpl buildImageRenderer() {
+        // Particles are drawn onto the image as they stick, so there is never anything left to render
+        return new ImageRendererBuilder()
+                .addRenderer(ImageRenderType.NORMAL, this, (x, y) -> getRGB(x, y))
+                .build();
+    }
+
+    @Override
+    protected void init() {
+        pixels = ((DataBufferInt) getRaster().getDataBuffer()).getData();
+        Arrays.fill(cellDistances, (byte) MAX_CELL_DISTANCE);
+
+        // Plant the particle the cluster grows from
+        pixels[centerY * getWidth() + centerX] = 0xFF000000 | r.nextInt(1 << 24);
+        markCell(centerX / CELL_SIZE, centerY / CELL_SIZE);
+        stuckParticles = 1;
+        finished = isFullyGrown();
+    }
+
+    @Override
+    protected void generateImage() {
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "DLA walker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Callable<Void>> walkers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            SplittableRandom random = r.split();
+            walkers.add(() -> {
+                walk(random);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : pool.invokeAll(walkers)) future.get();
+            setDrawnArea(new Rectangle(0, 0, getWidth(), getHeight()));
+        } catch (InterruptedException ex) {
+            finished = true;
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Generation was cancelled after " + stuckParticles + " particles");
+        } catch (ExecutionException ex) {
+            finished = true;
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Keeps launching particles and walking them until they stick, for as long as the cluster is growing.
+     *
+     * @param random The randomizer of this thread
+     */
+    private void walk(SplittableRandom random) {
+        int width = getWidth(), height = getHeight();
+        // Computed in long, as the squares of the sides overflow an int for images over 46340 pixels wide or high
+        long escapeDistanceSquared = 4L * ((long) width * width + (long) height * height);
+
+        launch:
+        while (!finished) {
+            // Launch a particle on a circle just outside of the cluster
+            int direction = random.nextInt(DIRECTIONS);
+            double launchRadius = clusterRadius + LAUNCH_MARGIN;
+            int x = centerX + (int) Math.round(launchRadius * COS[direction]);
+            int y = centerY + (int) Math.round(launchRadius * SIN[direction]);
+            long particleMoves = 0;
+
+            while (!finished) {
+                particleMoves++;
+                int dx = x - centerX, dy = y - centerY;
+                long distanceSquared = (long) dx * dx + (long) dy * dy;
+                boolean isInside = x >= 0 && x < width && y >= 0 && y < height;
+
+                // Particles wandering off too far are launched again, rather than waiting for them to find their way back
+                if (!isInside && distanceSquared > escapeDistanceSquared) continue launch;
+
+                // Work out how far the particle can jump without jumping over any part of the cluster
+                int jump = 0;
+                int cellDistance = isInside ? cellDistances[(y / CELL_SIZE) * gridWidth + x / CELL_SIZE] : MAX_CELL_DISTANCE;
+                // Stay a pixel short of the cluster, as passing right next to it would have made the particle stick
+                if (cellDistance > 1) jump = (cellDistance - 1) * CELL_SIZE - 1;
+                if (cellDistance == MAX_CELL_DISTANCE) {
+                    // Leave some slack for rounding the landing point to a pixel
+                    jump = Math.max(jump, (int) (Math.sqrt(distanceSquared) - clusterRadius) - 2);
+                }
+
+                if (jump > 0) {
+                    direction = random.nextInt(DIRECTIONS);
+                    int nx = x + (int) Math.round(jump * COS[direction]);
+                    int ny = y + (int) Math.round(jump * SIN[direction]);
+
+                    // A particle that just stuck elsewhere may not have made it into the grid yet, so don't land on top of it
+                    if (nx < 0 || nx >= width || ny < 0 || ny >= height || pixels[ny * width + nx] == 0) {
+                        x = nx;
+                        y = ny;
+                    }
+                    continue;
+                }
+
+                // Right next to the cluster, so stick to it when touching it
+                int neighbor = findNeighbor(x, y, random);
+                if (neighbor != 0) {
+                    stick(x, y, neighbor, particleMoves, random);
+                    continue launch;
+                }
+
+                // Take a single step in any of the four directions, unless another particle stuck there
+                int step = random.nextInt(4);
+                int nx = x + (step == 0 ? 1 : step == 1 ? -1 : 0);
+                int ny = y + (step == 2 ? 1 : step == 3 ? -1 : 0);
+                if (pixels[ny * width + nx] == 0) {
+                    x = nx;
+                    y = ny;
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks for a particle of the cluster touching a pixel, starting from a random neighbor so no direction is preferred.
+     * The pixel has to be close enough to the cluster for all of its neighbors to be inside of the image.
+     *
+     * @param x      The x-coordinate of the pixel
+     * @param y      The y-coordinate of the pixel
+     * @param random The randomizer of this thread
+     * @return The color of a touching particle, or 0 if there is none
+     */
+    private int findNeighbor(int x, int y, SplittableRandom random) {
+        int start = random.nextInt(NEIGHBORS.length / 2);
+
+        for (int i = 0; i < NEIGHBORS.length / 2; i++) {
+            int n = (start + i) % (NEIGHBORS.length / 2);
+            int color = pixels[(y + NEIGHBORS[2 * n + 1]) * getWidth() + x + NEIGHBORS[2 * n]];
+            if (color != 0) return color;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Sticks a particle to the cluster, unless another particle got to its pixel first or the cluster is done growing.
+     *
+     * @param x             The x-coordinate of the particle
+     * @param y             The y-coordinate of the particle
+     * @param neighborColor The color of the particle it sticks to
+     * @param particleMoves The amount of jumps and steps the particle took
+     * @param random        The randomizer of this thread
+     */
+    private void stick(int x, int y, int neighborColor, long particleMoves, SplittableRandom random) {
+        synchronized (lock) {
+            int i = y * getWidth() + x;
+            if (finished || pixels[i] != 0) return;
+
+            pixels[i] = 0xFF000000
+                    | drift(neighborColor >> 16 & 0xFF, random) << 16
+                    | drift(neighborColor >> 8 & 0xFF, random) << 8
+                    | drift(neighborColor & 0xFF, random);
+            markCell(x / CELL_SIZE, y / CELL_SIZE);
+
+            int dx = x - centerX, dy = y - centerY;
+            clusterRadius = Math.max(clusterRadius, (int) Math.ceil(Math.sqrt(dx * dx + dy * dy)));
+            moves += particleMoves;
+            stuckParticles++;
+            finished = isFullyGrown();
+        }
+    }
+
+    /**
+     * @param channel The value of a color channel
+     * @param random  The randomizer of this thread
+     * @return The value drifted randomly by up to the color drift, kept within bounds
+     */
+    private int drift(int channel, SplittableRandom random) {
+        if (colorDrift == 0) return channel;
+        return Math.max(0, Math.min(255, channel + random.nextInt(2 * colorDrift + 1) - colorDrift));
+    }
+
+    /**
+     * Marks a cell as holding part of the cluster, bringing the cells around it closer.
+     * Cells are updated ring by ring; once a ring has nothing closer to it, neither do the rings beyond it.
+     *
+     * @param cellX The x-coordinate of the cell
+     * @param cellY The y-coordinate of the cell
+     */
+    private void markCell(int cellX, int cellY) {
+        if (cellDistances[cellY * gridWidth + cellX] == 0) return;
+        cellDistances[cellY * gridWidth + cellX] = 0;
+
+        for (int d = 1; d < MAX_CELL_DISTANCE; d++) {
+            boolean isCloser = false;
+
+            for (int cy = Math.max(0, cellY - d); cy <= Math.min(gridHeight - 1, cellY + d); cy++) {
+                // Only the top and bottom rows of the ring are filled, the rows in between just have their ends
+                int columnStep = cy == cellY - d || cy == cellY + d ? 1 : 2 * d;
+
+                for (int cx = cellX - d; cx <= cellX + d; cx += columnStep) {
+                    if (cx < 0 || cx >= gridWidth) continue;
+
+                    int cell = cy * gridWidth + cx;
+                    if (cellDistances[cell] > d) {
+                        cellDistances[cell] = (byte) d;
+                        isCloser = true;
+                    }
+                }
+            }
+
+            if (!isCloser) break;
+        }
+    }
+
+    /**
+     * @return Whether the cluster has as many particles as requested, or has reached the edge of the image
+     */
+    private boolean isFullyGrown() {
+        return (nParticles != 0 && stuckParticles >= nParticles) || clusterRadius >= maxRadius;
+    }
+
+    @Override
+    public String getProgressString() {
+        int stuck = stuckParticles;
+        String progress = String.format("%s particles, cluster radius %d / %d, %.1f moves per particle",
+                nParticles == 0 ? String.valueOf(stuck) : stuck + " / " + nParticles, clusterRadius, maxRadius,
+                stuck > 1 ? (double) moves / (stuck - 1) : 0);
+
+        return isDone ? "Done. Stuck " + progress + "." : "Stuck " + progress + "...";
+    }
+}
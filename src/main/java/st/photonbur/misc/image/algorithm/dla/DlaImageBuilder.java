@@ -0,0 +1,80 @@
+package st.photonbur.misc.image.algorithm.dla;
+
+import st.photonbur.misc.image.algorithm.AbstractBuilder;
+
+import java.util.Random;
+
+/**
+ * Builds the DlaImage using the parameters passed through this class.
+ */
+@SuppressWarnings("UnusedReturnValue")
+class DlaImageBuilder extends AbstractBuilder<DlaImageBuilder, DlaImage> {
+    /**
+     * The amount of particles to stick to the cluster, or 0 to grow until it reaches the edge of the image.
+     */
+    private int nParticles = 0;
+    /**
+     * The seed of the randomizer, making generation reproducible on a single thread.
+     */
+    private long seed = new Random().nextLong();
+    /**
+     * The most each color channel of a particle may differ from the particle it sticks to.
+     */
+    private int colorDrift = 4;
+    /**
+     * The amount of particles walking side by side.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @return A properly constructed {@link DlaImage} instance
+     */
+    @Override
+    public DlaImage build() {
+        return new DlaImage(imageWidth, imageHeight, nParticles, seed, colorDrift, threads, guiFrame);
+    }
+
+    /**
+     * Sets the amount of particles to stick to the cluster.
+     *
+     * @param nParticles The amount of particles, or 0 to grow until the cluster reaches the edge of the image
+     * @return The instance of this builder
+     */
+    DlaImageBuilder setAmountOfParticles(int nParticles) {
+        this.nParticles = nParticles;
+        return this;
+    }
+
+    /**
+     * Sets the seed of the randomizer, so the same image can be generated again when walking on a single thread.
+     *
+     * @param seed The seed of the randomizer
+     * @return The instance of this builder
+     */
+    DlaImageBuilder setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets how much the color of a particle may differ from the particle it sticks to.
+     *
+     * @param colorDrift The most each color channel may differ, from 0 to 255
+     * @return The instance of this builder
+     */
+    DlaImageBuilder setColorDrift(int colorDrift) {
+        this.colorDrift = colorDrift;
+        return this;
+    }
+
+    /**
+     * Sets the amount of particles walking side by side, each on a thread of its own.
+     *
+     * @param threads The amount of threads
+     * @return The instance of this builder
+     */
+    DlaImageBuilder setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+}
@@ -0,0 +1,111 @@
+package st.photonbur.misc.image.algorithm.dla;
+
+import st.photonbur.misc.image.algorithm.AbstractInputHandler;
+import st.photonbur.misc.image.misc.InputStep;
+
+public class DlaInputHandler extends AbstractInputHandler {
+    // == STEP INIT == //
+    /**
+     * The {@link InputStep} requesting the amount of particles to stick to the cluster.
+     */
+    private final InputStep<Integer, Integer> nParticles = new InputStep<>(
+            "Amount of particles (0 to grow until the edge of the image)",
+            input -> input >= 0 && input <= (long) getWidth() * getHeight(),
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the seed of the randomizer.
+     */
+    private final InputStep<String, String> seed = new InputStep<>(
+            "Seed (leave empty for a random one)",
+            input -> input.isEmpty() || input.matches("-?\\d{1,18}"),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting how much the color of a particle may differ from the particle it sticks to.
+     */
+    private final InputStep<Integer, Integer> colorDrift = new InputStep<>(
+            "Color drift per particle (0-255)",
+            input -> input >= 0 && input <= 255,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of threads to walk particles on.
+     */
+    private final InputStep<Integer, Integer> threads = new InputStep<>(
+            "Amount of threads (0 for one per core)",
+            input -> input >= 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * A final copy of the input steps the user is faced with.
+     * This is done so the array won't be created every time it has to be retrieved by the getter.
+     */
+    private final InputStep[] steps = new InputStep[] {
+            imageWidth, imageHeight, nParticles, seed, colorDrift, threads, showGUI
+    };
+
+    @Override
+    protected InputStep[] getSteps() {
+        return steps;
+    }
+
+    // == PARAM GETTERS == //
+
+    /**
+     * @return How much the color of a particle may differ from the particle it sticks to
+     */
+    Integer getColorDrift() {
+        return colorDrift.getResult();
+    }
+
+    /**
+     * @return The height of the image to generate
+     */
+    Integer getHeight() {
+        return imageHeight.getResult();
+    }
+
+    /**
+     * @return The amount of particles to stick to the cluster, or 0 to grow until the edge of the image
+     */
+    Integer getNParticles() {
+        return nParticles.getResult();
+    }
+
+    /**
+     * @return The seed of the randomizer, or {@code null} to pick a random one
+     */
+    Long getSeed() {
+        return seed.getResult().isEmpty() ? null : Long.parseLong(seed.getResult());
+    }
+
+    /**
+     * @return The amount of threads to walk particles on
+     */
+    int getThreads() {
+        return threads.getResult() == 0 ? Runtime.getRuntime().availableProcessors() : threads.getResult();
+    }
+
+    /**
+     * @return The width of the image to generate
+     */
+    Integer getWidth() {
+        return imageWidth.getResult();
+    }
+
+    /**
+     * @return {@code true} if the GUI should be shown during generation, {@code false} otherwise
+     */
+    Boolean doShowGUI() {
+        return showGUI.getResult();
+    }
+}
@@ -0,0 +1,70 @@
+package st.photonbur.misc.image.algorithm.dla;
+
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.misc.Utils;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+
+public class DlaLauncher extends AbstractLauncher<DlaInputHandler> {
+    /**
+     * The default title to give to the preview window.
+     */
+    private static final String DEFAULT_PREVIEW_TITLE = "DLA Preview Window";
+
+    public DlaLauncher(DlaInputHandler params) {
+        super(params);
+    }
+
+    @Override
+    protected void exportImage() throws IOException {
+        // Create the filename to store the image under
+        String fileName = String.format("out/dla/%05d.png", Utils.findLastIndexInDirectory("out/dla/", "png") + 1);
+
+        // Construct the image
+        DlaImageBuilder builder = new DlaImageBuilder()
+                .setImageWidth(getParams().getWidth())
+                .setImageHeight(getParams().getHeight())
+                .setAmountOfParticles(getParams().getNParticles())
+                .setColorDrift(getParams().getColorDrift())
+                .setThreads(getParams().getThreads());
+        if (getParams().getSeed() != null) builder.setSeed(getParams().getSeed());
+        // Add the GUI to the image builder so it can be updated
+        if (getParams().doShowGUI()) builder.setGUIFrame(this);
+
+        DlaImage image = builder.build();
+        image.generate();
+
+        // Write the image to file
+        System.out.println("Exporting to " + fileName);
+        File file = new File(fileName);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        ImageIO.write(image, "png", file);
+    }
+
+    @Override
+    public String getDefaultPreviewTitle() {
+        return DEFAULT_PREVIEW_TITLE;
+    }
+
+    @Override
+    public void setup() {
+        // Generate all parameters needed to run the algorithm
+        getParams().generate();
+
+        // Start exporting the image on another thread
+        new Thread(() -> {
+            try {
+                exportImage();
+            } catch (IOException ex) {
+                System.out.println("Error while exporting DLA image");
+                ex.printStackTrace();
+            }
+        }).start();
+
+        // Set up the GUI if requested by the user
+        if (getParams().doShowGUI()) setupGUI();
+    }
+}
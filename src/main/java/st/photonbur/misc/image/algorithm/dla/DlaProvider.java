@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.dla;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code dla} type: grows a cluster of randomly walking particles through diffusion-limited aggregation.
+ */
+public class DlaProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "dla";
+    }
+
+    @Override
+    public void launch() {
+        new DlaLauncher(new DlaInputHandler()).setup();
+    }
+}
@@ -0,0 +1,107 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Visits the pixels with the lowest priority first.
+ * <p>
+ * Priorities are small integers, so instead of a heap a bucket queue is used: one unordered bucket per priority.
+ * Adding a pixel is O(1), and polling is amortized O(1) as the cursor pointing at the lowest non-empty bucket only moves forward
+ * until a pixel with a lower priority comes along.
+ * Within a bucket, pixels are picked at random so equal priorities still grow organically.
+ */
+class BucketFrontier implements FrontierStrategy {
+    /**
+     * Determines the priority of a pixel, ranging from 0 up to and including {@code maxPriority}.
+     */
+    private final IntUnaryOperator priority;
+    /**
+     * The randomizer deciding which pixel to pick within a bucket.
+     */
+    private final Random r;
+    /**
+     * The arena to take arrays from and hand them back to, or {@code null} to allocate them.
+     */
+    private final FlowArena arena;
+
+    /**
+     * The indices of the pixels per priority.
+     */
+    private final int[][] buckets;
+    /**
+     * The amount of pixels per priority.
+     */
+    private final int[] bucketSizes;
+    /**
+     * The lowest priority that may contain pixels.
+     */
+    private int cursor;
+    /**
+     * The amount of pixels in this frontier.
+     */
+    private int size = 0;
+
+    BucketFrontier(int maxPriority, IntUnaryOperator priority, Random r, FlowArena arena) {
+        this.priority = priority;
+        this.r = r;
+        this.arena = arena;
+
+        this.buckets = new int[maxPriority + 1][];
+        this.bucketSizes = new int[maxPriority + 1];
+        this.cursor = maxPriority + 1;
+    }
+
+    @Override
+    public void add(int index) {
+        int p = priority.applyAsInt(index);
+
+        int[] bucket = buckets[p];
+        if (bucket == null) {
+            bucket = buckets[p] = FrontierStrategy.allocate(arena, 16);
+        } else if (bucketSizes[p] == bucket.length) {
+            bucket = buckets[p] = FrontierStrategy.grow(arena, bucket, bucketSizes[p], bucket.length * 2);
+        }
+
+        bucket[bucketSizes[p]++] = index;
+        if (p < cursor) cursor = p;
+        size++;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int poll() {
+        // Move on to the first bucket containing pixels
+        while (bucketSizes[cursor] == 0) cursor++;
+
+        int[] bucket = buckets[cursor];
+        int i = r.nextInt(bucketSizes[cursor]);
+        int result = bucket[i];
+
+        // Fill the gap with the last pixel of the bucket
+        bucket[i] = bucket[--bucketSizes[cursor]];
+        size--;
+
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void recycle() {
+        if (arena != null) {
+            for (int[] bucket : buckets) {
+                if (bucket != null) arena.recycleInts(bucket);
+            }
+        }
+        Arrays.fill(buckets, null);
+    }
+}
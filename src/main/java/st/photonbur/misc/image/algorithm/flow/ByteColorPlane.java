@@ -0,0 +1,157 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Stores colors as three bytes per pixel, exactly the precision of the exported image, taking up 3 bytes per pixel.
+ * <p>
+ * Rounding every mixed color to whole channel values would lose the fraction of the average,
+ * and as every pixel is mixed from pixels which were rounded before, the error builds up and flattens gradients into bands.
+ * Instead, the fraction is carried into the noise term: the channel is rounded up with a chance equal to its fraction,
+ * so on average it keeps the exact value of the average and only the noise becomes slightly stronger.
+ * <p>
+ * Visually the result is close to {@link DoubleColorPlane}. Smooth areas get a faint grain of at most one step per channel,
+ * which is mostly noticeable when the randomness is set to 0.
+ */
+class ByteColorPlane implements ColorPlane {
+    /**
+     * The amount of bits of fraction used while mixing.
+     */
+    private static final int FRACTION_BITS = 8;
+
+    /**
+     * The channels of all pixels, stored as red, green and blue right after one another.
+     */
+    private final byte[] channels;
+
+    ByteColorPlane(int size) {
+        channels = new byte[ColorPlane.channelCount(size, "8-bit")];
+    }
+
+    /**
+     * @param i The index of the channel
+     * @return The unsigned value of the channel
+     */
+    private int get(int i) {
+        return channels[i] & 0xFF;
+    }
+
+    @Override
+    public void copyFrom(int index, ColorPlane source, int sourceIndex) {
+        System.arraycopy(((ByteColorPlane) source).channels, sourceIndex * 3, channels, index * 3, 3);
+    }
+
+    @Override
+    public void getChannels(int index, double[] channels) {
+        int i = index * 3;
+
+        channels[0] = get(i);
+        channels[1] = get(i + 1);
+        channels[2] = get(i + 2);
+    }
+
+    @Override
+    public int getRGB(int index) {
+        int i = index * 3;
+
+        return 0xFF000000 | get(i) << 16 | get(i + 1) << 8 | get(i + 2);
+    }
+
+    @Override
+    public void mix(int index, int[] neighbors, int count, double randomness, Random r) {
+        int red = 0, green = 0, blue = 0;
+
+        for (int n = 0; n < count; n++) {
+            int i = neighbors[n] * 3;
+
+            red += get(i);
+            green += get(i + 1);
+            blue += get(i + 2);
+        }
+
+        // Express the randomness in 8.8 fixed-point, so the fraction of the average survives until the final rounding
+        int range = (int) (randomness * (1 << FRACTION_BITS));
+        int bound = 2 * range + 1;
+
+        int i = index * 3;
+        channels[i] = (byte) roundRandomly((red << FRACTION_BITS) / count + r.nextInt(bound) - range, r);
+        channels[i + 1] = (byte) roundRandomly((green << FRACTION_BITS) / count + r.nextInt(bound) - range, r);
+        channels[i + 2] = (byte) roundRandomly((blue << FRACTION_BITS) / count + r.nextInt(bound) - range, r);
+    }
+
+    /**
+     * Rounds a mixed channel randomly, carrying its fraction into the noise.
+     *
+     * @param value The mixed channel in 8.8 fixed-point, including its random deviation
+     * @param r     The randomizer to use
+     * @return The new value of the channel, limited to the 0 - 255 range
+     */
+    private static int roundRandomly(int value, Random r) {
+        // Rounding up with a chance equal to the fraction keeps the expected value exact
+        value = (value + r.nextInt(1 << FRACTION_BITS)) >> FRACTION_BITS;
+
+        return Math.min(Math.max(value, 0), 255);
+    }
+
+    @Override
+    public void mixWeighted(int index, int[] neighbors, int[] weights, int count, double randomness, Random r) {
+        long red = 0, green = 0, blue = 0;
+        long total = 0;
+
+        for (int n = 0; n < count; n++) {
+            int i = neighbors[n] * 3;
+            int weight = weights[n];
+
+            red += (long) get(i) * weight;
+            green += (long) get(i + 1) * weight;
+            blue += (long) get(i + 2) * weight;
+            total += weight;
+        }
+
+        int range = (int) (randomness * (1 << FRACTION_BITS));
+        int bound = 2 * range + 1;
+
+        int i = index * 3;
+        channels[i] = (byte) roundRandomly((int) ((red << FRACTION_BITS) / total) + r.nextInt(bound) - range, r);
+        channels[i + 1] = (byte) roundRandomly((int) ((green << FRACTION_BITS) / total) + r.nextInt(bound) - range, r);
+        channels[i + 2] = (byte) roundRandomly((int) ((blue << FRACTION_BITS) / total) + r.nextInt(bound) - range, r);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        buffer.get(channels);
+    }
+
+    @Override
+    public void setChannels(int index, double c0, double c1, double c2) {
+        int i = index * 3;
+
+        channels[i] = (byte) Math.min(Math.max(Math.round(c0), 0), 255);
+        channels[i + 1] = (byte) Math.min(Math.max(Math.round(c1), 0), 255);
+        channels[i + 2] = (byte) Math.min(Math.max(Math.round(c2), 0), 255);
+    }
+
+    @Override
+    public void setRGB(int index, int rgb) {
+        int i = index * 3;
+
+        channels[i] = (byte) (rgb >> 16);
+        channels[i + 1] = (byte) (rgb >> 8);
+        channels[i + 2] = (byte) rgb;
+    }
+
+    @Override
+    public void setRandom(int index, Random r) {
+        int i = index * 3;
+
+        channels[i] = (byte) r.nextInt(256);
+        channels[i + 1] = (byte) r.nextInt(256);
+        channels[i + 2] = (byte) r.nextInt(256);
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(channels);
+    }
+}
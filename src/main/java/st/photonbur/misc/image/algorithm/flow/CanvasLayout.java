@@ -0,0 +1,50 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+/**
+ * Decides where the state of every pixel on the canvas is stored, by mapping locations to indices and back.
+ * <p>
+ * Every layout surrounds the canvas with a border of sentinel pixels, which have valid indices but lie outside of the canvas.
+ * Looking up a neighbor therefore never needs a bounds check, as long as it lies within the border.
+ */
+interface CanvasLayout {
+    /**
+     * @return The amount of indices this layout uses, including the border and any padding
+     */
+    int capacity();
+
+    /**
+     * @return The width of the border surrounding the canvas
+     */
+    int getBorder();
+
+    /**
+     * Transforms a location into the index used for storing its state.
+     *
+     * @param x The x-coordinate of the location, which may lie in the border
+     * @param y The y-coordinate of the location, which may lie in the border
+     * @return The index of the location
+     */
+    int indexOf(int x, int y);
+
+    /**
+     * Determines the index of a location relative to another index, without any branching.
+     *
+     * @param index The index to reference from
+     * @param dx    The relative location horizontally, which may not leave the border
+     * @param dy    The relative location vertically, which may not leave the border
+     * @return The index of the relative location
+     */
+    int neighborOf(int index, int dx, int dy);
+
+    /**
+     * @param index The index of a location
+     * @return The x-coordinate of the location
+     */
+    int xOf(int index);
+
+    /**
+     * @param index The index of a location
+     * @return The y-coordinate of the location
+     */
+    int yOf(int index);
+}
@@ -0,0 +1,65 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+/**
+ * Enum specifying the ways the state of the pixels of a {@link FlowImage} can be laid out in memory.
+ */
+enum CanvasLayoutType {
+    /**
+     * Stores the canvas column by column, see {@link LinearLayout}.
+     */
+    LINEAR("linear") {
+        @Override
+        CanvasLayout createLayout(int width, int height, int border) {
+            return new LinearLayout(width, height, border);
+        }
+    },
+    /**
+     * Stores the canvas in Z-ordered tiles, see {@link MortonTiledLayout}.
+     */
+    MORTON("morton") {
+        @Override
+        CanvasLayout createLayout(int width, int height, int border) {
+            return new MortonTiledLayout(width, height, border);
+        }
+    };
+
+    /**
+     * The display name corresponding to the enum value.
+     */
+    private final String displayName;
+
+    CanvasLayoutType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Creates a layout for a canvas of the given size.
+     *
+     * @param width  The width of the canvas
+     * @param height The height of the canvas
+     * @param border The width of the sentinel border to surround the canvas with
+     * @return The newly created layout
+     */
+    abstract CanvasLayout createLayout(int width, int height, int border);
+
+    /**
+     * Looks up the layout type belonging to a display name.
+     *
+     * @param displayName The display name to look for, ignoring case
+     * @return The layout type with the given display name, or {@code null} if there is none
+     */
+    static CanvasLayoutType findByDisplayName(String displayName) {
+        for (CanvasLayoutType type : values()) {
+            if (type.displayName.equalsIgnoreCase(displayName)) return type;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The display name corresponding to this enum value.
+     */
+    String getDisplayName() {
+        return displayName;
+    }
+}
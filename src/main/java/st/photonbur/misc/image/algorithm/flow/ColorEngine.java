@@ -0,0 +1,102 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+/**
+ * Enum specifying the ways the colors of a {@link FlowImage} can be stored and calculated with.
+ */
+enum ColorEngine {
+    /**
+     * Stores every channel as a double, see {@link DoubleColorPlane}.
+     */
+    DOUBLE("double", 3 * Double.BYTES) {
+        @Override
+        ColorPlane createPlane(int size) {
+            return new DoubleColorPlane(size);
+        }
+    },
+    /**
+     * Stores every channel as a float, see {@link FloatColorPlane}.
+     */
+    FLOAT("float", 3 * Float.BYTES) {
+        @Override
+        ColorPlane createPlane(int size) {
+            return new FloatColorPlane(size);
+        }
+    },
+    /**
+     * Stores every channel as 8.8 fixed-point integer, see {@link FixedPointColorPlane}.
+     */
+    FIXED_POINT("fixed", Long.BYTES) {
+        @Override
+        ColorPlane createPlane(int size) {
+            return new FixedPointColorPlane(size);
+        }
+    },
+    /**
+     * Stores every channel as 8.8 fixed-point integer of 16 bits, see {@link ShortColorPlane}.
+     */
+    SIXTEEN_BIT("16-bit", 3 * Short.BYTES) {
+        @Override
+        ColorPlane createPlane(int size) {
+            return new ShortColorPlane(size);
+        }
+    },
+    /**
+     * Stores every channel as a single byte, carrying the rounding error into the noise, see {@link ByteColorPlane}.
+     */
+    EIGHT_BIT("8-bit", 3 * Byte.BYTES) {
+        @Override
+        ColorPlane createPlane(int size) {
+            return new ByteColorPlane(size);
+        }
+    };
+
+    /**
+     * The display name corresponding to the enum value.
+     */
+    private final String displayName;
+    /**
+     * The amount of bytes a plane of this engine takes up per pixel.
+     */
+    private final int bytesPerPixel;
+
+    ColorEngine(String displayName, int bytesPerPixel) {
+        this.displayName = displayName;
+        this.bytesPerPixel = bytesPerPixel;
+    }
+
+    /**
+     * Creates a plane capable of storing the colors of a given amount of pixels.
+     *
+     * @param size The amount of pixels to store
+     * @return The newly created plane
+     */
+    abstract ColorPlane createPlane(int size);
+
+    /**
+     * Looks up the engine belonging to a display name.
+     *
+     * @param displayName The display name to look for, ignoring case
+     * @return The engine with the given display name, or {@code null} if there is none
+     */
+    static ColorEngine findByDisplayName(String displayName) {
+        for (ColorEngine engine : values()) {
+            if (engine.displayName.equalsIgnoreCase(displayName)) return engine;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The amount of bytes a plane of this engine takes up per pixel
+     */
+    int getBytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    /**
+     * @return The display name corresponding to this enum value.
+     */
+    String getDisplayName() {
+        return displayName;
+    }
+}
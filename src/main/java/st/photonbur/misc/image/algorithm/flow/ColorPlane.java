@@ -0,0 +1,122 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Stores the color of every pixel on the canvas.
+ * Pixels are addressed by their index, as handed out by the canvas using the plane.
+ * Implementations are free to choose how they represent colors internally, as long as they can be turned into ARGB.
+ */
+interface ColorPlane {
+    /**
+     * The longest array the JVM reliably allocates, as some reserve a few words in front of the elements.
+     */
+    int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * Determines the length of the array holding three channels for every pixel, checking that it fits in a single array.
+     *
+     * @param size   The amount of pixels to store
+     * @param engine The display name of the engine, to mention in the error
+     * @return The amount of channels to store
+     * @throws IllegalArgumentException When the channels don't fit in a single array
+     */
+    static int channelCount(int size, String engine) {
+        long count = 3L * size;
+        if (count > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException(String.format("The %s engine can store at most %d pixels in a single plane, but %d were asked for",
+                    engine, MAX_ARRAY_LENGTH / 3, size));
+        }
+
+        return (int) count;
+    }
+
+    /**
+     * Reads the channels of a pixel in the full precision of this plane.
+     *
+     * @param index    The index of the pixel
+     * @param channels The array to write the three channels into, in the 0 - 255 range
+     */
+    void getChannels(int index, double[] channels);
+
+    /**
+     * Converts the color of a pixel to an ARGB integer.
+     *
+     * @param index The index of the pixel
+     * @return The fully opaque ARGB representation of the color of the pixel
+     */
+    int getRGB(int index);
+
+    /**
+     * Copies the color of a pixel from another plane without any loss of precision.
+     *
+     * @param index       The index of the pixel to set the color of
+     * @param source      The plane to copy from, which must have been created by the same {@link ColorEngine}
+     * @param sourceIndex The index of the pixel to copy in the other plane
+     */
+    void copyFrom(int index, ColorPlane source, int sourceIndex);
+
+    /**
+     * Sets the color of a pixel to the average color of its neighbors, deviating each channel by a random amount.
+     *
+     * @param index      The index of the pixel to set the color of
+     * @param neighbors  The indices of the neighboring pixels
+     * @param count      The amount of neighbors stored in {@code neighbors}
+     * @param randomness The maximum deviation per channel, in the 0 - 255 range
+     * @param r          The randomizer to use
+     */
+    void mix(int index, int[] neighbors, int count, double randomness, Random r);
+
+    /**
+     * Sets the color of a pixel to the weighted average color of its neighbors, deviating each channel by a random amount.
+     *
+     * @param index      The index of the pixel to set the color of
+     * @param neighbors  The indices of the neighboring pixels
+     * @param weights    The weights of the neighboring pixels, in the same order as {@code neighbors}
+     * @param count      The amount of neighbors stored in {@code neighbors}
+     * @param randomness The maximum deviation per channel, in the 0 - 255 range
+     * @param r          The randomizer to use
+     */
+    void mixWeighted(int index, int[] neighbors, int[] weights, int count, double randomness, Random r);
+
+    /**
+     * Restores the colors of all pixels, as written before by {@link #writeTo(ByteBuffer)}.
+     *
+     * @param buffer The buffer to read from, starting at its position; the position is moved past the colors read
+     */
+    void readFrom(ByteBuffer buffer);
+
+    /**
+     * Sets the channels of a pixel, keeping as much of their precision as this plane can hold.
+     *
+     * @param index The index of the pixel to set the color of
+     * @param c0    The first channel, in the 0 - 255 range
+     * @param c1    The second channel, in the 0 - 255 range
+     * @param c2    The third channel, in the 0 - 255 range
+     */
+    void setChannels(int index, double c0, double c1, double c2);
+
+    /**
+     * Sets the color of a pixel to an exact color.
+     *
+     * @param index The index of the pixel to set the color of
+     * @param rgb   The color to set, as RGB integer; the alpha channel is ignored
+     */
+    void setRGB(int index, int rgb);
+
+    /**
+     * Sets the color of a pixel to a random color.
+     *
+     * @param index The index of the pixel to set the color of
+     * @param r     The randomizer to use
+     */
+    void setRandom(int index, Random r);
+
+    /**
+     * Writes the colors of all pixels without any loss of precision, taking up {@link ColorEngine#getBytesPerPixel()} bytes per pixel.
+     *
+     * @param buffer The buffer to write to, starting at its position; the position is moved past the colors written
+     */
+    void writeTo(ByteBuffer buffer);
+}
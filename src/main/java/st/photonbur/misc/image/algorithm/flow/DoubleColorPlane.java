@@ -0,0 +1,129 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Stores colors as three doubles per pixel, in the 0 - 255 range.
+ * This is the most precise, but also the largest representation, taking up 24 bytes per pixel.
+ */
+class DoubleColorPlane implements ColorPlane {
+    /**
+     * The channels of all pixels, stored as red, green and blue right after one another.
+     */
+    private final double[] channels;
+
+    DoubleColorPlane(int size) {
+        channels = new double[ColorPlane.channelCount(size, "double")];
+    }
+
+    @Override
+    public void copyFrom(int index, ColorPlane source, int sourceIndex) {
+        System.arraycopy(((DoubleColorPlane) source).channels, sourceIndex * 3, channels, index * 3, 3);
+    }
+
+    @Override
+    public void getChannels(int index, double[] channels) {
+        System.arraycopy(this.channels, index * 3, channels, 0, 3);
+    }
+
+    @Override
+    public int getRGB(int index) {
+        int i = index * 3;
+
+        return 0xFF000000
+                | (int) Math.round(channels[i]) << 16
+                | (int) Math.round(channels[i + 1]) << 8
+                | (int) Math.round(channels[i + 2]);
+    }
+
+    @Override
+    public void mix(int index, int[] neighbors, int count, double randomness, Random r) {
+        double red = 0, green = 0, blue = 0;
+
+        for (int n = 0; n < count; n++) {
+            int i = neighbors[n] * 3;
+
+            red += channels[i];
+            green += channels[i + 1];
+            blue += channels[i + 2];
+        }
+
+        int i = index * 3;
+        channels[i] = mixChannel(red / count, randomness, r);
+        channels[i + 1] = mixChannel(green / count, randomness, r);
+        channels[i + 2] = mixChannel(blue / count, randomness, r);
+    }
+
+    /**
+     * Applies a random deviation to a channel.
+     *
+     * @param average    The average value of the channel among the neighbors
+     * @param randomness The maximum deviation
+     * @param r          The randomizer to use
+     * @return The new value of the channel, limited to the 0 - 255 range
+     */
+    private static double mixChannel(double average, double randomness, Random r) {
+        return Math.min(Math.max(average + r.nextDouble() * 2 * randomness - randomness, 0d), 255d);
+    }
+
+    @Override
+    public void mixWeighted(int index, int[] neighbors, int[] weights, int count, double randomness, Random r) {
+        double red = 0, green = 0, blue = 0;
+        double total = 0;
+
+        for (int n = 0; n < count; n++) {
+            int i = neighbors[n] * 3;
+            int weight = weights[n];
+
+            red += channels[i] * weight;
+            green += channels[i + 1] * weight;
+            blue += channels[i + 2] * weight;
+            total += weight;
+        }
+
+        int i = index * 3;
+        channels[i] = mixChannel(red / total, randomness, r);
+        channels[i + 1] = mixChannel(green / total, randomness, r);
+        channels[i + 2] = mixChannel(blue / total, randomness, r);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        buffer.asDoubleBuffer().get(channels);
+        buffer.position(buffer.position() + channels.length * Double.BYTES);
+    }
+
+    @Override
+    public void setChannels(int index, double c0, double c1, double c2) {
+        int i = index * 3;
+
+        channels[i] = Math.min(Math.max(c0, 0d), 255d);
+        channels[i + 1] = Math.min(Math.max(c1, 0d), 255d);
+        channels[i + 2] = Math.min(Math.max(c2, 0d), 255d);
+    }
+
+    @Override
+    public void setRGB(int index, int rgb) {
+        int i = index * 3;
+
+        channels[i] = (rgb >> 16) & 0xFF;
+        channels[i + 1] = (rgb >> 8) & 0xFF;
+        channels[i + 2] = rgb & 0xFF;
+    }
+
+    @Override
+    public void setRandom(int index, Random r) {
+        int i = index * 3;
+
+        channels[i] = r.nextInt(256);
+        channels[i + 1] = r.nextInt(256);
+        channels[i + 2] = r.nextInt(256);
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.asDoubleBuffer().put(channels);
+        buffer.position(buffer.position() + channels.length * Double.BYTES);
+    }
+}
@@ -0,0 +1,97 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+/**
+ * Visits the pixels in the order they were added, making the image grow breadth-first.
+ * Pixels are kept in a ring buffer, which makes both adding and polling O(1).
+ */
+class FifoFrontier implements FrontierStrategy {
+    /**
+     * The ring buffer holding the indices of the pixels in this frontier.
+     * Only the first {@link #capacity} slots are used, which is always a power of two, so wrapping around can be done by masking;
+     * the array may be longer when it was recycled.
+     */
+    private int[] items;
+    /**
+     * The amount of slots of the ring buffer.
+     */
+    private int capacity;
+    /**
+     * The arena to take arrays from and hand them back to, or {@code null} to allocate them.
+     */
+    private final FlowArena arena;
+    /**
+     * The position of the pixel to visit next.
+     */
+    private int head = 0;
+    /**
+     * The amount of pixels in this frontier.
+     */
+    private int size = 0;
+
+    FifoFrontier(int initialCapacity, FlowArena arena) {
+        this.arena = arena;
+        this.items = FrontierStrategy.allocate(arena, Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1);
+        this.capacity = Integer.highestOneBit(items.length);
+    }
+
+    @Override
+    public void add(int index) {
+        if (size == capacity) grow();
+        items[(head + size++) & (capacity - 1)] = index;
+    }
+
+    @Override
+    public void addAll(int[] indices, int count) {
+        while (size + count > capacity) grow();
+
+        // Copy the pixels in up to two parts, as the free space may wrap around the end of the ring buffer
+        int tail = (head + size) & (capacity - 1);
+        int firstPart = Math.min(count, capacity - tail);
+
+        System.arraycopy(indices, 0, items, tail, firstPart);
+        System.arraycopy(indices, firstPart, items, 0, count - firstPart);
+        size += count;
+    }
+
+    /**
+     * Doubles the capacity of the ring buffer, unwrapping its contents in the process.
+     */
+    private void grow() {
+        int[] grown = FrontierStrategy.allocate(arena, capacity * 2);
+        int firstPart = capacity - head;
+
+        System.arraycopy(items, head, grown, 0, firstPart);
+        System.arraycopy(items, 0, grown, firstPart, head);
+        if (arena != null) arena.recycleInts(items);
+
+        items = grown;
+        capacity = Integer.highestOneBit(grown.length);
+        head = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int poll() {
+        int result = items[head];
+
+        head = (head + 1) & (capacity - 1);
+        size--;
+
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void recycle() {
+        if (arena != null) arena.recycleInts(items);
+        items = null;
+    }
+}
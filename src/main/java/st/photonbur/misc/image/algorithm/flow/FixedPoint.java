@@ -0,0 +1,107 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.util.Random;
+
+/**
+ * The 8.8 fixed-point arithmetic shared by the planes storing channels as integers with 8 bits of fraction,
+ * see {@link FixedPointColorPlane} and {@link ShortColorPlane}.
+ * Both planes only differ in how they store the channels, so they produce exactly the same colors.
+ * <p>
+ * Channels range from 0 to {@link #MAX}, which fits in 16 bits when read back unsigned.
+ */
+final class FixedPoint {
+    /**
+     * The amount of bits used for the fraction of every channel.
+     */
+    static final int FRACTION_BITS = 8;
+    /**
+     * The highest value a channel can take on.
+     */
+    static final int MAX = 255 << FRACTION_BITS;
+    /**
+     * Half of a unit, used for rounding to the nearest integer.
+     */
+    private static final int HALF = 1 << (FRACTION_BITS - 1);
+
+    /**
+     * The highest amount of neighbors that can be averaged without falling back to division.
+     */
+    private static final int MAX_RECIPROCAL = 64;
+    /**
+     * The reciprocals of the possible amounts of neighbors, in 16.16 fixed-point.
+     * Multiplying with these replaces the division when averaging.
+     */
+    private static final long[] RECIPROCALS = new long[MAX_RECIPROCAL + 1];
+
+    static {
+        for (int i = 1; i <= MAX_RECIPROCAL; i++) RECIPROCALS[i] = ((1L << 16) + i - 1) / i;
+    }
+
+    private FixedPoint() { }
+
+    /**
+     * Averages the channels of a given amount of neighbors.
+     *
+     * @param sum   The sum of the channels
+     * @param count The amount of channels summed up
+     * @return The average channel
+     */
+    static int average(long sum, int count) {
+        // Multiply with the reciprocal of the amount of neighbors, unless there are too many of them
+        if (count <= MAX_RECIPROCAL) return (int) ((sum * RECIPROCALS[count]) >>> 16);
+        return (int) (sum / count);
+    }
+
+    /**
+     * Limits a channel to the 0 - {@link #MAX} range without branching.
+     *
+     * @param value The value to limit
+     * @return The limited value
+     */
+    static int clamp(int value) {
+        // Clear negative values by masking with the inverted sign
+        value &= ~(value >> 31);
+        // Only keep the difference to the maximum if it is negative, i.e. if the value is below the maximum
+        int overflow = value - MAX;
+        return MAX + (overflow & (overflow >> 31));
+    }
+
+    /**
+     * Applies the randomness of a mix to an averaged channel.
+     *
+     * @param average    The averaged channel
+     * @param randomness The maximum deviation, in the 0 - 255 range
+     * @param r          The randomizer to pick the deviation with
+     * @return The channel with a random deviation applied, limited to the 0 - {@link #MAX} range
+     */
+    static int deviate(int average, double randomness, Random r) {
+        // Express the randomness in the same fixed-point scale as the channels
+        int range = (int) (randomness * (1 << FRACTION_BITS));
+
+        return clamp(average + r.nextInt(2 * range + 1) - range);
+    }
+
+    /**
+     * @param channel A channel in the 0 - 255 range
+     * @return The channel in 8.8 fixed-point, rounded to the nearest representable value
+     */
+    static int fromDouble(double channel) {
+        return clamp((int) Math.round(channel * (1 << FRACTION_BITS)));
+    }
+
+    /**
+     * @param channel A channel in 8.8 fixed-point
+     * @return The channel in the 0 - 255 range
+     */
+    static double toDouble(int channel) {
+        return channel / (double) (1 << FRACTION_BITS);
+    }
+
+    /**
+     * @param channel A channel in 8.8 fixed-point
+     * @return The channel rounded to the nearest integer in the 0 - 255 range
+     */
+    static int round(int channel) {
+        return (channel + HALF) >>> FRACTION_BITS;
+    }
+}
@@ -0,0 +1,245 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.awt.*;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Recycles the large buffers of {@link FlowImage}s between generations, so rendering many images in a row doesn't allocate them all over again.
+ * The color planes, the registries, the frontiers and the pixels of finished images are handed back once they are no longer needed,
+ * and are handed out again to the next image of a compatible size, cleared where needed.
+ * <p>
+ * Buffers are cleared as they are handed back, so taking one never has to wait for it. Color planes don't need clearing,
+ * as every pixel is assigned a color before it is read; of the pixels of an image only the area that was drawn in is cleared.
+ * Neither do the arrays backing frontiers, as only the part holding pixels is ever read.
+ * The buffers kept around take up a bounded amount of memory together, evicting the ones handed back longest ago.
+ * An arena can be shared between images generating side by side.
+ */
+class FlowArena {
+    /**
+     * The shortest int array worth keeping around; shorter ones are cheaper to allocate than to look up.
+     */
+    private static final int MIN_RECYCLED_INTS = 1024;
+
+    /**
+     * A buffer waiting to be handed out again.
+     */
+    private static class Entry {
+        /**
+         * Describes the kind and size of the buffer; only buffers with the same key can stand in for each other.
+         */
+        private final String key;
+        private final Object buffer;
+        /**
+         * The amount of bytes the buffer takes up.
+         */
+        private final long size;
+
+        private Entry(String key, Object buffer, long size) {
+            this.key = key;
+            this.buffer = buffer;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The buffers waiting to be handed out again, from the one handed back longest ago to the latest one.
+     */
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    /**
+     * The most bytes the buffers kept around may take up together.
+     */
+    private final long maxSize;
+    /**
+     * The amount of bytes the buffers kept around take up together.
+     */
+    private long size = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxSize The most bytes the buffers kept around may take up together
+     */
+    FlowArena(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Hands out a color plane, which holds the colors of a previous image if it was recycled.
+     *
+     * @param colorEngine The engine the plane belongs to
+     * @param capacity    The amount of pixels the plane has to hold
+     * @return The color plane
+     */
+    ColorPlane takePlane(ColorEngine colorEngine, int capacity) {
+        ColorPlane plane = (ColorPlane) take(planeKey(colorEngine, capacity));
+        return plane != null ? plane : colorEngine.createPlane(capacity);
+    }
+
+    /**
+     * Hands out a cleared bitmap.
+     *
+     * @param length The amount of longs in the bitmap
+     * @return The bitmap
+     */
+    long[] takeBitmap(int length) {
+        long[] bitmap = (long[]) take("bitmap/" + length);
+        return bitmap != null ? bitmap : new long[length];
+    }
+
+    /**
+     * Hands out an int array of at least a given length, such as the one backing a frontier, holding whatever was in it before.
+     * Frontiers grow as they fill up, so any recycled array that is long enough will do.
+     *
+     * @param minLength The least amount of ints the array has to hold
+     * @return The array, which may be longer than asked for
+     */
+    int[] takeInts(int minLength) {
+        if (minLength < MIN_RECYCLED_INTS) return new int[minLength];
+
+        int[] array = (int[]) take("ints", buffer -> ((int[]) buffer).length >= minLength);
+        return array != null ? array : new int[minLength];
+    }
+
+    /**
+     * Hands out a cleared raster of ARGB pixels, laid out as a {@link java.awt.image.BufferedImage#TYPE_INT_ARGB} image would be.
+     *
+     * @param width  The width of the raster
+     * @param height The height of the raster
+     * @return The raster
+     */
+    WritableRaster takeRaster(int width, int height) {
+        WritableRaster raster = (WritableRaster) take("raster/" + width + "x" + height);
+        return raster != null ? raster : ColorModel.getRGBdefault().createCompatibleWritableRaster(width, height);
+    }
+
+    /**
+     * Hands back a color plane, which may be handed out again right away.
+     *
+     * @param colorEngine The engine the plane belongs to
+     * @param capacity    The amount of pixels the plane holds
+     * @param plane       The color plane
+     */
+    void recyclePlane(ColorEngine colorEngine, int capacity, ColorPlane plane) {
+        recycle(planeKey(colorEngine, capacity), plane, (long) capacity * colorEngine.getBytesPerPixel());
+    }
+
+    /**
+     * Clears a bitmap and hands it back.
+     *
+     * @param bitmap The bitmap
+     */
+    void recycleBitmap(long[] bitmap) {
+        Arrays.fill(bitmap, 0);
+        recycle("bitmap/" + bitmap.length, bitmap, (long) bitmap.length * Long.BYTES);
+    }
+
+    /**
+     * Hands back an int array, which may be handed out again right away.
+     *
+     * @param array The array
+     */
+    void recycleInts(int[] array) {
+        if (array.length < MIN_RECYCLED_INTS) return;
+        recycle("ints", array, (long) array.length * Integer.BYTES);
+    }
+
+    /**
+     * Clears the part of a raster that was drawn in and hands it back.
+     *
+     * @param raster    The raster
+     * @param drawnArea The area that was drawn in, or {@code null} if the raster is still clear
+     */
+    void recycleRaster(WritableRaster raster, Rectangle drawnArea) {
+        if (drawnArea != null) {
+            Rectangle area = drawnArea.intersection(raster.getBounds());
+            int[] blank = new int[Math.max(0, area.width)];
+
+            for (int y = area.y; y < area.y + area.height; y++) raster.setDataElements(area.x, y, area.width, 1, blank);
+        }
+
+        recycle("raster/" + raster.getWidth() + "x" + raster.getHeight(), raster, (long) raster.getWidth() * raster.getHeight() * Integer.BYTES);
+    }
+
+    private static String planeKey(ColorEngine colorEngine, int capacity) {
+        return "plane/" + colorEngine.name() + "/" + capacity;
+    }
+
+    /**
+     * Takes the buffer with the given key that was handed back last.
+     *
+     * @param key The key of the buffer
+     * @return The buffer, or {@code null} if there is none
+     */
+    private Object take(String key) {
+        return take(key, buffer -> true);
+    }
+
+    /**
+     * Takes the buffer with the given key that was handed back last, of those that fit.
+     *
+     * @param key  The key of the buffer
+     * @param fits Decides whether a buffer can be handed out
+     * @return The buffer, or {@code null} if there is none
+     */
+    private synchronized Object take(String key, Predicate<Object> fits) {
+        // Prefer the buffer handed back last, as it is the most likely to still be in the cache of the processor
+        Iterator<Entry> it = entries.descendingIterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (!entry.key.equals(key) || !fits.test(entry.buffer)) continue;
+
+            it.remove();
+            size -= entry.size;
+            hits++;
+            return entry.buffer;
+        }
+
+        misses++;
+        return null;
+    }
+
+    /**
+     * Keeps a buffer around to be handed out again, evicting the buffers handed back longest ago to stay within the maximum size.
+     *
+     * @param key    The key of the buffer
+     * @param buffer The buffer
+     * @param size   The amount of bytes the buffer takes up
+     */
+    private synchronized void recycle(String key, Object buffer, long size) {
+        if (size > maxSize) return;
+
+        entries.addLast(new Entry(key, buffer, size));
+        this.size += size;
+
+        while (this.size > maxSize) {
+            this.size -= entries.removeFirst().size;
+            evictions++;
+        }
+    }
+
+    /**
+     * @return The amount of buffers handed out and how many of them were recycled, along with the size of the buffers kept around
+     */
+    synchronized String getStatistics() {
+        long takes = hits + misses;
+
+        return String.format(Locale.ROOT, "%d of %d buffers recycled (%.1f%% reuse rate), %d kept taking %.1f of %.1f MB, %d evictions",
+                hits, takes, takes == 0 ? 0 : hits * 100d / takes, entries.size(), size / 1e6, maxSize / 1e6, evictions);
+    }
+
+    /**
+     * @return The reuse and size of this arena as JSON
+     */
+    synchronized String getStatisticsJson() {
+        return String.format(Locale.ROOT, "{\"hits\":%d,\"misses\":%d,\"entries\":%d,\"size\":%d,\"maxSize\":%d,\"evictions\":%d}",
+                hits, misses, entries.size(), size, maxSize, evictions);
+    }
+}
@@ -0,0 +1,189 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractInputHandler;
+import st.photonbur.misc.image.misc.InputStep;
+
+public class FlowDistributedInputHandler extends AbstractInputHandler {
+    // == STEP INIT == //
+    /**
+     * The {@link InputStep} requesting the amount of points to start the generation with.
+     */
+    private final InputStep<Integer, Integer> nPoints = new InputStep<>(
+            "Amount of starting points",
+            input -> input > 0 && input <= (long) getWidth() * getHeight(),
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the randomness every pixel should apply.
+     */
+    private final InputStep<Double, Double> randomness = new InputStep<>(
+            "Randomness per pixel (value between 0 and 30)",
+            input -> input > 0 && input <= 30,
+            Double::parseDouble,
+            Double::parseDouble
+    );
+
+    /**
+     * The {@link InputStep} requesting the seed of the randomizer.
+     */
+    private final InputStep<String, String> seed = new InputStep<>(
+            "Seed (leave empty for a random one)",
+            input -> input.isEmpty() || input.matches("-?\\d{1,18}"),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the engine used for storing and calculating colors.
+     */
+    private final InputStep<String, ColorEngine> colorEngine = new InputStep<>(
+            "Color engine (double/float/fixed/16-bit/8-bit)",
+            input -> ColorEngine.findByDisplayName(input) != null,
+            String::valueOf,
+            ColorEngine::findByDisplayName
+    );
+
+    /**
+     * The {@link InputStep} requesting the size of the tiles the image is split into.
+     */
+    private final InputStep<Integer, Integer> tileSize = new InputStep<>(
+            "Tile size in pixels",
+            input -> input >= 16,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of pixels every tile may visit per round.
+     */
+    private final InputStep<Integer, Integer> roundBudget = new InputStep<>(
+            "Pixels per tile per round (lower exchanges borders more often)",
+            input -> input > 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of worker processes to start on this machine.
+     */
+    private final InputStep<Integer, Integer> localWorkers = new InputStep<>(
+            "Worker processes to start on this machine",
+            input -> input >= 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of workers started elsewhere.
+     */
+    private final InputStep<Integer, Integer> remoteWorkers = new InputStep<>(
+            "Workers to wait for from other machines",
+            input -> input >= 0 && input + getLocalWorkers() > 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the port to listen on for workers.
+     */
+    private final InputStep<Integer, Integer> port = new InputStep<>(
+            "Port to listen on for workers (0 for any)",
+            input -> input >= 0 && input <= 65535,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * A final copy of the input steps the user is faced with.
+     * This is done so the array won't be created every time it has to be retrieved by the getter.
+     */
+    private final InputStep[] steps = new InputStep[] {
+            imageWidth, imageHeight, nPoints, randomness, seed, colorEngine, tileSize, roundBudget, localWorkers, remoteWorkers, port
+    };
+
+    @Override
+    protected InputStep[] getSteps() {
+        return steps;
+    }
+
+    // == PARAM GETTERS == //
+
+    /**
+     * @return The engine used for storing and calculating colors
+     */
+    ColorEngine getColorEngine() {
+        return colorEngine.getResult();
+    }
+
+    /**
+     * @return The height of the image to generate
+     */
+    Integer getHeight() {
+        return imageHeight.getResult();
+    }
+
+    /**
+     * @return The amount of worker processes to start on this machine
+     */
+    Integer getLocalWorkers() {
+        return localWorkers.getResult();
+    }
+
+    /**
+     * @return The amount of points to start the generation with
+     */
+    Integer getNPoints() {
+        return nPoints.getResult();
+    }
+
+    /**
+     * @return The port to listen on for workers
+     */
+    Integer getPort() {
+        return port.getResult();
+    }
+
+    /**
+     * @return The amount of randomness to apply to the pixel generation
+     */
+    Double getRandomness() {
+        return randomness.getResult();
+    }
+
+    /**
+     * @return The amount of workers started elsewhere
+     */
+    Integer getRemoteWorkers() {
+        return remoteWorkers.getResult();
+    }
+
+    /**
+     * @return The seed of the randomizer, or {@code null} if a random one should be picked
+     */
+    Long getSeed() {
+        return seed.getResult().isEmpty() ? null : Long.parseLong(seed.getResult());
+    }
+
+    /**
+     * @return The amount of pixels every tile may visit per round
+     */
+    Integer getRoundBudget() {
+        return roundBudget.getResult();
+    }
+
+    /**
+     * @return The size of the tiles the image is split into
+     */
+    Integer getTileSize() {
+        return tileSize.getResult();
+    }
+
+    /**
+     * @return The width of the image to generate
+     */
+    Integer getWidth() {
+        return imageWidth.getResult();
+    }
+}
@@ -0,0 +1,61 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.misc.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generates a FLOW image spread over multiple worker processes, see {@link TileCoordinator}.
+ * Workers on other machines can join by running {@link TileWorker} with the host and port of this machine.
+ */
+public class FlowDistributedLauncher extends AbstractLauncher<FlowDistributedInputHandler> {
+    /**
+     * The default title to give to the preview window.
+     */
+    private static final String DEFAULT_PREVIEW_TITLE = "FLOW Distributed";
+
+    public FlowDistributedLauncher(FlowDistributedInputHandler params) {
+        super(params);
+    }
+
+    @Override
+    protected void exportImage() throws IOException {
+        // Create the filename to store the image under
+        int index = Utils.findLastIndexInDirectory("out/flow/", "png") + 1;
+        File target = new File(String.format("out/flow/%05d.png", index));
+        //noinspection ResultOfMethodCallIgnored
+        target.getParentFile().mkdirs();
+
+        long seed = getParams().getSeed() != null ? getParams().getSeed() : new Random().nextLong();
+
+        new TileCoordinator(getParams().getWidth(), getParams().getHeight(), getParams().getNPoints(), getParams().getRandomness(), seed,
+                getParams().getColorEngine(), FrontierOrder.RANDOM, CanvasLayoutType.LINEAR,
+                getParams().getTileSize(), getParams().getRoundBudget())
+                .run(getParams().getLocalWorkers(), getParams().getRemoteWorkers(), getParams().getPort(),
+                        new File(String.format("out/flow/%05d", index)), target);
+    }
+
+    @Override
+    public String getDefaultPreviewTitle() {
+        return DEFAULT_PREVIEW_TITLE;
+    }
+
+    @Override
+    public void setup() {
+        // Generate all parameters needed to run the algorithm
+        getParams().generate();
+
+        // Start generating the image on another thread
+        new Thread(() -> {
+            try {
+                exportImage();
+            } catch (IOException ex) {
+                System.out.println("Error while generating distributed flow image");
+                ex.printStackTrace();
+            }
+        }).start();
+    }
+}
@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code flow-distributed} type: generates a FLOW image spread over multiple worker processes.
+ */
+public class FlowDistributedProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "flow-distributed";
+    }
+
+    @Override
+    public void launch() {
+        new FlowDistributedLauncher(new FlowDistributedInputHandler()).setup();
+    }
+}
@@ -5,16 +5,19 @@ import st.photonbur.misc.image.algorithm.AbstractLauncher;
 import st.photonbur.misc.image.display.renderer.ImageRenderType;
 import st.photonbur.misc.image.display.renderer.ImageRendererBuilder;
 import st.photonbur.misc.image.display.renderer.ImageRendererImpl;
+import st.photonbur.misc.image.display.renderer.PixelColorFunction;
 import st.photonbur.misc.image.misc.BufferedImageWithProperties;
-import st.photonbur.misc.image.misc.DoubleColor;
 
+import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.text.DecimalFormat;
-import java.util.HashSet;
 import java.util.Random;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
 
 /**
  * Generates an image according to the FLOW algorithm.
@@ -22,190 +25,222 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 class FlowImage extends AbstractAlgorithm {
     /**
-     * Represents a node on the canvas.
+     * Represents a matrix that spans the entire image, keeping track of which pixels have been visited and what color they have.
+     * Also includes utility methods for interfacing with it.
      */
-    class Node {
+    class NodeMatrix {
         /**
-         * The color this node has.
+         * The colors of all pixels, as stored by the color engine.
          */
-        final DoubleColor color;
+        private final ColorPlane plane;
         /**
-         * The location this node has on the canvas.
+         * The colors of all pixels, mixed in the mixing space.
+         * A color is assigned as soon as a pixel becomes active, but it only counts as part of the image once it is visited.
          */
-        final Point location;
-
-        Node(Point location) {
-            this.location = location;
-
-            // Try calculating the color if enough neighbors are present.
-            if (visitedNodes.getNeighborsOf(this).size() == 0) {
-                this.color = new DoubleColor(r.nextInt(256), r.nextInt(256), r.nextInt(256));
-            } else {
-                this.color = visitedNodes.getAverageColorFor(this);
-            }
-        }
-
-        @Override
-        public boolean equals(Object that) {
-            if (this == that) return true;
-            if (that == null || getClass() != that.getClass()) return false;
-
-            Node node = (Node) that;
-
-            return location.equals(node.location);
-        }
-
-        @Override
-        public int hashCode() {
-            return location.hashCode();
-        }
-
-        @Override
-        public String toString() {
-            return "N:<" + location.x + "," + location.y + "," + color + ">";
-        }
-    }
-
-    /**
-     * Represents a matrix that spans the entire image and is filled with nodes.
-     * Also includes utility methods for interfacing with it.
-     */
-    class NodeMatrix {
+        private final ColorPlane colors;
+        /**
+         * The registry marking which pixels have been visited.
+         * Pixels in the border of the layout are never visited, so they never count as neighbors.
+         */
+        private final NodeRegistry registry;
+        /**
+         * Scratch space for collecting the indices of neighbors, preventing an allocation for every pixel.
+         * There is room for the pixel itself as well, for when it holds a guiding color.
+         */
+        private final int[] neighbors = new int[mixDx.length + 1];
         /**
-         * The actual matrix, filled with nodes.
+         * Scratch space for collecting the weights of neighbors, in the same order as {@link #neighbors}.
          */
-        private final Node[][] nodeMatrix;
+        private final int[] weights = new int[mixDx.length + 1];
+        /**
+         * Whether or not the colors of unvisited pixels hold the color of a coarser level, guiding the generation.
+         */
+        private boolean isGuided = false;
         /**
          * The amount of nodes included in the matrix.
          */
         private long usedVolume;
 
         NodeMatrix() {
-            nodeMatrix = new Node[getWidth()][getHeight()];
+            plane = arena == null ? colorEngine.createPlane(layout.capacity()) : arena.takePlane(colorEngine, layout.capacity());
+            colors = mixingSpace.wrap(plane);
+            registry = new NodeRegistry();
             usedVolume = 0;
         }
 
         /**
-         * Checks to see if the node with passed coordinate exists within this set.
+         * Determines the color of a pixel, based on the visited pixels around it.
+         * If none of its neighbors have been visited yet, a random color is picked, unless the generation is guided by a coarser level.
          *
-         * @param x The x-coordinate of the node to look for
-         * @param y The y-coordinate of the node to look for
-         * @return {@code true} if the node exists within this set, {@code false} otherwise
+         * @param index The index of the pixel
          */
-        boolean contains(int x, int y) {
-            return nodeMatrix[x][y] != null;
+        void assignColor(int index) {
+            int count = collectNeighbors(index);
+
+            // Until its color is assigned, a pixel still holds the color of the coarser level; mix it in as if it were a neighbor
+            if (isGuided) {
+                neighbors[count] = index;
+                weights[count++] = NeighborhoodKernel.WEIGHT_SCALE;
+            }
+
+            if (count == 0) {
+                colors.setRandom(index, r);
+            } else if (mixWeights == null) {
+                colors.mix(index, neighbors, count, randomness, r);
+            } else {
+                colors.mixWeighted(index, neighbors, weights, count, randomness, r);
+            }
         }
 
         /**
-         * Returns the average color around a given node.
+         * Collects the indices of the visited neighbors of a pixel into {@link #neighbors}.
          *
-         * @param node The node of which the neighbors will be used to calculate their average color
-         * @return The average color +/- some deviation
+         * @param index The index of the pixel
+         * @return The amount of visited neighbors
          */
-        private DoubleColor getAverageColorFor(Node node) {
-            // Determine what nodes are this node's neighbors
-            Set<Node> neighbors = getNeighborsOf(node);
-
-            // Return the average color
-            return new DoubleColor(
-                    mixColorChannel(neighbors, Color.RED),
-                    mixColorChannel(neighbors, Color.GREEN),
-                    mixColorChannel(neighbors, Color.BLUE)
-            );
-        }
+        private int collectNeighbors(int index) {
+            int count = 0;
 
-        /**
-         * @param node The node of which to check what neighbors are present within this {@link NodeMatrix}.
-         * @return The set of nodes which are neighboring the given ndoe.
-         */
-        private HashSet<Node> getNeighborsOf(Node node) {
-            HashSet<Node> result = new HashSet<>();
+            for (int k = 0; k < mixDx.length; k++) {
+                int neighbor = layout.neighborOf(index, mixDx[k], mixDy[k]);
 
-            if (hasNeighborAt(node, -1,  0)) result.add(nodeMatrix[node.location.x - 1][node.location.y]);
-            if (hasNeighborAt(node,  1,  0)) result.add(nodeMatrix[node.location.x + 1][node.location.y]);
-            if (hasNeighborAt(node,  0, -1)) result.add(nodeMatrix[node.location.x][node.location.y - 1]);
-            if (hasNeighborAt(node,  0,  1)) result.add(nodeMatrix[node.location.x][node.location.y + 1]);
+                // Always write the neighbor, but only count it when it was visited
+                neighbors[count] = neighbor;
+                if (mixWeights != null) weights[count] = mixWeights[k];
+                if (registry.contains(neighbor)) count++;
+            }
 
-            return result;
+            return count;
         }
 
         /**
-         * @return The amount of nodes within this matrix
+         * Checks to see if the node with passed coordinate exists within this set.
+         *
+         * @param x The x-coordinate of the node to look for
+         * @param y The y-coordinate of the node to look for
+         * @return {@code true} if the node exists within this set, {@code false} otherwise
          */
-        private long getUsedVolume() {
-            return usedVolume;
+        boolean contains(int x, int y) {
+            return registry.contains(layout.indexOf(x, y));
         }
 
         /**
-         * Used to determine whether or not the given node has a neighbor at a certain relative location.
-         *
-         * @param node The node to reference from
-         * @param dx   The relative location horizontally
-         * @param dy   The relative location vertically
-         * @return     {@code true} when a neighbor was detected within this matrix, {@code false} otherwise
+         * @param x The x-coordinate of the pixel
+         * @param y The y-coordinate of the pixel
+         * @return The ARGB color of the pixel
          */
-        boolean hasNeighborAt(Node node, int dx, int dy) {
-            return node.location.x + dx >= 0 && node.location.x + dx < getWidth() &&
-                   node.location.y + dy >= 0 && node.location.y + dy < getHeight() &&
-                   contains(node.location.x + dx, node.location.y + dy);
+        int getRGB(int x, int y) {
+            return colors.getRGB(layout.indexOf(x, y));
         }
 
         /**
-         * Mixes a color of a certain channel.
-         *
-         * @param neighbors The neighbors to get the average color of
-         * @param channel   The color channel to base the calculation on
-         * @return The new value of the passed color channel
+         * @return The amount of nodes within this matrix
          */
-        private double mixColorChannel(Set<Node> neighbors, Color channel) {
-            return Math.min(Math.max(
-                    neighbors.stream().mapToDouble(nn -> {
-                        if (channel == Color.RED) {
-                            return nn.color.getRed();
-                        } else if (channel == Color.GREEN) {
-                            return nn.color.getGreen();
-                        } else if (channel == Color.BLUE) {
-                            return nn.color.getBlue();
-                        } else {
-                            return 0f;
-                        }
-                    }).average().orElse(0) + r.nextDouble() * 2 * randomness - randomness
-                    , 0d), 255d);
+        private long getUsedVolume() {
+            return usedVolume;
         }
 
         /**
-         * Stores a node in this matrix if the space wasn't occupied yet.
+         * Stores a pixel in this matrix if the space wasn't occupied yet.
          *
-         * @param node The node to store
+         * @param index The index of the pixel to store
          */
-        void store(Node node) {
-            if (!contains(node.location.x, node.location.y)) {
+        void store(int index) {
+            if (!registry.contains(index)) {
                 usedVolume++;
-                nodeMatrix[node.location.x][node.location.y] = node;
+                registry.store(index);
             }
         }
+
+        /**
+         * Marks a neighbor of a freshly visited pixel as active, unless it has been visited already.
+         *
+         * @param neighbor The index of the neighbor
+         */
+        private void activateIfUnvisited(int neighbor) {
+            if (!registry.contains(neighbor)) activeNodes.add(neighbor);
+        }
     }
 
     /**
-     * Represents a list of nodes. Contains a few utility methods for easier and more efficient handling of Node objects.
+     * Represents the set of pixels that are scheduled to be visited.
+     * The order in which they are visited is left to a {@link FrontierStrategy}, while membership is tracked through a {@link NodeRegistry}.
      */
-    class NodeSet extends ConcurrentHashMap<Node, Byte> {
-        private NodeRegistry registry;
+    class NodeSet {
+        /**
+         * The strategy deciding in which order the pixels are visited.
+         */
+        private final FrontierStrategy frontier;
+        /**
+         * The registry marking which pixels are active.
+         * The border of the layout is permanently marked as active, so it never gets added to the frontier.
+         */
+        private final NodeRegistry registry;
 
         NodeSet() {
-            super(nPoints * (2 * getWidth() + 2 * getHeight()));
+            frontier = frontierOrder.createFrontier(nPoints * 4, r, FlowImage.this::getColorDistance, arena);
             registry = new NodeRegistry();
+
+            // Fence off the canvas with sentinels, first along the top and bottom, then along the sides
+            int border = layout.getBorder();
+            for (int x = -border; x < getWidth() + border; x++) {
+                for (int b = 1; b <= border; b++) {
+                    registry.store(layout.indexOf(x, -b));
+                    registry.store(layout.indexOf(x, getHeight() - 1 + b));
+                }
+            }
+            for (int y = 0; y < getHeight(); y++) {
+                for (int b = 1; b <= border; b++) {
+                    registry.store(layout.indexOf(-b, y));
+                    registry.store(layout.indexOf(getWidth() - 1 + b, y));
+                }
+            }
         }
 
         /**
          * Adds a new node to this list.
          *
-         * @param x The location of the node on the x-axis
-         * @param y The location of the node on the y-axis
+         * @param index The index of the node
          */
-        void add(int x, int y) {
-            putIfAbsent(new Node(new Point(x, y)), (byte) 0);
-            getImageRenderer().render(x, y);
+        void add(int index) {
+            // Nodes that are already active keep the color they were assigned before
+            if (registry.contains(index)) return;
+
+            // Determine the color this node will have once it is visited
+            visitedNodes.assignColor(index);
+
+            registry.store(index);
+            frontier.add(index);
+
+            getImageRenderer().render(layout.xOf(index), layout.yOf(index));
+        }
+
+        /**
+         * Adds many new nodes at once, handing them to the frontier in a single batch.
+         * Nodes which are already active, or occur more than once, are only added once.
+         *
+         * @param indices The indices of the nodes, which is overwritten in the process
+         */
+        void addAll(int[] indices) {
+            // Before any pixel has been visited, there is nothing to mix from, so skip looking at the neighbors of every node
+            boolean isBlank = visitedNodes.getUsedVolume() == 0 && !visitedNodes.isGuided;
+            int count = 0;
+
+            for (int index : indices) {
+                if (registry.contains(index)) continue;
+
+                if (isBlank) {
+                    visitedNodes.colors.setRandom(index, r);
+                } else {
+                    visitedNodes.assignColor(index);
+                }
+                registry.store(index);
+                indices[count++] = index;
+
+                getImageRenderer().render(layout.xOf(index), layout.yOf(index));
+            }
+
+            frontier.addAll(indices, count);
         }
 
         /**
@@ -216,129 +251,140 @@ class FlowImage extends AbstractAlgorithm {
          * @return {@code true} if the node exists within this set, {@code false} otherwise
          */
         boolean contains(int x, int y) {
-            return registry.contains(x, y);
+            return registry.contains(layout.indexOf(x, y));
         }
 
         /**
-         * @return A random node from this set.
+         * @return {@code true} if there are no nodes left in this set, {@code false} otherwise
          */
-        Node getRandomNode() {
-            return keySet().stream()
-                    // Skip a random amount of nodes
-                    .skip(r.nextInt(size()))
-                    // Find any element within this stream, or return null otherwise
-                    .findFirst().orElse(null);
+        boolean isEmpty() {
+            return frontier.isEmpty();
         }
 
-        @Override
-        public Byte putIfAbsent(Node key, Byte value) {
-            Byte result = super.putIfAbsent(key, value);
-            registry.store(key.location.x, key.location.y);
+        /**
+         * Removes the node to visit next from this set, as decided by the frontier strategy.
+         *
+         * @return The index of the removed node
+         */
+        int poll() {
+            int index = frontier.poll();
+            registry.remove(index);
 
-            return result;
+            return index;
         }
+    }
 
+    /**
+     * Acts as a registry for the {@link NodeSet} and {@link NodeMatrix} classes.
+     * Keeps track of what locations are stored in it and provides much faster lookup.
+     */
+    private class NodeRegistry {
         /**
-         * Removes a node from this set.
-         *
-         * @param key The node to remove
+         * The full size of the image is divided into buckets.
+         * These buckets each store 64 location states; each present location is marked by a 1, or with a 0 otherwise.
          */
-        void remove(Node key) {
-            remove(((Object) key));
-            registry.remove(key.location.x, key.location.y);
+        long[] buckets;
+
+        NodeRegistry() {
+            int length = (int) Math.ceil(layout.capacity() / 64d);
+            buckets = arena == null ? new long[length] : arena.takeBitmap(length);
         }
 
         /**
-         * Acts as a registry for the {@link NodeSet} class.
-         * Keeps track of what locations are stored in it and provides much faster lookup.
+         * Checks whether the location is contained within the registry.
+         *
+         * @param targetID The index of the location to check its presence of, see {@link CanvasLayout#indexOf(int, int)}
+         * @return {@code true} if the location is contained within this registry, {@code false} otherwise
          */
-        private class NodeRegistry {
-            /**
-             * The full size of the image is divided into buckets.
-             * These buckets each store 64 location states; each present location is marked by a 1, or with a 0 otherwise.
-             */
-            long[] buckets;
-
-            NodeRegistry() {
-                buckets = new long[(int) Math.ceil(getWidth() * getHeight() / 64)];
-            }
-
-            /**
-             * Checks whether the location is contained within the registry.
-             *
-             * @param x The x coordinate of the location to check its presence of
-             * @param y The y coordinate of the location to check its presence of
-             * @return {@code true} if the location is contained within this registry, {@code false} otherwise
-             */
-            boolean contains(int x, int y) {
-                // Calculate the "ID" of the location (transformation from 2D point to 1D number line)
-                int targetID = x * getHeight() + y;
-                // Determine in which bucket the state of the location is stored
-                // This is done by bit-shifting the ID 6 places to the right (dividing by 64 (2^6))
-                int targetBucket = targetID >> 6;
-                // Determine the position within the bucket
-                byte targetPos = (byte) (targetID % 64);
-
-                // Retrieve the state of the location from the bucket.
-                // This is done by bit-shifting to the right again, this time with the position to get.
-                // Then, it is masked so that only one bit is returned.
-                return ((buckets[targetBucket] >> targetPos) & 0b1) == 1;
-            }
+        boolean contains(int targetID) {
+            // Determine in which bucket the state of the location is stored
+            // This is done by bit-shifting the ID 6 places to the right (dividing by 64 (2^6))
+            int targetBucket = targetID >> 6;
+            // Determine the position within the bucket
+            byte targetPos = (byte) (targetID % 64);
+
+            // Retrieve the state of the location from the bucket.
+            // This is done by bit-shifting to the right again, this time with the position to get.
+            // Then, it is masked so that only one bit is returned.
+            return ((buckets[targetBucket] >> targetPos) & 0b1) == 1;
+        }
 
-            /**
-             * Puts a certain value into the registry.
-             *
-             * @param x The x coordinate to store the new state of
-             * @param y The y coordinate to store the new state of
-             * @param doStore Whether the location is being stored or removed
-             */
-            private void put(int x, int y, boolean doStore) {
-                // Calculate the "ID" of the location (transformation from 2D point to 1D number line)
-                int targetID = x * getHeight() + y;
-                // Determine in which bucket the state of the location is stored
-                // This is done by bit-shifting the ID 6 places to the right (dividing by 64 (2^6))
-                int targetBucket = targetID >> 6;
-                // Determine the position within the bucket
-                byte targetPos = (byte) (targetID % 64);
-
-                // It depends on whether the location state is being stored or removed which operation has to be executed.
-                if (doStore) {
-                    // If the location is being stored, a simple bit-wise OR operation is enough.
-                    // The bucket is updated by means of bit-shifting a 1 to the left to the spot to store it in.
-                    buckets[targetBucket] |= 1L << targetPos;
-                } else {
-                    // If the location is being removed, an inverted bit-wise AND operation is sufficient.
-                    // The bucket is updated by bit-shifting a 1 to the left until the spot to clear is reached.
-                    // Then it is inverted, again bit-wise, so that the bit-shifted 1 turns into a 0, masking the bit to clear.
-                    buckets[targetBucket] &= ~(1L << targetPos);
-                }
+        /**
+         * Puts a certain value into the registry.
+         *
+         * @param targetID The index of the location to store the new state of, see {@link CanvasLayout#indexOf(int, int)}
+         * @param doStore  Whether the location is being stored or removed
+         */
+        private void put(int targetID, boolean doStore) {
+            // Determine in which bucket the state of the location is stored
+            // This is done by bit-shifting the ID 6 places to the right (dividing by 64 (2^6))
+            int targetBucket = targetID >> 6;
+            // Determine the position within the bucket
+            byte targetPos = (byte) (targetID % 64);
+
+            // It depends on whether the location state is being stored or removed which operation has to be executed.
+            if (doStore) {
+                // If the location is being stored, a simple bit-wise OR operation is enough.
+                // The bucket is updated by means of bit-shifting a 1 to the left to the spot to store it in.
+                buckets[targetBucket] |= 1L << targetPos;
+            } else {
+                // If the location is being removed, an inverted bit-wise AND operation is sufficient.
+                // The bucket is updated by bit-shifting a 1 to the left until the spot to clear is reached.
+                // Then it is inverted, again bit-wise, so that the bit-shifted 1 turns into a 0, masking the bit to clear.
+                buckets[targetBucket] &= ~(1L << targetPos);
             }
+        }
 
-            /**
-             * Marks a location as removed within this registry.
-             *
-             * @param x The x coordinate of the location to mark as removed
-             * @param y The y coordinate of the location to mark as removed
-             */
-            void remove(int x, int y) {
-                put(x, y, false);
-            }
+        /**
+         * Marks a location as removed within this registry.
+         *
+         * @param targetID The index of the location to mark as removed
+         */
+        void remove(int targetID) {
+            put(targetID, false);
+        }
 
-            /**
-             * Marks a location as stored within this registry.
-             * @param x The x coordinate of the location to mark as store
-             * @param y The y coordinate of the location to mark as stored
-             */
-            void store(int x, int y) {
-                put(x, y, true);
-            }
+        /**
+         * Marks a location as stored within this registry.
+         *
+         * @param targetID The index of the location to mark as stored
+         */
+        void store(int targetID) {
+            put(targetID, true);
         }
     }
 
     /**
-     * The randomizer instance used by this class.
+     * The version of the output of this algorithm.
+     * Bump this whenever the same parameters start producing a different image, so cached results of older versions aren't used.
      */
-    private static final Random r = new Random();
+    static final int OUTPUT_VERSION = 3;
+    /**
+     * Determines how often generation checks whether it was cancelled, namely every {@code CANCEL_CHECK_MASK + 1} pixels.
+     */
+    private static final int CANCEL_CHECK_MASK = (1 << 12) - 1;
+    /**
+     * The amount of pixels visited between checks of whether the deadline is getting close.
+     */
+    private static final int DEADLINE_CHECK_STEPS = 1 << 10;
+    /**
+     * The time filling in a single pixel is assumed to take at most, in nanoseconds, including drawing it.
+     * This errs on the high side, as the fill can't be stopped once it has started.
+     */
+    private static final long FILL_NANOS_PER_PIXEL = 250;
+    /**
+     * Marks that generation has no deadline.
+     */
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * The randomizer instance used by this image.
+     */
+    private final Random r;
+    /**
+     * The seed {@link #r} was created with, allowing the image to be generated again.
+     */
+    private final long seed;
 
     /**
      * The randomness to apply to gen erating colors.
@@ -348,87 +394,591 @@ class FlowImage extends AbstractAlgorithm {
      * The amount of points to start generating with.
      */
     private final int nPoints;
+    /**
+     * The way the starting points are scattered over the canvas.
+     */
+    private final SeedDistribution seedDistribution;
+    /**
+     * The recorder of the order pixels are visited in, or {@code null} if it isn't being recorded.
+     */
+    private final GrowthRecorder growthRecorder;
+    /**
+     * The engine used for storing and calculating colors.
+     */
+    private final ColorEngine colorEngine;
+    /**
+     * The color space colors are mixed in.
+     */
+    private final MixingSpace mixingSpace;
+    /**
+     * The order in which the pixels on the frontier are visited.
+     */
+    private final FrontierOrder frontierOrder;
+    /**
+     * The amount of levels to generate, each twice the size of the previous one, with the last one being the full image.
+     * A single level disables progressive generation.
+     */
+    private final int progressiveLevels;
+    /**
+     * The pattern of the files to export the coarser levels to, taking the level as argument, or {@code null} to not export them.
+     */
+    private final String levelExportPattern;
+    /**
+     * The color the first seed was given, acting as reference for {@link FrontierOrder#COLOR_DISTANCE}.
+     * As colors are always opaque, 0 signifies that no reference has been picked yet.
+     */
+    private int referenceColor = 0;
+    /**
+     * Whether or not the pixels of a previous image were taken over, in which case generation starts from their boundary instead of random seeds.
+     */
+    private boolean isRetouched = false;
+    /**
+     * The value of {@link System#nanoTime()} by which the image has to be complete, or {@link #NO_DEADLINE}.
+     */
+    private long deadline = NO_DEADLINE;
+    /**
+     * The amount of pixels filled in cheaply to make the deadline, instead of being generated.
+     */
+    private long filledCount = 0;
+    /**
+     * The arena to take buffers from and hand them back to, or {@code null} to allocate them.
+     */
+    private final FlowArena arena;
+    /**
+     * Whether to keep from printing the parameters of this image and its coarser levels.
+     */
+    private final boolean quiet;
+    /**
+     * Whether the buffers holding the state of the generation have been handed back to {@link #arena}.
+     */
+    private boolean isStateRecycled = false;
+    /**
+     * Whether the pixels of the image have been handed back to {@link #arena} as well.
+     */
+    private boolean isRecycled = false;
+
+    /**
+     * The kernel deciding which pixels a pixel is mixed from and which pixels it activates.
+     */
+    private final NeighborhoodKernel kernel;
+    /**
+     * The offsets and weights of {@link #kernel}, kept in fields of their own so the loops over them stay tight.
+     */
+    private final int[] mixDx, mixDy, mixWeights, growDx, growDy;
+
+    /**
+     * The type of {@link #layout}.
+     */
+    private final CanvasLayoutType layoutType;
+    /**
+     * The layout deciding where the state of every pixel is stored.
+     */
+    private final CanvasLayout layout;
 
     /**
      * The list of nodes that haven't yet been processed, but are scheduled to do so.
      */
-    private NodeSet activeNodes = new NodeSet();
+    private final NodeSet activeNodes;
     /**
      * The matrix of nodes that hodls information on all already processed nodes.
      */
-    private NodeMatrix visitedNodes = new NodeMatrix();
+    private final NodeMatrix visitedNodes;
 
-    FlowImage(int width, int height, int nPoints, double deviation, AbstractLauncher targetFrame) {
+    FlowImage(int width, int height, int nPoints, SeedDistribution seedDistribution, double deviation, long seed, ColorEngine colorEngine, MixingSpace mixingSpace,
+              FrontierOrder frontierOrder, NeighborhoodKernel kernel, CanvasLayoutType layoutType, int progressiveLevels, String levelExportPattern, GrowthRecorder growthRecorder,
+              FlowArena arena, boolean quiet, AbstractLauncher targetFrame) {
         // Create the acutal image object using ARGB (to allow for transparency in the preview)
-        super(width, height, BufferedImage.TYPE_INT_ARGB, targetFrame);
+        super(arena == null ? ColorModel.getRGBdefault().createCompatibleWritableRaster(width, height) : arena.takeRaster(width, height), targetFrame);
+        this.arena = arena;
+        this.quiet = quiet;
+        this.seed = seed;
+        this.r = new Random(seed);
         this.randomness = deviation;
         this.nPoints = nPoints;
+        this.seedDistribution = seedDistribution;
+        this.colorEngine = colorEngine;
+        this.mixingSpace = mixingSpace;
+        this.frontierOrder = frontierOrder;
+        this.progressiveLevels = progressiveLevels;
+        this.levelExportPattern = levelExportPattern;
+        this.growthRecorder = growthRecorder;
+
+        this.kernel = kernel;
+        this.mixDx = kernel.getMixDx();
+        this.mixDy = kernel.getMixDy();
+        this.mixWeights = kernel.getMixWeights();
+        this.growDx = kernel.getGrowDx();
+        this.growDy = kernel.getGrowDy();
+
+        // The border has to be as wide as the kernel, so no offset ever leaves it
+        this.layoutType = layoutType;
+        this.layout = layoutType.createLayout(width, height, kernel.getRadius());
+        this.activeNodes = new NodeSet();
+        this.visitedNodes = new NodeMatrix();
 
         if (targetFrame != null) targetFrame.getPreviewPanel().setProvider(this);
 
-        System.out.printf("\nCreating FLOW image with parameters:\n - Image dimensions: %dx%d\n - Starting nodes: %d\n - Deviation: max. %s per pixel step\n\n",
-                width, height, nPoints, new DecimalFormat("0.00").format(deviation).replace(",", "."));
+        if (!quiet) System.out.printf("\nCreating FLOW image with parameters:\n - Image dimensions: %dx%d\n - Starting nodes: %d (%s)\n - Deviation: max. %s per pixel step\n - Seed: %d\n - Color engine: %s\n - Mixing space: %s\n - Frontier order: %s\n - Kernel: %s\n - Canvas layout: %s\n - Progressive levels: %d\n\n",
+                width, height, nPoints, seedDistribution.getDisplayName(), new DecimalFormat("0.00").format(deviation).replace(",", "."), seed,
+                colorEngine.getDisplayName(), mixingSpace.getDisplayName(), frontierOrder.getDisplayName(), kernel.getDisplayName(), layoutType.getDisplayName(), progressiveLevels);
+    }
+
+    /**
+     * Estimates how much heap an image takes up while it is being generated.
+     * This errs on the high side, assuming the frontier grows as large as the canvas itself.
+     * Images shown in a preview window take up more, as they draw into an image for every render type.
+     *
+     * @param width       The width of the image
+     * @param height      The height of the image
+     * @param colorEngine The engine used for storing and calculating colors
+     * @param kernel      The kernel deciding how wide the border around the canvas is
+     * @return The estimated amount of bytes
+     */
+    static long estimateMemory(int width, int height, ColorEngine colorEngine, NeighborhoodKernel kernel) {
+        long pixels = (long) width * height;
+        // Leave room for a border as wide as the kernel, and for layouts rounding the canvas up to whole tiles
+        int border = 2 * kernel.getRadius();
+        long capacity = (long) ((width + border + 7) & ~7) * ((height + border + 7) & ~7);
+        // Every pixel enters the frontier at most once, but its array doubles whenever it is full, and the old one lives on while it is copied
+        long frontier = 3 * pixels * Integer.BYTES;
+
+        return pixels * Integer.BYTES
+                + capacity * colorEngine.getBytesPerPixel()
+                + capacity / 4
+                + frontier;
     }
 
     @Override
     protected ImageRendererImpl buildImageRenderer() {
-        return new ImageRendererBuilder()
+        ImageRendererBuilder builder = new ImageRendererBuilder()
                 .addRenderer(ImageRenderType.NORMAL, this,
                         (x, y) -> visitedNodes.contains(x, y)
-                                ? visitedNodes.nodeMatrix[x][y].color.toNormalColor()
-                                : null)
+                                ? visitedNodes.getRGB(x, y)
+                                : PixelColorFunction.NONE);
+        // Nothing ever switches to another render type without a preview, so don't allocate an image for every one of them
+        if (!hasPreview()) return builder.build();
+
+        return builder
                 .addRenderer(ImageRenderType.TYPE, new BufferedImageWithProperties(getWidth(), getHeight(), getType()),
                         (x, y) -> {
-                            if (activeNodes.contains(x, y)) return Color.RED;
-                            if (visitedNodes.contains(x, y)) return Color.BLUE;
-                            return null;
+                            if (activeNodes.contains(x, y)) return Color.RED.getRGB();
+                            if (visitedNodes.contains(x, y)) return Color.BLUE.getRGB();
+                            return PixelColorFunction.NONE;
                         })
                 .addRenderer(ImageRenderType.RED, new BufferedImageWithProperties(getWidth(), getHeight(), getType()),
                         (x, y) -> visitedNodes.contains(x, y)
-                                ? new Color(visitedNodes.nodeMatrix[x][y].color.toNormalColor().getRed(), 0, 0)
-                                : null
+                                ? visitedNodes.getRGB(x, y) & 0xFFFF0000
+                                : PixelColorFunction.NONE
                 )
                 .addRenderer(ImageRenderType.GREEN, new BufferedImageWithProperties(getWidth(), getHeight(), getType()),
                         (x, y) -> visitedNodes.contains(x, y)
-                                ? new Color(0, visitedNodes.nodeMatrix[x][y].color.toNormalColor().getGreen(), 0)
-                                : null
+                                ? visitedNodes.getRGB(x, y) & 0xFF00FF00
+                                : PixelColorFunction.NONE
                 )
                 .addRenderer(ImageRenderType.BLUE, new BufferedImageWithProperties(getWidth(), getHeight(), getType()),
                         (x, y) -> visitedNodes.contains(x, y)
-                                ? new Color(0, 0, visitedNodes.nodeMatrix[x][y].color.toNormalColor().getBlue())
-                                : null
+                                ? visitedNodes.getRGB(x, y) & 0xFF0000FF
+                                : PixelColorFunction.NONE
                 )
                 .build();
     }
 
+    /**
+     * Lets this image take on the colors of a coarser level, which will guide the generation of this level.
+     * Every pixel starts out with the color of the pixel covering it in the coarser level.
+     *
+     * @param coarser The finished image of the coarser level, half the size of this image
+     */
+    private void applyGuide(FlowImage coarser) {
+        for (int x = 0; x < getWidth(); x++) {
+            for (int y = 0; y < getHeight(); y++) {
+                visitedNodes.colors.setRGB(layout.indexOf(x, y), coarser.visitedNodes.getRGB(x / 2, y / 2));
+            }
+        }
+
+        visitedNodes.isGuided = true;
+    }
+
+    /**
+     * Generates the coarser levels of a progressive generation, from the coarsest one up.
+     * Every level is guided by the one below it, and is shown as preview until the next level is done.
+     *
+     * @return The finished level right below this image
+     */
+    private FlowImage generateCoarserLevels() {
+        FlowImage coarser = null;
+
+        for (int level = progressiveLevels - 1; level > 0; level--) {
+            // Round up, so every pixel of the finer level is covered
+            int levelWidth = ((getWidth() - 1) >> level) + 1;
+            int levelHeight = ((getHeight() - 1) >> level) + 1;
+
+            FlowImage current = new FlowImage(levelWidth, levelHeight, Math.min(nPoints, levelWidth * levelHeight), seedDistribution, randomness,
+                    r.nextLong(), colorEngine, mixingSpace, frontierOrder, kernel, layoutType, 1, null, null, arena, quiet, null);
+            if (coarser != null) {
+                current.applyGuide(coarser);
+                coarser.recycle();
+            }
+            current.seed();
+            current.generateImage();
+
+            // Show the level scaled up to the full size, until the pixels of this image are drawn over it
+            Graphics2D g = createGraphics();
+            g.drawImage(current, 0, 0, getWidth(), getHeight(), null);
+            g.dispose();
+            setDrawnArea(new Rectangle(0, 0, getWidth(), getHeight()));
+
+            if (levelExportPattern != null) {
+                File file = new File(String.format(levelExportPattern, level));
+
+                try {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.getParentFile().mkdirs();
+                    ImageIO.write(current, "png", file);
+                } catch (IOException ex) {
+                    System.out.println("Error while exporting level " + level);
+                    ex.printStackTrace();
+                }
+            }
+
+            coarser = current;
+        }
+
+        return coarser;
+    }
+
     @Override
     protected void generateImage() {
-        // Loop as long as the list of active nodes contains elements
+        try {
+            if (progressiveLevels > 1) {
+                FlowImage coarser = generateCoarserLevels();
+                applyGuide(coarser);
+                coarser.recycle();
+                seed();
+            }
+
+            if (deadline == NO_DEADLINE) {
+                generateSteps(Long.MAX_VALUE);
+            } else {
+                generateBeforeDeadline();
+            }
+        } finally {
+            // Finish off the growth log, also when generation was cancelled or failed, so it holds every pixel visited up to then
+            if (growthRecorder != null) {
+                try {
+                    growthRecorder.close();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits pixels from the frontier in small batches, switching over to filling in the remaining pixels
+     * as soon as the next batch and the fill together might not make the deadline anymore.
+     */
+    private void generateBeforeDeadline() {
+        long batchDuration = 0;
+
+        while (hasActiveNodes()) {
+            long now = System.nanoTime();
+            long remaining = (long) getWidth() * getHeight() - getVisitedCount();
+
+            if (deadline - now <= batchDuration + remaining * FILL_NANOS_PER_PIXEL) {
+                fillRemaining();
+                return;
+            }
+
+            generateSteps(DEADLINE_CHECK_STEPS);
+            batchDuration = System.nanoTime() - now;
+        }
+    }
+
+    /**
+     * Fills in every pixel that hasn't been visited yet with the color of the nearest pixel that has a color, without mixing or randomness.
+     * The active pixels already have a color, so they are taken over as is, and the fill grows out from them breadth-first.
+     * This costs a fraction of the time of generating, as every pixel is merely copied once.
+     */
+    private void fillRemaining() {
+        FifoFrontier queue = new FifoFrontier(activeNodes.frontier.size(), arena);
+
+        // The active pixels are taken over with the color they were assigned; only the sentinels stay behind in the registry
         while (!activeNodes.isEmpty()) {
-            // Get a random node from the set
-            Node target = activeNodes.getRandomNode();
+            int index = activeNodes.poll();
+            fill(index);
+            queue.add(index);
+        }
+
+        while (!queue.isEmpty()) {
+            int index = queue.poll();
 
-            if (target != null) {
-                // Mark the node as visited
-                visitedNodes.store(target);
-                activeNodes.remove(target);
+            for (int k = 0; k < growDx.length; k++) {
+                int neighbor = layout.neighborOf(index, growDx[k], growDy[k]);
+                if (visitedNodes.registry.contains(neighbor) || activeNodes.registry.contains(neighbor)) continue;
+
+                visitedNodes.colors.copyFrom(neighbor, visitedNodes.colors, index);
+                fill(neighbor);
+                queue.add(neighbor);
+            }
+        }
 
-                getImageRenderer().render(target.location.x, target.location.y);
+        queue.recycle();
 
-                // Try to mark unvisited neighbors as active
-                if (target.location.x - 1 >= 0 && !visitedNodes.hasNeighborAt(target, -1, 0))
-                    activeNodes.add(target.location.x - 1, target.location.y);
+        // Drawing the filled pixels one by one would cost more than filling them in, so draw the whole canvas at once
+        getImageRenderer().render(new Rectangle(0, 0, getWidth(), getHeight()));
+    }
 
-                if (target.location.x + 1 < getWidth() && !visitedNodes.hasNeighborAt(target, 1, 0))
-                    activeNodes.add(target.location.x + 1, target.location.y);
+    /**
+     * Marks a pixel as visited by the fill.
+     * The pixel isn't drawn yet; that is left to {@link #fillRemaining()}.
+     *
+     * @param index The index of the pixel, which already holds its color
+     */
+    private void fill(int index) {
+        visitedNodes.store(index);
+        filledCount++;
 
-                if (target.location.y - 1 >= 0 && !visitedNodes.hasNeighborAt(target, 0, -1))
-                    activeNodes.add(target.location.x, target.location.y - 1);
+        if (growthRecorder != null) growthRecorder.record(layout.xOf(index), layout.yOf(index));
+    }
 
-                if (target.location.y + 1 < getHeight() && !visitedNodes.hasNeighborAt(target, 0, 1))
-                    activeNodes.add(target.location.x, target.location.y + 1);
+    /**
+     * Visits pixels from the frontier until either the budget runs out or there are no active pixels left.
+     * Generation can be cancelled by interrupting the generating thread.
+     *
+     * @param budget The maximum amount of pixels to visit
+     * @return The amount of pixels that were visited
+     * @throws CancellationException When the generating thread was interrupted
+     */
+    long generateSteps(long budget) {
+        long steps = 0;
+
+        // Loop as long as the list of active nodes contains elements
+        while (steps < budget && !activeNodes.isEmpty()) {
+            // Checking for interrupts every pixel would be measurable, so only do so every few thousand pixels
+            if ((steps & CANCEL_CHECK_MASK) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Generation was cancelled after " + getVisitedCount() + " pixels");
+            }
+
+            // Get the next node from the set
+            int target = activeNodes.poll();
+            int x = layout.xOf(target);
+            int y = layout.yOf(target);
+
+            // Mark the node as visited
+            visitedNodes.store(target);
+
+            if (growthRecorder != null) growthRecorder.record(x, y);
+
+            getImageRenderer().render(x, y);
+
+            // Try to mark unvisited neighbors as active.
+            // Neighbors outside of the canvas are sentinels, which are always considered active already.
+            for (int k = 0; k < growDx.length; k++) {
+                visitedNodes.activateIfUnvisited(layout.neighborOf(target, growDx[k], growDy[k]));
+            }
+
+            steps++;
+        }
+
+        return steps;
+    }
+
+    /**
+     * Fills in a pixel just outside of the canvas, as generated by whoever owns the canvas next to this one.
+     * The pixel counts as a visited neighbor from then on, and the pixel of this canvas next to it becomes active.
+     * Only pixels directly beside an edge can be filled in; the corners of the border don't neighbor any pixel.
+     *
+     * @param x   The x-coordinate of the pixel, either -1 or the width of the canvas if it lies beside a vertical edge
+     * @param y   The y-coordinate of the pixel, either -1 or the height of the canvas if it lies beside a horizontal edge
+     * @param rgb The color of the pixel
+     * @return {@code true} if the pixel was filled in, {@code false} if it had been filled in before
+     */
+    boolean applyHalo(int x, int y, int rgb) {
+        int index = layout.indexOf(x, y);
+        if (visitedNodes.registry.contains(index)) return false;
+
+        // Only mark it in the registry, so it doesn't count towards the progress of this canvas
+        visitedNodes.colors.setRGB(index, rgb);
+        visitedNodes.registry.store(index);
+
+        visitedNodes.activateIfUnvisited(layout.indexOf(
+                Math.max(0, Math.min(getWidth() - 1, x)),
+                Math.max(0, Math.min(getHeight() - 1, y))));
+        return true;
+    }
+
+    /**
+     * Takes over the pixels of a previous image, except for those marked by a mask, so only the marked pixels are generated again.
+     * The kept pixels count as visited, and every marked pixel growing out of one is activated straight away, mixing its color from them.
+     * The marked region therefore grows inwards from its boundary, blending into its surroundings, and the pixels visited are only the marked ones.
+     * <p>
+     * Pixels which are transparent in the previous image are marked as well, so an image exported before it was finished can be completed.
+     * If every pixel is marked, the image is seeded as usual instead.
+     *
+     * @param previous The image to take the pixels from, as large as this image
+     * @param mask     The image marking the pixels to generate again in white, as large as this image,
+     *                 or {@code null} to only generate the transparent pixels again
+     * @return The amount of pixels that will be generated again
+     * @throws IllegalArgumentException When either image doesn't match the size of this image
+     * @throws IllegalStateException    When this image generates progressively, as the coarser levels can't know about the kept pixels
+     */
+    long retouch(BufferedImage previous, BufferedImage mask) {
+        int width = getWidth(), height = getHeight();
+
+        if (progressiveLevels > 1) throw new IllegalStateException("Retouching can't be combined with progressive generation");
+        if (previous.getWidth() != width || previous.getHeight() != height
+                || (mask != null && (mask.getWidth() != width || mask.getHeight() != height))) {
+            throw new IllegalArgumentException(String.format("Expected images of %dx%d pixels", width, height));
+        }
+
+        // Read all pixels at once, as reading them one by one converts the color model for every single one
+        int[] pixels = previous.getRGB(0, 0, width, height, null, 0, width);
+        int[] marks = mask == null ? null : mask.getRGB(0, 0, width, height, null, 0, width);
+
+        long marked = 0;
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                if (isMarked(pixels[i], marks == null ? 0 : marks[i])) {
+                    // Kept pixels are made opaque, leaving 0 free to remember the marked ones
+                    pixels[i] = 0;
+                    marked++;
+                    continue;
+                }
+
+                pixels[i] |= 0xFF000000;
+                int index = layout.indexOf(x, y);
+                visitedNodes.colors.setRGB(index, pixels[i]);
+                visitedNodes.store(index);
             }
         }
+
+        // Draw the kept pixels in one go rather than rendering them one by one; the marked ones stay transparent until they are visited
+        setRGB(0, 0, width, height, pixels, 0, width);
+
+        if (marked == (long) width * height) return marked;
+        isRetouched = true;
+
+        // Activate the boundary of the marked region: every marked pixel a kept pixel grows into
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                if (pixels[i] != 0) continue;
+
+                int index = layout.indexOf(x, y);
+                for (int k = 0; k < growDx.length; k++) {
+                    if (visitedNodes.registry.contains(layout.neighborOf(index, -growDx[k], -growDy[k]))) {
+                        activeNodes.add(index);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return marked;
+    }
+
+    /**
+     * @param rgb  The ARGB color of the pixel in the previous image
+     * @param mark The ARGB color of the pixel in the mask
+     * @return {@code true} if the pixel should be generated again, {@code false} if it should be kept
+     */
+    private static boolean isMarked(int rgb, int mark) {
+        if ((rgb >>> 24) == 0) return true;
+
+        return (mark >>> 24) >= 0x80 && ((mark >> 16 & 0xFF) + (mark >> 8 & 0xFF) + (mark & 0xFF)) >= 3 * 0x80;
+    }
+
+    /**
+     * Schedules a pixel to be visited, acting as a starting point.
+     *
+     * @param x The x-coordinate of the pixel
+     * @param y The y-coordinate of the pixel
+     */
+    void activate(int x, int y) {
+        activeNodes.add(layout.indexOf(x, y));
+    }
+
+    /**
+     * @param x The x-coordinate of the pixel
+     * @param y The y-coordinate of the pixel
+     * @return The ARGB color of the pixel if it has been visited, or {@link PixelColorFunction#NONE} otherwise
+     */
+    int getVisitedRGB(int x, int y) {
+        return visitedNodes.contains(x, y) ? visitedNodes.getRGB(x, y) : PixelColorFunction.NONE;
+    }
+
+    /**
+     * @return {@code true} if there are pixels scheduled to be visited, {@code false} otherwise
+     */
+    boolean hasActiveNodes() {
+        return !activeNodes.isEmpty();
+    }
+
+    /**
+     * Sets the moment the image has to be complete by.
+     * If generating every pixel would take longer, the pixels left over once the deadline gets close are filled in cheaply instead,
+     * so the image is always complete on time, as long as the deadline leaves enough room to fill in the whole image.
+     * Only the full size level of a progressive generation keeps to the deadline.
+     *
+     * @param deadline The value of {@link System#nanoTime()} to be complete by, or {@link #NO_DEADLINE}
+     */
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return The amount of pixels that were filled in to make the deadline, instead of being generated
+     */
+    long getFilledCount() {
+        return filledCount;
+    }
+
+    /**
+     * Hands the buffers holding the state of the generation back to the arena, if the image has one, so the next image can use them.
+     * Only the pixels of the image, and the amounts of pixels visited and filled in, can be used afterwards.
+     */
+    void recycleState() {
+        if (arena == null || isStateRecycled) return;
+        isStateRecycled = true;
+
+        arena.recyclePlane(colorEngine, layout.capacity(), visitedNodes.plane);
+        arena.recycleBitmap(visitedNodes.registry.buckets);
+        arena.recycleBitmap(activeNodes.registry.buckets);
+        activeNodes.frontier.recycle();
+    }
+
+    /**
+     * Hands all buffers back to the arena, if the image has one, including its pixels.
+     * The image can't be used in any way afterwards.
+     */
+    void recycle() {
+        if (arena == null || isRecycled) return;
+        recycleState();
+        isRecycled = true;
+
+        arena.recycleRaster(getRaster(), getDrawnArea());
+    }
+
+    /**
+     * @return The amount of pixels of the canvas visited so far
+     */
+    long getVisitedCount() {
+        return visitedNodes.getUsedVolume();
+    }
+
+    /**
+     * Calculates how far the color assigned to a pixel is removed from the color of the first seed.
+     *
+     * @param index The index of the pixel
+     * @return The sum of the absolute differences of all channels
+     */
+    private int getColorDistance(int index) {
+        int color = visitedNodes.colors.getRGB(index);
+        if (referenceColor == 0) referenceColor = color;
+
+        return Math.abs(((color >> 16) & 0xFF) - ((referenceColor >> 16) & 0xFF))
+                + Math.abs(((color >> 8) & 0xFF) - ((referenceColor >> 8) & 0xFF))
+                + Math.abs((color & 0xFF) - (referenceColor & 0xFF));
     }
 
     @Override
@@ -442,7 +992,19 @@ class FlowImage extends AbstractAlgorithm {
 
     @Override
     protected void init() {
-        for (int i = 0; i < nPoints; i++)
-            activeNodes.add(r.nextInt(getWidth()), r.nextInt(getHeight()));
+        // Progressive generation can only seed once the coarser levels have been generated, and retouching grows from the kept pixels
+        if (progressiveLevels <= 1 && !isRetouched) seed();
+    }
+
+    /**
+     * Scatters the starting points over the canvas, according to the seed distribution.
+     */
+    private void seed() {
+        int[] points = seedDistribution.place(getWidth(), getHeight(), nPoints, r);
+
+        int[] indices = new int[points.length / 2];
+        for (int i = 0; i < indices.length; i++) indices[i] = layout.indexOf(points[2 * i], points[2 * i + 1]);
+
+        activeNodes.addAll(indices);
     }
 }
@@ -2,6 +2,12 @@ package st.photonbur.misc.image.algorithm.flow;
 
 import st.photonbur.misc.image.algorithm.AbstractBuilder;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Random;
+
 /**
  * Builds the FlowImage using the parameters passed through this class.
  */
@@ -11,16 +17,93 @@ class FlowImageBuilder extends AbstractBuilder<FlowImageBuilder, FlowImage> {
      * The amount of points to start generating with.
      */
     private int nPoints;
+    /**
+     * The way the starting points are scattered over the canvas.
+     */
+    private SeedDistribution seedDistribution = SeedDistribution.UNIFORM;
     /**
      * The amount of randomness to apply to each generated pixel.
      */
     private double randomness;
+    /**
+     * The seed of the randomizer, making generation reproducible.
+     */
+    private long seed = new Random().nextLong();
+    /**
+     * The engine used for storing and calculating colors.
+     */
+    private ColorEngine colorEngine = ColorEngine.DOUBLE;
+    /**
+     * The color space colors are mixed in.
+     */
+    private MixingSpace mixingSpace = MixingSpace.SRGB;
+    /**
+     * The order in which the pixels on the frontier are visited.
+     */
+    private FrontierOrder frontierOrder = FrontierOrder.RANDOM;
+    /**
+     * The kernel deciding which pixels a pixel is mixed from and which it activates.
+     */
+    private NeighborhoodKernel kernel = NeighborhoodKernel.FOUR;
+    /**
+     * The way the state of the pixels is laid out in memory.
+     */
+    private CanvasLayoutType layoutType = CanvasLayoutType.LINEAR;
+    /**
+     * The amount of levels to generate progressively, with 1 disabling progressive generation.
+     */
+    private int progressiveLevels = 1;
+    /**
+     * The pattern of the files to export the coarser levels to, or {@code null} to not export them.
+     */
+    private String levelExportPattern;
+    /**
+     * The file to record the order of visited pixels to, or {@code null} if it shouldn't be recorded.
+     */
+    private File growthLog;
+    /**
+     * The arena to take buffers from, or {@code null} to allocate them.
+     */
+    private FlowArena arena;
+    /**
+     * Whether to keep the image from printing its parameters.
+     */
+    private boolean quiet = false;
 
     /**
      * @return A properly constructed {@link FlowImage} instance
+     * @throws IllegalArgumentException When the color engine can't store colors in the mixing space, see {@link MixingSpace#supports(ColorEngine)}
      */
     public FlowImage build() {
-        return new FlowImage(imageWidth, imageHeight, nPoints, randomness, guiFrame);
+        if (!mixingSpace.supports(colorEngine)) {
+            throw new IllegalArgumentException(String.format("The %s engine can't mix colors in %s without loss",
+                    colorEngine.getDisplayName(), mixingSpace.getDisplayName()));
+        }
+
+        GrowthRecorder growthRecorder = null;
+
+        if (growthLog != null) {
+            try {
+                growthRecorder = new GrowthRecorder(growthLog, imageWidth, imageHeight);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        return new FlowImage(imageWidth, imageHeight, nPoints, seedDistribution, randomness, seed, colorEngine, mixingSpace, frontierOrder, kernel, layoutType,
+                progressiveLevels, levelExportPattern, growthRecorder, arena, quiet, guiFrame);
+    }
+
+    /**
+     * Describes every parameter that influences the generated image, for use as the key of a {@link st.photonbur.misc.image.misc.RenderCache}.
+     * Only meaningful when the seed has been set explicitly.
+     *
+     * @return The description of the image that would be built
+     */
+    String getCacheKey() {
+        return String.format(Locale.ROOT, "flow/v%d/%dx%d/points=%d/seeds=%s/randomness=%s/seed=%d/engine=%s/space=%s/order=%s/kernel=%s/layout=%s/levels=%d",
+                FlowImage.OUTPUT_VERSION, imageWidth, imageHeight, nPoints, seedDistribution.getDisplayName(), Double.toString(randomness), seed,
+                colorEngine.getDisplayName(), mixingSpace.getDisplayName(), frontierOrder.getDisplayName(), kernel.getDisplayName(), layoutType.getDisplayName(), progressiveLevels);
     }
 
     /**
@@ -34,6 +117,17 @@ class FlowImageBuilder extends AbstractBuilder<FlowImageBuilder, FlowImage> {
         return this;
     }
 
+    /**
+     * Sets the way the starting points are scattered over the canvas.
+     *
+     * @param seedDistribution The way the starting points are scattered over the canvas
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setSeedDistribution(SeedDistribution seedDistribution) {
+        this.seedDistribution = seedDistribution;
+        return this;
+    }
+
     /**
      * Sets the amount of randomness to apply to each generated pixel.
      *
@@ -44,4 +138,129 @@ class FlowImageBuilder extends AbstractBuilder<FlowImageBuilder, FlowImage> {
         this.randomness = randomness;
         return this;
     }
+
+    /**
+     * Sets the seed of the randomizer. Images generated with the same parameters and seed are identical.
+     *
+     * @param seed The seed of the randomizer
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the way the state of the pixels is laid out in memory.
+     *
+     * @param layoutType The way the state of the pixels is laid out in memory
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setCanvasLayout(CanvasLayoutType layoutType) {
+        this.layoutType = layoutType;
+        return this;
+    }
+
+    /**
+     * Sets the engine used for storing and calculating colors.
+     *
+     * @param colorEngine The engine used for storing and calculating colors
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setColorEngine(ColorEngine colorEngine) {
+        this.colorEngine = colorEngine;
+        return this;
+    }
+
+    /**
+     * Sets the color space colors are mixed in.
+     *
+     * @param mixingSpace The color space colors are mixed in
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setMixingSpace(MixingSpace mixingSpace) {
+        this.mixingSpace = mixingSpace;
+        return this;
+    }
+
+    /**
+     * Sets the order in which the pixels on the frontier are visited.
+     *
+     * @param frontierOrder The order in which the pixels on the frontier are visited
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setFrontierOrder(FrontierOrder frontierOrder) {
+        this.frontierOrder = frontierOrder;
+        return this;
+    }
+
+    /**
+     * Sets the kernel deciding which pixels a pixel is mixed from and which it activates.
+     *
+     * @param kernel The kernel to generate with, see {@link NeighborhoodKernel#parse(String)}
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setKernel(NeighborhoodKernel kernel) {
+        this.kernel = kernel;
+        return this;
+    }
+
+    /**
+     * Sets the amount of levels to generate progressively.
+     * Generation starts at a version of the image downscaled by {@code 2^(levels - 1)}, and every next level doubles in size,
+     * taking its colors from the level before it. This quickly gives an impression of the full image.
+     *
+     * @param progressiveLevels The amount of levels to generate, with 1 disabling progressive generation
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setProgressiveLevels(int progressiveLevels) {
+        this.progressiveLevels = progressiveLevels;
+        return this;
+    }
+
+    /**
+     * Sets where to export the coarser levels of a progressive generation to.
+     *
+     * @param levelExportPattern The pattern of the files to export to, taking the level as argument, or {@code null} to not export them
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setLevelExportPattern(String levelExportPattern) {
+        this.levelExportPattern = levelExportPattern;
+        return this;
+    }
+
+    /**
+     * Sets the file to record the order of visited pixels to, so the generation can be replayed as a time-lapse.
+     *
+     * @param growthLog The file to record to, or {@code null} to disable recording
+     * @return The instance of this builder
+     * @see GrowthReplay
+     */
+    FlowImageBuilder setGrowthLog(File growthLog) {
+        this.growthLog = growthLog;
+        return this;
+    }
+
+    /**
+     * Sets the arena to take the buffers of the image from, which doesn't influence the image itself.
+     * The buffers are only handed back once the image is recycled, see {@link FlowImage#recycle()}.
+     *
+     * @param arena The arena to take buffers from, or {@code null} to allocate them
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setArena(FlowArena arena) {
+        this.arena = arena;
+        return this;
+    }
+
+    /**
+     * Keeps the image from printing its parameters when it is created, for images that are only generated to be measured.
+     *
+     * @param quiet Whether to keep the image from printing its parameters
+     * @return The instance of this builder
+     */
+    FlowImageBuilder setQuiet(boolean quiet) {
+        this.quiet = quiet;
+        return this;
+    }
 }
@@ -3,7 +3,14 @@ package st.photonbur.misc.image.algorithm.flow;
 import st.photonbur.misc.image.algorithm.AbstractInputHandler;
 import st.photonbur.misc.image.misc.InputStep;
 
+import java.io.File;
+
 public class FlowInputHandler extends AbstractInputHandler {
+    /**
+     * The answer leaving a choice up to calibration, which picks whatever is fastest on this machine, see {@link FlowTuner}.
+     */
+    private static final String AUTO = "auto";
+
     // == STEP INIT == //
     /**
      * The {@link InputStep} requesting the amount of points to start the generation with.
@@ -15,6 +22,16 @@ public class FlowInputHandler extends AbstractInputHandler {
             Integer::parseInt
     );
 
+    /**
+     * The {@link InputStep} requesting the way the starting points are scattered over the canvas.
+     */
+    private final InputStep<String, SeedDistribution> seedDistribution = new InputStep<>(
+            "Seed distribution (uniform/jittered/poisson)",
+            input -> SeedDistribution.findByDisplayName(input) != null,
+            String::valueOf,
+            SeedDistribution::findByDisplayName
+    );
+
     /**
      * The {@link InputStep} requesting the randomness every pixel should apply.
      */
@@ -25,12 +42,125 @@ public class FlowInputHandler extends AbstractInputHandler {
             Double::parseDouble
     );
 
+    /**
+     * The {@link InputStep} requesting the seed of the randomizer.
+     * An empty seed picks a random one, which also means the result can't be taken from the cache.
+     */
+    private final InputStep<String, String> seed = new InputStep<>(
+            "Seed (leave empty for a random one)",
+            input -> input.isEmpty() || input.matches("-?\\d{1,18}"),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the engine used for storing and calculating colors.
+     */
+    private final InputStep<String, String> colorEngine = new InputStep<>(
+            "Color engine (double/float/fixed/16-bit/8-bit/auto)",
+            input -> input.equalsIgnoreCase(AUTO) || ColorEngine.findByDisplayName(input) != null,
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the color space colors are mixed in.
+     */
+    private final InputStep<String, MixingSpace> mixingSpace = new InputStep<>(
+            "Mixing space (srgb/linear/oklab, the 8-bit engine only mixes in srgb)",
+            input -> MixingSpace.findByDisplayName(input) != null
+                    && (getColorEngine() == null || MixingSpace.findByDisplayName(input).supports(getColorEngine())),
+            String::valueOf,
+            MixingSpace::findByDisplayName
+    );
+
+    /**
+     * The {@link InputStep} requesting the order in which the pixels on the frontier are visited.
+     */
+    private final InputStep<String, String> frontierOrder = new InputStep<>(
+            "Frontier order (random/breadth/depth/color/auto)",
+            input -> input.equalsIgnoreCase(AUTO) || FrontierOrder.findByDisplayName(input) != null,
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the kernel deciding which pixels a pixel is mixed from and which it activates.
+     */
+    private final InputStep<String, NeighborhoodKernel> kernel = new InputStep<>(
+            "Neighborhood kernel (4/8/gaussian:<radius>/anisotropic:<radius>:<angle>[:<stretch>])",
+            input -> NeighborhoodKernel.parse(input) != null,
+            String::valueOf,
+            NeighborhoodKernel::parse
+    );
+
+    /**
+     * The {@link InputStep} requesting the way the state of the pixels is laid out in memory.
+     */
+    private final InputStep<String, String> canvasLayout = new InputStep<>(
+            "Canvas layout (linear/morton/auto)",
+            input -> input.equalsIgnoreCase(AUTO) || CanvasLayoutType.findByDisplayName(input) != null,
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of levels to generate progressively.
+     */
+    private final InputStep<Integer, Integer> progressiveLevels = new InputStep<>(
+            "Progressive levels, each doubling in size (1 to disable)",
+            input -> input >= 1 && (Math.min(getWidth(), getHeight()) >> (input - 1)) > 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the time generating may take before the remaining pixels are filled in cheaply.
+     */
+    private final InputStep<Double, Double> timeLimit = new InputStep<>(
+            "Time limit in seconds (0 for none)",
+            input -> input >= 0 && input <= Integer.MAX_VALUE,
+            Double::parseDouble,
+            Double::parseDouble
+    );
+
+    /**
+     * The {@link InputStep} requesting the port to stream the image on while it is generated.
+     */
+    private final InputStep<Integer, Integer> livePort = new InputStep<>(
+            "Port to stream progress on over HTTP (0 for none)",
+            input -> input >= 0 && input <= 0xFFFF,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the file to share the canvas with other processes through while it is generated.
+     */
+    private final InputStep<String, String> sharedCanvas = new InputStep<>(
+            "File to share the canvas through (empty for none)",
+            input -> input.isEmpty() || !new File(input).isDirectory(),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting if the order in which pixels are visited should be recorded.
+     */
+    private final InputStep<String, Boolean> recordGrowth = new InputStep<>(
+            "Record growth for a time-lapse (y/n)",
+            input -> input.equalsIgnoreCase("y") || input.equalsIgnoreCase("n"),
+            String::valueOf,
+            input -> input.equalsIgnoreCase("y")
+    );
+
     /**
      * A final copy of the input steps the user is faced with.
      * This is done so the array won't be created every time it has to be retrieved by the getter.
      */
     private final InputStep[] steps = new InputStep[] {
-            imageWidth, imageHeight, nPoints, randomness, showGUI
+            imageWidth, imageHeight, nPoints, seedDistribution, randomness, seed, colorEngine, mixingSpace, frontierOrder, kernel, canvasLayout,
+            progressiveLevels, timeLimit, recordGrowth, livePort, sharedCanvas, showGUI
     };
 
     @Override
@@ -40,6 +170,48 @@ public class FlowInputHandler extends AbstractInputHandler {
 
     // == PARAM GETTERS == //
 
+    /**
+     * @return The amount of levels to generate progressively
+     */
+    Integer getProgressiveLevels() {
+        return progressiveLevels.getResult();
+    }
+
+    /**
+     * @return The file to share the canvas through while it is generated, or {@code null} if it isn't shared
+     */
+    File getSharedCanvas() {
+        return sharedCanvas.getResult().isEmpty() ? null : new File(sharedCanvas.getResult());
+    }
+
+    /**
+     * @return The port to stream the image on while it is generated, or 0 if it isn't streamed
+     */
+    Integer getLivePort() {
+        return livePort.getResult();
+    }
+
+    /**
+     * @return The time generating may take in seconds, or 0 if there is no limit
+     */
+    Double getTimeLimit() {
+        return timeLimit.getResult();
+    }
+
+    /**
+     * @return The seed of the randomizer, or {@code null} if a random one should be picked
+     */
+    Long getSeed() {
+        return seed.getResult().isEmpty() ? null : Long.parseLong(seed.getResult());
+    }
+
+    /**
+     * @return The way the starting points are scattered over the canvas
+     */
+    SeedDistribution getSeedDistribution() {
+        return seedDistribution.getResult();
+    }
+
     /**
      * @return The amount of randomness to apply to the pixel generation
      */
@@ -47,6 +219,41 @@ public class FlowInputHandler extends AbstractInputHandler {
         return randomness.getResult();
     }
 
+    /**
+     * @return The way the state of the pixels is laid out in memory, or {@code null} if the fastest one should be picked
+     */
+    CanvasLayoutType getCanvasLayout() {
+        return CanvasLayoutType.findByDisplayName(canvasLayout.getResult());
+    }
+
+    /**
+     * @return The engine used for storing and calculating colors, or {@code null} if the fastest one should be picked
+     */
+    ColorEngine getColorEngine() {
+        return ColorEngine.findByDisplayName(colorEngine.getResult());
+    }
+
+    /**
+     * @return The color space colors are mixed in
+     */
+    MixingSpace getMixingSpace() {
+        return mixingSpace.getResult();
+    }
+
+    /**
+     * @return The order in which the pixels on the frontier are visited, or {@code null} if the fastest one should be picked
+     */
+    FrontierOrder getFrontierOrder() {
+        return FrontierOrder.findByDisplayName(frontierOrder.getResult());
+    }
+
+    /**
+     * @return The kernel deciding which pixels a pixel is mixed from and which it activates
+     */
+    NeighborhoodKernel getKernel() {
+        return kernel.getResult();
+    }
+
     /**
      * @return The height of the image to generate
      */
@@ -68,6 +275,13 @@ public class FlowInputHandler extends AbstractInputHandler {
         return imageWidth.getResult();
     }
 
+    /**
+     * @return Whether or not to record the order in which pixels are visited
+     */
+    Boolean doRecordGrowth() {
+        return recordGrowth.getResult();
+    }
+
     /**
      * @return Whether or not to show the GUI while generating the image
      */
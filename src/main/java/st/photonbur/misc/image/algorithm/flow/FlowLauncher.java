@@ -1,17 +1,40 @@
 package st.photonbur.misc.image.algorithm.flow;
 
+import com.sun.net.httpserver.HttpServer;
 import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.misc.LiveCanvasStream;
+import st.photonbur.misc.image.misc.RenderCache;
+import st.photonbur.misc.image.misc.SharedCanvasWriter;
 import st.photonbur.misc.image.misc.Utils;
 
 import javax.imageio.ImageIO;
 import java.io.File;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executors;
 
 public class FlowLauncher extends AbstractLauncher<FlowInputHandler> {
     /**
      * The default title to give to the preview window.
      */
     private static final String DEFAULT_PREVIEW_TITLE = "FLOW Preview Window";
+    /**
+     * The directory holding previously generated images, by the hash of their parameters.
+     */
+    static final String CACHE_DIRECTORY = "out/cache/flow";
+    /**
+     * The maximum amount of bytes the cached images may take up together.
+     */
+    private static final long CACHE_SIZE = 1L << 30;
+    /**
+     * The most seconds to wait for viewers of the live stream to receive the last frame.
+     */
+    private static final int LIVE_SHUTDOWN_DELAY = 2;
 
     public FlowLauncher(FlowInputHandler params) {
         super(params);
@@ -19,24 +42,182 @@ public class FlowLauncher extends AbstractLauncher<FlowInputHandler> {
 
     @Override
     protected void exportImage() throws IOException {
+        // Create the filename to store the image under
+        int index = Utils.findLastIndexInDirectory("out/flow/", "png") + 1;
+        String fileName = String.format("out/flow/%05d.png", index);
+
+        // Pick whatever is fastest on this machine for the choices left up to calibration
+        ColorEngine colorEngine = getParams().getColorEngine();
+        FrontierOrder frontierOrder = getParams().getFrontierOrder();
+        CanvasLayoutType canvasLayout = getParams().getCanvasLayout();
+        if (colorEngine == null || frontierOrder == null || canvasLayout == null) {
+            FlowTuner.Configuration configuration = new FlowTuner(new File(FlowTuner.CACHE_FILE)).tuneImage(
+                    getParams().getWidth(), getParams().getHeight(), getParams().getNPoints(),
+                    getParams().getSeedDistribution(), getParams().getRandomness(), getParams().getMixingSpace(), getParams().getKernel(),
+                    colorEngine == null ? Arrays.asList(ColorEngine.values()) : Collections.singletonList(colorEngine),
+                    frontierOrder == null ? Arrays.asList(FrontierOrder.values()) : Collections.singletonList(frontierOrder),
+                    canvasLayout == null ? Arrays.asList(CanvasLayoutType.values()) : Collections.singletonList(canvasLayout));
+            colorEngine = configuration.getColorEngine();
+            frontierOrder = configuration.getFrontierOrder();
+            canvasLayout = configuration.getLayoutType();
+        }
+
         // Construct the image
         FlowImageBuilder flowImageBuilder = new FlowImageBuilder()
                 .setImageWidth(getParams().getWidth())
                 .setImageHeight(getParams().getHeight())
                 .setAmountOfPoints(getParams().getNPoints())
-                .setRandomness(getParams().getRandomness());
+                .setSeedDistribution(getParams().getSeedDistribution())
+                .setRandomness(getParams().getRandomness())
+                .setColorEngine(colorEngine)
+                .setMixingSpace(getParams().getMixingSpace())
+                .setFrontierOrder(frontierOrder)
+                .setKernel(getParams().getKernel())
+                .setCanvasLayout(canvasLayout)
+                .setProgressiveLevels(getParams().getProgressiveLevels());
+        if (getParams().getSeed() != null) flowImageBuilder.setSeed(getParams().getSeed());
         // Add the GUI to the image builder so it can be updated
         if (getParams().doShowGUI()) flowImageBuilder.setGUIFrame(this);
+        // Keep the coarser levels as thumbnails in a directory named after the image
+        if (getParams().getProgressiveLevels() > 1) {
+            flowImageBuilder.setLevelExportPattern(String.format("out/flow/%05d/level%%d.png", index));
+        }
+        // Record the growth next to the image so it can be replayed later on
+        if (getParams().doRecordGrowth()) {
+            File growthLog = new File(String.format("out/flow/%05d.growth", index));
+            //noinspection ResultOfMethodCallIgnored
+            growthLog.getParentFile().mkdirs();
+
+            System.out.println("Recording growth to " + growthLog);
+            flowImageBuilder.setGrowthLog(growthLog);
+        }
+
+        // The image is only fully determined by its parameters if the seed is known, and recording growth or sharing the canvas needs an actual run
+        RenderCache cache = null;
+        String cacheKey = null;
+        if (getParams().getSeed() != null && !getParams().doRecordGrowth() && getParams().getSharedCanvas() == null) {
+            cache = new RenderCache(new File(CACHE_DIRECTORY), CACHE_SIZE);
+            cacheKey = RenderCache.keyOf(flowImageBuilder.getCacheKey());
+
+            if (cache.lookup(cacheKey) && exportFromCache(cache, cacheKey, new File(fileName))) {
+                System.out.println("Exported cached image to " + fileName);
+                System.out.println("Cache: " + cache.getStatistics());
+                return;
+            }
+        }
+
         // Construct the image
         FlowImage flowImage = flowImageBuilder.build();
-        flowImage.generate();
+        if (getParams().getTimeLimit() > 0) {
+            flowImage.setDeadline(System.nanoTime() + (long) (getParams().getTimeLimit() * 1e9));
+        }
+        LiveCanvasStream live = null;
+        HttpServer liveServer = null;
+        if (getParams().getLivePort() > 0) {
+            live = new LiveCanvasStream(flowImage, LiveCanvasStream.DEFAULT_TILE_SIZE, LiveCanvasStream.DEFAULT_FRAME_RATE);
+            liveServer = startLiveServer(live, getParams().getLivePort());
+        }
+        SharedCanvasWriter shared = null;
+        if (getParams().getSharedCanvas() != null) {
+            shared = new SharedCanvasWriter(getParams().getSharedCanvas(), flowImage, SharedCanvasWriter.DEFAULT_TILE_SIZE, flowImage::getVisitedCount);
+            shared.start(SharedCanvasWriter.DEFAULT_UPDATE_RATE);
+            System.out.println("Sharing the canvas through " + getParams().getSharedCanvas());
+        }
+        try {
+            flowImage.generate();
+        } finally {
+            // Give the viewers the time to receive the last frame before shutting down
+            if (live != null) {
+                live.finish();
+                liveServer.stop(LIVE_SHUTDOWN_DELAY);
+            }
+            if (shared != null) finishSharing(shared);
+        }
 
-        // Create the filename to store the image under
-        String fileName = String.format("out/flow/%05d.png", Utils.findLastIndexInDirectory("out/flow/", "png") + 1);
+        // Filling in depends on timing, so the image can't be reproduced from its parameters anymore
+        long filled = flowImage.getFilledCount();
+        if (filled > 0) {
+            long pixels = (long) flowImage.getWidth() * flowImage.getHeight();
+            System.out.printf("Generated %d pixels, filled in %d pixels (%.1f%%) to make the time limit\n",
+                    pixels - filled, filled, filled * 100d / pixels);
+            cache = null;
+        }
 
         // Write the image to file
         System.out.println("Exporting to " + fileName);
-        ImageIO.write(flowImage, "png", new File(fileName));
+        File file = new File(fileName);
+        ImageIO.write(flowImage, "png", file);
+
+        if (cache != null) {
+            cache.put(cacheKey, out -> Files.copy(file.toPath(), out));
+            System.out.println("Cache: " + cache.getStatistics());
+        }
+    }
+
+    /**
+     * Starts serving an image to remote viewers while it is generated.
+     * The page showing the image is served at the root, and the stream itself at {@code /live}.
+     *
+     * @param live The stream showing the image
+     * @param port The port to serve on
+     * @return The server, which has to be stopped once the image is done
+     * @throws IOException When the server could not be started on the given port
+     */
+    private static HttpServer startLiveServer(LiveCanvasStream live, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", exchange -> {
+            try {
+                if (exchange.getRequestURI().getPath().equals("/live")) live.handleStream(exchange);
+                else LiveCanvasStream.handleViewer(exchange);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        // Every viewer holds on to a thread for as long as it watches
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Live canvas viewer");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+
+        System.out.printf("Streaming progress on http://localhost:%d/\n", server.getAddress().getPort());
+        return server;
+    }
+
+    /**
+     * Brings the shared canvas up to date a last time and flags it as done.
+     *
+     * @param shared The shared canvas
+     * @throws IOException When closing the file fails
+     */
+    private static void finishSharing(SharedCanvasWriter shared) throws IOException {
+        try (SharedCanvasWriter canvas = shared) {
+            canvas.finish();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copies a cached image to its destination.
+     *
+     * @param cache    The cache holding the image
+     * @param cacheKey The key of the image
+     * @param file     The file to copy the image to
+     * @return {@code true} if the image was copied, {@code false} if it was evicted in the meantime
+     * @throws IOException When copying fails
+     */
+    private static boolean exportFromCache(RenderCache cache, String cacheKey, File file) throws IOException {
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+
+        try (FileChannel target = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return cache.transferTo(cacheKey, target);
+        }
     }
 
     @Override
@@ -0,0 +1,176 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractInputHandler;
+import st.photonbur.misc.image.misc.InputStep;
+import st.photonbur.misc.image.misc.TilePyramidWriter;
+
+import java.util.Random;
+
+public class FlowPagedInputHandler extends AbstractInputHandler {
+    // == STEP INIT == //
+    /**
+     * The {@link InputStep} requesting the amount of points to start the generation with.
+     */
+    private final InputStep<Integer, Integer> nPoints = new InputStep<>(
+            "Amount of starting points",
+            input -> input > 0 && input <= (long) getWidth() * getHeight(),
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the randomness every pixel should apply.
+     */
+    private final InputStep<Double, Double> randomness = new InputStep<>(
+            "Randomness per pixel (value between 0 and 30)",
+            input -> input > 0 && input <= 30,
+            Double::parseDouble,
+            Double::parseDouble
+    );
+
+    /**
+     * The {@link InputStep} requesting the seed of the randomizer.
+     */
+    private final InputStep<String, String> seed = new InputStep<>(
+            "Seed (leave empty for a random one)",
+            input -> input.isEmpty() || input.matches("-?\\d{1,18}"),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the engine used for storing and calculating colors.
+     */
+    private final InputStep<String, ColorEngine> colorEngine = new InputStep<>(
+            "Color engine (double/float/fixed/16-bit/8-bit)",
+            input -> ColorEngine.findByDisplayName(input) != null,
+            String::valueOf,
+            ColorEngine::findByDisplayName
+    );
+
+    /**
+     * The {@link InputStep} requesting the size of the tiles the canvas is paged in.
+     */
+    private final InputStep<Integer, Integer> tileSize = new InputStep<>(
+            "Tile size in pixels (power of two, 16 to 4096)",
+            input -> input >= 16 && input <= 4096 && Integer.bitCount(input) == 1,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of memory to hold tiles in.
+     */
+    private final InputStep<Integer, Integer> cacheSize = new InputStep<>(
+            "Tile cache size in MB",
+            input -> input > 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting how strongly the growth should prefer tiles in memory.
+     */
+    private final InputStep<Double, Double> residentBias = new InputStep<>(
+            "Resident bias (value between 0 and 1, higher pages less but shows more tile edges)",
+            input -> input >= 0 && input <= 1,
+            Double::parseDouble,
+            Double::parseDouble
+    );
+
+    /**
+     * The {@link InputStep} requesting the format to export the image in.
+     */
+    private final InputStep<String, String> exportFormat = new InputStep<>(
+            "Export format (png, or dzi/xyz for a pyramid of tiles)",
+            input -> input.equalsIgnoreCase("png") || TilePyramidWriter.Layout.findByDisplayName(input) != null,
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * A final copy of the input steps the user is faced with.
+     * This is done so the array won't be created every time it has to be retrieved by the getter.
+     */
+    private final InputStep[] steps = new InputStep[] {
+            imageWidth, imageHeight, nPoints, randomness, seed, colorEngine, tileSize, cacheSize, residentBias, exportFormat
+    };
+
+    @Override
+    protected InputStep[] getSteps() {
+        return steps;
+    }
+
+    // == PARAM GETTERS == //
+
+    /**
+     * @return The amount of bytes to hold tiles in
+     */
+    long getCacheSize() {
+        return cacheSize.getResult() * (1L << 20);
+    }
+
+    /**
+     * @return The engine used for storing and calculating colors
+     */
+    ColorEngine getColorEngine() {
+        return colorEngine.getResult();
+    }
+
+    /**
+     * @return The layout of the pyramid of tiles to export the image as, or {@code null} to export it as a single PNG
+     */
+    TilePyramidWriter.Layout getExportLayout() {
+        // A single PNG has no layout, which the input step can't hold as it takes a missing result for invalid input
+        return TilePyramidWriter.Layout.findByDisplayName(exportFormat.getResult());
+    }
+
+    /**
+     * @return The height of the image to generate
+     */
+    Integer getHeight() {
+        return imageHeight.getResult();
+    }
+
+    /**
+     * @return The amount of points to start the generation with
+     */
+    Integer getNPoints() {
+        return nPoints.getResult();
+    }
+
+    /**
+     * @return The amount of randomness to apply to the pixel generation
+     */
+    Double getRandomness() {
+        return randomness.getResult();
+    }
+
+    /**
+     * @return The chance of limiting the choice of the next pixel to the tiles in memory
+     */
+    Double getResidentBias() {
+        return residentBias.getResult();
+    }
+
+    /**
+     * @return The seed of the randomizer, picking a random one if none was given
+     */
+    long getSeed() {
+        return seed.getResult().isEmpty() ? new Random().nextLong() : Long.parseLong(seed.getResult());
+    }
+
+    /**
+     * @return The amount of bits needed to address a coordinate within a tile
+     */
+    int getTileBits() {
+        return Integer.numberOfTrailingZeros(tileSize.getResult());
+    }
+
+    /**
+     * @return The width of the image to generate
+     */
+    Integer getWidth() {
+        return imageWidth.getResult();
+    }
+}
@@ -0,0 +1,80 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.misc.TilePyramidWriter;
+import st.photonbur.misc.image.misc.Utils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Generates a FLOW image larger than fits in memory, paging its tiles to disk, see {@link PagedFlowCanvas}.
+ * The image is streamed to disk as it is exported, so it is never held in memory as a whole either,
+ * either as a single PNG or as a pyramid of tiles for a tiled viewer, see {@link TilePyramidWriter}.
+ */
+public class FlowPagedLauncher extends AbstractLauncher<FlowPagedInputHandler> {
+    /**
+     * The default title to give to the preview window.
+     */
+    private static final String DEFAULT_PREVIEW_TITLE = "FLOW Paged";
+
+    public FlowPagedLauncher(FlowPagedInputHandler params) {
+        super(params);
+    }
+
+    @Override
+    protected void exportImage() throws IOException {
+        // Create the filename to store the image under
+        // Pyramids of tiles are numbered along with the images, by their descriptors
+        int index = Math.max(Utils.findLastIndexInDirectory("out/flow/", "png"),
+                Math.max(Utils.findLastIndexInDirectory("out/flow/", "dzi"), Utils.findLastIndexInDirectory("out/flow/", "json"))) + 1;
+        File target = new File(String.format("out/flow/%05d.png", index));
+        //noinspection ResultOfMethodCallIgnored
+        target.getParentFile().mkdirs();
+
+        int cacheTiles = PagedFlowCanvas.tilesFitting(getParams().getColorEngine(), getParams().getTileBits(), getParams().getCacheSize());
+
+        try (PagedFlowCanvas canvas = new PagedFlowCanvas(getParams().getWidth(), getParams().getHeight(), getParams().getNPoints(),
+                getParams().getRandomness(), getParams().getSeed(), getParams().getColorEngine(), getParams().getTileBits(),
+                cacheTiles, getParams().getResidentBias(), new File(String.format("out/flow/%05d.tiles", index)))) {
+            canvas.generate();
+
+            TilePyramidWriter.Layout layout = getParams().getExportLayout();
+            if (layout == null) {
+                canvas.export(target);
+            } else {
+                TilePyramidWriter pyramid = new TilePyramidWriter(target.getParentFile(), String.format("%05d", index),
+                        getParams().getWidth(), getParams().getHeight(), TilePyramidWriter.DEFAULT_TILE_SIZE, layout,
+                        Runtime.getRuntime().availableProcessors());
+                canvas.export(pyramid);
+
+                target = pyramid.getDescriptorFile();
+                System.out.printf("Wrote %d tiles over %d levels\n", pyramid.getTileCount(), pyramid.getLevelCount());
+            }
+
+            System.out.printf("Exported to %s\n  Paging: %s\n  Backing file: %d MB\n\n",
+                    target, canvas.getPager().getStatistics(), canvas.getPager().getFileSize() >> 20);
+        }
+    }
+
+    @Override
+    public String getDefaultPreviewTitle() {
+        return DEFAULT_PREVIEW_TITLE;
+    }
+
+    @Override
+    public void setup() {
+        // Generate all parameters needed to run the algorithm
+        getParams().generate();
+
+        // Start generating the image on another thread
+        new Thread(() -> {
+            try {
+                exportImage();
+            } catch (IOException ex) {
+                System.out.println("Error while generating paged flow image");
+                ex.printStackTrace();
+            }
+        }).start();
+    }
+}
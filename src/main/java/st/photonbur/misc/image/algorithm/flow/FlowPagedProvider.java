@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code flow-paged} type: generates FLOW images larger than fits in memory.
+ */
+public class FlowPagedProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "flow-paged";
+    }
+
+    @Override
+    public void launch() {
+        new FlowPagedLauncher(new FlowPagedInputHandler()).setup();
+    }
+}
@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code flow} type: generates an image according to the FLOW algorithm.
+ */
+public class FlowProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "flow";
+    }
+
+    @Override
+    public void launch() {
+        new FlowLauncher(new FlowInputHandler()).setup();
+    }
+}
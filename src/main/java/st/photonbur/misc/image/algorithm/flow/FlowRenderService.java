@@ -0,0 +1,805 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import st.photonbur.misc.image.misc.LiveCanvasStream;
+import st.photonbur.misc.image.misc.PngStreamWriter;
+import st.photonbur.misc.image.misc.RenderCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves FLOW images over HTTP from a single long-running process, so every render benefits from an already warmed up JIT.
+ * <p>
+ * Jobs are generated on a fixed pool of threads, one per core by default. Jobs waiting for a thread are ordered by priority,
+ * and once the queue is full new jobs are refused rather than piling up. Requests themselves are handled on virtual threads
+ * where the JDK offers them, as they mostly wait for jobs to finish.
+ * <p>
+ * The following endpoints are offered, with parameters passed in the query string:
+ * <ul>
+ *     <li>{@code GET /render}: generates an image and streams it back as PNG once done.</li>
+ *     <li>{@code POST /jobs}: queues an image, replying with the id of the job.</li>
+ *     <li>{@code GET /jobs/<id>}: reports the state and progress of a job.</li>
+ *     <li>{@code GET /jobs/<id>/result}: waits for a job to finish and streams it back as PNG. The job is forgotten afterwards.
+ *     Results nobody fetches are forgotten after {@link #RESULT_TTL} minutes, or earlier once too many of them pile up.</li>
+ *     <li>{@code GET /jobs/<id>/live}: streams the image while it is being generated, see {@link LiveCanvasStream}.</li>
+ *     <li>{@code GET /jobs/<id>/view}: serves a page showing the live stream of a job.</li>
+ *     <li>{@code DELETE /jobs/<id>}: cancels a job, even while it is being generated.</li>
+ *     <li>{@code GET /cache}: reports the statistics of the result cache.</li>
+ *     <li>{@code GET /arena}: reports how often the buffers of finished jobs were reused, see {@link FlowArena}.</li>
+ * </ul>
+ * Accepted parameters are {@code width}, {@code height}, {@code points} and {@code randomness}, which are required,
+ * and {@code seed}, {@code priority} (higher goes first), {@code seeds}, {@code engine}, {@code space}, {@code order}, {@code kernel}, {@code layout}
+ * and {@code deadline}, which are optional.
+ * Jobs with an explicit seed are served from the {@link RenderCache} when they have been rendered before.
+ * <p>
+ * A deadline is given in milliseconds after the job was submitted. Once the deadline gets close, the pixels left over are filled in cheaply
+ * rather than generated, see {@link FlowImage#setDeadline(long)}. How many pixels were filled in is reported by the job,
+ * and by the {@code X-Filled-Pixels} header of its image. Images with filled in pixels aren't cached.
+ */
+class FlowRenderService {
+    /**
+     * The minutes a finished job is kept around for its result to be fetched.
+     */
+    private static final long RESULT_TTL = 10;
+
+    /**
+     * The states a job goes through.
+     */
+    private enum JobState {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    /**
+     * A single image to generate.
+     * Jobs are ordered by descending priority first, and by the order in which they were submitted second.
+     */
+    private class RenderJob implements Runnable, Comparable<RenderJob> {
+        private final long id;
+        private final int priority;
+        private final FlowImageBuilder builder;
+        private final int width;
+        private final int height;
+        /**
+         * The value of {@link System#nanoTime()} the job has to be done by, or {@link FlowImage#NO_DEADLINE}.
+         */
+        private final long deadline;
+        /**
+         * The key of the job in the result cache, or {@code null} if the result can't be cached.
+         */
+        private final String cacheKey;
+
+        /**
+         * Counts down once the job has reached its final state.
+         */
+        private final CountDownLatch finished = new CountDownLatch(1);
+        /**
+         * The state of the job, which only ever moves forward through compare-and-set, so a final state is never overwritten.
+         */
+        private final AtomicReference<JobState> state = new AtomicReference<>(JobState.QUEUED);
+        /**
+         * The value of {@link System#nanoTime()} at which the job reached its final state.
+         */
+        private volatile long finishedAt;
+        /**
+         * The thread generating the job, or {@code null} if it isn't being generated.
+         */
+        private volatile Thread runner;
+        private volatile FlowImage image;
+        private volatile String error;
+        /**
+         * The stream showing the image to remote viewers, or {@code null} if nobody asked to watch it yet.
+         */
+        private LiveCanvasStream live;
+        /**
+         * The result of a job served from the cache, opened as soon as the job is found to be cached so it survives being evicted
+         * before it is streamed, or {@code null} if there is none.
+         */
+        private FileChannel cached;
+
+        RenderJob(long id, int priority, int width, int height, long deadline, FlowImageBuilder builder, String cacheKey) {
+            this.id = id;
+            this.cacheKey = cacheKey;
+            this.priority = priority;
+            this.width = width;
+            this.height = height;
+            this.deadline = deadline;
+            this.builder = builder;
+        }
+
+        /**
+         * Cancels this job, interrupting its generation if it is already running.
+         */
+        synchronized void cancel() {
+            if (isFinal(state.get())) return;
+
+            if (generationPool.remove(this)) {
+                finish(JobState.CANCELLED);
+            } else if (state.compareAndSet(JobState.QUEUED, JobState.CANCELLED) || state.compareAndSet(JobState.RUNNING, JobState.CANCELLED)) {
+                // The job is about to run or running already; it picks up on either of these
+                Thread currentRunner = runner;
+                if (currentRunner != null) currentRunner.interrupt();
+            }
+        }
+
+        @Override
+        public int compareTo(RenderJob other) {
+            if (priority != other.priority) return Integer.compare(other.priority, priority);
+            return Long.compare(id, other.id);
+        }
+
+        /**
+         * Moves this job to its final state and frees up its spot in the queue.
+         *
+         * @param finalState The final state of the job
+         */
+        private void finish(JobState finalState) {
+            // A cancellation that arrived while the job was finishing stays, as the client was already told it is cancelled
+            JobState current = state.get();
+            while (!isFinal(current) && !state.compareAndSet(current, finalState)) current = state.get();
+
+            // Only a job that is done gets its cached result streamed
+            if (state.get() != JobState.DONE) release();
+
+            finishedAt = System.nanoTime();
+            admission.release();
+            finished.countDown();
+            keepResult(id);
+
+            synchronized (this) {
+                if (live != null) live.finish();
+                notifyAll();
+            }
+        }
+
+        /**
+         * Takes over the cached result of this job, after which it is up to the caller to close it.
+         *
+         * @return The opened result, or {@code null} if the job wasn't served from the cache or its result was taken over already
+         */
+        synchronized FileChannel takeCached() {
+            FileChannel result = cached;
+            cached = null;
+            return result;
+        }
+
+        /**
+         * Closes the cached result of this job, unless it was taken over already.
+         */
+        void release() {
+            FileChannel result = takeCached();
+            if (result == null) return;
+
+            try {
+                result.close();
+            } catch (IOException ex) {
+                System.out.println("Error while closing the cached result of job " + id);
+                ex.printStackTrace();
+            }
+        }
+
+        /**
+         * Hands over the image that is about to be generated, so viewers waiting for it can start watching.
+         *
+         * @param image The image of this job
+         */
+        private synchronized void attach(FlowImage image) {
+            this.image = image;
+            notifyAll();
+        }
+
+        /**
+         * Waits until the image of this job is known, and returns the stream showing it.
+         * The stream is only created once somebody asks for it, so jobs nobody watches don't pay for it.
+         *
+         * @return The stream showing the image, or {@code null} if the job ended without an image to show
+         * @throws InterruptedException When interrupted while waiting for the image
+         */
+        synchronized LiveCanvasStream awaitLiveStream() throws InterruptedException {
+            while (image == null && !isFinal(state.get())) wait();
+
+            if (live == null && image != null) {
+                live = new LiveCanvasStream(image, LiveCanvasStream.DEFAULT_TILE_SIZE, LiveCanvasStream.DEFAULT_FRAME_RATE);
+                if (state.get() != JobState.RUNNING) live.finish();
+            }
+
+            return live;
+        }
+
+        /**
+         * @return The fraction of pixels generated so far
+         */
+        double getProgress() {
+            FlowImage current = image;
+            if (state.get() == JobState.DONE) return 1;
+            if (current == null) return 0;
+
+            return current.getVisitedCount() / ((double) width * height);
+        }
+
+        /**
+         * @return The amount of pixels filled in to make the deadline rather than generated, or 0 if the image isn't known
+         */
+        long getFilledCount() {
+            FlowImage current = image;
+            return current == null ? 0 : current.getFilledCount();
+        }
+
+        /**
+         * Marks this job as running on the current thread, unless it was cancelled in the meantime.
+         *
+         * @return {@code true} if the job should be generated, {@code false} if it was cancelled
+         */
+        private synchronized boolean begin() {
+            if (!state.compareAndSet(JobState.QUEUED, JobState.RUNNING)) return false;
+
+            runner = Thread.currentThread();
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (!begin()) {
+                finish(JobState.CANCELLED);
+                return;
+            }
+
+            // Anything short of finishing the image fails the job, so the job ends and frees up its spot whatever goes wrong
+            JobState outcome = JobState.FAILED;
+            try {
+                // Rendered before, so the result only needs to be streamed from the cache. It is rendered anyway if it got evicted in between
+                FileChannel entry = cacheKey != null && cache.lookup(cacheKey) ? cache.open(cacheKey) : null;
+                if (entry != null) {
+                    synchronized (this) {
+                        cached = entry;
+                    }
+                    outcome = JobState.DONE;
+                    return;
+                }
+
+                // Bypass generate(), as reporting progress on the console makes no sense with jobs running side by side
+                attach(builder.build());
+                image.setDeadline(deadline);
+                image.init();
+                image.generateImage();
+                image.recycleState();
+
+                // Filling in depends on timing, so the image can't be reproduced from its parameters anymore
+                if (cacheKey != null && image.getFilledCount() == 0) {
+                    FlowImage result = image;
+                    try {
+                        cache.put(cacheKey, out -> writePng(result, out));
+                    } catch (IOException ex) {
+                        System.out.println("Error while caching job " + id);
+                        ex.printStackTrace();
+                    }
+                }
+
+                outcome = JobState.DONE;
+            } catch (CancellationException ex) {
+                outcome = JobState.CANCELLED;
+            } catch (RuntimeException ex) {
+                error = ex.toString();
+            } catch (Error ex) {
+                // Running out of memory only takes down this job, so record it and keep serving the others
+                error = ex.toString();
+                if (!(ex instanceof OutOfMemoryError)) throw ex;
+            } finally {
+                if (outcome != JobState.DONE) {
+                    if (image != null) image.recycleState();
+                    image = null;
+                }
+                runner = null;
+                // Don't let a late cancellation leak into the next job on this thread
+                Thread.interrupted();
+                finish(outcome);
+            }
+        }
+
+        /**
+         * @return The state of this job as JSON
+         */
+        String toJson() {
+            return String.format(Locale.ROOT, "{\"id\":%d,\"state\":\"%s\",\"priority\":%d,\"progress\":%.4f,\"filled\":%d%s}",
+                    id, state.get().name().toLowerCase(Locale.ROOT), priority, getProgress(), getFilledCount(),
+                    error == null ? "" : ",\"error\":\"" + error.replace("\\", "\\\\").replace("\"", "\\\"") + "\"");
+        }
+    }
+
+    /**
+     * Thrown when a request holds invalid parameters.
+     */
+    private static class BadRequestException extends Exception {
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    private final HttpServer server;
+    /**
+     * The cache holding the results of earlier jobs, or {@code null} if results aren't cached.
+     */
+    private final RenderCache cache;
+    /**
+     * Recycles the buffers of finished jobs for the jobs after them.
+     * Only the state of the generation is recycled, as the pixels of a job may still be streamed to viewers after it is done.
+     */
+    private final FlowArena arena = new FlowArena(Runtime.getRuntime().maxMemory() / 4);
+    /**
+     * The pool generating the images, taking jobs from a priority queue.
+     */
+    private final ThreadPoolExecutor generationPool;
+    /**
+     * The pool handling the requests.
+     */
+    private final ExecutorService requestPool;
+    /**
+     * Limits the amount of jobs that are either queued or running.
+     */
+    private final Semaphore admission;
+    /**
+     * All jobs that haven't been forgotten yet, by their id.
+     */
+    private final Map<Long, RenderJob> jobs = new ConcurrentHashMap<>();
+    /**
+     * The ids of finished jobs in the order they finished, of which the oldest are forgotten if their results aren't fetched in time.
+     */
+    private final Deque<Long> finishedJobs = new ArrayDeque<>();
+    /**
+     * The most finished jobs to keep around for their results to be fetched, as many as can be queued or running.
+     */
+    private final int maxFinishedJobs;
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    /**
+     * @param port              The port to listen on
+     * @param generationThreads The amount of images to generate at the same time
+     * @param queueCapacity     The amount of jobs allowed to wait for a generation thread
+     * @param cache             The cache to keep the results of jobs in, or {@code null} to not cache them
+     * @throws IOException When the server could not be started on the given port
+     */
+    FlowRenderService(int port, int generationThreads, int queueCapacity, RenderCache cache) throws IOException {
+        this.cache = cache;
+        this.admission = new Semaphore(generationThreads + queueCapacity);
+        this.maxFinishedJobs = generationThreads + queueCapacity;
+        this.generationPool = new ThreadPoolExecutor(generationThreads, generationThreads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>());
+        this.requestPool = createRequestPool();
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/render", exchange -> handle(exchange, this::handleRender));
+        server.createContext("/jobs", exchange -> handle(exchange, this::handleJobs));
+        server.createContext("/cache", exchange -> handle(exchange, this::handleCache));
+        server.createContext("/arena", exchange -> handle(exchange, this::handleArena));
+        server.setExecutor(requestPool);
+    }
+
+    /**
+     * Creates the pool handling requests.
+     * Virtual threads are used where the JDK offers them; as the project targets Java 8 they are looked up reflectively.
+     *
+     * @return The pool handling requests
+     */
+    private static ExecutorService createRequestPool() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    void start() {
+        server.start();
+        System.out.printf("\nServing FLOW images on port %d with %d generation threads\n\n",
+                server.getAddress().getPort(), generationPool.getCorePoolSize());
+    }
+
+    /**
+     * Stops accepting requests and cancels all jobs.
+     */
+    void stop() {
+        server.stop(0);
+        jobs.values().forEach(RenderJob::cancel);
+        generationPool.shutdownNow();
+        requestPool.shutdownNow();
+
+        if (cache != null) System.out.println("Cache: " + cache.getStatistics());
+    }
+
+    /**
+     * @return The port the service listens on
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles a request, turning exceptions into the matching responses.
+     *
+     * @param exchange The request to handle
+     * @param handler  The handler of the endpoint
+     * @throws IOException When responding fails
+     */
+    private void handle(HttpExchange exchange, ExchangeHandler handler) throws IOException {
+        try {
+            handler.handle(exchange);
+        } catch (BadRequestException ex) {
+            respond(exchange, 400, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Service is shutting down");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Generates an image and streams it back right away.
+     *
+     * @param exchange The request to handle
+     */
+    private void handleRender(HttpExchange exchange) throws IOException, BadRequestException, InterruptedException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            respond(exchange, 405, "Use GET");
+            return;
+        }
+
+        RenderJob job = submit(exchange);
+        if (job != null) {
+            streamResult(exchange, job);
+        }
+    }
+
+    /**
+     * Reports the statistics of the result cache.
+     *
+     * @param exchange The request to handle
+     */
+    private void handleCache(HttpExchange exchange) throws IOException {
+        if (cache == null) respond(exchange, 404, "Results aren't cached");
+        else respond(exchange, 200, cache.getStatisticsJson());
+    }
+
+    /**
+     * Reports the statistics of the arena recycling the buffers of jobs.
+     *
+     * @param exchange The request to handle
+     */
+    private void handleArena(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, arena.getStatisticsJson());
+    }
+
+    /**
+     * Handles everything under {@code /jobs}.
+     *
+     * @param exchange The request to handle
+     */
+    private void handleJobs(HttpExchange exchange) throws IOException, BadRequestException, InterruptedException {
+        String[] path = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/");
+        String method = exchange.getRequestMethod();
+
+        // The path splits into "", "jobs", and optionally the id and "result"
+        if (path.length == 2) {
+            if (!method.equals("POST")) {
+                respond(exchange, 405, "Use POST");
+                return;
+            }
+
+            RenderJob job = submit(exchange);
+            if (job != null) respond(exchange, 202, job.toJson());
+            return;
+        }
+
+        RenderJob job;
+        try {
+            job = jobs.get(Long.parseLong(path[2]));
+        } catch (NumberFormatException ex) {
+            job = null;
+        }
+        if (job == null || path.length > 4 || (path.length == 4 && !path[3].matches("result|live|view"))) {
+            respond(exchange, 404, "No such job");
+            return;
+        }
+
+        if (path.length == 4) {
+            if (!method.equals("GET")) {
+                respond(exchange, 405, "Use GET");
+            } else if (path[3].equals("result")) {
+                streamResult(exchange, job);
+            } else if (path[3].equals("view")) {
+                LiveCanvasStream.handleViewer(exchange);
+            } else {
+                LiveCanvasStream live = job.awaitLiveStream();
+                if (live != null) live.handleStream(exchange);
+                else respond(exchange, 410, job.toJson());
+            }
+        } else if (method.equals("GET")) {
+            respond(exchange, 200, job.toJson());
+        } else if (method.equals("DELETE")) {
+            job.cancel();
+            forget(job);
+            respond(exchange, 200, job.toJson());
+        } else {
+            respond(exchange, 405, "Use GET or DELETE");
+        }
+    }
+
+    /**
+     * Queues a job described by the query of a request, unless the queue is full.
+     *
+     * @param exchange The request describing the job
+     * @return The queued job, or {@code null} if it was refused, in which case a response has been sent already
+     * @throws BadRequestException When the parameters are invalid
+     * @throws IOException         When responding fails
+     */
+    private RenderJob submit(HttpExchange exchange) throws BadRequestException, IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        int width = getInt(query, "width", null);
+        int height = getInt(query, "height", null);
+        int nPoints = getInt(query, "points", null);
+        double randomness = getDouble(query, "randomness");
+        int priority = getInt(query, "priority", 0);
+        long seed = query.containsKey("seed") ? getLong(query, "seed") : new Random().nextLong();
+        int deadline = getInt(query, "deadline", -1);
+
+        if (width <= 0 || height <= 0) throw new BadRequestException("width and height have to be positive");
+        if (nPoints <= 0 || nPoints > (long) width * height) throw new BadRequestException("points has to be between 1 and width * height");
+        if (randomness < 0 || randomness > 30) throw new BadRequestException("randomness has to be between 0 and 30");
+        if (query.containsKey("deadline") && deadline < 0) throw new BadRequestException("deadline can't be negative");
+
+        ColorEngine colorEngine = getOption(query, "engine", ColorEngine.DOUBLE, ColorEngine.findByDisplayName(query.get("engine")));
+        MixingSpace mixingSpace = getOption(query, "space", MixingSpace.SRGB, MixingSpace.findByDisplayName(query.get("space")));
+        if (!mixingSpace.supports(colorEngine)) throw new BadRequestException("engine " + colorEngine.getDisplayName() + " can only mix in srgb");
+        NeighborhoodKernel kernel = getOption(query, "kernel", NeighborhoodKernel.FOUR, NeighborhoodKernel.parse(query.get("kernel")));
+
+        // Refuse images that can never fit, rather than letting them run out of memory halfway through and take other jobs down with them
+        long memory = FlowImage.estimateMemory(width, height, colorEngine, kernel);
+        if (memory > Runtime.getRuntime().maxMemory()) {
+            throw new BadRequestException(String.format("an image of %dx%d needs about %d MB, more than the %d MB of heap",
+                    width, height, memory >> 20, Runtime.getRuntime().maxMemory() >> 20));
+        }
+
+        FlowImageBuilder builder = new FlowImageBuilder()
+                .setImageWidth(width)
+                .setImageHeight(height)
+                .setAmountOfPoints(nPoints)
+                .setSeedDistribution(getOption(query, "seeds", SeedDistribution.UNIFORM, SeedDistribution.findByDisplayName(query.get("seeds"))))
+                .setRandomness(randomness)
+                .setSeed(seed)
+                .setColorEngine(colorEngine)
+                .setMixingSpace(mixingSpace)
+                .setFrontierOrder(getOption(query, "order", FrontierOrder.RANDOM, FrontierOrder.findByDisplayName(query.get("order"))))
+                .setKernel(kernel)
+                .setCanvasLayout(getOption(query, "layout", CanvasLayoutType.LINEAR, CanvasLayoutType.findByDisplayName(query.get("layout"))))
+                .setArena(arena);
+
+        if (!admission.tryAcquire()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            respond(exchange, 503, "Queue is full");
+            return null;
+        }
+
+        // Results are only fully determined by the parameters if the seed was chosen by the client
+        String cacheKey = cache != null && query.containsKey("seed") ? RenderCache.keyOf(builder.getCacheKey()) : null;
+
+        RenderJob job = new RenderJob(nextId.getAndIncrement(), priority, width, height,
+                deadline < 0 ? FlowImage.NO_DEADLINE : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline), builder, cacheKey);
+        jobs.put(job.id, job);
+        generationPool.execute(job);
+
+        return job;
+    }
+
+    /**
+     * Keeps a finished job around for its result to be fetched, and forgets the oldest finished jobs
+     * whose results weren't fetched within {@link #RESULT_TTL} minutes, or which no longer fit.
+     * Jobs whose results were fetched already are simply dropped from the order.
+     *
+     * @param id The id of the job that just finished
+     */
+    private void keepResult(long id) {
+        long expiry = System.nanoTime() - TimeUnit.MINUTES.toNanos(RESULT_TTL);
+
+        synchronized (finishedJobs) {
+            finishedJobs.addLast(id);
+
+            while (!finishedJobs.isEmpty()) {
+                RenderJob oldest = jobs.get(finishedJobs.peekFirst());
+                if (oldest != null && finishedJobs.size() <= maxFinishedJobs && oldest.finishedAt - expiry > 0) break;
+
+                finishedJobs.removeFirst();
+                if (oldest != null) forget(oldest);
+            }
+        }
+    }
+
+    /**
+     * Forgets a job, closing its cached result if it wasn't streamed.
+     *
+     * @param job The job to forget
+     */
+    private void forget(RenderJob job) {
+        jobs.remove(job.id);
+        job.release();
+    }
+
+    /**
+     * @param state The state of a job
+     * @return Whether the job is done with, one way or another
+     */
+    private static boolean isFinal(JobState state) {
+        return state != JobState.QUEUED && state != JobState.RUNNING;
+    }
+
+    /**
+     * Waits for a job to finish, and streams the image back as PNG.
+     * The job is forgotten afterwards, freeing up the memory of its image.
+     *
+     * @param exchange The request to respond to
+     * @param job      The job to stream the result of
+     * @throws IOException          When streaming fails
+     * @throws InterruptedException When interrupted while waiting for the job
+     */
+    private void streamResult(HttpExchange exchange, RenderJob job) throws IOException, InterruptedException {
+        job.finished.await();
+        FileChannel cached = job.takeCached();
+        forget(job);
+
+        FlowImage image = job.image;
+        JobState state = job.state.get();
+        if (state != JobState.DONE || (image == null && cached == null)) {
+            respond(exchange, state == JobState.CANCELLED ? 410 : 500, job.toJson());
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.getResponseHeaders().set("X-Job-Id", String.valueOf(job.id));
+
+        if (cached != null) {
+            exchange.getResponseHeaders().set("X-Cache", "hit");
+            try (FileChannel source = cached; OutputStream out = exchange.getResponseBody()) {
+                exchange.sendResponseHeaders(200, source.size());
+                RenderCache.transferAll(source, Channels.newChannel(out));
+            }
+            return;
+        }
+
+        exchange.getResponseHeaders().set("X-Filled-Pixels", String.valueOf(image.getFilledCount()));
+
+        // A length of 0 makes the response chunked, so rows go out as soon as they are encoded
+        exchange.sendResponseHeaders(200, 0);
+        writePng(image, exchange.getResponseBody());
+    }
+
+    /**
+     * Encodes an image as PNG, one row at a time.
+     *
+     * @param image The image to encode
+     * @param out   The stream to write to, which is closed afterwards
+     * @throws IOException When writing fails
+     */
+    private static void writePng(FlowImage image, OutputStream out) throws IOException {
+        int[] row = new int[image.getWidth()];
+        try (PngStreamWriter png = new PngStreamWriter(out, image.getWidth(), image.getHeight())) {
+            for (int y = 0; y < image.getHeight(); y++) {
+                image.getRGB(0, y, image.getWidth(), 1, row, 0, image.getWidth());
+                png.writeRow(row, 0);
+            }
+        }
+    }
+
+    /**
+     * Sends a plain response.
+     *
+     * @param exchange The request to respond to
+     * @param status   The status code
+     * @param body     The body, which is sent as JSON if it looks like it
+     * @throws IOException When responding fails
+     */
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", body.startsWith("{") ? "application/json" : "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // == QUERY PARSING == //
+
+    private static Map<String, String> parseQuery(String rawQuery) throws BadRequestException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return query;
+
+        try {
+            for (String pair : rawQuery.split("&")) {
+                int i = pair.indexOf('=');
+                if (i < 0) throw new BadRequestException("Parameter " + pair + " has no value");
+
+                query.put(URLDecoder.decode(pair.substring(0, i), "UTF-8").toLowerCase(Locale.ROOT),
+                        URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+            throw new BadRequestException("Malformed query: " + ex.getMessage());
+        }
+
+        return query;
+    }
+
+    private static double getDouble(Map<String, String> query, String name) throws BadRequestException {
+        try {
+            return Double.parseDouble(getRequired(query, name));
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException(name + " has to be a number");
+        }
+    }
+
+    private static int getInt(Map<String, String> query, String name, Integer defaultValue) throws BadRequestException {
+        if (defaultValue != null && !query.containsKey(name)) return defaultValue;
+
+        try {
+            return Integer.parseInt(getRequired(query, name));
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException(name + " has to be an integer");
+        }
+    }
+
+    private static long getLong(Map<String, String> query, String name) throws BadRequestException {
+        try {
+            return Long.parseLong(getRequired(query, name));
+        } catch (NumberFormatException ex) {
+            throw new BadRequestException(name + " has to be an integer");
+        }
+    }
+
+    private static <T> T getOption(Map<String, String> query, String name, T defaultValue, T value) throws BadRequestException {
+        if (!query.containsKey(name)) return defaultValue;
+        if (value == null) throw new BadRequestException("Unknown " + name + " " + query.get(name));
+
+        return value;
+    }
+
+    private static String getRequired(Map<String, String> query, String name) throws BadRequestException {
+        String value = query.get(name);
+        if (value == null) throw new BadRequestException("Missing parameter " + name);
+
+        return value;
+    }
+
+    /**
+     * Handles the requests of a single endpoint.
+     */
+    @FunctionalInterface
+    private interface ExchangeHandler {
+        void handle(HttpExchange exchange) throws IOException, BadRequestException, InterruptedException;
+    }
+}
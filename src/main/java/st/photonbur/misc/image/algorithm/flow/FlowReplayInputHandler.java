@@ -0,0 +1,93 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractInputHandler;
+import st.photonbur.misc.image.misc.InputStep;
+
+import java.io.File;
+
+public class FlowReplayInputHandler extends AbstractInputHandler {
+    // == STEP INIT == //
+    /**
+     * The {@link InputStep} requesting the growth log to replay.
+     * The finished image belonging to the log is expected next to it, sharing its name.
+     */
+    private final InputStep<String, File> growthLog = new InputStep<>(
+            "Growth log to replay (the matching .png has to be next to it)",
+            input -> new File(input).isFile() && FlowReplayLauncher.getColorSourceFor(new File(input)).isFile(),
+            String::valueOf,
+            File::new
+    );
+
+    /**
+     * The {@link InputStep} requesting the format to export the time-lapse in.
+     */
+    private final InputStep<String, GrowthReplay.OutputFormat> format = new InputStep<>(
+            "Output format (gif/png/raw)",
+            input -> input.equalsIgnoreCase("gif") || input.equalsIgnoreCase("png") || input.equalsIgnoreCase("raw"),
+            String::valueOf,
+            input -> GrowthReplay.OutputFormat.valueOf(input.toUpperCase())
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of frames per second.
+     */
+    private final InputStep<Integer, Integer> frameRate = new InputStep<>(
+            "Frames per second",
+            input -> input > 0 && input <= 100,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the length of the time-lapse.
+     */
+    private final InputStep<Double, Double> duration = new InputStep<>(
+            "Duration in seconds",
+            input -> input > 0,
+            Double::parseDouble,
+            Double::parseDouble
+    );
+
+    /**
+     * A final copy of the input steps the user is faced with.
+     * This is done so the array won't be created every time it has to be retrieved by the getter.
+     */
+    private final InputStep[] steps = new InputStep[] {
+            growthLog, format, frameRate, duration
+    };
+
+    @Override
+    protected InputStep[] getSteps() {
+        return steps;
+    }
+
+    // == PARAM GETTERS == //
+
+    /**
+     * @return The length of the time-lapse in seconds
+     */
+    Double getDuration() {
+        return duration.getResult();
+    }
+
+    /**
+     * @return The format to export the time-lapse in
+     */
+    GrowthReplay.OutputFormat getFormat() {
+        return format.getResult();
+    }
+
+    /**
+     * @return The amount of frames per second
+     */
+    Integer getFrameRate() {
+        return frameRate.getResult();
+    }
+
+    /**
+     * @return The growth log to replay
+     */
+    File getGrowthLog() {
+        return growthLog.getResult();
+    }
+}
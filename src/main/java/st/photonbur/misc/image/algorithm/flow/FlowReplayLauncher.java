@@ -0,0 +1,80 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replays a growth log recorded alongside a FLOW image as a time-lapse.
+ */
+public class FlowReplayLauncher extends AbstractLauncher<FlowReplayInputHandler> {
+    /**
+     * The default title to give to the preview window.
+     */
+    private static final String DEFAULT_PREVIEW_TITLE = "FLOW Replay";
+
+    public FlowReplayLauncher(FlowReplayInputHandler params) {
+        super(params);
+    }
+
+    /**
+     * Determines which finished image belongs to a growth log.
+     *
+     * @param growthLog The growth log to find the image for
+     * @return The image sharing its name with the growth log
+     */
+    static File getColorSourceFor(File growthLog) {
+        return withExtension(growthLog, "png");
+    }
+
+    /**
+     * Swaps out the extension of a file.
+     *
+     * @param file      The file to swap the extension of
+     * @param extension The new extension, or {@code null} to strip it
+     * @return The file with the new extension
+     */
+    private static File withExtension(File file, String extension) {
+        String name = file.getName();
+        int i = name.lastIndexOf(".");
+        if (i >= 0) name = name.substring(0, i);
+
+        return new File(file.getParentFile(), extension == null ? name : name + "." + extension);
+    }
+
+    @Override
+    protected void exportImage() throws IOException {
+        File growthLog = getParams().getGrowthLog();
+        GrowthReplay.OutputFormat format = getParams().getFormat();
+
+        // Frame sequences go into a directory named after the log, anything else into a single file
+        File target = format == GrowthReplay.OutputFormat.PNG
+                ? withExtension(growthLog, null)
+                : withExtension(growthLog, format.getExtension());
+
+        new GrowthReplay(growthLog, getColorSourceFor(growthLog), getParams().getFrameRate(), getParams().getDuration())
+                .export(format, target);
+    }
+
+    @Override
+    public String getDefaultPreviewTitle() {
+        return DEFAULT_PREVIEW_TITLE;
+    }
+
+    @Override
+    public void setup() {
+        // Generate all parameters needed to run the replay
+        getParams().generate();
+
+        // Start exporting the time-lapse on another thread
+        new Thread(() -> {
+            try {
+                exportImage();
+            } catch (IOException ex) {
+                System.out.println("Error while exporting time-lapse");
+                ex.printStackTrace();
+            }
+        }).start();
+    }
+}
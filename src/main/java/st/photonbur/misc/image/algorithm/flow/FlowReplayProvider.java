@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code flow-replay} type: replays a recorded FLOW generation as a time-lapse.
+ */
+public class FlowReplayProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "flow-replay";
+    }
+
+    @Override
+    public void launch() {
+        new FlowReplayLauncher(new FlowReplayInputHandler()).setup();
+    }
+}
@@ -0,0 +1,173 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractInputHandler;
+import st.photonbur.misc.image.misc.InputStep;
+
+import java.io.File;
+
+/**
+ * Requests a previous FLOW image, the mask marking which part of it to generate again, and the parameters to generate it with.
+ * The size of the image follows from the previous image.
+ */
+public class FlowRetouchInputHandler extends AbstractInputHandler {
+    // == STEP INIT == //
+    /**
+     * The {@link InputStep} requesting the image to take the kept pixels from.
+     */
+    private final InputStep<String, File> previous = new InputStep<>(
+            "Previous image to retouch",
+            input -> new File(input).isFile(),
+            String::valueOf,
+            File::new
+    );
+
+    /**
+     * The {@link InputStep} requesting the mask marking the pixels to generate again.
+     * Without a mask, only the transparent pixels of an unfinished image are generated.
+     */
+    private final InputStep<String, File> mask = new InputStep<>(
+            "Mask marking the pixels to generate again in white (leave empty to only fill transparent pixels)",
+            input -> input.isEmpty() || new File(input).isFile(),
+            String::valueOf,
+            input -> input.isEmpty() ? null : new File(input)
+    );
+
+    /**
+     * The {@link InputStep} requesting the randomness every pixel should apply.
+     */
+    private final InputStep<Double, Double> randomness = new InputStep<>(
+            "Randomness per pixel (value between 0 and 30)",
+            input -> input > 0 && input <= 30,
+            Double::parseDouble,
+            Double::parseDouble
+    );
+
+    /**
+     * The {@link InputStep} requesting the seed of the randomizer.
+     */
+    private final InputStep<String, String> seed = new InputStep<>(
+            "Seed (leave empty for a random one)",
+            input -> input.isEmpty() || input.matches("-?\\d{1,18}"),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the engine used for storing and calculating colors.
+     */
+    private final InputStep<String, ColorEngine> colorEngine = new InputStep<>(
+            "Color engine (double/float/fixed/16-bit/8-bit)",
+            input -> ColorEngine.findByDisplayName(input) != null,
+            String::valueOf,
+            ColorEngine::findByDisplayName
+    );
+
+    /**
+     * The {@link InputStep} requesting the color space colors are mixed in.
+     */
+    private final InputStep<String, MixingSpace> mixingSpace = new InputStep<>(
+            "Mixing space (srgb/linear/oklab, the 8-bit engine only mixes in srgb)",
+            input -> MixingSpace.findByDisplayName(input) != null
+                    && (getColorEngine() == null || MixingSpace.findByDisplayName(input).supports(getColorEngine())),
+            String::valueOf,
+            MixingSpace::findByDisplayName
+    );
+
+    /**
+     * The {@link InputStep} requesting the order in which the pixels on the frontier are visited.
+     */
+    private final InputStep<String, FrontierOrder> frontierOrder = new InputStep<>(
+            "Frontier order (random/breadth/depth/color)",
+            input -> FrontierOrder.findByDisplayName(input) != null,
+            String::valueOf,
+            FrontierOrder::findByDisplayName
+    );
+
+    /**
+     * The {@link InputStep} requesting the kernel deciding which pixels a pixel is mixed from and which it activates.
+     */
+    private final InputStep<String, NeighborhoodKernel> kernel = new InputStep<>(
+            "Neighborhood kernel (4/8/gaussian:<radius>/anisotropic:<radius>:<angle>[:<stretch>])",
+            input -> NeighborhoodKernel.parse(input) != null,
+            String::valueOf,
+            NeighborhoodKernel::parse
+    );
+
+    /**
+     * A final copy of the input steps the user is faced with.
+     * This is done so the array won't be created every time it has to be retrieved by the getter.
+     */
+    private final InputStep[] steps = new InputStep[] {
+            previous, mask, randomness, seed, colorEngine, mixingSpace, frontierOrder, kernel, showGUI
+    };
+
+    @Override
+    protected InputStep[] getSteps() {
+        return steps;
+    }
+
+    // == PARAM GETTERS == //
+
+    /**
+     * @return The engine used for storing and calculating colors
+     */
+    ColorEngine getColorEngine() {
+        return colorEngine.getResult();
+    }
+
+    /**
+     * @return The order in which the pixels on the frontier are visited
+     */
+    FrontierOrder getFrontierOrder() {
+        return frontierOrder.getResult();
+    }
+
+    /**
+     * @return The kernel deciding which pixels a pixel is mixed from and which it activates
+     */
+    NeighborhoodKernel getKernel() {
+        return kernel.getResult();
+    }
+
+    /**
+     * @return The mask marking the pixels to generate again, or {@code null} if only transparent pixels should be generated
+     */
+    File getMask() {
+        return mask.getResult();
+    }
+
+    /**
+     * @return The color space colors are mixed in
+     */
+    MixingSpace getMixingSpace() {
+        return mixingSpace.getResult();
+    }
+
+    /**
+     * @return The image to take the kept pixels from
+     */
+    File getPrevious() {
+        return previous.getResult();
+    }
+
+    /**
+     * @return The amount of randomness to apply to the pixel generation
+     */
+    Double getRandomness() {
+        return randomness.getResult();
+    }
+
+    /**
+     * @return The seed of the randomizer, or {@code null} if a random one should be picked
+     */
+    Long getSeed() {
+        return seed.getResult().isEmpty() ? null : Long.parseLong(seed.getResult());
+    }
+
+    /**
+     * @return Whether or not to show the GUI while generating the image
+     */
+    Boolean doShowGUI() {
+        return showGUI.getResult();
+    }
+}
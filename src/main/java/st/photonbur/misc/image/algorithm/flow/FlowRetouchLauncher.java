@@ -0,0 +1,105 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.misc.Utils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+
+/**
+ * Generates the masked part of a previous FLOW image again, growing it from the pixels around it so it blends in.
+ * The amount of work done scales with the masked area rather than with the full image.
+ */
+public class FlowRetouchLauncher extends AbstractLauncher<FlowRetouchInputHandler> {
+    /**
+     * The default title to give to the preview window.
+     */
+    private static final String DEFAULT_PREVIEW_TITLE = "FLOW Retouch";
+
+    public FlowRetouchLauncher(FlowRetouchInputHandler params) {
+        super(params);
+    }
+
+    /**
+     * Reads an image from file.
+     *
+     * @param file The file to read
+     * @return The image read
+     * @throws IOException When the file can't be read, or isn't an image
+     */
+    private static BufferedImage read(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) throw new IOException(file + " is not an image");
+
+        return image;
+    }
+
+    @Override
+    protected void exportImage() throws IOException {
+        BufferedImage previous = read(getParams().getPrevious());
+        BufferedImage mask = getParams().getMask() == null ? null : read(getParams().getMask());
+
+        // Create the filename to store the image under
+        String fileName = String.format("out/flow/%05d.png", Utils.findLastIndexInDirectory("out/flow/", "png") + 1);
+
+        FlowImageBuilder flowImageBuilder = new FlowImageBuilder()
+                .setImageWidth(previous.getWidth())
+                .setImageHeight(previous.getHeight())
+                // Only used if every pixel is masked, in which case the image is generated from scratch
+                .setAmountOfPoints(1)
+                .setRandomness(getParams().getRandomness())
+                .setColorEngine(getParams().getColorEngine())
+                .setMixingSpace(getParams().getMixingSpace())
+                .setFrontierOrder(getParams().getFrontierOrder())
+                .setKernel(getParams().getKernel());
+        if (getParams().getSeed() != null) flowImageBuilder.setSeed(getParams().getSeed());
+        // Add the GUI to the image builder so it can be updated
+        if (getParams().doShowGUI()) flowImageBuilder.setGUIFrame(this);
+
+        FlowImage flowImage = flowImageBuilder.build();
+        long marked;
+        try {
+            marked = flowImage.retouch(previous, mask);
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("The mask doesn't match the previous image", ex);
+        }
+
+        System.out.printf("Generating %d of %d pixels again (%s%%)\n", marked, (long) previous.getWidth() * previous.getHeight(),
+                new DecimalFormat("0.00").format(marked * 100d / ((long) previous.getWidth() * previous.getHeight())).replace(",", "."));
+        flowImage.generate();
+
+        // Write the image to file
+        System.out.println("Exporting to " + fileName);
+        File file = new File(fileName);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        ImageIO.write(flowImage, "png", file);
+    }
+
+    @Override
+    public String getDefaultPreviewTitle() {
+        return DEFAULT_PREVIEW_TITLE;
+    }
+
+    @Override
+    public void setup() {
+        // Generate all parameters needed to run the algorithm
+        getParams().generate();
+
+        // Start exporting the image on another thread
+        new Thread(() -> {
+            try {
+                exportImage();
+            } catch (IOException ex) {
+                System.out.println("Error while retouching flow image");
+                ex.printStackTrace();
+            }
+        }).start();
+
+        // Set up the GUI if requested by the user
+        if (getParams().doShowGUI()) setupGUI();
+    }
+}
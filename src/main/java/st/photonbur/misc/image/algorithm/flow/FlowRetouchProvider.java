@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code flow-retouch} type: generates part of a previous FLOW image again, keeping the rest of it.
+ */
+public class FlowRetouchProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "flow-retouch";
+    }
+
+    @Override
+    public void launch() {
+        new FlowRetouchLauncher(new FlowRetouchInputHandler()).setup();
+    }
+}
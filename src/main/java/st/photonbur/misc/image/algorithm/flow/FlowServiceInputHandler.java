@@ -0,0 +1,90 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractInputHandler;
+import st.photonbur.misc.image.misc.InputStep;
+
+public class FlowServiceInputHandler extends AbstractInputHandler {
+    // == STEP INIT == //
+    /**
+     * The {@link InputStep} requesting the port to serve images on.
+     */
+    private final InputStep<Integer, Integer> port = new InputStep<>(
+            "Port to serve images on",
+            input -> input > 0 && input <= 65535,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of images to generate at the same time.
+     */
+    private final InputStep<Integer, Integer> generationThreads = new InputStep<>(
+            "Images to generate at the same time (0 for one per core)",
+            input -> input >= 0,
+            Integer::parseInt,
+            input -> Integer.parseInt(input) == 0 ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(input)
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of jobs allowed to wait for their turn.
+     */
+    private final InputStep<Integer, Integer> queueCapacity = new InputStep<>(
+            "Jobs allowed to wait in the queue",
+            input -> input >= 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of disk space to keep results of earlier jobs in.
+     */
+    private final InputStep<Integer, Integer> cacheSize = new InputStep<>(
+            "Result cache size in MB (0 to disable)",
+            input -> input >= 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * A final copy of the input steps the user is faced with.
+     * This is done so the array won't be created every time it has to be retrieved by the getter.
+     */
+    private final InputStep[] steps = new InputStep[] {
+            port, generationThreads, queueCapacity, cacheSize
+    };
+
+    @Override
+    protected InputStep[] getSteps() {
+        return steps;
+    }
+
+    // == PARAM GETTERS == //
+
+    /**
+     * @return The amount of megabytes to keep results of earlier jobs in
+     */
+    Integer getCacheSize() {
+        return cacheSize.getResult();
+    }
+
+    /**
+     * @return The amount of images to generate at the same time
+     */
+    Integer getGenerationThreads() {
+        return generationThreads.getResult();
+    }
+
+    /**
+     * @return The port to serve images on
+     */
+    Integer getPort() {
+        return port.getResult();
+    }
+
+    /**
+     * @return The amount of jobs allowed to wait for their turn
+     */
+    Integer getQueueCapacity() {
+        return queueCapacity.getResult();
+    }
+}
@@ -0,0 +1,52 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.misc.RenderCache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Keeps running as a service rendering FLOW images on request, see {@link FlowRenderService}.
+ */
+public class FlowServiceLauncher extends AbstractLauncher<FlowServiceInputHandler> {
+    /**
+     * The default title to give to the preview window.
+     */
+    private static final String DEFAULT_PREVIEW_TITLE = "FLOW Service";
+
+    public FlowServiceLauncher(FlowServiceInputHandler params) {
+        super(params);
+    }
+
+    @Override
+    protected void exportImage() throws IOException {
+        // Images are exported as the response to their requests
+    }
+
+    @Override
+    public String getDefaultPreviewTitle() {
+        return DEFAULT_PREVIEW_TITLE;
+    }
+
+    @Override
+    public void setup() {
+        // Generate all parameters needed to run the service
+        getParams().generate();
+
+        try {
+            // Share the cache with the command line launcher, so images rendered by either are served by both
+            RenderCache cache = getParams().getCacheSize() > 0
+                    ? new RenderCache(new File(FlowLauncher.CACHE_DIRECTORY), getParams().getCacheSize() * 1_000_000L)
+                    : null;
+
+            FlowRenderService service = new FlowRenderService(
+                    getParams().getPort(), getParams().getGenerationThreads(), getParams().getQueueCapacity(), cache);
+            Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+            service.start();
+        } catch (IOException ex) {
+            System.out.println("Error while starting flow service");
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code flow-service} type: serves FLOW images over HTTP.
+ */
+public class FlowServiceProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "flow-service";
+    }
+
+    @Override
+    public void launch() {
+        new FlowServiceLauncher(new FlowServiceInputHandler()).setup();
+    }
+}
@@ -0,0 +1,400 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Renders every combination of a set of parameter values, and gathers the results into a contact sheet.
+ * <p>
+ * Jobs run side by side on a work-stealing pool, but only as long as their estimated memory fits within a budget.
+ * Whenever room frees up, the largest waiting job that fits is started, so small jobs fill the gaps left next to large ones.
+ * A job too large for the budget by itself is only started once nothing else is running.
+ */
+class FlowSweep {
+    /**
+     * The size of the box every image is scaled into on the contact sheet.
+     */
+    private static final int THUMBNAIL_SIZE = 192;
+    /**
+     * The height of the caption below every image on the contact sheet.
+     */
+    private static final int CAPTION_HEIGHT = 30;
+
+    /**
+     * A single combination of parameters to render.
+     */
+    private static class Job {
+        private final int index;
+        private final FlowImageBuilder builder;
+        private final String description;
+        private final long memory;
+
+        private BufferedImage thumbnail;
+        private long duration;
+        private String error;
+
+        Job(int index, FlowImageBuilder builder, String description, long memory) {
+            this.index = index;
+            this.builder = builder;
+            this.description = description;
+            this.memory = memory;
+        }
+
+        /**
+         * @return The name of the file the image is written to
+         */
+        String getFileName() {
+            return String.format("%04d.png", index);
+        }
+    }
+
+    private final List<Job> jobs = new ArrayList<>();
+    /**
+     * The maximum amount of bytes the running jobs may take up together.
+     */
+    private final long memoryBudget;
+    /**
+     * The maximum amount of jobs to run at the same time.
+     */
+    private final int parallelism;
+    /**
+     * Recycles the buffers of finished jobs for the jobs after them.
+     * Jobs are started largest first, so consecutive jobs tend to share their size.
+     */
+    private final FlowArena arena;
+
+    /**
+     * The jobs that haven't been started yet, largest first.
+     */
+    private final List<Job> pending = new ArrayList<>();
+    /**
+     * The estimated amount of bytes taken up by the running jobs.
+     */
+    private long memoryInUse = 0;
+    private int running = 0;
+    private int finished = 0;
+
+    FlowSweep(List<Integer> widths, List<Integer> heights, List<Integer> points, List<SeedDistribution> seedDistributions,
+              List<Double> randomness, List<Long> seeds, List<ColorEngine> colorEngines, List<MixingSpace> mixingSpaces,
+              List<FrontierOrder> frontierOrders, List<NeighborhoodKernel> kernels, List<CanvasLayoutType> layoutTypes,
+              List<Integer> progressiveLevels, long memoryBudget, int parallelism) {
+        this.memoryBudget = memoryBudget;
+        this.parallelism = parallelism;
+        // The recycled buffers are kept on top of the budget of the running jobs, so only allow them a fraction of it
+        this.arena = new FlowArena(memoryBudget / 4);
+
+        long combinations = (long) widths.size() * heights.size() * points.size() * seedDistributions.size() * randomness.size()
+                * seeds.size() * colorEngines.size() * mixingSpaces.size() * frontierOrders.size() * kernels.size()
+                * layoutTypes.size() * progressiveLevels.size();
+        for (long combination = 0; combination < combinations; combination++) {
+            // Take the values from the last parameter to the first, so the last one varies fastest like in nested loops
+            long[] rest = {combination};
+            int levels = pick(progressiveLevels, rest);
+            CanvasLayoutType layoutType = pick(layoutTypes, rest);
+            NeighborhoodKernel kernel = pick(kernels, rest);
+            FrontierOrder frontierOrder = pick(frontierOrders, rest);
+            MixingSpace mixingSpace = pick(mixingSpaces, rest);
+            ColorEngine colorEngine = pick(colorEngines, rest);
+            long seed = pick(seeds, rest);
+            double r = pick(randomness, rest);
+            SeedDistribution seedDistribution = pick(seedDistributions, rest);
+            int nPoints = pick(points, rest);
+            int height = pick(heights, rest);
+            int width = pick(widths, rest);
+
+            // Skip combinations asking for more starting points than there are pixels, for more levels than the image can be halved,
+            // or for an engine too coarse for the mixing space
+            if (nPoints > (long) width * height || (Math.min(width, height) >> (levels - 1)) == 0 || !mixingSpace.supports(colorEngine)) continue;
+
+            FlowImageBuilder builder = new FlowImageBuilder()
+                    .setImageWidth(width)
+                    .setImageHeight(height)
+                    .setAmountOfPoints(nPoints)
+                    .setSeedDistribution(seedDistribution)
+                    .setRandomness(r)
+                    .setSeed(seed)
+                    .setColorEngine(colorEngine)
+                    .setMixingSpace(mixingSpace)
+                    .setFrontierOrder(frontierOrder)
+                    .setKernel(kernel)
+                    .setCanvasLayout(layoutType)
+                    .setProgressiveLevels(levels)
+                    .setArena(arena);
+            String description = String.format(Locale.ROOT, "%dx%d, %d %s points, randomness %s, seed %d, %s, %s, %s, kernel %s, %s, %d levels",
+                    width, height, nPoints, seedDistribution.getDisplayName(), new DecimalFormat("0.##").format(r).replace(",", "."), seed,
+                    colorEngine.getDisplayName(), mixingSpace.getDisplayName(), frontierOrder.getDisplayName(), kernel.getDisplayName(),
+                    layoutType.getDisplayName(), levels);
+
+            jobs.add(new Job(jobs.size(), builder, description, FlowImage.estimateMemory(width, height, colorEngine, kernel)));
+        }
+    }
+
+    /**
+     * Takes the value of a single parameter out of the number of a combination.
+     *
+     * @param values The values the parameter takes on
+     * @param rest   The part of the number of the combination which hasn't been taken apart yet, which is updated in place
+     * @param <T>    The type of the values
+     * @return The value the parameter takes on in the combination
+     */
+    private static <T> T pick(List<T> values, long[] rest) {
+        T value = values.get((int) (rest[0] % values.size()));
+        rest[0] /= values.size();
+
+        return value;
+    }
+
+    /**
+     * @return The amount of images this sweep renders
+     */
+    int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Renders all images, writes them into a directory, and creates a contact sheet and an HTML index of them.
+     *
+     * @param directory The directory to write the images and contact sheet to
+     * @param index     The HTML file to write the index to
+     * @throws IOException When writing the contact sheet or index fails
+     */
+    void run(File directory, File index) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+
+        pending.addAll(jobs);
+        pending.sort(Comparator.comparingLong((Job job) -> job.memory).reversed());
+
+        System.out.printf("\nSweeping %d images, %d at a time within %s MB\n\n", jobs.size(), parallelism, toMegabytes(memoryBudget));
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            if (!schedule(pool, directory)) {
+                System.out.printf("\nSweep interrupted after %d / %d images, not writing the contact sheet and index\n", finished, jobs.size());
+                return;
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        writeContactSheet(new File(directory, "contact.png"));
+        writeIndex(index, directory);
+
+        System.out.printf("\nSwept %d images in %s s, see %s\n  Buffers: %s\n\n", jobs.size(),
+                new DecimalFormat("0.00").format(elapsed / 1e9).replace(",", "."), index, arena.getStatistics());
+    }
+
+    /**
+     * Starts jobs whenever they fit, until all of them have finished.
+     *
+     * @param pool      The pool to run the jobs on
+     * @param directory The directory to write the images to
+     * @return {@code true} if all jobs finished, {@code false} if interrupted while waiting for them
+     */
+    private synchronized boolean schedule(ForkJoinPool pool, File directory) {
+        while (finished < jobs.size()) {
+            Job next = running < parallelism ? takeFitting() : null;
+
+            if (next != null) {
+                memoryInUse += next.memory;
+                running++;
+                pool.execute(() -> render(next, directory));
+            } else {
+                try {
+                    wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    pool.shutdownNow();
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Takes the largest waiting job which fits in the memory left.
+     *
+     * @return The job to start next, or {@code null} if none fits right now
+     */
+    private Job takeFitting() {
+        for (Iterator<Job> it = pending.iterator(); it.hasNext(); ) {
+            Job job = it.next();
+
+            // An oversized job can never fit, so let it run by itself instead
+            if (memoryInUse + job.memory <= memoryBudget || running == 0) {
+                if (job.memory > memoryBudget) {
+                    System.out.printf("Job %d is estimated at %s MB, exceeding the budget; running it by itself\n",
+                            job.index, toMegabytes(job.memory));
+                }
+
+                it.remove();
+                return job;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Renders a single job, keeping a thumbnail for the contact sheet.
+     *
+     * @param job       The job to render
+     * @param directory The directory to write the image to
+     */
+    private void render(Job job, File directory) {
+        long start = System.nanoTime();
+        FlowImage image = null;
+
+        try {
+            // Bypass generate(), as reporting progress on the console makes no sense with jobs running side by side
+            image = job.builder.build();
+            image.init();
+            image.generateImage();
+
+            ImageIO.write(image, "png", new File(directory, job.getFileName()));
+            job.thumbnail = createThumbnail(image);
+        } catch (IOException | RuntimeException ex) {
+            job.error = ex.toString();
+        } catch (Error ex) {
+            // Running out of memory is exactly what the budget should survive, so record it and let the other jobs go on
+            job.error = ex.toString();
+            if (!(ex instanceof OutOfMemoryError)) throw ex;
+        } finally {
+            if (image != null) image.recycle();
+            job.duration = System.nanoTime() - start;
+            finish(job);
+        }
+    }
+
+    /**
+     * Frees up the memory and thread of a job once it is done, whether it succeeded or not, so the next jobs can start.
+     *
+     * @param job The job that is done
+     */
+    private synchronized void finish(Job job) {
+        memoryInUse -= job.memory;
+        running--;
+        finished++;
+
+        System.out.printf("Finished %d / %d in %s s (%s MB in use by %d jobs): %s%s\n", finished, jobs.size(),
+                new DecimalFormat("0.00").format(job.duration / 1e9).replace(",", "."),
+                toMegabytes(memoryInUse), running, job.description, job.error == null ? "" : " - FAILED: " + job.error);
+
+        notifyAll();
+    }
+
+    /**
+     * @param image The image to scale down
+     * @return The image scaled down to fit within the box of the contact sheet
+     */
+    private static BufferedImage createThumbnail(BufferedImage image) {
+        double scale = Math.min(1, Math.min((double) THUMBNAIL_SIZE / image.getWidth(), (double) THUMBNAIL_SIZE / image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumbnail.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+
+        return thumbnail;
+    }
+
+    /**
+     * Draws all thumbnails in a grid, each with the parameters it was rendered with below it.
+     *
+     * @param file The file to write the contact sheet to
+     * @throws IOException When writing the contact sheet fails
+     */
+    private void writeContactSheet(File file) throws IOException {
+        int columns = (int) Math.ceil(Math.sqrt(jobs.size()));
+        int rows = (jobs.size() + columns - 1) / columns;
+        int cellHeight = THUMBNAIL_SIZE + CAPTION_HEIGHT;
+
+        BufferedImage sheet = new BufferedImage(columns * THUMBNAIL_SIZE, rows * cellHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = sheet.createGraphics();
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(0, 0, sheet.getWidth(), sheet.getHeight());
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 10));
+
+        for (Job job : jobs) {
+            int x = (job.index % columns) * THUMBNAIL_SIZE;
+            int y = (job.index / columns) * cellHeight;
+
+            if (job.thumbnail != null) {
+                g.drawImage(job.thumbnail, x + (THUMBNAIL_SIZE - job.thumbnail.getWidth()) / 2,
+                        y + (THUMBNAIL_SIZE - job.thumbnail.getHeight()) / 2, null);
+            }
+
+            // Split the description over two lines, as it's too long to fit below a thumbnail
+            String[] parts = job.description.split(", ", 3);
+            g.setColor(job.error == null ? Color.WHITE : Color.RED);
+            g.setClip(x, y + THUMBNAIL_SIZE, THUMBNAIL_SIZE - 4, CAPTION_HEIGHT);
+            g.drawString(String.format("#%d %s, %s", job.index, parts[0], parts[1]), x + 4, y + THUMBNAIL_SIZE + 12);
+            g.drawString(parts.length > 2 ? parts[2] : "", x + 4, y + THUMBNAIL_SIZE + 25);
+            g.setClip(null);
+        }
+
+        g.dispose();
+        ImageIO.write(sheet, "png", file);
+    }
+
+    /**
+     * Writes an HTML page linking to all images, along with the parameters and time they took.
+     *
+     * @param index     The file to write the page to
+     * @param directory The directory holding the images
+     * @throws IOException When writing the page fails
+     */
+    private void writeIndex(File index, File directory) throws IOException {
+        String base = directory.getName();
+
+        try (PrintWriter out = new PrintWriter(index, StandardCharsets.UTF_8.name())) {
+            out.println("<!DOCTYPE html>");
+            out.println("<html><head><meta charset=\"utf-8\"><title>FLOW sweep " + base + "</title>");
+            out.println("<style>body{background:#333;color:#eee;font-family:sans-serif}"
+                    + "figure{display:inline-block;width:" + THUMBNAIL_SIZE + "px;margin:6px;vertical-align:top;font-size:11px}"
+                    + "img{max-width:100%}.failed{color:#f66}</style></head><body>");
+            out.println("<h1>FLOW sweep " + base + "</h1>");
+            out.println("<p><a href=\"" + base + "/contact.png\">Contact sheet</a></p>");
+
+            for (Job job : jobs) {
+                String file = base + "/" + job.getFileName();
+                out.print("<figure>");
+                if (job.error == null) out.print("<a href=\"" + file + "\"><img src=\"" + file + "\" loading=\"lazy\"></a>");
+                out.print("<figcaption" + (job.error == null ? "" : " class=\"failed\"") + ">#" + job.index + " " + escape(job.description));
+                out.print(job.error == null
+                        ? String.format(Locale.ROOT, "<br>%.2f s", job.duration / 1e9)
+                        : "<br>" + escape(job.error));
+                out.println("</figcaption></figure>");
+            }
+
+            out.println("</body></html>");
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static long toMegabytes(long bytes) {
+        return bytes >> 20;
+    }
+}
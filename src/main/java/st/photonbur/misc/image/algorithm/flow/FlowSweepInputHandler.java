@@ -0,0 +1,274 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractInputHandler;
+import st.photonbur.misc.image.misc.InputStep;
+
+import java.util.List;
+
+/**
+ * Requests the values every parameter takes on during a sweep, see {@link SweepRange} for the accepted formats.
+ */
+public class FlowSweepInputHandler extends AbstractInputHandler {
+    /**
+     * The answer leaving the amount of images to generate at the same time up to calibration, see {@link FlowTuner}.
+     */
+    private static final String AUTO = "auto";
+
+    // == STEP INIT == //
+    /**
+     * The {@link InputStep} requesting the widths of the images.
+     */
+    private final InputStep<List<Integer>, List<Integer>> widths = new InputStep<>(
+            "Image widths (e.g. 500,800 or 200..1000:5)",
+            input -> input.stream().allMatch(width -> width > 0),
+            SweepRange::parseIntegers,
+            SweepRange::parseIntegers
+    );
+
+    /**
+     * The {@link InputStep} requesting the heights of the images.
+     */
+    private final InputStep<List<Integer>, List<Integer>> heights = new InputStep<>(
+            "Image heights",
+            input -> input.stream().allMatch(height -> height > 0),
+            SweepRange::parseIntegers,
+            SweepRange::parseIntegers
+    );
+
+    /**
+     * The {@link InputStep} requesting the amounts of starting points.
+     */
+    private final InputStep<List<Integer>, List<Integer>> nPoints = new InputStep<>(
+            "Amounts of starting points",
+            input -> input.stream().allMatch(points -> points > 0),
+            SweepRange::parseIntegers,
+            SweepRange::parseIntegers
+    );
+
+    /**
+     * The {@link InputStep} requesting the ways the starting points are scattered over the canvas.
+     */
+    private final InputStep<List<SeedDistribution>, List<SeedDistribution>> seedDistributions = new InputStep<>(
+            "Seed distributions (uniform, jittered, poisson)",
+            input -> input != null,
+            input -> SweepRange.parseOptions(input, SeedDistribution::findByDisplayName),
+            input -> SweepRange.parseOptions(input, SeedDistribution::findByDisplayName)
+    );
+
+    /**
+     * The {@link InputStep} requesting the amounts of randomness.
+     */
+    private final InputStep<List<Double>, List<Double>> randomness = new InputStep<>(
+            "Randomness values (e.g. 0..30:4)",
+            input -> input.stream().allMatch(r -> r >= 0),
+            SweepRange::parseDoubles,
+            SweepRange::parseDoubles
+    );
+
+    /**
+     * The {@link InputStep} requesting the seeds of the randomizer.
+     */
+    private final InputStep<List<Long>, List<Long>> seeds = new InputStep<>(
+            "Seeds",
+            input -> !input.isEmpty(),
+            SweepRange::parseLongs,
+            SweepRange::parseLongs
+    );
+
+    /**
+     * The {@link InputStep} requesting the color engines to use.
+     */
+    private final InputStep<List<ColorEngine>, List<ColorEngine>> colorEngines = new InputStep<>(
+            "Color engines (double, float, fixed, 16-bit, 8-bit)",
+            input -> input != null,
+            input -> SweepRange.parseOptions(input, ColorEngine::findByDisplayName),
+            input -> SweepRange.parseOptions(input, ColorEngine::findByDisplayName)
+    );
+
+    /**
+     * The {@link InputStep} requesting the color spaces colors are mixed in.
+     */
+    private final InputStep<List<MixingSpace>, List<MixingSpace>> mixingSpaces = new InputStep<>(
+            "Mixing spaces (srgb, linear, oklab)",
+            input -> input != null,
+            input -> SweepRange.parseOptions(input, MixingSpace::findByDisplayName),
+            input -> SweepRange.parseOptions(input, MixingSpace::findByDisplayName)
+    );
+
+    /**
+     * The {@link InputStep} requesting the frontier orders to use.
+     */
+    private final InputStep<List<FrontierOrder>, List<FrontierOrder>> frontierOrders = new InputStep<>(
+            "Frontier orders (random, breadth, depth, color)",
+            input -> input != null,
+            input -> SweepRange.parseOptions(input, FrontierOrder::findByDisplayName),
+            input -> SweepRange.parseOptions(input, FrontierOrder::findByDisplayName)
+    );
+
+    /**
+     * The {@link InputStep} requesting the kernels deciding which pixels a pixel is mixed from and which it activates.
+     */
+    private final InputStep<List<NeighborhoodKernel>, List<NeighborhoodKernel>> kernels = new InputStep<>(
+            "Neighborhood kernels (4, 8, gaussian:<radius>, anisotropic:<radius>:<angle>[:<stretch>])",
+            input -> input != null,
+            input -> SweepRange.parseOptions(input, NeighborhoodKernel::parse),
+            input -> SweepRange.parseOptions(input, NeighborhoodKernel::parse)
+    );
+
+    /**
+     * The {@link InputStep} requesting the ways the state of the pixels is laid out in memory.
+     */
+    private final InputStep<List<CanvasLayoutType>, List<CanvasLayoutType>> canvasLayouts = new InputStep<>(
+            "Canvas layouts (linear, morton)",
+            input -> input != null,
+            input -> SweepRange.parseOptions(input, CanvasLayoutType::findByDisplayName),
+            input -> SweepRange.parseOptions(input, CanvasLayoutType::findByDisplayName)
+    );
+
+    /**
+     * The {@link InputStep} requesting the amounts of levels to generate progressively.
+     */
+    private final InputStep<List<Integer>, List<Integer>> progressiveLevels = new InputStep<>(
+            "Progressive levels (1 to disable)",
+            input -> input.stream().allMatch(levels -> levels >= 1),
+            SweepRange::parseIntegers,
+            SweepRange::parseIntegers
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of memory the running jobs may take up together.
+     */
+    private final InputStep<Integer, Long> memoryBudget = new InputStep<>(
+            "Memory budget in MB (0 for 75% of the maximum heap)",
+            input -> input >= 0,
+            Integer::parseInt,
+            input -> Integer.parseInt(input) == 0 ? Runtime.getRuntime().maxMemory() / 4 * 3 : Integer.parseInt(input) * (1L << 20)
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of images to generate at the same time.
+     */
+    private final InputStep<String, String> parallelism = new InputStep<>(
+            "Images to generate at the same time (0 for one per core, auto to calibrate)",
+            input -> input.equalsIgnoreCase(AUTO) || input.matches("\\d+"),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * A final copy of the input steps the user is faced with.
+     * This is done so the array won't be created every time it has to be retrieved by the getter.
+     */
+    private final InputStep[] steps = new InputStep[] {
+            widths, heights, nPoints, seedDistributions, randomness, seeds, colorEngines, mixingSpaces, frontierOrders, kernels, canvasLayouts,
+            progressiveLevels, memoryBudget, parallelism
+    };
+
+    @Override
+    protected InputStep[] getSteps() {
+        return steps;
+    }
+
+    // == PARAM GETTERS == //
+
+    /**
+     * @return The ways the state of the pixels is laid out in memory
+     */
+    List<CanvasLayoutType> getCanvasLayouts() {
+        return canvasLayouts.getResult();
+    }
+
+    /**
+     * @return The color engines to use
+     */
+    List<ColorEngine> getColorEngines() {
+        return colorEngines.getResult();
+    }
+
+    /**
+     * @return The frontier orders to use
+     */
+    List<FrontierOrder> getFrontierOrders() {
+        return frontierOrders.getResult();
+    }
+
+    /**
+     * @return The heights of the images
+     */
+    List<Integer> getHeights() {
+        return heights.getResult();
+    }
+
+    /**
+     * @return The kernels deciding which pixels a pixel is mixed from and which it activates
+     */
+    List<NeighborhoodKernel> getKernels() {
+        return kernels.getResult();
+    }
+
+    /**
+     * @return The amount of bytes the running jobs may take up together
+     */
+    Long getMemoryBudget() {
+        return memoryBudget.getResult();
+    }
+
+    /**
+     * @return The color spaces colors are mixed in
+     */
+    List<MixingSpace> getMixingSpaces() {
+        return mixingSpaces.getResult();
+    }
+
+    /**
+     * @return The amounts of starting points
+     */
+    List<Integer> getNPoints() {
+        return nPoints.getResult();
+    }
+
+    /**
+     * @return The amounts of levels to generate progressively
+     */
+    List<Integer> getProgressiveLevels() {
+        return progressiveLevels.getResult();
+    }
+
+    /**
+     * @return The amount of images to generate at the same time, or {@code null} if it should be calibrated
+     */
+    Integer getParallelism() {
+        if (parallelism.getResult().equalsIgnoreCase(AUTO)) return null;
+
+        int images = Integer.parseInt(parallelism.getResult());
+        return images == 0 ? Runtime.getRuntime().availableProcessors() : images;
+    }
+
+    /**
+     * @return The amounts of randomness
+     */
+    List<Double> getRandomness() {
+        return randomness.getResult();
+    }
+
+    /**
+     * @return The ways the starting points are scattered over the canvas
+     */
+    List<SeedDistribution> getSeedDistributions() {
+        return seedDistributions.getResult();
+    }
+
+    /**
+     * @return The seeds of the randomizer
+     */
+    List<Long> getSeeds() {
+        return seeds.getResult();
+    }
+
+    /**
+     * @return The widths of the images
+     */
+    List<Integer> getWidths() {
+        return widths.getResult();
+    }
+}
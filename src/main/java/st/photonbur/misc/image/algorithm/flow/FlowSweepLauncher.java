@@ -0,0 +1,66 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.misc.Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+
+/**
+ * Renders a FLOW image for every combination of parameters given, see {@link FlowSweep}.
+ */
+public class FlowSweepLauncher extends AbstractLauncher<FlowSweepInputHandler> {
+    /**
+     * The default title to give to the preview window.
+     */
+    private static final String DEFAULT_PREVIEW_TITLE = "FLOW Sweep";
+
+    public FlowSweepLauncher(FlowSweepInputHandler params) {
+        super(params);
+    }
+
+    @Override
+    protected void exportImage() throws IOException {
+        // Every sweep gets its own directory of images, next to an index page of the same name
+        int index = Utils.findLastIndexInDirectory("out/sweep/", "html") + 1;
+
+        // Calibrate on the largest image of the sweep, as those dominate how long it takes
+        Integer parallelism = getParams().getParallelism();
+        if (parallelism == null) {
+            parallelism = new FlowTuner(new File(FlowTuner.CACHE_FILE)).tuneParallelism(
+                    Collections.max(getParams().getWidths()), Collections.max(getParams().getHeights()),
+                    Collections.max(getParams().getNPoints()), getParams().getRandomness().get(0),
+                    getParams().getColorEngines().get(0), getParams().getFrontierOrders().get(0),
+                    Collections.max(getParams().getKernels(), Comparator.comparingInt(NeighborhoodKernel::getRadius)), getParams().getMemoryBudget());
+        }
+
+        new FlowSweep(getParams().getWidths(), getParams().getHeights(), getParams().getNPoints(), getParams().getSeedDistributions(),
+                getParams().getRandomness(), getParams().getSeeds(), getParams().getColorEngines(), getParams().getMixingSpaces(),
+                getParams().getFrontierOrders(), getParams().getKernels(), getParams().getCanvasLayouts(), getParams().getProgressiveLevels(),
+                getParams().getMemoryBudget(), parallelism)
+                .run(new File(String.format("out/sweep/%05d", index)), new File(String.format("out/sweep/%05d.html", index)));
+    }
+
+    @Override
+    public String getDefaultPreviewTitle() {
+        return DEFAULT_PREVIEW_TITLE;
+    }
+
+    @Override
+    public void setup() {
+        // Generate all parameters needed to run the algorithm
+        getParams().generate();
+
+        // Start generating the images on another thread
+        new Thread(() -> {
+            try {
+                exportImage();
+            } catch (IOException ex) {
+                System.out.println("Error while sweeping flow images");
+                ex.printStackTrace();
+            }
+        }).start();
+    }
+}
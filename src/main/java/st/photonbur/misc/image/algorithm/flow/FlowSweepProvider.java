@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code flow-sweep} type: renders FLOW images for every combination of a set of parameters.
+ */
+public class FlowSweepProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "flow-sweep";
+    }
+
+    @Override
+    public void launch() {
+        new FlowSweepLauncher(new FlowSweepInputHandler()).setup();
+    }
+}
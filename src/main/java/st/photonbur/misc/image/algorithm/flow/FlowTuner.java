@@ -0,0 +1,435 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Picks the fastest configuration for a FLOW job on this machine, rather than leaving it to guesswork.
+ * Every candidate is timed on a probe: the same job scaled down to around {@link #PROBE_PIXELS} pixels, keeping the density of its starting points.
+ * All candidates render the same probe, and are measured round-robin a few times after a warm-up, keeping the fastest run of each.
+ * <p>
+ * The outcome is cached per machine and per class of job, so later runs of similar jobs skip calibrating.
+ * Jobs fall in the same class when their sizes and densities are within the same power of two and their other parameters match.
+ * The cache is a properties file, which can be deleted to calibrate again, for instance after upgrading the machine in place.
+ * <p>
+ * Probes run in the same JVM as the job itself, so they also warm up the code the job is about to run.
+ * Candidates which are within {@link #TOLERANCE} of the fastest are considered as fast, preferring the first of them,
+ * so noise doesn't make the choice flip between runs.
+ */
+class FlowTuner {
+    /**
+     * The file holding the outcome of previous calibrations.
+     */
+    static final String CACHE_FILE = "out/cache/flow-tuning.properties";
+    /**
+     * The amount of pixels probes are scaled down to.
+     */
+    private static final long PROBE_PIXELS = 1 << 18;
+    /**
+     * The amount of times every candidate is timed.
+     */
+    private static final int PROBE_ROUNDS = 2;
+    /**
+     * The amount of probes every thread renders when timing parallelism.
+     */
+    private static final int PROBES_PER_THREAD = 2;
+    /**
+     * The fraction by which a candidate may be slower than the fastest one and still be considered as fast.
+     */
+    private static final double TOLERANCE = 0.03;
+    /**
+     * The seed all probes are rendered with, so every candidate renders the same image.
+     */
+    private static final long PROBE_SEED = 0;
+
+    /**
+     * A way of rendering a single image, which only influences how fast it is rendered, or how it looks in ways the user left up to this tuner.
+     */
+    static class Configuration {
+        private final ColorEngine colorEngine;
+        private final FrontierOrder frontierOrder;
+        private final CanvasLayoutType layoutType;
+
+        Configuration(ColorEngine colorEngine, FrontierOrder frontierOrder, CanvasLayoutType layoutType) {
+            this.colorEngine = colorEngine;
+            this.frontierOrder = frontierOrder;
+            this.layoutType = layoutType;
+        }
+
+        /**
+         * Reads a configuration as written by {@link #toString()}.
+         *
+         * @param description The description of the configuration
+         * @return The configuration, or {@code null} if the description isn't valid
+         */
+        static Configuration parse(String description) {
+            String[] parts = description.split("/");
+            if (parts.length != 3) return null;
+
+            ColorEngine colorEngine = ColorEngine.findByDisplayName(parts[0]);
+            FrontierOrder frontierOrder = FrontierOrder.findByDisplayName(parts[1]);
+            CanvasLayoutType layoutType = CanvasLayoutType.findByDisplayName(parts[2]);
+            if (colorEngine == null || frontierOrder == null || layoutType == null) return null;
+
+            return new Configuration(colorEngine, frontierOrder, layoutType);
+        }
+
+        ColorEngine getColorEngine() {
+            return colorEngine;
+        }
+
+        FrontierOrder getFrontierOrder() {
+            return frontierOrder;
+        }
+
+        CanvasLayoutType getLayoutType() {
+            return layoutType;
+        }
+
+        @Override
+        public String toString() {
+            return colorEngine.getDisplayName() + "/" + frontierOrder.getDisplayName() + "/" + layoutType.getDisplayName();
+        }
+    }
+
+    /**
+     * The file holding the outcome of previous calibrations.
+     */
+    private final File cacheFile;
+    /**
+     * Describes the machine calibrations are done on, as far as it influences which configuration is fastest.
+     */
+    private final String machine;
+
+    /**
+     * @param cacheFile The file holding the outcome of previous calibrations
+     */
+    FlowTuner(File cacheFile) {
+        this.cacheFile = cacheFile;
+        this.machine = describeMachine();
+    }
+
+    /**
+     * Picks the fastest way of rendering an image among all combinations of the given candidates.
+     * Parameters with a single candidate are simply kept as they are.
+     *
+     * @param width            The width of the image
+     * @param height           The height of the image
+     * @param nPoints          The amount of points to start generating with
+     * @param seedDistribution The way the starting points are scattered over the canvas
+     * @param randomness       The amount of randomness to apply to each generated pixel
+     * @param mixingSpace      The color space colors are mixed in
+     * @param kernel           The kernel deciding which pixels a pixel is mixed from and which it activates
+     * @param colorEngines     The color engines to choose from
+     * @param frontierOrders   The frontier orders to choose from
+     * @param layoutTypes      The canvas layouts to choose from
+     * @return The fastest configuration
+     */
+    Configuration tuneImage(int width, int height, int nPoints, SeedDistribution seedDistribution, double randomness, MixingSpace mixingSpace,
+                            NeighborhoodKernel kernel, List<ColorEngine> colorEngines, List<FrontierOrder> frontierOrders, List<CanvasLayoutType> layoutTypes) {
+        List<Configuration> candidates = new ArrayList<>();
+        for (ColorEngine colorEngine : colorEngines)
+            for (FrontierOrder frontierOrder : frontierOrders)
+                for (CanvasLayoutType layoutType : layoutTypes)
+                    // Engines too coarse for the mixing space aren't an option, however fast they are
+                    if (mixingSpace.supports(colorEngine)) candidates.add(new Configuration(colorEngine, frontierOrder, layoutType));
+        if (candidates.size() == 1) return candidates.get(0);
+
+        String engines = colorEngines.stream().map(ColorEngine::getDisplayName).collect(Collectors.joining(","));
+        String orders = frontierOrders.stream().map(FrontierOrder::getDisplayName).collect(Collectors.joining(","));
+        String layouts = layoutTypes.stream().map(CanvasLayoutType::getDisplayName).collect(Collectors.joining(","));
+        String key = String.format(Locale.ROOT, "image/%s/%s/%s/%s/%s/randomness=2^%d/engine=%s/order=%s/layout=%s",
+                describeSize(width, height), describeDensity(width, height, nPoints), seedDistribution.getDisplayName(), mixingSpace.getDisplayName(),
+                kernel.getDisplayName(), Math.round(Math.log(randomness) / Math.log(2)), engines, orders, layouts);
+
+        Properties cache = loadCache();
+        Configuration cached = Configuration.parse(cache.getProperty(machine + "|" + key, ""));
+        if (cached != null) {
+            printCached(cache, key, cached.toString());
+            return cached;
+        }
+
+        // Scale the job down, keeping its aspect ratio and the density of its starting points
+        double scale = Math.min(1, Math.sqrt(PROBE_PIXELS / ((double) width * height)));
+        int probeWidth = Math.max(1, (int) Math.round(width * scale));
+        int probeHeight = Math.max(1, (int) Math.round(height * scale));
+        int probePoints = (int) Math.max(1, Math.min((long) probeWidth * probeHeight, Math.round(nPoints * scale * scale)));
+
+        System.out.printf("\nCalibrating %d configurations (engine/order/layout) on a %dx%d probe with %d starting points\n",
+                candidates.size(), probeWidth, probeHeight, probePoints);
+
+        Map<String, Long> timings = new LinkedHashMap<>();
+        for (int round = -1; round < PROBE_ROUNDS; round++) {
+            for (Configuration candidate : candidates) {
+                FlowImage probe = new FlowImageBuilder()
+                        .setImageWidth(probeWidth)
+                        .setImageHeight(probeHeight)
+                        .setAmountOfPoints(probePoints)
+                        .setSeedDistribution(seedDistribution)
+                        .setRandomness(randomness)
+                        .setSeed(PROBE_SEED)
+                        .setColorEngine(candidate.getColorEngine())
+                        .setMixingSpace(mixingSpace)
+                        .setFrontierOrder(candidate.getFrontierOrder())
+                        .setKernel(kernel)
+                        .setCanvasLayout(candidate.getLayoutType())
+                        .setQuiet(true)
+                        .build();
+
+                long start = System.nanoTime();
+                probe.init();
+                probe.generateImage();
+                long elapsed = System.nanoTime() - start;
+
+                // The first round only warms up, as the code of every candidate starts out interpreted
+                if (round >= 0) timings.merge(candidate.toString(), elapsed, Math::min);
+            }
+        }
+
+        String choice = pickFastest(timings);
+        store(cache, key, choice, timings);
+        printTimings(timings, choice, "ms");
+        return Configuration.parse(choice);
+    }
+
+    /**
+     * Picks the amount of images to render at the same time which gets through the most images in the least time.
+     * Every candidate amount of threads renders a few probes each, side by side, going up in powers of two to one per core.
+     *
+     * @param width        The width of the largest image
+     * @param height       The height of the largest image
+     * @param nPoints      The amount of points to start generating the largest image with
+     * @param randomness   The amount of randomness to apply to each generated pixel
+     * @param colorEngine  The color engine to render with
+     * @param order        The frontier order to render with
+     * @param kernel       The kernel to render with
+     * @param memoryBudget The maximum amount of bytes the images rendered at the same time may take up together
+     * @return The amount of images to render at the same time
+     */
+    int tuneParallelism(int width, int height, int nPoints, double randomness, ColorEngine colorEngine, FrontierOrder order, NeighborhoodKernel kernel,
+                         long memoryBudget) {
+        double scale = Math.min(1, Math.sqrt(PROBE_PIXELS / ((double) width * height)));
+        int probeWidth = Math.max(1, (int) Math.round(width * scale));
+        int probeHeight = Math.max(1, (int) Math.round(height * scale));
+        int probePoints = (int) Math.max(1, Math.min((long) probeWidth * probeHeight, Math.round(nPoints * scale * scale)));
+
+        // Rendering more images at the same time than fit in memory would only measure waiting on each other
+        int cores = Runtime.getRuntime().availableProcessors();
+        long fitting = Math.max(1, memoryBudget / FlowImage.estimateMemory(width, height, colorEngine, kernel));
+        List<Integer> candidates = new ArrayList<>();
+        for (int threads = 1; threads < cores && threads <= fitting; threads *= 2) candidates.add(threads);
+        if (cores <= fitting) candidates.add(cores);
+        if (candidates.size() == 1) return candidates.get(0);
+
+        String key = String.format(Locale.ROOT, "sweep/%s/%s/randomness=2^%d/engine=%s/order=%s/kernel=%s/fitting=%d",
+                describeSize(width, height), describeDensity(width, height, nPoints), Math.round(Math.log(randomness) / Math.log(2)),
+                colorEngine.getDisplayName(), order.getDisplayName(), kernel.getDisplayName(), candidates.get(candidates.size() - 1));
+
+        Properties cache = loadCache();
+        String cached = cache.getProperty(machine + "|" + key);
+        if (cached != null && cached.matches("\\d+")) {
+            printCached(cache, key, cached);
+            return Integer.parseInt(cached);
+        }
+
+        System.out.printf("\nCalibrating %d amounts of images at the same time on %dx%d probes with %d starting points\n",
+                candidates.size(), probeWidth, probeHeight, probePoints);
+
+        FlowImageBuilder builder = new FlowImageBuilder()
+                .setImageWidth(probeWidth)
+                .setImageHeight(probeHeight)
+                .setAmountOfPoints(probePoints)
+                .setRandomness(randomness)
+                .setSeed(PROBE_SEED)
+                .setColorEngine(colorEngine)
+                .setFrontierOrder(order)
+                .setKernel(kernel)
+                .setQuiet(true);
+
+        // Time the throughput rather than single images, counting nanoseconds per image so the fastest is still the lowest
+        Map<String, Long> timings = new LinkedHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(candidates.get(candidates.size() - 1), runnable -> {
+            Thread thread = new Thread(runnable, "FLOW calibration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int round = -1; round < PROBE_ROUNDS; round++) {
+                for (int threads : candidates) {
+                    List<Future<?>> probes = new ArrayList<>();
+
+                    long start = System.nanoTime();
+                    for (int i = 0; i < threads; i++) {
+                        probes.add(pool.submit(() -> {
+                            for (int j = 0; j < PROBES_PER_THREAD; j++) {
+                                FlowImage probe = builder.build();
+                                probe.init();
+                                probe.generateImage();
+                            }
+                        }));
+                    }
+                    for (Future<?> probe : probes) probe.get();
+                    long elapsed = (System.nanoTime() - start) / (threads * PROBES_PER_THREAD);
+
+                    if (round >= 0) timings.merge(String.valueOf(threads), elapsed, Math::min);
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return cores;
+        } catch (ExecutionException ex) {
+            System.out.println("Calibration failed, generating one image per core: " + ex.getCause());
+            return cores;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        String choice = pickFastest(timings);
+        store(cache, key, choice, timings);
+        printTimings(timings, choice, "ms per image");
+        return Integer.parseInt(choice);
+    }
+
+    /**
+     * @param timings The time taken by every candidate, in the order they should be preferred in
+     * @return The first candidate that is within the tolerance of the fastest one
+     */
+    private static String pickFastest(Map<String, Long> timings) {
+        long fastest = timings.values().stream().min(Long::compare).orElse(0L);
+
+        for (Map.Entry<String, Long> timing : timings.entrySet()) {
+            if (timing.getValue() <= fastest * (1 + TOLERANCE)) return timing.getKey();
+        }
+
+        return null;
+    }
+
+    /**
+     * Prints how long every candidate took, marking the one picked.
+     *
+     * @param timings The time taken by every candidate in nanoseconds
+     * @param choice  The candidate that was picked
+     * @param unit    The unit the timings are printed in
+     */
+    private void printTimings(Map<String, Long> timings, String choice, String unit) {
+        DecimalFormat format = new DecimalFormat("0.0");
+        long slowest = timings.values().stream().max(Long::compare).orElse(0L);
+
+        for (Map.Entry<String, Long> timing : timings.entrySet()) {
+            System.out.printf("  %s %-24s %10s %s\n", timing.getKey().equals(choice) ? "*" : " ", timing.getKey(),
+                    format.format(timing.getValue() / 1e6).replace(",", "."), unit);
+        }
+        System.out.printf("Picked %s, %s%% faster than the slowest; cached in %s\n\n", choice,
+                format.format(100 - timings.get(choice) * 100d / slowest).replace(",", "."), cacheFile);
+    }
+
+    /**
+     * Prints the configuration picked by an earlier calibration, along with the alternatives it was measured against.
+     *
+     * @param cache  The outcome of previous calibrations
+     * @param key    The class of the job
+     * @param choice The configuration that was picked
+     */
+    private void printCached(Properties cache, String key, String choice) {
+        System.out.printf("\nUsing %s, as calibrated on %s for this machine and kind of job (delete %s to calibrate again)\n",
+                choice, cache.getProperty(machine + "|" + key + ".date", "an earlier run"), cacheFile);
+        System.out.printf("  Measured: %s\n\n", cache.getProperty(machine + "|" + key + ".measured", "unknown"));
+    }
+
+    /**
+     * @return The outcome of previous calibrations, which is empty if there are none or they could not be read
+     */
+    private Properties loadCache() {
+        Properties cache = new Properties();
+        if (!cacheFile.isFile()) return cache;
+
+        try (InputStream in = Files.newInputStream(cacheFile.toPath())) {
+            cache.load(in);
+        } catch (IOException | IllegalArgumentException ex) {
+            System.out.println("Could not read " + cacheFile + ", calibrating again: " + ex);
+        }
+
+        return cache;
+    }
+
+    /**
+     * Adds the outcome of a calibration to the cache, along with the timings of all candidates.
+     * Failing to do so only means calibrating again next time, so it is reported rather than thrown.
+     *
+     * @param cache   The outcome of previous calibrations
+     * @param key     The class of the job
+     * @param choice  The candidate that was picked
+     * @param timings The time taken by every candidate in nanoseconds
+     */
+    private void store(Properties cache, String key, String choice, Map<String, Long> timings) {
+        StringBuilder measured = new StringBuilder();
+        for (Map.Entry<String, Long> timing : timings.entrySet()) {
+            if (measured.length() > 0) measured.append(", ");
+            measured.append(timing.getKey()).append(String.format(Locale.ROOT, " %.1f ms", timing.getValue() / 1e6));
+        }
+
+        cache.setProperty(machine + "|" + key, choice);
+        cache.setProperty(machine + "|" + key + ".measured", measured.toString());
+        cache.setProperty(machine + "|" + key + ".date", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
+
+        //noinspection ResultOfMethodCallIgnored
+        cacheFile.getAbsoluteFile().getParentFile().mkdirs();
+        try (OutputStream out = Files.newOutputStream(cacheFile.toPath())) {
+            cache.store(out, "FLOW calibrations, by machine and kind of job");
+        } catch (IOException ex) {
+            System.out.println("Could not cache the calibration in " + cacheFile + ": " + ex);
+        }
+    }
+
+    /**
+     * @return The host name of this machine, along with everything about it that influences which configuration is fastest
+     */
+    private static String describeMachine() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException ex) {
+            host = "unknown";
+        }
+
+        return String.format(Locale.ROOT, "%s/%s/%d cores/%d GB/java %s", host, System.getProperty("os.arch"),
+                Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() >> 30, System.getProperty("java.specification.version"));
+    }
+
+    /**
+     * @param width  The width of the image
+     * @param height The height of the image
+     * @return The power of two the amount of pixels rounds down to
+     */
+    private static String describeSize(int width, int height) {
+        return "pixels=2^" + (63 - Long.numberOfLeadingZeros((long) width * height));
+    }
+
+    /**
+     * @param width   The width of the image
+     * @param height  The height of the image
+     * @param nPoints The amount of starting points
+     * @return The power of two the amount of pixels per starting point rounds down to
+     */
+    private static String describeDensity(int width, int height, int nPoints) {
+        return "spacing=2^" + (63 - Long.numberOfLeadingZeros(Math.max(1, (long) width * height / nPoints)));
+    }
+}
@@ -0,0 +1,92 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.util.Random;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Enum specifying the orders in which a {@link FlowImage} can visit the pixels on its frontier.
+ */
+enum FrontierOrder {
+    /**
+     * Picks a uniformly random pixel, see {@link RandomFrontier}.
+     */
+    RANDOM("random") {
+        @Override
+        FrontierStrategy createFrontier(int initialCapacity, Random r, IntUnaryOperator priority, FlowArena arena) {
+            return new RandomFrontier(initialCapacity, r, arena);
+        }
+    },
+    /**
+     * Picks the oldest pixel, growing breadth-first, see {@link FifoFrontier}.
+     */
+    BREADTH_FIRST("breadth") {
+        @Override
+        FrontierStrategy createFrontier(int initialCapacity, Random r, IntUnaryOperator priority, FlowArena arena) {
+            return new FifoFrontier(initialCapacity, arena);
+        }
+    },
+    /**
+     * Picks the newest pixel, growing depth-first, see {@link LifoFrontier}.
+     */
+    DEPTH_FIRST("depth") {
+        @Override
+        FrontierStrategy createFrontier(int initialCapacity, Random r, IntUnaryOperator priority, FlowArena arena) {
+            return new LifoFrontier(initialCapacity, arena);
+        }
+    },
+    /**
+     * Picks the pixel whose color is closest to the color of the first seed, see {@link BucketFrontier}.
+     * The distance is the sum of the absolute differences of all channels, ranging from 0 to {@link #MAX_COLOR_DISTANCE}.
+     */
+    COLOR_DISTANCE("color") {
+        @Override
+        FrontierStrategy createFrontier(int initialCapacity, Random r, IntUnaryOperator priority, FlowArena arena) {
+            return new BucketFrontier(MAX_COLOR_DISTANCE, priority, r, arena);
+        }
+    };
+
+    /**
+     * The largest possible distance between two colors, as used by {@link #COLOR_DISTANCE}.
+     */
+    static final int MAX_COLOR_DISTANCE = 3 * 255;
+
+    /**
+     * The display name corresponding to the enum value.
+     */
+    private final String displayName;
+    FrontierOrder(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Creates a frontier visiting the pixels in this order.
+     *
+     * @param initialCapacity The amount of pixels to reserve space for up front
+     * @param r               The randomizer to use
+     * @param priority        The function determining the priority of a pixel, only used by prioritized orders
+     * @param arena           The arena to take the arrays of the frontier from, or {@code null} to allocate them
+     * @return The newly created frontier
+     */
+    abstract FrontierStrategy createFrontier(int initialCapacity, Random r, IntUnaryOperator priority, FlowArena arena);
+
+    /**
+     * Looks up the order belonging to a display name.
+     *
+     * @param displayName The display name to look for, ignoring case
+     * @return The order with the given display name, or {@code null} if there is none
+     */
+    static FrontierOrder findByDisplayName(String displayName) {
+        for (FrontierOrder order : values()) {
+            if (order.displayName.equalsIgnoreCase(displayName)) return order;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The display name corresponding to this enum value.
+     */
+    String getDisplayName() {
+        return displayName;
+    }
+}
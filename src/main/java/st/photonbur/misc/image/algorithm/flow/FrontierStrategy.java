@@ -0,0 +1,79 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+/**
+ * Holds the pixels that are scheduled to be visited, and decides in which order they are visited.
+ * Pixels are addressed by their index on the canvas; keeping track of which pixels are already present is left to the caller.
+ * <p>
+ * Frontiers can grow as large as the canvas, so their arrays are taken from and handed back to a {@link FlowArena} where one is given.
+ */
+interface FrontierStrategy {
+    /**
+     * Takes an int array from an arena, or allocates one without it.
+     *
+     * @param arena     The arena to take the array from, or {@code null} to allocate it
+     * @param minLength The least amount of ints the array has to hold
+     * @return The array, which may be longer than asked for
+     */
+    static int[] allocate(FlowArena arena, int minLength) {
+        return arena == null ? new int[minLength] : arena.takeInts(minLength);
+    }
+
+    /**
+     * Replaces an int array by a longer one holding the same leading values, handing the old one back to an arena.
+     *
+     * @param arena     The arena to take the array from and hand the old one back to, or {@code null} to allocate it
+     * @param items     The array to replace
+     * @param count     The amount of leading values to copy over
+     * @param minLength The least amount of ints the new array has to hold
+     * @return The new array
+     */
+    static int[] grow(FlowArena arena, int[] items, int count, int minLength) {
+        int[] grown = allocate(arena, minLength);
+        System.arraycopy(items, 0, grown, 0, count);
+        if (arena != null) arena.recycleInts(items);
+
+        return grown;
+    }
+
+    /**
+     * Schedules a pixel to be visited.
+     *
+     * @param index The index of the pixel
+     */
+    void add(int index);
+
+    /**
+     * Schedules many pixels to be visited at once, in the order given.
+     * Frontiers holding their pixels in a plain array override this to copy them over in bulk.
+     *
+     * @param indices The indices of the pixels
+     * @param count   The amount of pixels to take from the start of {@code indices}
+     */
+    default void addAll(int[] indices, int count) {
+        for (int i = 0; i < count; i++) add(indices[i]);
+    }
+
+    /**
+     * @return {@code true} if there are no pixels left to visit, {@code false} otherwise
+     */
+    boolean isEmpty();
+
+    /**
+     * Removes the pixel to visit next from this frontier.
+     * Should only be called when the frontier isn't empty.
+     *
+     * @return The index of the pixel to visit next
+     */
+    int poll();
+
+    /**
+     * @return The amount of pixels scheduled to be visited
+     */
+    int size();
+
+    /**
+     * Hands the arrays backing this frontier back to the arena it took them from, if any.
+     * The frontier can't be used anymore afterwards.
+     */
+    void recycle();
+}
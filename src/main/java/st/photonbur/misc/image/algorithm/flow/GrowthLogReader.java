@@ -0,0 +1,141 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the pixel indices back out of a log written by {@link GrowthRecorder}.
+ * Only a small buffer of the log is held in memory at any time, so logs of any size can be read.
+ */
+class GrowthLogReader implements Closeable {
+    /**
+     * The channel the log is read through.
+     */
+    private final FileChannel channel;
+    /**
+     * The buffer holding the part of the log currently being decoded.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+    /**
+     * The width of the recorded image.
+     */
+    private final int width;
+    /**
+     * The height of the recorded image.
+     */
+    private final int height;
+    /**
+     * The amount of pixels stored in the log.
+     */
+    private final long count;
+
+    /**
+     * The index that was read last.
+     */
+    private int previousIndex = 0;
+    /**
+     * The amount of indices read so far.
+     */
+    private long readCount = 0;
+
+    GrowthLogReader(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        // Start out with an empty buffer, so the first fill reads from the very start of the file
+        buffer.limit(0);
+        fill();
+        if (buffer.remaining() < GrowthRecorder.HEADER_SIZE || buffer.getInt() != GrowthRecorder.MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a growth log");
+        }
+        if (buffer.getInt() != GrowthRecorder.VERSION) {
+            channel.close();
+            throw new IOException(file + " was written using an unsupported version");
+        }
+
+        this.width = buffer.getInt();
+        this.height = buffer.getInt();
+        this.count = buffer.getLong();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads the next chunk of the log into the buffer, keeping whatever was left unread.
+     *
+     * @throws IOException When reading from the file fails
+     */
+    private void fill() throws IOException {
+        buffer.compact();
+        //noinspection StatementWithEmptyBody
+        while (channel.read(buffer) > 0 && buffer.hasRemaining()) ;
+        buffer.flip();
+    }
+
+    /**
+     * @return The amount of pixels stored in the log
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The height of the recorded image
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The width of the recorded image
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return {@code true} if there are indices left to read, {@code false} otherwise
+     */
+    boolean hasNext() {
+        return readCount < count;
+    }
+
+    /**
+     * Reads the next visited pixel from the log.
+     *
+     * @return The row-major index ({@code y * width + x}) of the next visited pixel
+     * @throws IOException When reading from the file fails, or the log ended prematurely
+     */
+    int next() throws IOException {
+        int value = 0;
+        int shift = 0;
+
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                fill();
+                if (!buffer.hasRemaining()) throw new IOException("Growth log ended after " + readCount + " of " + count + " pixels");
+            }
+
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) break;
+            shift += 7;
+        }
+
+        // Undo the zig-zag encoding and apply the delta
+        int delta = (value >>> 1) ^ -(value & 1);
+        previousIndex += delta;
+        readCount++;
+
+        return previousIndex;
+    }
+}
@@ -0,0 +1,150 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the order in which pixels get visited while a {@link FlowImage} is being generated.
+ * <p>
+ * Pixels are identified by their row-major index ({@code y * width + x}).
+ * Every index is stored as the difference to the previously recorded index, zig-zag encoded so small negative steps stay small,
+ * and written as a variable length integer (7 bits per byte, highest bit marking that more bytes follow).
+ * Neighboring pixels therefore mostly take up a single byte, instead of the 4 to 8 bytes a plain index would take.
+ * <p>
+ * Layout of the file:
+ * <pre>
+ *   int  magic       ({@link #MAGIC})
+ *   int  version     ({@link #VERSION})
+ *   int  width
+ *   int  height
+ *   long pixel count (written when the recorder is closed)
+ *   ...  varint encoded deltas
+ * </pre>
+ */
+class GrowthRecorder implements Closeable {
+    /**
+     * The value every growth log starts with, reading "FLOG".
+     */
+    static final int MAGIC = 0x464C4F47;
+    /**
+     * The version of the file format written by this class.
+     */
+    static final int VERSION = 1;
+    /**
+     * The size of the header preceding the recorded deltas, in bytes.
+     */
+    static final int HEADER_SIZE = 4 * 4 + 8;
+    /**
+     * The position of the pixel count within the header.
+     */
+    private static final int COUNT_POSITION = 4 * 4;
+
+    /**
+     * The maximum amount of bytes a single varint can take up.
+     */
+    private static final int MAX_VARINT_SIZE = 5;
+
+    /**
+     * The channel the log is written through.
+     */
+    private final FileChannel channel;
+    /**
+     * The buffer collecting encoded deltas before they are handed to the channel.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+    /**
+     * The width of the image being recorded.
+     */
+    private final int width;
+    /**
+     * The index that was recorded last.
+     */
+    private int previousIndex = 0;
+    /**
+     * The amount of pixels recorded so far.
+     */
+    private long recordedCount = 0;
+
+    GrowthRecorder(File file, int width, int height) throws IOException {
+        this.width = width;
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putLong(0);
+    }
+
+    /**
+     * Finishes the log, writing all buffered deltas and filling in the amount of recorded pixels.
+     *
+     * @throws IOException When writing to the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+
+            ByteBuffer count = ByteBuffer.allocate(8);
+            count.putLong(recordedCount).flip();
+            channel.write(count, COUNT_POSITION);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes all buffered bytes to the channel.
+     *
+     * @throws IOException When writing to the file fails
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * @return The amount of pixels recorded so far
+     */
+    long getRecordedCount() {
+        return recordedCount;
+    }
+
+    /**
+     * Records a pixel as being visited.
+     *
+     * @param x The x coordinate of the visited pixel
+     * @param y The y coordinate of the visited pixel
+     */
+    void record(int x, int y) {
+        int index = y * width + x;
+        int delta = index - previousIndex;
+        previousIndex = index;
+
+        // Zig-zag encode the delta, moving the sign into the lowest bit
+        int value = (delta << 1) ^ (delta >> 31);
+
+        // Write 7 bits at a time, marking every byte but the last one with its highest bit
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+
+        recordedCount++;
+
+        // Make sure the next delta will always fit
+        if (buffer.remaining() < MAX_VARINT_SIZE) {
+            try {
+                flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
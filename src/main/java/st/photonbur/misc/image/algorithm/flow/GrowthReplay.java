@@ -0,0 +1,288 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Turns a growth log written by {@link GrowthRecorder} into a time-lapse of the image being generated.
+ * <p>
+ * The log is streamed, and every frame is drawn on top of the previous one in a single working buffer.
+ * Only the pixels visited since the previous frame are touched, so no frame ever has to be copied or redrawn in full.
+ * The colors of the pixels are taken from the finished image the log belongs to.
+ */
+class GrowthReplay {
+    /**
+     * The formats a time-lapse can be exported in.
+     */
+    enum OutputFormat {
+        /**
+         * A single animated GIF.
+         */
+        GIF("gif"),
+        /**
+         * A directory containing every frame as a separate PNG.
+         */
+        PNG("png"),
+        /**
+         * A single file holding every frame as raw big-endian ARGB integers, one frame after the other.
+         */
+        RAW("argb");
+
+        /**
+         * The extension of the produced file.
+         */
+        private final String extension;
+
+        OutputFormat(String extension) {
+            this.extension = extension;
+        }
+
+        /**
+         * @return The extension of the produced file
+         */
+        String getExtension() {
+            return extension;
+        }
+    }
+
+    /**
+     * The log to replay.
+     */
+    private final File growthLog;
+    /**
+     * The finished image to take the colors of the pixels from.
+     */
+    private final File colorSource;
+    /**
+     * The amount of frames to show per second.
+     */
+    private final int frameRate;
+    /**
+     * The amount of seconds the time-lapse should last.
+     */
+    private final double duration;
+
+    GrowthReplay(File growthLog, File colorSource, int frameRate, double duration) {
+        this.growthLog = growthLog;
+        this.colorSource = colorSource;
+        this.frameRate = frameRate;
+        this.duration = duration;
+    }
+
+    /**
+     * Renders the time-lapse and writes it to file.
+     *
+     * @param format The format to write the time-lapse in
+     * @param target The file, or directory in case of {@link OutputFormat#PNG}, to write to
+     * @throws IOException When reading the log or writing the time-lapse fails
+     */
+    void export(OutputFormat format, File target) throws IOException {
+        BufferedImage source = ImageIO.read(colorSource);
+        if (source == null) throw new IOException("Could not read " + colorSource + " as an image");
+
+        try (GrowthLogReader log = new GrowthLogReader(growthLog)) {
+            int width = log.getWidth();
+            int height = log.getHeight();
+
+            if (source.getWidth() != width || source.getHeight() != height) {
+                throw new IOException(String.format("Image dimensions %dx%d don't match the logged dimensions %dx%d",
+                        source.getWidth(), source.getHeight(), width, height));
+            }
+
+            int[] colors = source.getRGB(0, 0, width, height, null, 0, width);
+
+            // Draw directly into the backing array of the frame
+            BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            int[] canvas = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+
+            int frameCount = (int) Math.max(1, Math.round(frameRate * duration));
+            long pixelsPerFrame = Math.max(1, (log.getCount() + frameCount - 1) / frameCount);
+
+            System.out.printf("\nReplaying %d pixels into %d frames at %d fps\n\n", log.getCount(), frameCount, frameRate);
+
+            try (FrameSink sink = createSink(format, target)) {
+                for (int i = 0; i < frameCount; i++) {
+                    // Catch the working buffer up with the pixels visited during this frame
+                    for (long p = 0; p < pixelsPerFrame && log.hasNext(); p++) {
+                        int index = log.next();
+                        canvas[index] = colors[index] | 0xFF000000;
+                    }
+
+                    sink.write(frame, i);
+                    System.out.printf("Rendered frame %d / %d\r", i + 1, frameCount);
+                }
+            }
+
+            System.out.println("\n\nExported time-lapse to " + target);
+        }
+    }
+
+    /**
+     * Creates the destination of the frames for the given output format.
+     *
+     * @param format The format to write the frames in
+     * @param target The file or directory to write to
+     * @return The sink accepting all frames
+     * @throws IOException When the destination could not be prepared
+     */
+    private FrameSink createSink(OutputFormat format, File target) throws IOException {
+        switch (format) {
+            case GIF:
+                return new GifSink(target, Math.max(1, Math.round(100f / frameRate)));
+            case PNG:
+                return new PngSequenceSink(target);
+            case RAW:
+                return new RawSink(target);
+            default:
+                throw new IllegalArgumentException("Unsupported format " + format);
+        }
+    }
+
+    /**
+     * Receives the rendered frames, one by one.
+     */
+    private interface FrameSink extends AutoCloseable {
+        /**
+         * Writes a single frame.
+         *
+         * @param frame The frame to write. This is the same working buffer every call, so it should not be held on to
+         * @param index The index of the frame
+         * @throws IOException When writing the frame fails
+         */
+        void write(BufferedImage frame, int index) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * Writes all frames into a looping animated GIF.
+     */
+    private static class GifSink implements FrameSink {
+        private static final String METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+
+        private final ImageOutputStream output;
+        private final ImageWriter writer;
+        /**
+         * The time to show every frame for, in hundredths of a second.
+         */
+        private final int delay;
+
+        GifSink(File target, int delay) throws IOException {
+            this.delay = delay;
+            this.writer = ImageIO.getImageWritersByFormatName("gif").next();
+            this.output = ImageIO.createImageOutputStream(target);
+
+            writer.setOutput(output);
+            writer.prepareWriteSequence(null);
+        }
+
+        @Override
+        public void write(BufferedImage frame, int index) throws IOException {
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), null);
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(METADATA_FORMAT);
+
+            IIOMetadataNode control = new IIOMetadataNode("GraphicControlExtension");
+            control.setAttribute("disposalMethod", "none");
+            control.setAttribute("userInputFlag", "FALSE");
+            control.setAttribute("transparentColorFlag", "FALSE");
+            control.setAttribute("delayTime", String.valueOf(delay));
+            control.setAttribute("transparentColorIndex", "0");
+            root.appendChild(control);
+
+            // Make the animation loop forever
+            if (index == 0) {
+                IIOMetadataNode loop = new IIOMetadataNode("ApplicationExtension");
+                loop.setAttribute("applicationID", "NETSCAPE");
+                loop.setAttribute("authenticationCode", "2.0");
+                loop.setUserObject(new byte[] {1, 0, 0});
+
+                IIOMetadataNode extensions = new IIOMetadataNode("ApplicationExtensions");
+                extensions.appendChild(loop);
+                root.appendChild(extensions);
+            }
+
+            metadata.setFromTree(METADATA_FORMAT, root);
+            writer.writeToSequence(new IIOImage(frame, null, metadata), null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writer.endWriteSequence();
+            } finally {
+                writer.dispose();
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Writes every frame as a separate PNG into a directory.
+     * The JDK offers no encoder for animated PNGs, so a numbered sequence is written which any video tool can assemble.
+     */
+    private static class PngSequenceSink implements FrameSink {
+        private final File directory;
+
+        PngSequenceSink(File directory) throws IOException {
+            this.directory = directory;
+            if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+        }
+
+        @Override
+        public void write(BufferedImage frame, int index) throws IOException {
+            ImageIO.write(frame, "png", new File(directory, String.format("%05d.png", index)));
+        }
+
+        @Override
+        public void close() { }
+    }
+
+    /**
+     * Writes all frames as raw big-endian ARGB integers into a single file.
+     * Frames are streamed through a small buffer, rather than being converted to bytes as a whole.
+     */
+    private static class RawSink implements FrameSink {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        private final IntBuffer intView = buffer.asIntBuffer();
+
+        RawSink(File target) throws IOException {
+            this.channel = FileChannel.open(target.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        @Override
+        public void write(BufferedImage frame, int index) throws IOException {
+            int[] canvas = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+
+            for (int offset = 0; offset < canvas.length; offset += intView.capacity()) {
+                int length = Math.min(intView.capacity(), canvas.length - offset);
+
+                intView.clear();
+                intView.put(canvas, offset, length);
+
+                buffer.clear().limit(length * 4);
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
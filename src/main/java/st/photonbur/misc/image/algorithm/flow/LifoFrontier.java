@@ -0,0 +1,60 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+/**
+ * Visits the pixel added most recently first, making the image grow depth-first in long tendrils.
+ * Pixels are kept on a stack, which makes both adding and polling O(1).
+ */
+class LifoFrontier implements FrontierStrategy {
+    /**
+     * The stack holding the indices of the pixels in this frontier.
+     */
+    private int[] items;
+    /**
+     * The arena to take arrays from and hand them back to, or {@code null} to allocate them.
+     */
+    private final FlowArena arena;
+    /**
+     * The amount of pixels in this frontier.
+     */
+    private int size = 0;
+
+    LifoFrontier(int initialCapacity, FlowArena arena) {
+        this.arena = arena;
+        this.items = FrontierStrategy.allocate(arena, Math.max(16, initialCapacity));
+    }
+
+    @Override
+    public void add(int index) {
+        if (size == items.length) items = FrontierStrategy.grow(arena, items, size, size * 2);
+        items[size++] = index;
+    }
+
+    @Override
+    public void addAll(int[] indices, int count) {
+        if (size + count > items.length) items = FrontierStrategy.grow(arena, items, size, Math.max(size + count, size * 2));
+
+        System.arraycopy(indices, 0, items, size, count);
+        size += count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int poll() {
+        return items[--size];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void recycle() {
+        if (arena != null) arena.recycleInts(items);
+        items = null;
+    }
+}
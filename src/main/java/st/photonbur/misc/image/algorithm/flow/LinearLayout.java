@@ -0,0 +1,56 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+/**
+ * Stores the canvas column by column, with every column directly following the previous one.
+ * Vertical neighbors are adjacent in memory, while horizontal neighbors are a full column apart.
+ */
+class LinearLayout implements CanvasLayout {
+    /**
+     * The width of the border surrounding the canvas.
+     */
+    private final int border;
+    /**
+     * The distance between two horizontally neighboring indices, being the height of a column including the border.
+     */
+    private final int stride;
+    /**
+     * The amount of indices this layout uses.
+     */
+    private final int capacity;
+
+    LinearLayout(int width, int height, int border) {
+        this.border = border;
+        this.stride = height + 2 * border;
+        this.capacity = (width + 2 * border) * stride;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getBorder() {
+        return border;
+    }
+
+    @Override
+    public int indexOf(int x, int y) {
+        return (x + border) * stride + y + border;
+    }
+
+    @Override
+    public int neighborOf(int index, int dx, int dy) {
+        return index + dx * stride + dy;
+    }
+
+    @Override
+    public int xOf(int index) {
+        return index / stride - border;
+    }
+
+    @Override
+    public int yOf(int index) {
+        return index % stride - border;
+    }
+}
@@ -0,0 +1,210 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+/**
+ * Enum specifying the color spaces the colors of a {@link FlowImage} can be mixed in.
+ * <p>
+ * Colors are stored in the mixing space itself, with every channel scaled to the 0 - 255 range,
+ * so mixing costs the same in every space. Colors are only converted when they enter the plane, and when they are read out as sRGB.
+ * The randomness applies to the scaled channels of the mixing space as well.
+ * <p>
+ * The conversions go through lookup tables for the sRGB transfer functions, and through {@link #cbrt(double)} for OKLab,
+ * keeping {@link Math#pow(double, double)} out of the generation altogether.
+ */
+enum MixingSpace {
+    /**
+     * Mixes the sRGB values as they are, which is the fastest, but darkens and muddies gradients between saturated colors.
+     */
+    SRGB("srgb") {
+        @Override
+        ColorPlane wrap(ColorPlane plane) {
+            return plane;
+        }
+
+        @Override
+        void encode(int rgb, double[] channels) {
+            channels[0] = (rgb >> 16) & 0xFF;
+            channels[1] = (rgb >> 8) & 0xFF;
+            channels[2] = rgb & 0xFF;
+        }
+
+        @Override
+        int decode(double[] channels) {
+            return 0xFF000000 | (int) Math.round(channels[0]) << 16 | (int) Math.round(channels[1]) << 8 | (int) Math.round(channels[2]);
+        }
+    },
+    /**
+     * Mixes in linear light, which keeps the brightness of blends physically correct.
+     */
+    LINEAR("linear") {
+        @Override
+        void encode(int rgb, double[] channels) {
+            channels[0] = TO_LINEAR[(rgb >> 16) & 0xFF] * 255;
+            channels[1] = TO_LINEAR[(rgb >> 8) & 0xFF] * 255;
+            channels[2] = TO_LINEAR[rgb & 0xFF] * 255;
+        }
+
+        @Override
+        int decode(double[] channels) {
+            return 0xFF000000 | toSrgb(channels[0] / 255) << 16 | toSrgb(channels[1] / 255) << 8 | toSrgb(channels[2] / 255);
+        }
+    },
+    /**
+     * Mixes in OKLab, which keeps both the lightness and the hue of blends perceptually even.
+     * Lightness takes up the first channel; the a and b axes are shifted by 0.5 to fit in the other two, covering all of sRGB.
+     */
+    OKLAB("oklab") {
+        @Override
+        void encode(int rgb, double[] channels) {
+            double red = TO_LINEAR[(rgb >> 16) & 0xFF];
+            double green = TO_LINEAR[(rgb >> 8) & 0xFF];
+            double blue = TO_LINEAR[rgb & 0xFF];
+
+            double l = cbrt(0.4122214708 * red + 0.5363325363 * green + 0.0514459929 * blue);
+            double m = cbrt(0.2119034982 * red + 0.6806995451 * green + 0.1073969566 * blue);
+            double s = cbrt(0.0883024619 * red + 0.2817188376 * green + 0.6299787005 * blue);
+
+            channels[0] = (0.2104542553 * l + 0.7936177850 * m - 0.0040720468 * s) * 255;
+            channels[1] = (1.9779984951 * l - 2.4285922050 * m + 0.4505937099 * s + 0.5) * 255;
+            channels[2] = (0.0259040371 * l + 0.7827717662 * m - 0.8086757660 * s + 0.5) * 255;
+        }
+
+        @Override
+        int decode(double[] channels) {
+            double lightness = channels[0] / 255;
+            double a = channels[1] / 255 - 0.5;
+            double b = channels[2] / 255 - 0.5;
+
+            double l = lightness + 0.3963377774 * a + 0.2158037573 * b;
+            double m = lightness - 0.1055613458 * a - 0.0638541728 * b;
+            double s = lightness - 0.0894841775 * a - 1.2914855480 * b;
+            l = l * l * l;
+            m = m * m * m;
+            s = s * s * s;
+
+            return 0xFF000000
+                    | toSrgb(4.0767416621 * l - 3.3077115913 * m + 0.2309699292 * s) << 16
+                    | toSrgb(-1.2684380046 * l + 2.6097574011 * m - 0.3413193965 * s) << 8
+                    | toSrgb(-0.0041960863 * l - 0.7034186147 * m + 1.7076147010 * s);
+        }
+    };
+
+    /**
+     * The amount of bits of precision {@link #TO_SRGB} is indexed with.
+     */
+    private static final int TO_SRGB_BITS = 16;
+    /**
+     * Maps every 8-bit sRGB value to its linear value, in the 0 - 1 range.
+     */
+    private static final double[] TO_LINEAR = new double[256];
+    /**
+     * Maps linear values, in steps of {@code 1 / 2^16}, to the nearest 8-bit sRGB value.
+     */
+    private static final byte[] TO_SRGB = new byte[(1 << TO_SRGB_BITS) + 1];
+
+    static {
+        for (int i = 0; i < TO_LINEAR.length; i++) {
+            double c = i / 255d;
+            TO_LINEAR[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+        }
+
+        for (int i = 0; i < TO_SRGB.length; i++) {
+            double c = i / (double) (1 << TO_SRGB_BITS);
+            TO_SRGB[i] = (byte) Math.round(255 * (c <= 0.0031308 ? c * 12.92 : 1.055 * Math.pow(c, 1 / 2.4) - 0.055));
+        }
+    }
+
+    /**
+     * The display name corresponding to the enum value.
+     */
+    private final String displayName;
+
+    MixingSpace(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Checks whether an engine keeps colors in this space precisely enough to read them back as the sRGB colors they were.
+     * The 8-bit engine holds exactly the 256 values of an sRGB channel, while the other spaces spread those values unevenly
+     * over their own channels, needing more than 8 bits to tell them apart.
+     *
+     * @param colorEngine The engine to store the colors with
+     * @return {@code true} if colors can be mixed in this space with the engine, {@code false} otherwise
+     */
+    boolean supports(ColorEngine colorEngine) {
+        return this == SRGB || colorEngine != ColorEngine.EIGHT_BIT;
+    }
+
+    /**
+     * Wraps a plane so colors are stored and mixed in this space, while it still reads and writes sRGB.
+     *
+     * @param plane The plane storing the channels of this space
+     * @return The wrapped plane
+     */
+    ColorPlane wrap(ColorPlane plane) {
+        return new MixingSpacePlane(plane, this);
+    }
+
+    /**
+     * Converts an sRGB color to the channels of this space.
+     *
+     * @param rgb      The color as RGB integer; the alpha channel is ignored
+     * @param channels The array to write the channels into, scaled to the 0 - 255 range
+     */
+    abstract void encode(int rgb, double[] channels);
+
+    /**
+     * Converts the channels of this space to an sRGB color, clipping it to the sRGB gamut.
+     *
+     * @param channels The channels, scaled to the 0 - 255 range
+     * @return The fully opaque ARGB representation of the color
+     */
+    abstract int decode(double[] channels);
+
+    /**
+     * @param linear A linear value, nominally in the 0 - 1 range
+     * @return The nearest 8-bit sRGB value, clipped to the 0 - 255 range
+     */
+    private static int toSrgb(double linear) {
+        int i = (int) (linear * (1 << TO_SRGB_BITS) + 0.5);
+
+        return TO_SRGB[Math.min(Math.max(i, 0), 1 << TO_SRGB_BITS)] & 0xFF;
+    }
+
+    /**
+     * Approximates the cube root of a non-negative value.
+     * An initial guess is taken by dividing the exponent by three through the bits of the double,
+     * after which two Newton steps bring it to well within the precision needed for 16-bit channels.
+     *
+     * @param x The value to take the cube root of, at least 0
+     * @return The cube root of the value
+     */
+    static double cbrt(double x) {
+        if (x <= 0) return 0;
+
+        double y = Double.longBitsToDouble(Double.doubleToRawLongBits(x) / 3 + 0x2A9F7893782DA1CEL);
+        y = (2 * y + x / (y * y)) / 3;
+        y = (2 * y + x / (y * y)) / 3;
+        return y;
+    }
+
+    /**
+     * Looks up the space belonging to a display name.
+     *
+     * @param displayName The display name to look for, ignoring case
+     * @return The space with the given display name, or {@code null} if there is none
+     */
+    static MixingSpace findByDisplayName(String displayName) {
+        for (MixingSpace space : values()) {
+            if (space.displayName.equalsIgnoreCase(displayName)) return space;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The display name corresponding to this enum value.
+     */
+    String getDisplayName() {
+        return displayName;
+    }
+}
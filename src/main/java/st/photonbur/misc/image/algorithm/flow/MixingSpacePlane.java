@@ -0,0 +1,78 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Stores colors in another {@link MixingSpace} than sRGB, by converting them whenever they enter or leave a plane.
+ * Mixing and copying work on the converted channels directly, so they cost exactly the same as in sRGB.
+ */
+class MixingSpacePlane implements ColorPlane {
+    /**
+     * The plane storing the channels of the mixing space.
+     */
+    private final ColorPlane plane;
+    private final MixingSpace space;
+    /**
+     * Scratch space for converting a single color, preventing an allocation for every conversion.
+     */
+    private final double[] channels = new double[3];
+
+    MixingSpacePlane(ColorPlane plane, MixingSpace space) {
+        this.plane = plane;
+        this.space = space;
+    }
+
+    @Override
+    public void copyFrom(int index, ColorPlane source, int sourceIndex) {
+        plane.copyFrom(index, ((MixingSpacePlane) source).plane, sourceIndex);
+    }
+
+    @Override
+    public void getChannels(int index, double[] channels) {
+        plane.getChannels(index, channels);
+    }
+
+    @Override
+    public int getRGB(int index) {
+        plane.getChannels(index, channels);
+        return space.decode(channels);
+    }
+
+    @Override
+    public void mix(int index, int[] neighbors, int count, double randomness, Random r) {
+        plane.mix(index, neighbors, count, randomness, r);
+    }
+
+    @Override
+    public void mixWeighted(int index, int[] neighbors, int[] weights, int count, double randomness, Random r) {
+        plane.mixWeighted(index, neighbors, weights, count, randomness, r);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        plane.readFrom(buffer);
+    }
+
+    @Override
+    public void setChannels(int index, double c0, double c1, double c2) {
+        plane.setChannels(index, c0, c1, c2);
+    }
+
+    @Override
+    public void setRGB(int index, int rgb) {
+        space.encode(rgb, channels);
+        plane.setChannels(index, channels[0], channels[1], channels[2]);
+    }
+
+    @Override
+    public void setRandom(int index, Random r) {
+        // Pick the color in sRGB, so random colors are spread the same way in every space
+        setRGB(index, r.nextInt(256) << 16 | r.nextInt(256) << 8 | r.nextInt(256));
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        plane.writeTo(buffer);
+    }
+}
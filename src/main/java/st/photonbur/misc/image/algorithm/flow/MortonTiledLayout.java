@@ -0,0 +1,123 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+/**
+ * Stores the canvas in square tiles of 8 by 8 pixels, with the pixels inside of a tile ordered along a Z-order (Morton) curve.
+ * <p>
+ * A tile takes up 64 consecutive indices, so its visited state fits in a single long and its colors in a handful of cache lines.
+ * Thanks to the Z-order, both horizontal and vertical neighbors mostly land within the same tile,
+ * where a plain column-major layout puts horizontal neighbors a full column apart.
+ * Tiles themselves are stored row by row.
+ */
+class MortonTiledLayout implements CanvasLayout {
+    /**
+     * The amount of bits needed to address a coordinate within a tile.
+     */
+    private static final int TILE_BITS = 3;
+    /**
+     * The width and height of a tile.
+     */
+    private static final int TILE_SIZE = 1 << TILE_BITS;
+    /**
+     * The mask extracting the coordinate within a tile.
+     */
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    /**
+     * The amount of bits needed to address a pixel within a tile.
+     */
+    private static final int TILE_AREA_BITS = 2 * TILE_BITS;
+
+    /**
+     * Maps a location within a tile, as {@code y << 3 | x}, to its position along the Z-order curve.
+     */
+    private static final int[] MORTON = new int[TILE_SIZE * TILE_SIZE];
+    /**
+     * Maps a position along the Z-order curve to the x-coordinate within a tile.
+     */
+    private static final int[] MORTON_X = new int[TILE_SIZE * TILE_SIZE];
+    /**
+     * Maps a position along the Z-order curve to the y-coordinate within a tile.
+     */
+    private static final int[] MORTON_Y = new int[TILE_SIZE * TILE_SIZE];
+
+    static {
+        for (int y = 0; y < TILE_SIZE; y++) {
+            for (int x = 0; x < TILE_SIZE; x++) {
+                // Interleave the bits of both coordinates, with x taking the lowest bit
+                int m = 0;
+                for (int bit = 0; bit < TILE_BITS; bit++) {
+                    m |= ((x >> bit) & 1) << (2 * bit);
+                    m |= ((y >> bit) & 1) << (2 * bit + 1);
+                }
+
+                MORTON[y << TILE_BITS | x] = m;
+                MORTON_X[m] = x;
+                MORTON_Y[m] = y;
+            }
+        }
+    }
+
+    /**
+     * The width of the border surrounding the canvas.
+     */
+    private final int border;
+    /**
+     * The amount of tiles per row.
+     */
+    private final int tilesX;
+    /**
+     * The amount of indices this layout uses.
+     */
+    private final int capacity;
+
+    MortonTiledLayout(int width, int height, int border) {
+        this.border = border;
+        this.tilesX = (width + 2 * border + TILE_MASK) >> TILE_BITS;
+
+        int tilesY = (height + 2 * border + TILE_MASK) >> TILE_BITS;
+        this.capacity = (tilesX * tilesY) << TILE_AREA_BITS;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int getBorder() {
+        return border;
+    }
+
+    @Override
+    public int indexOf(int x, int y) {
+        int px = x + border;
+        int py = y + border;
+
+        return ((py >> TILE_BITS) * tilesX + (px >> TILE_BITS)) << TILE_AREA_BITS
+                | MORTON[(py & TILE_MASK) << TILE_BITS | (px & TILE_MASK)];
+    }
+
+    @Override
+    public int neighborOf(int index, int dx, int dy) {
+        int m = index & ((1 << TILE_AREA_BITS) - 1);
+
+        // Determine the location of the neighbor relative to the current tile; this may spill into adjacent tiles
+        int nx = MORTON_X[m] + dx;
+        int ny = MORTON_Y[m] + dy;
+
+        // Move over to the tile the neighbor lies in, then find its position within that tile.
+        // The arithmetic shifts round towards negative infinity, so this also holds for tiles to the left or above.
+        return (index - m)
+                + (((ny >> TILE_BITS) * tilesX + (nx >> TILE_BITS)) << TILE_AREA_BITS)
+                + MORTON[(ny & TILE_MASK) << TILE_BITS | (nx & TILE_MASK)];
+    }
+
+    @Override
+    public int xOf(int index) {
+        return ((index >> TILE_AREA_BITS) % tilesX << TILE_BITS) + MORTON_X[index & ((1 << TILE_AREA_BITS) - 1)] - border;
+    }
+
+    @Override
+    public int yOf(int index) {
+        return ((index >> TILE_AREA_BITS) / tilesX << TILE_BITS) + MORTON_Y[index & ((1 << TILE_AREA_BITS) - 1)] - border;
+    }
+}
@@ -0,0 +1,221 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Describes which pixels around a pixel take part in generating it: the pixels its color is mixed from, and the pixels it activates once visited.
+ * <p>
+ * A kernel is compiled up front into flat arrays of offsets and weights, so mixing and growing are a single loop over those arrays,
+ * without any allocation or branching on the kind of kernel. The cost of visiting a pixel grows linearly with the size of the kernel.
+ * <p>
+ * Kernels are written as:
+ * <ul>
+ *     <li>{@code 4}: mixes the unweighted mean of the 4 direct neighbors and grows along them; the classic FLOW behavior</li>
+ *     <li>{@code 8}: mixes the unweighted mean of the 8 surrounding pixels and grows along them</li>
+ *     <li>{@code gaussian:<radius>}: mixes all pixels within the radius, weighted by a Gaussian with a sigma of half the radius;
+ *     grows along the 4 direct neighbors</li>
+ *     <li>{@code anisotropic:<radius>:<angle>[:<stretch>]}: like {@code gaussian}, but squeezed across the angle (in degrees)
+ *     by the stretch (3 by default), so colors smear out along the angle</li>
+ * </ul>
+ */
+final class NeighborhoodKernel {
+    /**
+     * The weight of a pixel at the center of a weighted kernel; all weights are integers relative to this.
+     */
+    static final int WEIGHT_SCALE = 1 << 8;
+    /**
+     * The largest radius a kernel may have, keeping both the border of the canvas and the cost per pixel in check.
+     */
+    static final int MAX_RADIUS = 16;
+    /**
+     * The most an anisotropic kernel may be squeezed.
+     */
+    static final double MAX_STRETCH = 16;
+
+    private static final int[] FOUR_DX = {-1, 1, 0, 0};
+    private static final int[] FOUR_DY = {0, 0, -1, 1};
+    private static final int[] EIGHT_DX = {-1, 1, 0, 0, -1, 1, -1, 1};
+    private static final int[] EIGHT_DY = {0, 0, -1, 1, -1, -1, 1, 1};
+
+    /**
+     * The classic FLOW kernel, mixing and growing along the 4 direct neighbors.
+     */
+    static final NeighborhoodKernel FOUR = new NeighborhoodKernel("4", FOUR_DX, FOUR_DY, null, FOUR_DX, FOUR_DY);
+    /**
+     * Mixes and grows along all 8 surrounding pixels.
+     */
+    static final NeighborhoodKernel EIGHT = new NeighborhoodKernel("8", EIGHT_DX, EIGHT_DY, null, EIGHT_DX, EIGHT_DY);
+
+    /**
+     * The canonical way of writing this kernel.
+     */
+    private final String displayName;
+    /**
+     * The offsets of the pixels mixed from.
+     */
+    private final int[] mixDx, mixDy;
+    /**
+     * The weights of the pixels mixed from, or {@code null} if they all weigh the same.
+     */
+    private final int[] mixWeights;
+    /**
+     * The offsets of the pixels activated once a pixel is visited.
+     */
+    private final int[] growDx, growDy;
+    /**
+     * The furthest any offset reaches horizontally or vertically.
+     */
+    private final int radius;
+
+    private NeighborhoodKernel(String displayName, int[] mixDx, int[] mixDy, int[] mixWeights, int[] growDx, int[] growDy) {
+        this.displayName = displayName;
+        this.mixDx = mixDx;
+        this.mixDy = mixDy;
+        this.mixWeights = mixWeights;
+        this.growDx = growDx;
+        this.growDy = growDy;
+
+        int radius = 0;
+        for (int i = 0; i < mixDx.length; i++) radius = Math.max(radius, Math.max(Math.abs(mixDx[i]), Math.abs(mixDy[i])));
+        for (int i = 0; i < growDx.length; i++) radius = Math.max(radius, Math.max(Math.abs(growDx[i]), Math.abs(growDy[i])));
+        this.radius = radius;
+    }
+
+    /**
+     * Compiles a Gaussian kernel, possibly squeezed across an angle.
+     * Offsets whose weight rounds down to 0 are left out.
+     *
+     * @param displayName The canonical way of writing the kernel
+     * @param radius      The furthest distance to mix from
+     * @param angle       The angle to smear colors out along, in radians
+     * @param stretch     How much narrower the kernel is across the angle than along it
+     * @return The compiled kernel
+     */
+    private static NeighborhoodKernel compileGaussian(String displayName, int radius, double angle, double stretch) {
+        double sigmaAlong = radius / 2d;
+        double sigmaAcross = sigmaAlong / stretch;
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+
+        List<int[]> offsets = new ArrayList<>();
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                if ((dx == 0 && dy == 0) || dx * dx + dy * dy > radius * radius) continue;
+
+                double along = dx * cos + dy * sin;
+                double across = -dx * sin + dy * cos;
+                int weight = (int) Math.round(WEIGHT_SCALE * Math.exp(
+                        -(along * along) / (2 * sigmaAlong * sigmaAlong) - (across * across) / (2 * sigmaAcross * sigmaAcross)));
+
+                if (weight > 0) offsets.add(new int[] {dx, dy, weight});
+            }
+        }
+
+        int[] dxs = new int[offsets.size()], dys = new int[offsets.size()], weights = new int[offsets.size()];
+        for (int i = 0; i < offsets.size(); i++) {
+            dxs[i] = offsets.get(i)[0];
+            dys[i] = offsets.get(i)[1];
+            weights[i] = offsets.get(i)[2];
+        }
+
+        return new NeighborhoodKernel(displayName, dxs, dys, weights, FOUR_DX, FOUR_DY);
+    }
+
+    /**
+     * Looks up or compiles the kernel belonging to a way of writing it.
+     *
+     * @param spec The way the kernel is written, see the description of this class
+     * @return The compiled kernel, or {@code null} if the kernel isn't written correctly or is {@code null}
+     */
+    static NeighborhoodKernel parse(String spec) {
+        if (spec == null) return null;
+
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+
+        try {
+            switch (parts[0]) {
+                case "4":
+                    return parts.length == 1 ? FOUR : null;
+                case "8":
+                    return parts.length == 1 ? EIGHT : null;
+                case "gaussian": {
+                    if (parts.length != 2) return null;
+
+                    int radius = Integer.parseInt(parts[1]);
+                    if (radius < 1 || radius > MAX_RADIUS) return null;
+
+                    return compileGaussian("gaussian:" + radius, radius, 0, 1);
+                }
+                case "anisotropic": {
+                    if (parts.length != 3 && parts.length != 4) return null;
+
+                    int radius = Integer.parseInt(parts[1]);
+                    double angle = Double.parseDouble(parts[2]);
+                    double stretch = parts.length == 4 ? Double.parseDouble(parts[3]) : 3;
+                    if (radius < 1 || radius > MAX_RADIUS || !(stretch >= 1 && stretch <= MAX_STRETCH) || Double.isNaN(angle) || Double.isInfinite(angle)) {
+                        return null;
+                    }
+
+                    NeighborhoodKernel kernel = compileGaussian(String.format(Locale.ROOT, "anisotropic:%d:%s:%s", radius, angle, stretch),
+                            radius, Math.toRadians(angle), stretch);
+                    // A thin kernel at an odd angle may miss every pixel
+                    return kernel.mixDx.length > 0 ? kernel : null;
+                }
+                default:
+                    return null;
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The canonical way of writing this kernel, which parses back into the same kernel
+     */
+    String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return The horizontal offsets of the pixels activated once a pixel is visited
+     */
+    int[] getGrowDx() {
+        return growDx;
+    }
+
+    /**
+     * @return The vertical offsets of the pixels activated once a pixel is visited
+     */
+    int[] getGrowDy() {
+        return growDy;
+    }
+
+    /**
+     * @return The horizontal offsets of the pixels mixed from
+     */
+    int[] getMixDx() {
+        return mixDx;
+    }
+
+    /**
+     * @return The vertical offsets of the pixels mixed from
+     */
+    int[] getMixDy() {
+        return mixDy;
+    }
+
+    /**
+     * @return The weights of the pixels mixed from, relative to {@link #WEIGHT_SCALE}, or {@code null} if they all weigh the same
+     */
+    int[] getMixWeights() {
+        return mixWeights;
+    }
+
+    /**
+     * @return The furthest any offset reaches horizontally or vertically, and so the border the canvas needs
+     */
+    int getRadius() {
+        return radius;
+    }
+}
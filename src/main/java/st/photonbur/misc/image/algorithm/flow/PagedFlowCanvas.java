@@ -0,0 +1,377 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.misc.ImageRowWriter;
+import st.photonbur.misc.image.misc.PngStreamWriter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Generates a FLOW image too large to be held in memory, by keeping the canvas in tiles which are paged to disk by a {@link TilePager}.
+ * <p>
+ * The growth follows the same rules as {@link FlowImage} with {@link FrontierOrder#RANDOM}, except for the order pixels are visited in.
+ * Every tile keeps the active pixels inside of it in its own frontier, and the tile to visit a pixel of is picked at random,
+ * weighted by the amount of active pixels in it. With a chance of the resident bias, the pick is limited to the tiles currently in memory,
+ * which keeps the growth from constantly paging in tiles at the other end of the canvas.
+ * A higher bias pages less, but lets the growth linger around the resident tiles, showing up as faint blocks in the image.
+ * <p>
+ * The frontiers themselves are kept in memory, as they only hold the edges of the growth.
+ */
+class PagedFlowCanvas implements Closeable {
+    /**
+     * Determines how often progress is reported and cancellation is checked for, namely every {@code PROGRESS_MASK + 1} pixels.
+     */
+    private static final int PROGRESS_MASK = (1 << 18) - 1;
+    /**
+     * The least amount of tiles held in memory. Visiting a single pixel touches at most four tiles.
+     */
+    static final int MIN_RESIDENT_TILES = 8;
+
+    /**
+     * Keeps a count per tile, and picks tiles at random weighted by their counts, both in logarithmic time.
+     * This is a Fenwick tree over the counts.
+     */
+    private static class WeightedTiles {
+        private final long[] tree;
+        private final int highestBit;
+
+        WeightedTiles(int size) {
+            tree = new long[size + 1];
+            highestBit = Integer.highestOneBit(size);
+        }
+
+        void add(int tile, long delta) {
+            for (int i = tile + 1; i < tree.length; i += i & -i) tree[i] += delta;
+        }
+
+        long total() {
+            long total = 0;
+            for (int i = tree.length - 1; i > 0; i -= i & -i) total += tree[i];
+            return total;
+        }
+
+        /**
+         * @param target A value between 0 and the total of all counts, exclusive
+         * @return The tile whose range of the cumulative counts holds the target
+         */
+        int find(long target) {
+            int position = 0;
+
+            for (int step = highestBit; step > 0; step >>= 1) {
+                int next = position + step;
+                if (next < tree.length && tree[next] <= target) {
+                    position = next;
+                    target -= tree[next];
+                }
+            }
+
+            return position;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int nPoints;
+    private final double randomness;
+    private final double residentBias;
+
+    /**
+     * The amount of bits needed to address a coordinate within a tile.
+     */
+    private final int tileBits;
+    private final int tileSize;
+    private final int tilesX;
+
+    private final Random r;
+    private final TilePager pager;
+
+    /**
+     * The active pixels of every tile, by their index within the tile, or {@code null} if the tile never had any.
+     */
+    private final RandomFrontier[] frontiers;
+    /**
+     * The amount of active pixels of every tile.
+     */
+    private final WeightedTiles allTiles;
+    /**
+     * The amount of active pixels of every resident tile; tiles which are paged out count as 0.
+     */
+    private final WeightedTiles residentTiles;
+
+    /**
+     * Holds the colors of the neighbors of a pixel being activated, as they may lie in different tiles.
+     * The last slot receives the mixed color.
+     */
+    private final ColorPlane scratch;
+    private final int[] neighbors = new int[4];
+
+    private long visitedCount = 0;
+
+    /**
+     * @param width        The width of the image
+     * @param height       The height of the image
+     * @param nPoints      The amount of points to start generating with
+     * @param randomness   The randomness to apply to generating colors
+     * @param seed         The seed of the randomizer
+     * @param colorEngine  The engine used for storing and calculating colors
+     * @param tileBits     The tiles are {@code 1 << tileBits} pixels wide and high
+     * @param cacheTiles   The maximum amount of tiles to hold in memory, at least {@link #MIN_RESIDENT_TILES}
+     * @param residentBias The chance of limiting the choice of the next pixel to the resident tiles, from 0 to 1
+     * @param backingFile  The file to page tiles out to, which is deleted once the canvas is closed
+     * @throws IOException When the backing file can't be created
+     */
+    PagedFlowCanvas(int width, int height, int nPoints, double randomness, long seed, ColorEngine colorEngine,
+                    int tileBits, int cacheTiles, double residentBias, File backingFile) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.nPoints = nPoints;
+        this.randomness = randomness;
+        this.residentBias = residentBias;
+
+        this.tileBits = tileBits;
+        this.tileSize = 1 << tileBits;
+        this.tilesX = (width + tileSize - 1) >> tileBits;
+        int tilesY = (height + tileSize - 1) >> tileBits;
+
+        long tileCount = (long) tilesX * tilesY;
+        if (tileCount > Integer.MAX_VALUE - 1) throw new IllegalArgumentException("Too many tiles; use larger tiles");
+
+        this.r = new Random(seed);
+        this.frontiers = new RandomFrontier[(int) tileCount];
+        this.allTiles = new WeightedTiles((int) tileCount);
+        this.residentTiles = new WeightedTiles((int) tileCount);
+        this.scratch = colorEngine.createPlane(neighbors.length + 1);
+
+        this.pager = new TilePager(backingFile, colorEngine, tileSize * tileSize, Math.max(MIN_RESIDENT_TILES, cacheTiles),
+                new TilePager.ResidencyListener() {
+                    @Override
+                    public void onPageIn(TilePager.Tile tile) {
+                        residentTiles.add(tile.id, getFrontierSize(tile.id));
+                    }
+
+                    @Override
+                    public void onPageOut(TilePager.Tile tile) {
+                        residentTiles.add(tile.id, -getFrontierSize(tile.id));
+                    }
+                });
+
+        System.out.printf("\nCreating paged FLOW image with parameters:\n - Image dimensions: %dx%d\n - Starting nodes: %d\n - Deviation: max. %s per pixel step\n - Seed: %d\n - Color engine: %s\n - Tiles: %dx%d pixels, %d of %d held in memory\n - Resident bias: %s\n\n",
+                width, height, nPoints, new DecimalFormat("0.00").format(randomness).replace(",", "."), seed,
+                colorEngine.getDisplayName(), tileSize, tileSize, Math.max(MIN_RESIDENT_TILES, cacheTiles), tileCount,
+                new DecimalFormat("0.00").format(residentBias).replace(",", "."));
+    }
+
+    /**
+     * @param colorEngine The engine used for storing and calculating colors
+     * @param tileBits    The tiles are {@code 1 << tileBits} pixels wide and high
+     * @param cacheSize   The amount of bytes the resident tiles may take up together
+     * @return The amount of tiles fitting within the cache size
+     */
+    static int tilesFitting(ColorEngine colorEngine, int tileBits, long cacheSize) {
+        return (int) Math.min(Integer.MAX_VALUE, cacheSize / TilePager.estimateTileMemory(colorEngine, 1 << (2 * tileBits)));
+    }
+
+    private int getFrontierSize(int tile) {
+        return frontiers[tile] == null ? 0 : frontiers[tile].size();
+    }
+
+    private int tileOf(int x, int y) {
+        return (y >> tileBits) * tilesX + (x >> tileBits);
+    }
+
+    private int localOf(int x, int y) {
+        return (y & (tileSize - 1)) << tileBits | (x & (tileSize - 1));
+    }
+
+    /**
+     * Schedules a pixel to be visited, determining its color from the visited pixels around it.
+     * Pixels that are already active or visited are left alone.
+     *
+     * @param x The x-coordinate of the pixel
+     * @param y The y-coordinate of the pixel
+     */
+    private void activate(int x, int y) {
+        int id = tileOf(x, y);
+        int local = localOf(x, y);
+
+        TilePager.Tile tile = pager.get(id);
+        if (TilePager.Tile.get(tile.active, local) || TilePager.Tile.get(tile.visited, local)) return;
+
+        int count = 0;
+        count = collectNeighbor(x - 1, y, count);
+        count = collectNeighbor(x + 1, y, count);
+        count = collectNeighbor(x, y - 1, count);
+        count = collectNeighbor(x, y + 1, count);
+
+        // Looking up the neighbors may have paged in other tiles, but never enough to page out this one
+        if (count == 0) {
+            tile.colors.setRandom(local, r);
+        } else {
+            scratch.mix(neighbors.length, neighbors, count, randomness, r);
+            tile.colors.copyFrom(local, scratch, neighbors.length);
+        }
+
+        TilePager.Tile.set(tile.active, local);
+        tile.dirty = true;
+
+        if (frontiers[id] == null) frontiers[id] = new RandomFrontier(16, r, null);
+        frontiers[id].add(local);
+        allTiles.add(id, 1);
+        residentTiles.add(id, 1);
+    }
+
+    /**
+     * Copies the color of a neighbor into {@link #scratch} if it lies on the canvas and has been visited.
+     *
+     * @param x     The x-coordinate of the neighbor
+     * @param y     The y-coordinate of the neighbor
+     * @param count The amount of neighbors collected so far
+     * @return The amount of neighbors collected after this one
+     */
+    private int collectNeighbor(int x, int y, int count) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return count;
+
+        int local = localOf(x, y);
+        TilePager.Tile tile = pager.get(tileOf(x, y));
+        if (!TilePager.Tile.get(tile.visited, local)) return count;
+
+        scratch.copyFrom(count, tile.colors, local);
+        neighbors[count] = count;
+        return count + 1;
+    }
+
+    /**
+     * Visits pixels until there are no active pixels left.
+     * Generation can be cancelled by interrupting the generating thread.
+     *
+     * @throws CancellationException When the generating thread was interrupted
+     */
+    void generate() {
+        long start = System.nanoTime();
+
+        for (int i = 0; i < nPoints; i++) activate(r.nextInt(width), r.nextInt(height));
+
+        long total;
+        while ((total = allTiles.total()) > 0) {
+            if ((visitedCount & PROGRESS_MASK) == 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Generation was cancelled after " + visitedCount + " pixels");
+                }
+
+                printProgress();
+            }
+
+            // Prefer the resident tiles, unless they have no active pixels left
+            long residentTotal = residentTiles.total();
+            boolean fromResident = residentTotal > 0 && (residentTotal == total || r.nextDouble() < residentBias);
+            WeightedTiles candidates = fromResident ? residentTiles : allTiles;
+
+            int id = candidates.find(Math.min((long) (r.nextDouble() * (fromResident ? residentTotal : total)),
+                    (fromResident ? residentTotal : total) - 1));
+
+            // Take the pixel out of the counts before paging the tile in, which counts whatever is left in it
+            int local = frontiers[id].poll();
+            allTiles.add(id, -1);
+            if (pager.isResident(id)) residentTiles.add(id, -1);
+
+            visit(id, local);
+        }
+
+        printProgress();
+        System.out.printf("\n\nGenerated in %s s\n\n", new DecimalFormat("0.00").format((System.nanoTime() - start) / 1e9).replace(",", "."));
+    }
+
+    /**
+     * Marks an active pixel as visited, and activates its unvisited neighbors.
+     *
+     * @param id    The id of the tile holding the pixel
+     * @param local The index of the pixel within the tile
+     */
+    private void visit(int id, int local) {
+        TilePager.Tile tile = pager.get(id);
+        tile.active[local >> 6] &= ~(1L << local);
+        TilePager.Tile.set(tile.visited, local);
+        tile.dirty = true;
+        visitedCount++;
+
+        int x = (id % tilesX) << tileBits | (local & (tileSize - 1));
+        int y = (id / tilesX) << tileBits | (local >> tileBits);
+
+        if (x > 0) activate(x - 1, y);
+        if (x < width - 1) activate(x + 1, y);
+        if (y > 0) activate(x, y - 1);
+        if (y < height - 1) activate(x, y + 1);
+    }
+
+    private void printProgress() {
+        long pixels = (long) width * height;
+
+        System.out.printf("Processed %d / %d pixels... (%s%%) - %s\r", visitedCount, pixels,
+                new DecimalFormat("000.00").format(visitedCount * 100d / pixels).replace(",", "."), pager.getStatistics());
+    }
+
+    /**
+     * Writes the image as PNG, streaming it one band of rows at a time.
+     *
+     * @param file The file to write to
+     * @throws IOException When writing fails
+     */
+    void export(File file) throws IOException {
+        export(new PngStreamWriter(file, width, height));
+    }
+
+    /**
+     * Streams the image to a writer one band of rows at a time, closing it once done.
+     * A band holds no more pixels than a single tile, so exporting doesn't take up more memory than the tiles were given;
+     * a whole row of tiles can be far too large for that. Rows of tiles which don't fit in memory together get paged in once per band.
+     *
+     * @param writer The writer to stream the image to, which has to be of the size of the image
+     * @throws IOException When writing fails
+     */
+    void export(ImageRowWriter writer) throws IOException {
+        int bandRows = (int) Math.max(1, Math.min(tileSize, (long) tileSize * tileSize / width));
+        int[] band = new int[width * bandRows];
+
+        try (ImageRowWriter out = writer) {
+            for (int ty = 0; ty << tileBits < height; ty++) {
+                int rows = Math.min(tileSize, height - (ty << tileBits));
+
+                for (int start = 0; start < rows; start += bandRows) {
+                    int end = Math.min(rows, start + bandRows);
+
+                    for (int tx = 0; tx < tilesX; tx++) {
+                        TilePager.Tile tile = pager.get(ty * tilesX + tx);
+                        int columns = Math.min(tileSize, width - (tx << tileBits));
+
+                        for (int ly = start; ly < end; ly++) {
+                            for (int lx = 0; lx < columns; lx++) {
+                                int local = ly << tileBits | lx;
+                                band[(ly - start) * width + (tx << tileBits) + lx] = TilePager.Tile.get(tile.visited, local)
+                                        ? tile.colors.getRGB(local)
+                                        : 0;
+                            }
+                        }
+                    }
+
+                    for (int ly = start; ly < end; ly++) out.writeRow(band, (ly - start) * width);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The pager holding the tiles, for inspecting its statistics
+     */
+    TilePager getPager() {
+        return pager;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pager.close();
+    }
+}
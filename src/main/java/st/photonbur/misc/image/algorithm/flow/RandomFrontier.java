@@ -0,0 +1,73 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.util.Random;
+
+/**
+ * Visits the pixels in a uniformly random order.
+ * Pixels are kept in an unordered array; a random one is taken out by replacing it with the last one, which makes both adding and polling O(1).
+ */
+class RandomFrontier implements FrontierStrategy {
+    /**
+     * The randomizer deciding which pixel to visit next.
+     */
+    private final Random r;
+    /**
+     * The indices of the pixels in this frontier, in no particular order.
+     */
+    private int[] items;
+    /**
+     * The arena to take arrays from and hand them back to, or {@code null} to allocate them.
+     */
+    private final FlowArena arena;
+    /**
+     * The amount of pixels in this frontier.
+     */
+    private int size = 0;
+
+    RandomFrontier(int initialCapacity, Random r, FlowArena arena) {
+        this.arena = arena;
+        this.items = FrontierStrategy.allocate(arena, Math.max(16, initialCapacity));
+        this.r = r;
+    }
+
+    @Override
+    public void add(int index) {
+        if (size == items.length) items = FrontierStrategy.grow(arena, items, size, size * 2);
+        items[size++] = index;
+    }
+
+    @Override
+    public void addAll(int[] indices, int count) {
+        if (size + count > items.length) items = FrontierStrategy.grow(arena, items, size, Math.max(size + count, size * 2));
+
+        System.arraycopy(indices, 0, items, size, count);
+        size += count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int poll() {
+        int i = r.nextInt(size);
+        int result = items[i];
+
+        // Fill the gap with the last pixel
+        items[i] = items[--size];
+
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void recycle() {
+        if (arena != null) arena.recycleInts(items);
+        items = null;
+    }
+}
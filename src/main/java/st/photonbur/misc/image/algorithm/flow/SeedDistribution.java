@@ -0,0 +1,278 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Enum specifying the ways the starting points of a {@link FlowImage} can be scattered over the canvas.
+ * Points are returned as a flat array of alternating x- and y-coordinates, so they can be handed to the frontier in a single batch.
+ */
+enum SeedDistribution {
+    /**
+     * Picks every point uniformly at random.
+     * Points may land on the same pixel, and tend to clump together while leaving large areas empty.
+     */
+    UNIFORM("uniform") {
+        @Override
+        int[] place(int width, int height, int nPoints, Random r) {
+            int[] points = new int[2 * nPoints];
+
+            for (int i = 0; i < points.length; i += 2) {
+                points[i] = r.nextInt(width);
+                points[i + 1] = r.nextInt(height);
+            }
+
+            return points;
+        }
+    },
+    /**
+     * Divides the canvas into a grid of about as many cells as there are points, and picks a random pixel within every cell.
+     * Points are spread out evenly, while still looking random up close.
+     */
+    JITTERED_GRID("jittered") {
+        @Override
+        int[] place(int width, int height, int nPoints, Random r) {
+            // Pick the amount of columns so the cells are about square, falling back to single pixel columns if rounding left too few cells
+            int columns = (int) Math.max(1, Math.min(width, Math.round(Math.sqrt((double) nPoints * width / height))));
+            int rows = Math.min(height, (nPoints + columns - 1) / columns);
+            if ((long) columns * rows < nPoints) {
+                columns = width;
+                rows = (nPoints + columns - 1) / columns;
+            }
+
+            // There may be a few more cells than points, so leave out a random selection of cells
+            int cells = columns * rows;
+            BitSet skipped = new BitSet(cells);
+            for (int skips = 0; skips < cells - nPoints; ) {
+                int cell = r.nextInt(cells);
+                if (!skipped.get(cell)) {
+                    skipped.set(cell);
+                    skips++;
+                }
+            }
+
+            int[] xs = new int[columns + 1], ys = new int[rows + 1];
+            for (int column = 0; column <= columns; column++) xs[column] = (int) ((long) column * width / columns);
+            for (int row = 0; row <= rows; row++) ys[row] = (int) ((long) row * height / rows);
+
+            // Fill the cells in order, so the points come out sorted the way the canvas is laid out
+            int[] points = new int[2 * nPoints];
+            for (int row = 0, cell = 0, i = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++, cell++) {
+                    if (skipped.get(cell)) continue;
+
+                    points[i++] = xs[column] + r.nextInt(xs[column + 1] - xs[column]);
+                    points[i++] = ys[row] + r.nextInt(ys[row + 1] - ys[row]);
+                }
+            }
+
+            return points;
+        }
+    },
+    /**
+     * Scatters the points randomly, but never closer to each other than a minimum distance, derived from the amount of points.
+     * Gives the most even spread without showing any grid, at the cost of a slower start; see {@link #placePoissonDisk}.
+     * When the points are packed so tightly that the distance drops below a few pixels, a jittered grid is used instead.
+     */
+    POISSON_DISK("poisson") {
+        @Override
+        int[] place(int width, int height, int nPoints, Random r) {
+            double radius = Math.sqrt(POISSON_DENSITY * width * height / nPoints);
+
+            return radius < POISSON_MIN_RADIUS
+                    ? JITTERED_GRID.place(width, height, nPoints, r)
+                    : placePoissonDisk(width, height, nPoints, radius, r);
+        }
+    };
+
+    /**
+     * The amount of points per squared radius a Poisson-disk sampling is expected to reach at least.
+     * Sampling until no more points fit reaches about 0.68; aiming lower leaves some slack, which is made up for by dropping the points in excess.
+     */
+    private static final double POISSON_DENSITY = 0.55;
+    /**
+     * The smallest distance between points worth sampling a Poisson-disk for.
+     */
+    private static final double POISSON_MIN_RADIUS = 2;
+    /**
+     * The most rounds of darts thrown at the empty cells of the grid, should fewer points than asked for fit.
+     */
+    private static final int POISSON_ROUNDS = 12;
+    /**
+     * Marks a cell of the grid that doesn't hold a point.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * The display name corresponding to the enum value.
+     */
+    private final String displayName;
+
+    SeedDistribution(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Scatters points over the canvas.
+     *
+     * @param width   The width of the canvas
+     * @param height  The height of the canvas
+     * @param nPoints The amount of points to scatter, at most as many as there are pixels
+     * @param r       The randomizer to use
+     * @return The coordinates of the points, as alternating x- and y-coordinates.
+     * Points may share a pixel, and a distribution may return fewer points than asked for if no more fit.
+     */
+    abstract int[] place(int width, int height, int nPoints, Random r);
+
+    /**
+     * Samples points which lie at least a radius apart, by throwing darts at a grid in parallel.
+     * <p>
+     * The grid has square cells whose diagonal is at most the radius, so every cell holds at most one point,
+     * and any point conflicting with a new one lies within two cells of it. Cells are split into 9 phases by their position modulo 3;
+     * cells of the same phase lie at least 3 cells apart, so they can't conflict and are filled in parallel without any locking.
+     * Every round, every empty cell gets a single dart. The randomness of a dart only depends on the cell and round,
+     * so the result is the same no matter how the work is split over threads.
+     * <p>
+     * Rounds stop as soon as enough points were placed, after which any points in excess are left out at random.
+     *
+     * @param width   The width of the canvas
+     * @param height  The height of the canvas
+     * @param nPoints The amount of points to return at most
+     * @param radius  The minimum distance between points
+     * @param r       The randomizer to use
+     * @return The coordinates of the points, as alternating x- and y-coordinates
+     */
+    private static int[] placePoissonDisk(int width, int height, int nPoints, double radius, Random r) {
+        int cellSize = Math.max(1, (int) (radius / Math.sqrt(2)));
+        int columns = (width + cellSize - 1) / cellSize;
+        int rows = (height + cellSize - 1) / cellSize;
+        long radiusSquared = (long) Math.ceil(radius * radius);
+        long seed = r.nextLong();
+
+        // Every cell holds the position of its point within the cell, packed as (x << 16 | y), or EMPTY
+        int[] grid = new int[columns * rows];
+        Arrays.fill(grid, EMPTY);
+
+        int count = 0;
+        for (int round = 0; round < POISSON_ROUNDS && count < nPoints; round++) {
+            long roundSeed = mix(seed + round);
+
+            for (int phase = 0; phase < 9; phase++) {
+                int phaseColumn = phase % 3, phaseRow = phase / 3;
+
+                count += IntStream.range(0, (rows - phaseRow + 2) / 3).parallel().map(i -> {
+                    int row = phaseRow + 3 * i;
+                    int placed = 0;
+
+                    for (int column = phaseColumn; column < columns; column += 3) {
+                        int cell = row * columns + column;
+                        if (grid[cell] != EMPTY) continue;
+
+                        // Throw the dart at a random pixel of the cell, which may stick out of the canvas at the edges
+                        long bits = mix(roundSeed ^ cell * 0x9E3779B97F4A7C15L);
+                        int dx = (int) (((bits >>> 32) * cellSize) >>> 32);
+                        int dy = (int) (((bits & 0xFFFFFFFFL) * cellSize) >>> 32);
+                        if (column * cellSize + dx >= width || row * cellSize + dy >= height) continue;
+
+                        if (isFarFromPoints(grid, columns, rows, cellSize, column, row, dx, dy, radiusSquared)) {
+                            grid[cell] = dx << 16 | dy;
+                            placed++;
+                        }
+                    }
+
+                    return placed;
+                }).sum();
+            }
+        }
+
+        // Leave out a random selection of the points if there are too many, which keeps the rest at least a radius apart
+        int kept = Math.min(count, nPoints);
+        BitSet skipped = new BitSet(count);
+        for (int skips = 0; skips < count - kept; ) {
+            int i = r.nextInt(count);
+            if (!skipped.get(i)) {
+                skipped.set(i);
+                skips++;
+            }
+        }
+
+        // Gather the points cell by cell, so they come out sorted the way the canvas is laid out
+        int[] points = new int[2 * kept];
+        for (int cell = 0, i = 0, j = 0; cell < grid.length; cell++) {
+            if (grid[cell] == EMPTY || skipped.get(i++)) continue;
+
+            points[j++] = (cell % columns) * cellSize + (grid[cell] >>> 16);
+            points[j++] = (cell / columns) * cellSize + (grid[cell] & 0xFFFF);
+        }
+
+        return points;
+    }
+
+    /**
+     * Checks whether a point lies at least a radius away from all points in the cells around it.
+     * The corners of the 5 by 5 block of cells are skipped, as their points always lie further away than the radius.
+     *
+     * @param grid          The grid holding the positions of the points within their cells
+     * @param columns       The amount of columns of the grid
+     * @param rows          The amount of rows of the grid
+     * @param cellSize      The width and height of a cell
+     * @param column        The column of the cell the point lies in
+     * @param row           The row of the cell the point lies in
+     * @param dx            The x-coordinate of the point within its cell
+     * @param dy            The y-coordinate of the point within its cell
+     * @param radiusSquared The square of the minimum distance between points, rounded up
+     * @return {@code true} if no point lies within the radius, {@code false} otherwise
+     */
+    private static boolean isFarFromPoints(int[] grid, int columns, int rows, int cellSize,
+                                           int column, int row, int dx, int dy, long radiusSquared) {
+        for (int ny = Math.max(0, row - 2); ny <= Math.min(rows - 1, row + 2); ny++) {
+            for (int nx = Math.max(0, column - 2); nx <= Math.min(columns - 1, column + 2); nx++) {
+                if (Math.abs(ny - row) == 2 && Math.abs(nx - column) == 2) continue;
+
+                int point = grid[ny * columns + nx];
+                if (point == EMPTY) continue;
+
+                long distX = (long) (nx - column) * cellSize + (point >>> 16) - dx;
+                long distY = (long) (ny - row) * cellSize + (point & 0xFFFF) - dy;
+                if (distX * distX + distY * distY < radiusSquared) return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Scrambles the bits of a value, as in the finalizer of SplitMix64.
+     *
+     * @param z The value to scramble
+     * @return The scrambled value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Looks up the distribution belonging to a display name.
+     *
+     * @param displayName The display name to look for, ignoring case
+     * @return The distribution with the given display name, or {@code null} if there is none
+     */
+    static SeedDistribution findByDisplayName(String displayName) {
+        for (SeedDistribution distribution : values()) {
+            if (distribution.displayName.equalsIgnoreCase(displayName)) return distribution;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The display name corresponding to this enum value.
+     */
+    String getDisplayName() {
+        return displayName;
+    }
+}
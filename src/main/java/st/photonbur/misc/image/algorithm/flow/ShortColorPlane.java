@@ -0,0 +1,127 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Stores colors as three 8.8 fixed-point channels of 16 bits each, taking up 6 bytes per pixel.
+ * The arithmetic is shared with {@link FixedPointColorPlane} through {@link FixedPoint}, so both produce exactly the same colors;
+ * the channels are just stored in a {@code short} array instead of being packed into a {@code long}.
+ */
+class ShortColorPlane implements ColorPlane {
+    /**
+     * The channels of all pixels, stored as red, green and blue right after one another.
+     */
+    private final short[] channels;
+
+    ShortColorPlane(int size) {
+        channels = new short[ColorPlane.channelCount(size, "16-bit")];
+    }
+
+    /**
+     * @param i The index of the channel
+     * @return The unsigned 8.8 fixed-point value of the channel
+     */
+    private int get(int i) {
+        return channels[i] & 0xFFFF;
+    }
+
+    @Override
+    public void copyFrom(int index, ColorPlane source, int sourceIndex) {
+        System.arraycopy(((ShortColorPlane) source).channels, sourceIndex * 3, channels, index * 3, 3);
+    }
+
+    @Override
+    public void getChannels(int index, double[] channels) {
+        int i = index * 3;
+
+        channels[0] = FixedPoint.toDouble(get(i));
+        channels[1] = FixedPoint.toDouble(get(i + 1));
+        channels[2] = FixedPoint.toDouble(get(i + 2));
+    }
+
+    @Override
+    public int getRGB(int index) {
+        int i = index * 3;
+
+        return 0xFF000000 | FixedPoint.round(get(i)) << 16 | FixedPoint.round(get(i + 1)) << 8 | FixedPoint.round(get(i + 2));
+    }
+
+    @Override
+    public void mix(int index, int[] neighbors, int count, double randomness, Random r) {
+        long red = 0, green = 0, blue = 0;
+
+        for (int n = 0; n < count; n++) {
+            int i = neighbors[n] * 3;
+
+            red += get(i);
+            green += get(i + 1);
+            blue += get(i + 2);
+        }
+
+        int i = index * 3;
+        channels[i] = (short) FixedPoint.deviate(FixedPoint.average(red, count), randomness, r);
+        channels[i + 1] = (short) FixedPoint.deviate(FixedPoint.average(green, count), randomness, r);
+        channels[i + 2] = (short) FixedPoint.deviate(FixedPoint.average(blue, count), randomness, r);
+    }
+
+    @Override
+    public void mixWeighted(int index, int[] neighbors, int[] weights, int count, double randomness, Random r) {
+        long red = 0, green = 0, blue = 0;
+        long total = 0;
+
+        for (int n = 0; n < count; n++) {
+            int i = neighbors[n] * 3;
+            int weight = weights[n];
+
+            red += (long) get(i) * weight;
+            green += (long) get(i + 1) * weight;
+            blue += (long) get(i + 2) * weight;
+            total += weight;
+        }
+
+        int i = index * 3;
+        channels[i] = (short) FixedPoint.deviate((int) (red / total), randomness, r);
+        channels[i + 1] = (short) FixedPoint.deviate((int) (green / total), randomness, r);
+        channels[i + 2] = (short) FixedPoint.deviate((int) (blue / total), randomness, r);
+    }
+
+    @Override
+    public void readFrom(ByteBuffer buffer) {
+        buffer.asShortBuffer().get(channels);
+        buffer.position(buffer.position() + channels.length * Short.BYTES);
+    }
+
+    @Override
+    public void setChannels(int index, double c0, double c1, double c2) {
+        int i = index * 3;
+
+        channels[i] = (short) FixedPoint.fromDouble(c0);
+        channels[i + 1] = (short) FixedPoint.fromDouble(c1);
+        channels[i + 2] = (short) FixedPoint.fromDouble(c2);
+    }
+
+    @Override
+    public void setRGB(int index, int rgb) {
+        int i = index * 3;
+
+        channels[i] = (short) (((rgb >> 16) & 0xFF) << FixedPoint.FRACTION_BITS);
+        channels[i + 1] = (short) (((rgb >> 8) & 0xFF) << FixedPoint.FRACTION_BITS);
+        channels[i + 2] = (short) ((rgb & 0xFF) << FixedPoint.FRACTION_BITS);
+    }
+
+    @Override
+    public void setRandom(int index, Random r) {
+        int i = index * 3;
+
+        channels[i] = (short) (r.nextInt(256) << FixedPoint.FRACTION_BITS);
+        channels[i + 1] = (short) (r.nextInt(256) << FixedPoint.FRACTION_BITS);
+        channels[i + 2] = (short) (r.nextInt(256) << FixedPoint.FRACTION_BITS);
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        buffer.asShortBuffer().put(channels);
+        buffer.position(buffer.position() + channels.length * Short.BYTES);
+    }
+}
@@ -0,0 +1,93 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Parses the values a parameter takes on during a sweep.
+ * Values are either listed separated by commas ({@code 10,20,50}), or spread evenly over a range ({@code 10..50:5}),
+ * where the range includes both ends and the number after the colon is the amount of values.
+ */
+final class SweepRange {
+    private SweepRange() { }
+
+    /**
+     * @param input The values to parse
+     * @return The listed values, or the values spread over the range
+     * @throws NumberFormatException When the input isn't a valid list or range
+     */
+    static List<Double> parseDoubles(String input) {
+        return parse(input, Double::parseDouble, (from, to, i, count) -> count == 1 ? from : from + (to - from) * i / (count - 1));
+    }
+
+    /**
+     * @param input The values to parse
+     * @return The listed values, or the values spread over the range, rounded to the nearest integer
+     * @throws NumberFormatException When the input isn't a valid list or range
+     */
+    static List<Integer> parseIntegers(String input) {
+        return parse(input, Integer::parseInt, (from, to, i, count) -> count == 1 ? from : (int) Math.round(from + (to - from) * (double) i / (count - 1)));
+    }
+
+    /**
+     * @param input The values to parse
+     * @return The listed values, or the values spread over the range, rounded to the nearest integer
+     * @throws NumberFormatException When the input isn't a valid list or range
+     */
+    static List<Long> parseLongs(String input) {
+        return parse(input, Long::parseLong, (from, to, i, count) -> count == 1 ? from : Math.round(from + (to - from) * (double) i / (count - 1)));
+    }
+
+    /**
+     * Parses a list of named options, which can't be spread over a range.
+     *
+     * @param input  The options to parse, separated by commas
+     * @param lookup Finds the option by its name, returning {@code null} if there is none
+     * @param <T>    The type of the options
+     * @return The listed options, or {@code null} if any of them is unknown
+     */
+    static <T> List<T> parseOptions(String input, Function<String, T> lookup) {
+        List<T> values = new ArrayList<>();
+
+        for (String name : input.split(",")) {
+            T value = lookup.apply(name.trim());
+            if (value == null) return null;
+
+            values.add(value);
+        }
+
+        return values;
+    }
+
+    private static <T> List<T> parse(String input, Function<String, T> parser, Interpolator<T> interpolator) {
+        List<T> values = new ArrayList<>();
+        int rangeIndex = input.indexOf("..");
+
+        if (rangeIndex < 0) {
+            for (String value : input.split(",")) values.add(parser.apply(value.trim()));
+            return values;
+        }
+
+        int countIndex = input.indexOf(':', rangeIndex);
+        if (countIndex < 0) throw new NumberFormatException("A range needs the amount of values after a colon");
+
+        T from = parser.apply(input.substring(0, rangeIndex).trim());
+        T to = parser.apply(input.substring(rangeIndex + 2, countIndex).trim());
+        int count = Integer.parseInt(input.substring(countIndex + 1).trim());
+        if (count <= 0) throw new NumberFormatException("A range needs at least one value");
+
+        for (int i = 0; i < count; i++) values.add(interpolator.valueAt(from, to, i, count));
+        return values;
+    }
+
+    /**
+     * Calculates the values spread over a range.
+     *
+     * @param <T> The type of the values
+     */
+    @FunctionalInterface
+    private interface Interpolator<T> {
+        T valueAt(T from, T to, int i, int count);
+    }
+}
@@ -0,0 +1,572 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.misc.PngStreamWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates a FLOW image by splitting it into tiles, which are grown by {@link TileWorker}s in separate processes.
+ * <p>
+ * Generation runs in rounds. Every round, each worker grows its tiles for a limited amount of pixels and reports the pixels on their edges.
+ * These edges are passed on to the neighboring tiles as their halo in the next round, so growth crosses tile boundaries without seams.
+ * Tiles with nothing to do are skipped until a neighbor reaches them.
+ * <p>
+ * Finished tiles are fetched right away and written into a raw file on disk, which is turned into a PNG row by row at the end.
+ * Neither the coordinator nor any single worker ever holds the full image in memory.
+ */
+class TileCoordinator {
+    /**
+     * The amount of time to wait for local workers to connect, in milliseconds.
+     */
+    private static final int CONNECT_TIMEOUT = 60_000;
+
+    /**
+     * A rectangular part of the image, grown by a single worker.
+     */
+    private class Tile {
+        private final int id;
+        private final int column;
+        private final int row;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        /**
+         * The worker growing this tile.
+         */
+        private final Connection owner;
+
+        /**
+         * The pixels on the edges of this tile as known at the start of the round, indexed by {@link TileProtocol#TOP} and friends.
+         */
+        private int[][] edges;
+        /**
+         * The pixels on the edges reported during the current round, or {@code null} if the tile didn't take part in it.
+         */
+        private int[][] nextEdges = null;
+        /**
+         * Whether the edges changed during the previous round, meaning the neighbors have new pixels to take in.
+         */
+        private boolean edgesChanged = false;
+        /**
+         * Whether the tile still has pixels scheduled to be visited.
+         */
+        private boolean isActive = false;
+        /**
+         * Whether the tile has been fully visited and written to the output.
+         */
+        private boolean isDone = false;
+
+        Tile(int id, int column, int row, Connection owner) {
+            this.id = id;
+            this.column = column;
+            this.row = row;
+            this.x = column * tileSize;
+            this.y = row * tileSize;
+            this.width = Math.min(tileSize, TileCoordinator.this.width - x);
+            this.height = Math.min(tileSize, TileCoordinator.this.height - y);
+            this.owner = owner;
+
+            // Until the tile reports back, none of its pixels have been visited
+            this.edges = new int[][] {new int[width], new int[width], new int[height], new int[height]};
+        }
+
+        /**
+         * @return The edge of the neighbor facing this tile for every side, or an empty edge on the sides of the image
+         */
+        int[][] getHalo() {
+            return new int[][] {
+                    row > 0 ? getTile(column, row - 1).edges[TileProtocol.BOTTOM] : new int[0],
+                    row < rows - 1 ? getTile(column, row + 1).edges[TileProtocol.TOP] : new int[0],
+                    column > 0 ? getTile(column - 1, row).edges[TileProtocol.RIGHT] : new int[0],
+                    column < columns - 1 ? getTile(column + 1, row).edges[TileProtocol.LEFT] : new int[0]
+            };
+        }
+
+        /**
+         * @return {@code true} if there is anything for this tile to do in the coming round, {@code false} otherwise
+         */
+        boolean needsRound() {
+            if (isDone) return false;
+            if (isActive) return true;
+
+            return (row > 0 && getTile(column, row - 1).edgesChanged)
+                    || (row < rows - 1 && getTile(column, row + 1).edgesChanged)
+                    || (column > 0 && getTile(column - 1, row).edgesChanged)
+                    || (column < columns - 1 && getTile(column + 1, row).edgesChanged);
+        }
+    }
+
+    /**
+     * The connection to a single worker, counting the bytes going through it.
+     */
+    private static class Connection implements Closeable {
+        private final Socket socket;
+        private final CountingInputStream countedIn;
+        private final CountingOutputStream countedOut;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        /**
+         * The tiles grown by this worker.
+         */
+        private final List<Tile> tiles = new ArrayList<>();
+        /**
+         * The time the worker spent growing tiles, in nanoseconds.
+         */
+        private long computeTime = 0;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+
+            this.countedIn = new CountingInputStream(socket.getInputStream());
+            this.countedOut = new CountingOutputStream(socket.getOutputStream());
+            this.in = new DataInputStream(new BufferedInputStream(countedIn, 1 << 16));
+            this.out = new DataOutputStream(new BufferedOutputStream(countedOut, 1 << 16));
+
+            if (in.readInt() != TileProtocol.MAGIC) {
+                socket.close();
+                throw new IOException("Connection from " + socket.getRemoteSocketAddress() + " is not a tile worker");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int nPoints;
+    private final double randomness;
+    /**
+     * The seed of the randomizer, deciding where growth starts and how every tile grows.
+     */
+    private final long seed;
+    private final ColorEngine colorEngine;
+    private final FrontierOrder frontierOrder;
+    private final CanvasLayoutType layoutType;
+    /**
+     * The width and height of every tile, except for the ones on the right and bottom sides of the image.
+     */
+    private final int tileSize;
+    /**
+     * The maximum amount of pixels every tile visits per round.
+     */
+    private final long roundBudget;
+
+    private final int columns;
+    private final int rows;
+    private Tile[] tiles;
+
+    TileCoordinator(int width, int height, int nPoints, double randomness, long seed, ColorEngine colorEngine, FrontierOrder frontierOrder,
+                    CanvasLayoutType layoutType, int tileSize, long roundBudget) {
+        this.width = width;
+        this.height = height;
+        this.nPoints = nPoints;
+        this.randomness = randomness;
+        this.seed = seed;
+        this.colorEngine = colorEngine;
+        this.frontierOrder = frontierOrder;
+        this.layoutType = layoutType;
+        this.tileSize = tileSize;
+        this.roundBudget = roundBudget;
+
+        this.columns = (width + tileSize - 1) / tileSize;
+        this.rows = (height + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * @param column The column of the tile
+     * @param row    The row of the tile
+     * @return The tile at the given position
+     */
+    private Tile getTile(int column, int row) {
+        return tiles[row * columns + column];
+    }
+
+    /**
+     * Generates the image and writes it to file.
+     *
+     * @param localWorkers  The amount of worker processes to start on this machine
+     * @param remoteWorkers The amount of workers started elsewhere to wait for
+     * @param port          The port to listen on for workers, or 0 to pick any free port
+     * @param logDirectory  The directory to write the output of local workers to
+     * @param target        The PNG file to write the image to
+     * @throws IOException When communicating with a worker or writing the image fails
+     */
+    void run(int localWorkers, int remoteWorkers, int port, File logDirectory, File target) throws IOException {
+        int workerCount = localWorkers + remoteWorkers;
+        List<Process> processes = new ArrayList<>();
+        List<Connection> connections = new ArrayList<>();
+
+        // Remote workers need to be able to reach this machine, local ones only need the loopback address
+        InetAddress bindAddress = remoteWorkers > 0 ? null : InetAddress.getLoopbackAddress();
+
+        try (ServerSocket server = new ServerSocket(port, workerCount, bindAddress)) {
+            System.out.printf("\nGenerating a %dx%d FLOW image in %dx%d tiles with seed %d\n", width, height, columns, rows, seed);
+            System.out.printf("Waiting for %d workers on port %d\n", workerCount, server.getLocalPort());
+
+            if (!logDirectory.isDirectory() && !logDirectory.mkdirs()) throw new IOException("Could not create " + logDirectory);
+            for (int i = 0; i < localWorkers; i++) processes.add(startLocalWorker(server.getLocalPort(), new File(logDirectory, "worker-" + i + ".log")));
+
+            // Remote workers may take arbitrarily long to be started by hand
+            if (remoteWorkers == 0) server.setSoTimeout(CONNECT_TIMEOUT);
+            for (int i = 0; i < workerCount; i++) connections.add(new Connection(server.accept()));
+
+            File raw = new File(target.getPath() + ".argb");
+            try {
+                long start = System.nanoTime();
+                try (FileChannel output = FileChannel.open(raw.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    int rounds = generate(connections, output);
+                    long elapsed = System.nanoTime() - start;
+
+                    for (Connection connection : connections) {
+                        connection.out.writeByte(TileProtocol.SHUTDOWN);
+                        connection.out.flush();
+                    }
+
+                    printStatistics(connections, rounds, elapsed);
+                    writePng(output, target);
+                }
+            } finally {
+                Files.deleteIfExists(raw.toPath());
+            }
+        } finally {
+            for (Connection connection : connections) connection.close();
+            for (Process process : processes) {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException ex) {
+                    process.destroy();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a worker process on this machine, using the same Java installation and class path as this process.
+     *
+     * @param port The port the coordinator listens on
+     * @param log  The file to write the output of the worker to
+     * @return The started process
+     * @throws IOException When the process could not be started
+     */
+    private Process startLocalWorker(int port, File log) throws IOException {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+
+        return new ProcessBuilder(java, "-Djava.awt.headless=true", "-cp", System.getProperty("java.class.path"),
+                TileWorker.class.getName(), InetAddress.getLoopbackAddress().getHostAddress(), String.valueOf(port))
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+    }
+
+    /**
+     * Hands out the tiles and seeds to the workers, and runs rounds until every tile has been written to the output.
+     *
+     * @param connections The connections to the workers
+     * @param output      The raw file to write finished tiles to
+     * @return The amount of rounds it took
+     * @throws IOException When communicating with a worker fails
+     */
+    private int generate(List<Connection> connections, FileChannel output) throws IOException {
+        tiles = new Tile[columns * rows];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int id = row * columns + column;
+                Connection owner = connections.get(id % connections.size());
+
+                tiles[id] = new Tile(id, column, row, owner);
+                owner.tiles.add(tiles[id]);
+            }
+        }
+
+        // Scatter the seeds over the whole image, so how the image is tiled doesn't influence where growth starts
+        Random r = new Random(seed);
+        int[][] seeds = new int[tiles.length][];
+        int[] seedCounts = new int[tiles.length];
+        for (int i = 0; i < nPoints; i++) {
+            int x = r.nextInt(width);
+            int y = r.nextInt(height);
+            int id = (y / tileSize) * columns + x / tileSize;
+
+            if (seeds[id] == null) seeds[id] = new int[8];
+            if (seedCounts[id] == seeds[id].length) seeds[id] = Arrays.copyOf(seeds[id], seeds[id].length * 2);
+            seeds[id][seedCounts[id]++] = x - tiles[id].x;
+            seeds[id][seedCounts[id]++] = y - tiles[id].y;
+        }
+
+        for (Tile tile : tiles) {
+            DataOutputStream out = tile.owner.out;
+            out.writeByte(TileProtocol.INIT);
+            out.writeInt(tile.id);
+            out.writeInt(tile.width);
+            out.writeInt(tile.height);
+            out.writeDouble(randomness);
+            out.writeLong(r.nextLong());
+            out.writeUTF(colorEngine.getDisplayName());
+            out.writeUTF(frontierOrder.getDisplayName());
+            out.writeUTF(layoutType.getDisplayName());
+            TileProtocol.writeInts(out, seeds[tile.id] == null ? new int[0] : Arrays.copyOf(seeds[tile.id], seedCounts[tile.id]));
+
+            tile.isActive = seedCounts[tile.id] > 0;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(connections.size());
+        try {
+            int rounds = 0;
+            int finished = 0;
+
+            while (finished < tiles.length) {
+                List<Future<Integer>> results = new ArrayList<>();
+                for (Connection connection : connections) results.add(pool.submit(() -> runRound(connection, output)));
+
+                int ranTiles = 0;
+                for (Future<Integer> result : results) ranTiles += await(result);
+                if (ranTiles == 0) throw new IllegalStateException("Generation stalled with " + (tiles.length - finished) + " tiles left");
+
+                // Publish the new edges only now, so every tile saw the edges of the same round
+                finished = 0;
+                for (Tile tile : tiles) {
+                    tile.edgesChanged = tile.nextEdges != null && !Arrays.deepEquals(tile.edges, tile.nextEdges);
+                    if (tile.nextEdges != null) tile.edges = tile.nextEdges;
+                    tile.nextEdges = null;
+
+                    if (tile.isDone) finished++;
+                }
+
+                rounds++;
+                System.out.printf("Round %d: %d / %d tiles done\r", rounds, finished, tiles.length);
+            }
+
+            return rounds;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Waits for a round of a single worker to finish.
+     *
+     * @param result The pending round
+     * @return The amount of tiles the worker grew
+     * @throws IOException When communicating with the worker failed
+     */
+    private int await(Future<Integer> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a worker", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Grows all tiles of a single worker that have anything to do this round, fetching the ones that finish.
+     *
+     * @param connection The connection to the worker
+     * @param output     The raw file to write finished tiles to
+     * @return The amount of tiles that were grown
+     * @throws IOException When communicating with the worker or writing to the output fails
+     */
+    private int runRound(Connection connection, FileChannel output) throws IOException {
+        DataInputStream in = connection.in;
+        DataOutputStream out = connection.out;
+        int ranTiles = 0;
+
+        for (Tile tile : connection.tiles) {
+            if (!tile.needsRound()) continue;
+
+            out.writeByte(TileProtocol.ROUND);
+            out.writeInt(tile.id);
+            out.writeLong(roundBudget);
+            for (int[] edge : tile.getHalo()) TileProtocol.writeInts(out, edge);
+            out.flush();
+
+            in.readLong();
+            connection.computeTime += in.readLong();
+            long visited = in.readLong();
+            tile.isActive = in.readBoolean();
+
+            tile.nextEdges = new int[TileProtocol.EDGE_COUNT][];
+            for (int edge = 0; edge < TileProtocol.EDGE_COUNT; edge++) tile.nextEdges[edge] = TileProtocol.readInts(in);
+
+            if (visited == (long) tile.width * tile.height) {
+                out.writeByte(TileProtocol.FETCH);
+                out.writeInt(tile.id);
+                out.flush();
+
+                writeTile(tile, TileProtocol.readInts(in), output);
+                tile.isDone = true;
+                tile.isActive = false;
+            }
+
+            ranTiles++;
+        }
+
+        return ranTiles;
+    }
+
+    /**
+     * Writes the pixels of a finished tile to their place in the raw output.
+     *
+     * @param tile   The finished tile
+     * @param pixels The pixels of the tile in row-major order
+     * @param output The raw file holding the image as ARGB integers in row-major order
+     * @throws IOException When writing to the output fails
+     */
+    private void writeTile(Tile tile, int[] pixels, FileChannel output) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(tile.width * 4);
+        IntBuffer intView = buffer.asIntBuffer();
+
+        for (int row = 0; row < tile.height; row++) {
+            intView.clear();
+            intView.put(pixels, row * tile.width, tile.width);
+
+            buffer.clear();
+            long position = ((long) (tile.y + row) * width + tile.x) * 4;
+            while (buffer.hasRemaining()) position += output.write(buffer, position);
+        }
+    }
+
+    /**
+     * Converts the raw output into a PNG, one row at a time.
+     *
+     * @param output The raw file holding the image as ARGB integers in row-major order
+     * @param target The PNG file to write
+     * @throws IOException When reading the raw file or writing the PNG fails
+     */
+    private void writePng(FileChannel output, File target) throws IOException {
+        System.out.println("Exporting to " + target);
+
+        ByteBuffer buffer = ByteBuffer.allocate(width * 4);
+        int[] row = new int[width];
+
+        try (PngStreamWriter png = new PngStreamWriter(target, width, height)) {
+            for (int y = 0; y < height; y++) {
+                buffer.clear();
+                long position = (long) y * width * 4;
+                while (buffer.hasRemaining()) {
+                    if (output.read(buffer, position + buffer.position()) < 0) throw new IOException("Raw output ended at row " + y);
+                }
+
+                buffer.flip();
+                buffer.asIntBuffer().get(row);
+                png.writeRow(row, 0);
+            }
+        }
+    }
+
+    /**
+     * Prints how fast the image was generated and how much of that time went into exchanging borders.
+     *
+     * @param connections The connections to the workers
+     * @param rounds      The amount of rounds it took
+     * @param elapsed     The time generation took, in nanoseconds
+     */
+    private void printStatistics(List<Connection> connections, int rounds, long elapsed) {
+        long computeTime = 0;
+        long sent = 0;
+        long received = 0;
+        for (Connection connection : connections) {
+            computeTime += connection.computeTime;
+            sent += connection.countedOut.count;
+            received += connection.countedIn.count;
+        }
+
+        DecimalFormat format = new DecimalFormat("0.00");
+        double seconds = elapsed / 1e9;
+
+        System.out.printf("\n\nGenerated %dx%d pixels in %d tiles with %d workers:\n - Time: %s s over %d rounds\n - Throughput: %s Mpx/s\n - Exchanged: %s MB sent, %s MB received\n - Workers busy: %s%% of the time, the rest went into exchanging borders and waiting\n\n",
+                width, height, tiles.length, connections.size(),
+                format.format(seconds).replace(",", "."), rounds,
+                format.format((double) width * height / seconds / 1e6).replace(",", "."),
+                format.format(sent / 1e6).replace(",", "."), format.format(received / 1e6).replace(",", "."),
+                format.format(computeTime / (elapsed * (double) connections.size()) * 100).replace(",", "."));
+    }
+
+    /**
+     * An input stream keeping track of how many bytes have been read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+
+            return n;
+        }
+    }
+
+    /**
+     * An output stream keeping track of how many bytes have been written through it.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the tiles of a {@link PagedFlowCanvas} in a backing file, holding only a bounded amount of them in memory.
+ * <p>
+ * Tiles are paged in on demand and kept in least recently used order. Once more tiles are resident than allowed,
+ * the least recently used one is paged out, being written back only if it was changed since it was paged in.
+ * Every tile has a fixed slot in the file, and tiles which were never written are created empty instead of being read,
+ * so the file only grows as far as the canvas has been touched.
+ */
+class TilePager implements Closeable {
+    /**
+     * The state of a square block of pixels of the canvas.
+     */
+    static class Tile {
+        /**
+         * The id of the tile, being its position in the canvas in row-major order.
+         */
+        final int id;
+        /**
+         * The colors of all pixels in the tile, indexed in row-major order.
+         */
+        final ColorPlane colors;
+        /**
+         * The bits marking which pixels have been visited.
+         */
+        final long[] visited;
+        /**
+         * The bits marking which pixels are active, i.e. scheduled to be visited.
+         */
+        final long[] active;
+        /**
+         * Whether the tile was changed since it was last written to the backing file.
+         */
+        boolean dirty = false;
+
+        Tile(int id, ColorEngine colorEngine, int area) {
+            this.id = id;
+            this.colors = colorEngine.createPlane(area);
+            this.visited = new long[(area + 63) >> 6];
+            this.active = new long[(area + 63) >> 6];
+        }
+
+        static boolean get(long[] bits, int index) {
+            return (bits[index >> 6] & 1L << index) != 0;
+        }
+
+        static void set(long[] bits, int index) {
+            bits[index >> 6] |= 1L << index;
+        }
+    }
+
+    /**
+     * Notified about tiles entering and leaving memory.
+     */
+    interface ResidencyListener {
+        void onPageIn(Tile tile);
+
+        void onPageOut(Tile tile);
+    }
+
+    private final ColorEngine colorEngine;
+    /**
+     * The amount of pixels in a tile.
+     */
+    private final int area;
+    /**
+     * The amount of bytes a tile takes up in the backing file.
+     */
+    private final int pageSize;
+    /**
+     * The maximum amount of tiles held in memory.
+     */
+    private final int capacity;
+    private final ResidencyListener listener;
+
+    private final FileChannel file;
+    /**
+     * Scratch space for transferring a single tile from and to the backing file.
+     */
+    private final ByteBuffer page;
+    /**
+     * The ids of the tiles which have been written to the backing file at least once.
+     */
+    private final BitSet written = new BitSet();
+    /**
+     * The resident tiles by id, in least recently used order.
+     */
+    private final LinkedHashMap<Integer, Tile> resident;
+    /**
+     * The tile handed out last, which is looked up again so often that it skips the map.
+     */
+    private Tile last = null;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long pageIns = 0;
+    private long pageOuts = 0;
+
+    /**
+     * @param backingFile The file to page tiles out to, which is deleted once the pager is closed
+     * @param colorEngine The engine used for storing and calculating colors
+     * @param area        The amount of pixels in a tile
+     * @param capacity    The maximum amount of tiles held in memory
+     * @param listener    Notified about tiles entering and leaving memory
+     * @throws IOException When the backing file can't be created
+     */
+    TilePager(File backingFile, ColorEngine colorEngine, int area, int capacity, ResidencyListener listener) throws IOException {
+        this.colorEngine = colorEngine;
+        this.area = area;
+        this.capacity = capacity;
+        this.listener = listener;
+
+        this.pageSize = area * colorEngine.getBytesPerPixel() + 2 * ((area + 63) >> 6) * Long.BYTES;
+        this.page = ByteBuffer.allocateDirect(pageSize);
+        this.resident = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+        this.file = FileChannel.open(backingFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * @param colorEngine The engine used for storing and calculating colors
+     * @param area        The amount of pixels in a tile
+     * @return The amount of bytes a resident tile takes up in memory, roughly
+     */
+    static long estimateTileMemory(ColorEngine colorEngine, int area) {
+        return (long) area * colorEngine.getBytesPerPixel() + 2L * ((area + 63) >> 6) * Long.BYTES;
+    }
+
+    /**
+     * Looks up a tile, paging it in if it isn't resident.
+     * A tile handed out stays resident until at least {@code capacity - 1} other tiles have been looked up.
+     *
+     * @param id The id of the tile
+     * @return The tile
+     * @throws UncheckedIOException When paging fails
+     */
+    Tile get(int id) {
+        if (last != null && last.id == id) {
+            hits++;
+            return last;
+        }
+
+        Tile tile = resident.get(id);
+        if (tile != null) {
+            hits++;
+        } else {
+            misses++;
+            if (resident.size() >= capacity) evict();
+
+            tile = pageIn(id);
+            resident.put(id, tile);
+            listener.onPageIn(tile);
+        }
+
+        return last = tile;
+    }
+
+    /**
+     * @param id The id of the tile
+     * @return {@code true} if the tile is held in memory, {@code false} otherwise
+     */
+    boolean isResident(int id) {
+        return resident.containsKey(id);
+    }
+
+    /**
+     * Pages out the least recently used tile.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Integer, Tile>> it = resident.entrySet().iterator();
+        Tile tile = it.next().getValue();
+        it.remove();
+
+        if (tile == last) last = null;
+        listener.onPageOut(tile);
+        pageOut(tile);
+    }
+
+    private Tile pageIn(int id) {
+        Tile tile = new Tile(id, colorEngine, area);
+
+        // A tile which was never written out is still empty
+        if (!written.get(id)) return tile;
+
+        try {
+            page.clear();
+            long position = (long) id * pageSize;
+            while (page.hasRemaining()) {
+                if (file.read(page, position + page.position()) < 0) throw new IOException("Tile " + id + " was cut short");
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        page.flip();
+        tile.colors.readFrom(page);
+        page.asLongBuffer().get(tile.visited);
+        page.position(page.position() + tile.visited.length * Long.BYTES);
+        page.asLongBuffer().get(tile.active);
+
+        pageIns++;
+        return tile;
+    }
+
+    private void pageOut(Tile tile) {
+        // Tiles which weren't changed are identical to their copy in the file, or empty
+        if (!tile.dirty) return;
+
+        page.clear();
+        tile.colors.writeTo(page);
+        page.asLongBuffer().put(tile.visited);
+        page.position(page.position() + tile.visited.length * Long.BYTES);
+        page.asLongBuffer().put(tile.active);
+        page.position(pageSize);
+        page.flip();
+
+        try {
+            long position = (long) tile.id * pageSize;
+            while (page.hasRemaining()) file.write(page, position + page.position());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        written.set(tile.id);
+        tile.dirty = false;
+        pageOuts++;
+    }
+
+    /**
+     * @return The size of the backing file in bytes
+     * @throws IOException When the size can't be determined
+     */
+    long getFileSize() throws IOException {
+        return file.size();
+    }
+
+    /**
+     * @return A summary of the lookups and paging done so far
+     */
+    String getStatistics() {
+        long lookups = hits + misses;
+
+        return String.format(Locale.ROOT, "%d page-ins, %d page-outs, %d of %d lookups hit (%.3f%% hit rate), %d of %d tiles resident",
+                pageIns, pageOuts, hits, lookups, lookups == 0 ? 0 : hits * 100d / lookups, resident.size(), capacity);
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    long getPageIns() {
+        return pageIns;
+    }
+
+    long getPageOuts() {
+        return pageOuts;
+    }
+
+    @Override
+    public void close() throws IOException {
+        resident.clear();
+        last = null;
+        file.close();
+    }
+}
@@ -0,0 +1,67 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The messages exchanged between a {@link TileCoordinator} and its {@link TileWorker}s.
+ * <p>
+ * After connecting, a worker sends {@link #MAGIC}. From then on the coordinator sends commands, each starting with its opcode:
+ * <ul>
+ *     <li>{@link #INIT}: tile id, width, height, randomness, seed of the randomizer, color engine, frontier order, canvas layout, seeds as (x, y) pairs.
+ *     No reply.</li>
+ *     <li>{@link #ROUND}: tile id, pixel budget, then the halo of the tile as four pixel arrays in the order of the edges.
+ *     The reply holds the amount of visited pixels, the nanoseconds spent, the total amount of visited pixels of the tile,
+ *     whether it still has active pixels, and the four edges of the tile.</li>
+ *     <li>{@link #FETCH}: tile id. The reply holds the pixels of the tile in row-major order, after which the worker forgets the tile.</li>
+ *     <li>{@link #SHUTDOWN}: no arguments. The worker disconnects.</li>
+ * </ul>
+ * Pixels are ARGB integers, with {@link st.photonbur.misc.image.display.renderer.PixelColorFunction#NONE} for unvisited pixels.
+ */
+final class TileProtocol {
+    /**
+     * The value a worker announces itself with, reading "FLTW" in ASCII.
+     */
+    static final int MAGIC = 0x464C5457;
+
+    static final byte INIT = 1;
+    static final byte ROUND = 2;
+    static final byte FETCH = 3;
+    static final byte SHUTDOWN = 4;
+
+    /**
+     * The edges of a tile, in the order they are sent.
+     * Horizontal edges run from left to right, vertical edges from top to bottom.
+     */
+    static final int TOP = 0, BOTTOM = 1, LEFT = 2, RIGHT = 3;
+    static final int EDGE_COUNT = 4;
+
+    private TileProtocol() { }
+
+    /**
+     * Reads an array of integers, prefixed by its length.
+     *
+     * @param in The stream to read from
+     * @return The array read
+     * @throws IOException When reading from the stream fails
+     */
+    static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) values[i] = in.readInt();
+
+        return values;
+    }
+
+    /**
+     * Writes an array of integers, prefixed by its length.
+     *
+     * @param out    The stream to write to
+     * @param values The array to write
+     * @throws IOException When writing to the stream fails
+     */
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+}
@@ -0,0 +1,200 @@
+package st.photonbur.misc.image.algorithm.flow;
+
+import st.photonbur.misc.image.display.renderer.PixelColorFunction;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.HashMap;
+
+/**
+ * Generates tiles of a FLOW image on behalf of a {@link TileCoordinator}, usually in a separate process.
+ * <p>
+ * Every tile is a FLOW image of its own, which stays in this process between rounds.
+ * The pixels of neighboring tiles bordering it are filled into the border of its layout, so the tile grows into them seamlessly.
+ * <p>
+ * This runs without any GUI, so it has an entry point of its own: {@code TileWorker <host> <port>}.
+ */
+public class TileWorker {
+    /**
+     * The tiles held by this worker, by their id.
+     */
+    private final HashMap<Integer, FlowImage> tiles = new HashMap<>();
+    /**
+     * Recycles the buffers of fetched tiles for the tiles after them, which mostly share their size.
+     */
+    private final FlowArena arena = new FlowArena(Runtime.getRuntime().maxMemory() / 4);
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: TileWorker <host> <port>");
+            System.exit(1);
+        }
+
+        try {
+            new TileWorker().serve(args[0], Integer.parseInt(args[1]));
+        } catch (IOException ex) {
+            System.out.println("Error while serving coordinator");
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Connects to a coordinator and carries out its commands until told to shut down.
+     *
+     * @param host The host the coordinator runs on
+     * @param port The port the coordinator listens on
+     * @throws IOException When the connection fails
+     */
+    void serve(String host, int port) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+
+            out.writeInt(TileProtocol.MAGIC);
+            out.flush();
+
+            while (true) {
+                byte opcode = in.readByte();
+
+                switch (opcode) {
+                    case TileProtocol.INIT:
+                        init(in);
+                        break;
+                    case TileProtocol.ROUND:
+                        round(in, out);
+                        break;
+                    case TileProtocol.FETCH:
+                        fetch(in, out);
+                        break;
+                    case TileProtocol.SHUTDOWN:
+                        return;
+                    default:
+                        throw new IOException("Unknown opcode " + opcode);
+                }
+
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Creates a tile and places its seeds.
+     *
+     * @param in The stream to read the arguments from
+     * @throws IOException When reading the arguments fails
+     */
+    private void init(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        int width = in.readInt();
+        int height = in.readInt();
+        double randomness = in.readDouble();
+        long seed = in.readLong();
+        ColorEngine colorEngine = ColorEngine.findByDisplayName(in.readUTF());
+        FrontierOrder frontierOrder = FrontierOrder.findByDisplayName(in.readUTF());
+        CanvasLayoutType layoutType = CanvasLayoutType.findByDisplayName(in.readUTF());
+        int[] seeds = TileProtocol.readInts(in);
+
+        if (colorEngine == null || frontierOrder == null || layoutType == null) {
+            throw new IOException("Tile " + id + " uses unknown settings");
+        }
+
+        // The halo exchanged between tiles is a single pixel wide, which only suffices for the classic kernel
+        FlowImage tile = new FlowImage(width, height, seeds.length / 2, SeedDistribution.UNIFORM, randomness, seed,
+                colorEngine, MixingSpace.SRGB, frontierOrder, NeighborhoodKernel.FOUR, layoutType, 1, null, null, arena, true, null);
+        for (int i = 0; i < seeds.length; i += 2) tile.activate(seeds[i], seeds[i + 1]);
+
+        tiles.put(id, tile);
+    }
+
+    /**
+     * Takes in the latest halo of a tile, grows it for a limited amount of pixels, and replies with its new edges.
+     *
+     * @param in  The stream to read the arguments from
+     * @param out The stream to write the reply to
+     * @throws IOException When reading or writing fails
+     */
+    private void round(DataInputStream in, DataOutputStream out) throws IOException {
+        FlowImage tile = getTile(in.readInt());
+        long budget = in.readLong();
+
+        int[][] halo = new int[TileProtocol.EDGE_COUNT][];
+        for (int edge = 0; edge < halo.length; edge++) halo[edge] = TileProtocol.readInts(in);
+
+        long start = System.nanoTime();
+
+        int width = tile.getWidth();
+        int height = tile.getHeight();
+
+        // Only pixels newly visited by a neighbor are taken in; the others were applied in earlier rounds
+        for (int i = 0; i < halo[TileProtocol.TOP].length; i++) applyHalo(tile, i, -1, halo[TileProtocol.TOP][i]);
+        for (int i = 0; i < halo[TileProtocol.BOTTOM].length; i++) applyHalo(tile, i, height, halo[TileProtocol.BOTTOM][i]);
+        for (int i = 0; i < halo[TileProtocol.LEFT].length; i++) applyHalo(tile, -1, i, halo[TileProtocol.LEFT][i]);
+        for (int i = 0; i < halo[TileProtocol.RIGHT].length; i++) applyHalo(tile, width, i, halo[TileProtocol.RIGHT][i]);
+
+        long steps = tile.generateSteps(budget);
+        long elapsed = System.nanoTime() - start;
+
+        out.writeLong(steps);
+        out.writeLong(elapsed);
+        out.writeLong(tile.getVisitedCount());
+        out.writeBoolean(tile.hasActiveNodes());
+
+        int[] horizontal = new int[width];
+        int[] vertical = new int[height];
+
+        for (int x = 0; x < width; x++) horizontal[x] = tile.getVisitedRGB(x, 0);
+        TileProtocol.writeInts(out, horizontal);
+        for (int x = 0; x < width; x++) horizontal[x] = tile.getVisitedRGB(x, height - 1);
+        TileProtocol.writeInts(out, horizontal);
+        for (int y = 0; y < height; y++) vertical[y] = tile.getVisitedRGB(0, y);
+        TileProtocol.writeInts(out, vertical);
+        for (int y = 0; y < height; y++) vertical[y] = tile.getVisitedRGB(width - 1, y);
+        TileProtocol.writeInts(out, vertical);
+    }
+
+    /**
+     * Fills in a single pixel of the halo of a tile, if it has been visited by the neighboring tile.
+     *
+     * @param tile The tile to fill the halo of
+     * @param x    The x-coordinate of the pixel, relative to the tile
+     * @param y    The y-coordinate of the pixel, relative to the tile
+     * @param rgb  The color of the pixel
+     */
+    private void applyHalo(FlowImage tile, int x, int y, int rgb) {
+        if (rgb != PixelColorFunction.NONE) tile.applyHalo(x, y, rgb);
+    }
+
+    /**
+     * Replies with all pixels of a finished tile, and lets go of the tile.
+     *
+     * @param in  The stream to read the arguments from
+     * @param out The stream to write the reply to
+     * @throws IOException When reading or writing fails
+     */
+    private void fetch(DataInputStream in, DataOutputStream out) throws IOException {
+        int id = in.readInt();
+        FlowImage tile = getTile(id);
+
+        TileProtocol.writeInts(out, tile.getRGB(0, 0, tile.getWidth(), tile.getHeight(), null, 0, tile.getWidth()));
+        tiles.remove(id).recycle();
+    }
+
+    /**
+     * @param id The id of the tile
+     * @return The tile with the given id
+     * @throws IOException When this worker doesn't hold the tile
+     */
+    private FlowImage getTile(int id) throws IOException {
+        FlowImage tile = tiles.get(id);
+        if (tile == null) throw new IOException("Tile " + id + " is not held by this worker");
+
+        return tile;
+    }
+}
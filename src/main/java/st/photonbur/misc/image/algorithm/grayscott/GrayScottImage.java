@@ -0,0 +1,368 @@
+package st.photonbur.misc.image.algorithm.grayscott;
+
+import st.photonbur.misc.image.algorithm.AbstractAlgorithm;
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.display.renderer.ImageRenderType;
+import st.photonbur.misc.image.display.renderer.ImageRendererBuilder;
+import st.photonbur.misc.image.display.renderer.ImageRendererImpl;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Simulates the Gray-Scott model of two chemicals reacting with each other while diffusing across the image.
+ * The first chemical is fed into the image at a steady rate and turned into the second one wherever they meet, while the second one slowly decays.
+ * Depending on the feed and kill rates, this settles into spots, stripes, mazes or ever-changing waves.
+ * <p>
+ * The concentrations of both chemicals are kept in flat float grids, which wrap around at the edges so the image tiles seamlessly.
+ * Every iteration reads one pair of grids and writes the next state into the other pair, so rows can be updated independently of each other;
+ * they are split into bands on a fork/join pool. The diffusion uses a 3x3 Laplacian stencil.
+ * <p>
+ * Pixels aren't rendered while the simulation runs. Instead, the concentrations are copied into a snapshot every so often,
+ * which a thread of its own renders into the image in one go. Snapshots are skipped for as long as the last one is still being rendered,
+ * so the simulation never waits on drawing. Only the final state is rendered in bands on the pool, once the simulation is done.
+ */
+class GrayScottImage extends AbstractAlgorithm {
+    /**
+     * The rate at which the first chemical diffuses.
+     */
+    private static final float DIFFUSION_U = 1.0f;
+    /**
+     * The rate at which the second chemical diffuses.
+     */
+    private static final float DIFFUSION_V = 0.5f;
+    /**
+     * The weight of the orthogonal and diagonal neighbors in the Laplacian stencil, the center weighing -1.
+     */
+    private static final float ORTHOGONAL_WEIGHT = 0.2f, DIAGONAL_WEIGHT = 0.05f;
+    /**
+     * The amount of rows below which bands are no longer split up.
+     */
+    private static final int MIN_BAND_ROWS = 16;
+    /**
+     * The minimum time between two snapshots rendered to the preview.
+     */
+    private static final long SNAPSHOT_INTERVAL_MS = 100;
+    /**
+     * The width and height of the patches of the second chemical the simulation starts from.
+     */
+    private static final int PATCH_SIZE = 10;
+    /**
+     * The colors of the image from no to the most of the second chemical.
+     */
+    private static final int[] PALETTE = createPalette(new Color(0x0B0E2A), new Color(0x1F4E8C), new Color(0x3FB8AF), new Color(0xF4E285), Color.WHITE);
+    /**
+     * The concentration of the second chemical mapped to the last color of the palette.
+     */
+    private static final float MAX_V = 0.45f;
+    /**
+     * The concentration of the second chemical below which it is considered gone.
+     */
+    private static final float MIN_V = 1e-12f;
+
+    /**
+     * The randomizer instance used by this image.
+     */
+    private final Random r;
+    /**
+     * The rate at which the first chemical is fed into the image.
+     */
+    private final float feed;
+    /**
+     * The rate at which the second chemical is removed from the image.
+     */
+    private final float kill;
+    /**
+     * The amount of iterations to simulate.
+     */
+    private final int iterations;
+    /**
+     * The pool to update and render bands of rows on.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * The amount of rows in each band, so there are a few bands for every thread to balance out their work.
+     */
+    private final int bandRows;
+
+    /**
+     * The concentrations of both chemicals as of the current iteration, row by row.
+     */
+    private float[] u, v;
+    /**
+     * The concentrations of both chemicals being worked out for the next iteration.
+     */
+    private float[] nextU, nextV;
+    /**
+     * The concentrations of the second chemical as of the last snapshot, which the renderer reads from.
+     */
+    private float[] snapshot;
+    /**
+     * Whether a snapshot is being rendered, during which the snapshot can't be taken again.
+     */
+    private final AtomicBoolean isRendering = new AtomicBoolean(false);
+    /**
+     * The amount of iterations finished so far.
+     */
+    private volatile int finishedIterations = 0;
+    /**
+     * The moment the simulation started, in nanoseconds.
+     */
+    private volatile long startTime;
+
+    GrayScottImage(int width, int height, float feed, float kill, int iterations, long seed, int threads, AbstractLauncher targetFrame) {
+        super(width, height, BufferedImage.TYPE_INT_ARGB, targetFrame);
+        this.r = new Random(seed);
+        this.feed = feed;
+        this.kill = kill;
+        this.iterations = iterations;
+        this.pool = new ForkJoinPool(threads);
+        this.bandRows = Math.max(MIN_BAND_ROWS, height / (4 * threads));
+
+        if (targetFrame != null) targetFrame.getPreviewPanel().setProvider(this);
+
+        System.out.printf("\nCreating Gray-Scott image with parameters:\n - Image dimensions: %dx%d\n - Feed rate: %.4f\n - Kill rate: %.4f\n - Iterations: %d\n - Seed: %d\n - Threads: %d\n\n",
+                width, height, feed, kill, iterations, seed, threads);
+    }
+
+    /**
+     * @param stops The colors to blend between, evenly spread
+     * @return 256 ARGB colors blending from the first to the last stop
+     */
+    private static int[] createPalette(Color... stops) {
+        int[] palette = new int[256];
+
+        for (int i = 0; i < palette.length; i++) {
+            double position = i / 255d * (stops.length - 1);
+            int stop = Math.min(stops.length - 2, (int) position);
+            double t = position - stop;
+            Color from = stops[stop], to = stops[stop + 1];
+
+            palette[i] = 0xFF000000
+                    | (int) Math.round(from.getRed() + (to.getRed() - from.getRed()) * t) << 16
+                    | (int) Math.round(from.getGreen() + (to.getGreen() - from.getGreen()) * t) << 8
+                    | (int) Math.round(from.getBlue() + (to.getBlue() - from.getBlue()) * t);
+        }
+
+        return palette;
+    }
+
+    @Override
+    protected ImageRendererImpl buildImageRenderer() {
+        return new ImageRendererBuilder()
+                .addRenderer(ImageRenderType.NORMAL, this, (x, y) -> {
+                    float concentration = snapshot[y * getWidth() + x];
+                    return PALETTE[Math.max(0, Math.min(255, (int) (concentration / MAX_V * 255)))];
+                })
+                .build();
+    }
+
+    @Override
+    protected void init() {
+        int size = getWidth() * getHeight();
+        u = new float[size];
+        v = new float[size];
+        nextU = new float[size];
+        nextV = new float[size];
+        snapshot = new float[size];
+
+        // Start out with only the first chemical, apart from a few patches of the second one to set off the reaction
+        Arrays.fill(u, 1);
+        int patches = Math.max(1, size / (50 * PATCH_SIZE * PATCH_SIZE));
+        for (int patch = 0; patch < patches; patch++) {
+            int px = r.nextInt(getWidth()), py = r.nextInt(getHeight());
+
+            for (int y = py; y < py + PATCH_SIZE; y++) {
+                for (int x = px; x < px + PATCH_SIZE; x++) {
+                    int i = (y % getHeight()) * getWidth() + x % getWidth();
+                    u[i] = 0.5f + 0.02f * (r.nextFloat() - 0.5f);
+                    v[i] = 0.25f + 0.02f * (r.nextFloat() - 0.5f);
+                }
+            }
+        }
+
+        startTime = System.nanoTime();
+    }
+
+    @Override
+    protected void generateImage() {
+        long lastSnapshot = System.nanoTime();
+        ExecutorService renderer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Gray-Scott renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Generation was cancelled after " + finishedIterations + " iterations");
+                }
+
+                pool.invoke(new Band(0, getHeight(), this::react));
+
+                float[] swap = u;
+                u = nextU;
+                nextU = swap;
+                swap = v;
+                v = nextV;
+                nextV = swap;
+                finishedIterations++;
+
+                if (hasPreview() && System.nanoTime() - lastSnapshot >= SNAPSHOT_INTERVAL_MS * 1000000 && isRendering.compareAndSet(false, true)) {
+                    System.arraycopy(v, 0, snapshot, 0, v.length);
+                    renderer.execute(this::renderSnapshot);
+                    lastSnapshot = System.nanoTime();
+                }
+            }
+
+            // Let the last snapshot finish, so the final state doesn't get overwritten by it
+            renderer.shutdown();
+            try {
+                renderer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Generation was cancelled while finishing the preview");
+            }
+
+            System.arraycopy(v, 0, snapshot, 0, v.length);
+            pool.invoke(new Band(0, getHeight(), (start, end) -> getImageRenderer().render(new Rectangle(0, start, getWidth(), end - start))));
+            setDrawnArea(new Rectangle(0, 0, getWidth(), getHeight()));
+        } finally {
+            renderer.shutdownNow();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Renders the whole image from the last snapshot, on the thread rendering the preview, and allows the next snapshot to be taken.
+     */
+    private void renderSnapshot() {
+        try {
+            getImageRenderer().render(new Rectangle(0, 0, getWidth(), getHeight()));
+            setDrawnArea(new Rectangle(0, 0, getWidth(), getHeight()));
+        } finally {
+            isRendering.set(false);
+        }
+    }
+
+    /**
+     * Works out the next concentrations of a band of rows. The edges wrap around, and are handled apart from the rest of the row
+     * so the loop over the pixels in between doesn't need to check for them.
+     *
+     * @param start The first row of the band
+     * @param end   The row after the last row of the band
+     */
+    private void react(int start, int end) {
+        int width = getWidth(), height = getHeight();
+        float[] u = this.u, v = this.v, nextU = this.nextU, nextV = this.nextV;
+        // Keep the rates in locals, as reading them from fields for every pixel makes the loop twice as slow
+        float feed = this.feed, decay = this.feed + this.kill;
+
+        for (int y = start; y < end; y++) {
+            int up = (y == 0 ? height - 1 : y - 1) * width, row = y * width, down = (y == height - 1 ? 0 : y + 1) * width;
+
+            react(u, v, nextU, nextV, feed, decay, up, row, down, width - 1, 0, Math.min(1, width - 1));
+            for (int x = 1; x < width - 1; x++) react(u, v, nextU, nextV, feed, decay, up, row, down, x - 1, x, x + 1);
+            if (width > 1) react(u, v, nextU, nextV, feed, decay, up, row, down, width - 2, width - 1, 0);
+        }
+    }
+
+    /**
+     * Works out the next concentrations of a single pixel.
+     *
+     * @param u     The current concentrations of the first chemical
+     * @param v     The current concentrations of the second chemical
+     * @param nextU The next concentrations of the first chemical
+     * @param nextV The next concentrations of the second chemical
+     * @param feed  The rate at which the first chemical is fed into the image
+     * @param decay The rate at which the second chemical is removed from the image, including the feed rate
+     * @param up    The index of the row above the pixel
+     * @param row   The index of the row of the pixel
+     * @param down  The index of the row below the pixel
+     * @param left  The x-coordinate of the column left of the pixel
+     * @param x     The x-coordinate of the pixel
+     * @param right The x-coordinate of the column right of the pixel
+     */
+    private static void react(float[] u, float[] v, float[] nextU, float[] nextV, float feed, float decay, int up, int row, int down, int left, int x, int right) {
+        int i = row + x;
+        float cu = u[i], cv = v[i];
+
+        float laplacianU = ORTHOGONAL_WEIGHT * (u[up + x] + u[down + x] + u[row + left] + u[row + right])
+                + DIAGONAL_WEIGHT * (u[up + left] + u[up + right] + u[down + left] + u[down + right])
+                - cu;
+        float laplacianV = ORTHOGONAL_WEIGHT * (v[up + x] + v[down + x] + v[row + left] + v[row + right])
+                + DIAGONAL_WEIGHT * (v[up + left] + v[up + right] + v[down + left] + v[down + right])
+                - cv;
+
+        float reaction = cu * cv * cv;
+        nextU[i] = cu + DIFFUSION_U * laplacianU - reaction + feed * (1 - cu);
+        float next = cv + DIFFUSION_V * laplacianV + reaction - decay * cv;
+        // The second chemical trickles out ahead of where it spreads to, in amounts small enough to end up as denormal floats,
+        // which the processor handles many times slower; flushing them to 0 halves the time an iteration takes without changing the image
+        nextV[i] = next < MIN_V ? 0 : next;
+    }
+
+    /**
+     * Runs a piece of work over a range of rows, splitting it in halves until the bands are small enough.
+     */
+    private class Band extends RecursiveAction {
+        private final int start;
+        private final int end;
+        private final BandTask task;
+
+        /**
+         * @param start The first row of the band
+         * @param end   The row after the last row of the band
+         * @param task  The work to do for every band
+         */
+        private Band(int start, int end, BandTask task) {
+            this.start = start;
+            this.end = end;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= bandRows) {
+                task.run(start, end);
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            invokeAll(new Band(start, middle, task), new Band(middle, end, task));
+        }
+    }
+
+    /**
+     * A piece of work to do for a band of rows.
+     */
+    private interface BandTask {
+        /**
+         * @param start The first row of the band
+         * @param end   The row after the last row of the band
+         */
+        void run(int start, int end);
+    }
+
+    @Override
+    public String getProgressString() {
+        int finished = finishedIterations;
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        double rate = seconds > 0 ? finished / seconds : 0;
+
+        return isDone
+                ? String.format("Done. Finished %d iterations (%.1f per second).", finished, rate)
+                : String.format("Finished %d / %d iterations (%.1f per second)...", finished, iterations, rate);
+    }
+}
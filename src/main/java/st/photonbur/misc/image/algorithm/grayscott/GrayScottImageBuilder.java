@@ -0,0 +1,107 @@
+package st.photonbur.misc.image.algorithm.grayscott;
+
+import st.photonbur.misc.image.algorithm.AbstractBuilder;
+
+import java.util.Random;
+
+/**
+ * Builds the GrayScottImage using the parameters passed through this class.
+ */
+@SuppressWarnings("UnusedReturnValue")
+class GrayScottImageBuilder extends AbstractBuilder<GrayScottImageBuilder, GrayScottImage> {
+    /**
+     * The rate at which the first chemical is fed into the image.
+     */
+    private float feed = GrayScottPreset.CORAL.getFeed();
+    /**
+     * The rate at which the second chemical is removed from the image.
+     */
+    private float kill = GrayScottPreset.CORAL.getKill();
+    /**
+     * The amount of iterations to simulate.
+     */
+    private int iterations = 10000;
+    /**
+     * The seed of the randomizer, making generation reproducible.
+     */
+    private long seed = new Random().nextLong();
+    /**
+     * The amount of threads to spread every iteration over.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @return A properly constructed {@link GrayScottImage} instance
+     */
+    @Override
+    public GrayScottImage build() {
+        return new GrayScottImage(imageWidth, imageHeight, feed, kill, iterations, seed, threads, guiFrame);
+    }
+
+    /**
+     * Sets both the feed and kill rates to those of a preset.
+     *
+     * @param preset The preset to take the rates from
+     * @return The instance of this builder
+     */
+    GrayScottImageBuilder setPreset(GrayScottPreset preset) {
+        this.feed = preset.getFeed();
+        this.kill = preset.getKill();
+        return this;
+    }
+
+    /**
+     * Sets the rate at which the first chemical is fed into the image.
+     *
+     * @param feed The feed rate
+     * @return The instance of this builder
+     */
+    GrayScottImageBuilder setFeed(float feed) {
+        this.feed = feed;
+        return this;
+    }
+
+    /**
+     * Sets the rate at which the second chemical is removed from the image.
+     *
+     * @param kill The kill rate
+     * @return The instance of this builder
+     */
+    GrayScottImageBuilder setKill(float kill) {
+        this.kill = kill;
+        return this;
+    }
+
+    /**
+     * Sets the amount of iterations to simulate.
+     *
+     * @param iterations The amount of iterations
+     * @return The instance of this builder
+     */
+    GrayScottImageBuilder setIterations(int iterations) {
+        this.iterations = iterations;
+        return this;
+    }
+
+    /**
+     * Sets the seed of the randomizer, so the same image can be generated again.
+     *
+     * @param seed The seed of the randomizer
+     * @return The instance of this builder
+     */
+    GrayScottImageBuilder setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the amount of threads to spread every iteration over.
+     *
+     * @param threads The amount of threads
+     * @return The instance of this builder
+     */
+    GrayScottImageBuilder setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+}
@@ -0,0 +1,158 @@
+package st.photonbur.misc.image.algorithm.grayscott;
+
+import st.photonbur.misc.image.algorithm.AbstractInputHandler;
+import st.photonbur.misc.image.misc.InputStep;
+
+public class GrayScottInputHandler extends AbstractInputHandler {
+    // == STEP INIT == //
+    /**
+     * The {@link InputStep} requesting the preset to take the feed and kill rates from.
+     */
+    private final InputStep<String, GrayScottPreset> preset = new InputStep<>(
+            "Preset (coral/mitosis/spots/worms/maze/waves)",
+            input -> GrayScottPreset.findByDisplayName(input) != null,
+            String::valueOf,
+            GrayScottPreset::findByDisplayName
+    );
+
+    /**
+     * The {@link InputStep} requesting the feed rate, overriding the one of the preset.
+     */
+    private final InputStep<String, String> feed = new InputStep<>(
+            "Feed rate (leave empty for the one of the preset)",
+            input -> input.isEmpty() || isRate(input),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the kill rate, overriding the one of the preset.
+     */
+    private final InputStep<String, String> kill = new InputStep<>(
+            "Kill rate (leave empty for the one of the preset)",
+            input -> input.isEmpty() || isRate(input),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of iterations to simulate.
+     */
+    private final InputStep<Integer, Integer> iterations = new InputStep<>(
+            "Amount of iterations",
+            input -> input > 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the seed of the randomizer.
+     */
+    private final InputStep<String, String> seed = new InputStep<>(
+            "Seed (leave empty for a random one)",
+            input -> input.isEmpty() || input.matches("-?\\d{1,18}"),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of threads to simulate on.
+     */
+    private final InputStep<Integer, Integer> threads = new InputStep<>(
+            "Amount of threads (0 for one per core)",
+            input -> input >= 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * A final copy of the input steps the user is faced with.
+     * This is done so the array won't be created every time it has to be retrieved by the getter.
+     */
+    private final InputStep[] steps = new InputStep[] {
+            imageWidth, imageHeight, preset, feed, kill, iterations, seed, threads, showGUI
+    };
+
+    @Override
+    protected InputStep[] getSteps() {
+        return steps;
+    }
+
+    /**
+     * @param input The input to check
+     * @return Whether the input is a rate between 0 and 1
+     */
+    private static boolean isRate(String input) {
+        try {
+            float rate = Float.parseFloat(input);
+            return rate >= 0 && rate <= 1;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    // == PARAM GETTERS == //
+
+    /**
+     * @return The feed rate, or {@code null} to use the one of the preset
+     */
+    Float getFeed() {
+        return feed.getResult().isEmpty() ? null : Float.parseFloat(feed.getResult());
+    }
+
+    /**
+     * @return The height of the image to generate
+     */
+    Integer getHeight() {
+        return imageHeight.getResult();
+    }
+
+    /**
+     * @return The amount of iterations to simulate
+     */
+    Integer getIterations() {
+        return iterations.getResult();
+    }
+
+    /**
+     * @return The kill rate, or {@code null} to use the one of the preset
+     */
+    Float getKill() {
+        return kill.getResult().isEmpty() ? null : Float.parseFloat(kill.getResult());
+    }
+
+    /**
+     * @return The preset to take the feed and kill rates from
+     */
+    GrayScottPreset getPreset() {
+        return preset.getResult();
+    }
+
+    /**
+     * @return The seed of the randomizer, or {@code null} to pick a random one
+     */
+    Long getSeed() {
+        return seed.getResult().isEmpty() ? null : Long.parseLong(seed.getResult());
+    }
+
+    /**
+     * @return The amount of threads to simulate on
+     */
+    int getThreads() {
+        return threads.getResult() == 0 ? Runtime.getRuntime().availableProcessors() : threads.getResult();
+    }
+
+    /**
+     * @return The width of the image to generate
+     */
+    Integer getWidth() {
+        return imageWidth.getResult();
+    }
+
+    /**
+     * @return {@code true} if the GUI should be shown during generation, {@code false} otherwise
+     */
+    Boolean doShowGUI() {
+        return showGUI.getResult();
+    }
+}
@@ -0,0 +1,72 @@
+package st.photonbur.misc.image.algorithm.grayscott;
+
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.misc.Utils;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+
+public class GrayScottLauncher extends AbstractLauncher<GrayScottInputHandler> {
+    /**
+     * The default title to give to the preview window.
+     */
+    private static final String DEFAULT_PREVIEW_TITLE = "Gray-Scott Preview Window";
+
+    public GrayScottLauncher(GrayScottInputHandler params) {
+        super(params);
+    }
+
+    @Override
+    protected void exportImage() throws IOException {
+        // Create the filename to store the image under
+        String fileName = String.format("out/grayscott/%05d.png", Utils.findLastIndexInDirectory("out/grayscott/", "png") + 1);
+
+        // Construct the image
+        GrayScottImageBuilder builder = new GrayScottImageBuilder()
+                .setImageWidth(getParams().getWidth())
+                .setImageHeight(getParams().getHeight())
+                .setPreset(getParams().getPreset())
+                .setIterations(getParams().getIterations())
+                .setThreads(getParams().getThreads());
+        if (getParams().getFeed() != null) builder.setFeed(getParams().getFeed());
+        if (getParams().getKill() != null) builder.setKill(getParams().getKill());
+        if (getParams().getSeed() != null) builder.setSeed(getParams().getSeed());
+        // Add the GUI to the image builder so it can be updated
+        if (getParams().doShowGUI()) builder.setGUIFrame(this);
+
+        GrayScottImage image = builder.build();
+        image.generate();
+
+        // Write the image to file
+        System.out.println("Exporting to " + fileName);
+        File file = new File(fileName);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        ImageIO.write(image, "png", file);
+    }
+
+    @Override
+    public String getDefaultPreviewTitle() {
+        return DEFAULT_PREVIEW_TITLE;
+    }
+
+    @Override
+    public void setup() {
+        // Generate all parameters needed to run the algorithm
+        getParams().generate();
+
+        // Start exporting the image on another thread
+        new Thread(() -> {
+            try {
+                exportImage();
+            } catch (IOException ex) {
+                System.out.println("Error while exporting Gray-Scott image");
+                ex.printStackTrace();
+            }
+        }).start();
+
+        // Set up the GUI if requested by the user
+        if (getParams().doShowGUI()) setupGUI();
+    }
+}
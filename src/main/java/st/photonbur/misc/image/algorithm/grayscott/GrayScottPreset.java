@@ -0,0 +1,85 @@
+package st.photonbur.misc.image.algorithm.grayscott;
+
+/**
+ * Enum specifying well-known combinations of feed and kill rates for a {@link GrayScottImage}, each growing its own kind of pattern.
+ */
+enum GrayScottPreset {
+    /**
+     * Branching, coral-like growth filling the whole image.
+     */
+    CORAL("coral", 0.0545f, 0.062f),
+    /**
+     * Spots which keep dividing, like cells.
+     */
+    MITOSIS("mitosis", 0.0367f, 0.0649f),
+    /**
+     * Stable spots, spread out evenly.
+     */
+    SPOTS("spots", 0.035f, 0.065f),
+    /**
+     * Long worms, lining up alongside each other.
+     */
+    WORMS("worms", 0.078f, 0.061f),
+    /**
+     * A labyrinth of winding stripes.
+     */
+    MAZE("maze", 0.029f, 0.057f),
+    /**
+     * Spirals and waves which never settle down.
+     */
+    WAVES("waves", 0.014f, 0.045f);
+
+    /**
+     * The display name corresponding to the enum value.
+     */
+    private final String displayName;
+    /**
+     * The rate at which the first chemical is fed into the image.
+     */
+    private final float feed;
+    /**
+     * The rate at which the second chemical is removed from the image.
+     */
+    private final float kill;
+
+    GrayScottPreset(String displayName, float feed, float kill) {
+        this.displayName = displayName;
+        this.feed = feed;
+        this.kill = kill;
+    }
+
+    /**
+     * Looks up the preset belonging to a display name.
+     *
+     * @param displayName The display name to look for, ignoring case
+     * @return The preset with the given display name, or {@code null} if there is none
+     */
+    static GrayScottPreset findByDisplayName(String displayName) {
+        for (GrayScottPreset preset : values()) {
+            if (preset.displayName.equalsIgnoreCase(displayName)) return preset;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The display name corresponding to this enum value.
+     */
+    String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return The rate at which the first chemical is fed into the image
+     */
+    float getFeed() {
+        return feed;
+    }
+
+    /**
+     * @return The rate at which the second chemical is removed from the image
+     */
+    float getKill() {
+        return kill;
+    }
+}
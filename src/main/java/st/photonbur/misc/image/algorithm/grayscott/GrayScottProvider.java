@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.grayscott;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code grayscott} type: simulates Gray-Scott reaction-diffusion, growing spots, stripes and mazes.
+ */
+public class GrayScottProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "grayscott";
+    }
+
+    @Override
+    public void launch() {
+        new GrayScottLauncher(new GrayScottInputHandler()).setup();
+    }
+}
@@ -0,0 +1,85 @@
+package st.photonbur.misc.image.algorithm.voronoi;
+
+/**
+ * Enum specifying the ways the distance between a pixel and a seed can be measured, each shaping the cells differently.
+ */
+enum DistanceMetric {
+    /**
+     * The straight line distance, giving the classic convex cells.
+     * Distances are compared squared, so no square root is taken until a length is needed.
+     */
+    EUCLIDEAN("euclidean") {
+        @Override
+        long distance(long dx, long dy) {
+            return dx * dx + dy * dy;
+        }
+
+        @Override
+        double toLength(long distance) {
+            return Math.sqrt(distance);
+        }
+    },
+    /**
+     * The distance along the axes, giving cells with diagonal edges.
+     */
+    MANHATTAN("manhattan") {
+        @Override
+        long distance(long dx, long dy) {
+            return Math.abs(dx) + Math.abs(dy);
+        }
+    },
+    /**
+     * The largest distance along either axis, giving cells with horizontal, vertical and diagonal edges.
+     */
+    CHEBYSHEV("chebyshev") {
+        @Override
+        long distance(long dx, long dy) {
+            return Math.max(Math.abs(dx), Math.abs(dy));
+        }
+    };
+
+    /**
+     * The display name corresponding to the enum value.
+     */
+    private final String displayName;
+
+    DistanceMetric(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @param dx The horizontal offset between two pixels
+     * @param dy The vertical offset between two pixels
+     * @return A measure of the distance between the pixels, which only has to order distances correctly
+     */
+    abstract long distance(long dx, long dy);
+
+    /**
+     * @param distance A distance as measured by {@link #distance(long, long)}
+     * @return The distance as a length in pixels
+     */
+    double toLength(long distance) {
+        return distance;
+    }
+
+    /**
+     * Looks up the metric belonging to a display name.
+     *
+     * @param displayName The display name to look for, ignoring case
+     * @return The metric with the given display name, or {@code null} if there is none
+     */
+    static DistanceMetric findByDisplayName(String displayName) {
+        for (DistanceMetric metric : values()) {
+            if (metric.displayName.equalsIgnoreCase(displayName)) return metric;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The display name corresponding to this enum value.
+     */
+    String getDisplayName() {
+        return displayName;
+    }
+}
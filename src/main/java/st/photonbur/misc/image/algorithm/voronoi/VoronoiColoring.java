@@ -0,0 +1,84 @@
+package st.photonbur.misc.image.algorithm.voronoi;
+
+/**
+ * Enum specifying the ways the pixels of a {@link VoronoiImage} can be colored, based on the seed nearest to them.
+ */
+enum VoronoiColoring {
+    /**
+     * Every cell takes on the color of its seed.
+     */
+    FLAT("flat") {
+        @Override
+        int color(int seedColor, double falloff) {
+            return seedColor;
+        }
+    },
+    /**
+     * Every cell takes on the color of its seed, darkening towards its edges.
+     */
+    SHADED("shaded") {
+        @Override
+        int color(int seedColor, double falloff) {
+            double shade = 1 - falloff;
+
+            return 0xFF000000
+                    | (int) ((seedColor >> 16 & 0xFF) * shade) << 16
+                    | (int) ((seedColor >> 8 & 0xFF) * shade) << 8
+                    | (int) ((seedColor & 0xFF) * shade);
+        }
+    },
+    /**
+     * The distance to the nearest seed in gray, from black on the seeds to white far away from any, ignoring the colors of the seeds.
+     */
+    DISTANCE("distance") {
+        @Override
+        int color(int seedColor, double falloff) {
+            int gray = (int) (falloff * 255);
+            return 0xFF000000 | gray << 16 | gray << 8 | gray;
+        }
+    };
+
+    /**
+     * The display name corresponding to the enum value.
+     */
+    private final String displayName;
+
+    VoronoiColoring(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @param seedColor The ARGB color of the seed nearest to the pixel
+     * @param falloff   The distance to the seed relative to the average spacing between seeds, capped to 1
+     * @return The ARGB color of the pixel
+     */
+    abstract int color(int seedColor, double falloff);
+
+    /**
+     * @return Whether the color depends on the distance to the seed, which otherwise doesn't need to be calculated
+     */
+    boolean usesDistance() {
+        return this != FLAT;
+    }
+
+    /**
+     * Looks up the coloring belonging to a display name.
+     *
+     * @param displayName The display name to look for, ignoring case
+     * @return The coloring with the given display name, or {@code null} if there is none
+     */
+    static VoronoiColoring findByDisplayName(String displayName) {
+        for (VoronoiColoring coloring : values()) {
+            if (coloring.displayName.equalsIgnoreCase(displayName)) return coloring;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The display name corresponding to this enum value.
+     */
+    String getDisplayName() {
+        return displayName;
+    }
+}
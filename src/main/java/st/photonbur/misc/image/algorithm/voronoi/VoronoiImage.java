@@ -0,0 +1,349 @@
+package st.photonbur.misc.image.algorithm.voronoi;
+
+import st.photonbur.misc.image.algorithm.AbstractAlgorithm;
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.display.renderer.ImageRenderType;
+import st.photonbur.misc.image.display.renderer.ImageRendererBuilder;
+import st.photonbur.misc.image.display.renderer.ImageRendererImpl;
+import st.photonbur.misc.image.display.renderer.PixelColorFunction;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates a Voronoi diagram of randomly scattered seeds, coloring every pixel after the seed nearest to it.
+ * <p>
+ * The nearest seeds are found with the Jump Flooding Algorithm: every pixel starts out knowing only about the seed on top of it, if any,
+ * and every pass looks at the pixels a fixed step away in each of the eight directions, taking over the nearest seed they know about.
+ * The step starts at half the size of the image and halves every pass, so the whole image is covered after {@code log2(size)} passes.
+ * A last pass with a step of 1 is added, which fixes most of the pixels the algorithm gets wrong.
+ * <p>
+ * A pass only reads the result of the pass before it, so every pixel of a pass can be worked out independently.
+ * Passes are split into bands of rows, which are spread over a pool of threads, ping-ponging between two buffers of seed indices.
+ * Without a preview the pixels of the image itself serve as the second buffer, and are colored in place at the end.
+ */
+class VoronoiImage extends AbstractAlgorithm {
+    /**
+     * Marks a pixel which doesn't know about any seed yet.
+     */
+    private static final int NO_SEED = -1;
+    /**
+     * The amount of bands every thread gets to work on per pass, so threads finishing early can pick up the slack of the others.
+     */
+    private static final int BANDS_PER_THREAD = 4;
+    /**
+     * The most pixels an image can have, as the nearest seeds of all of them are kept in a single array.
+     */
+    static final int MAX_PIXELS = Integer.MAX_VALUE - 8;
+
+    /**
+     * The randomizer instance used by this image.
+     */
+    private final Random r;
+    /**
+     * The amount of seeds to scatter.
+     */
+    private final int nSeeds;
+    /**
+     * The way the distance between a pixel and a seed is measured.
+     */
+    private final DistanceMetric metric;
+    /**
+     * The way pixels are colored based on their nearest seed.
+     */
+    private final VoronoiColoring coloring;
+    /**
+     * The amount of threads to spread every pass over.
+     */
+    private final int threads;
+    /**
+     * The distance at which a pixel is considered far away from its seed, being the average spacing between seeds.
+     */
+    private final double spacing;
+
+    /**
+     * The coordinates and colors of the seeds, by their index.
+     */
+    private final int[] seedX, seedY, seedColors;
+    /**
+     * The steps of all passes, from the first to the last.
+     */
+    private final int[] steps;
+    /**
+     * The index of the nearest seed known to every pixel, row by row, as of the last finished pass.
+     */
+    private volatile int[] nearest;
+    /**
+     * The amount of passes finished so far.
+     */
+    private volatile int finishedPasses = 0;
+
+    VoronoiImage(int width, int height, int nSeeds, long seed, DistanceMetric metric, VoronoiColoring coloring, int threads, AbstractLauncher targetFrame) {
+        super(width, height, BufferedImage.TYPE_INT_ARGB, targetFrame);
+        this.r = new Random(seed);
+        this.nSeeds = nSeeds;
+        this.metric = metric;
+        this.coloring = coloring;
+        this.threads = threads;
+        this.spacing = Math.sqrt((double) width * height / nSeeds);
+
+        this.seedX = new int[nSeeds];
+        this.seedY = new int[nSeeds];
+        this.seedColors = new int[nSeeds];
+
+        // Halve the step from the largest power of two below the size of the image down to 1, and finish with another pass of 1
+        int size = Math.max(width, height);
+        int first = size > 1 ? Integer.highestOneBit(size - 1) : 1;
+        this.steps = new int[Integer.numberOfTrailingZeros(first) + 2];
+        for (int i = 0; i < steps.length - 1; i++) steps[i] = first >> i;
+        steps[steps.length - 1] = 1;
+
+        if (targetFrame != null) targetFrame.getPreviewPanel().setProvider(this);
+
+        System.out.printf("\nCreating Voronoi image with parameters:\n - Image dimensions: %dx%d\n - Seeds: %d\n - Seed: %d\n - Distance metric: %s\n - Coloring: %s\n - Threads: %d\n\n",
+                width, height, nSeeds, seed, metric.getDisplayName(), coloring.getDisplayName(), threads);
+    }
+
+    @Override
+    protected ImageRendererImpl buildImageRenderer() {
+        return new ImageRendererBuilder()
+                .addRenderer(ImageRenderType.NORMAL, this, (x, y) -> {
+                    int[] current = nearest;
+                    if (current == null || current[y * getWidth() + x] == NO_SEED) return PixelColorFunction.NONE;
+
+                    return colorOf(x, y, current[y * getWidth() + x]);
+                })
+                .build();
+    }
+
+    @Override
+    protected void init() {
+        int[] seeds = new int[getWidth() * getHeight()];
+        Arrays.fill(seeds, NO_SEED);
+
+        for (int i = 0; i < nSeeds; i++) {
+            seedX[i] = r.nextInt(getWidth());
+            seedY[i] = r.nextInt(getHeight());
+            seedColors[i] = 0xFF000000 | r.nextInt(1 << 24);
+
+            seeds[seedY[i] * getWidth() + seedX[i]] = i;
+        }
+
+        nearest = seeds;
+    }
+
+    @Override
+    protected void generateImage() {
+        int[] pixels = ((DataBufferInt) getRaster().getDataBuffer()).getData();
+        // The preview shows the pixels of the image while the passes run, so they can only double as buffer without one
+        int[] other = hasPreview() ? new int[pixels.length] : pixels;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Voronoi pass");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            int[] first = nearest;
+            for (int step : steps) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Generation was cancelled after " + finishedPasses + " passes");
+                }
+
+                int[] from = nearest;
+                int[] to = from == first ? other : first;
+                forEachBand(pool, (start, end) -> jump(step, from, to, start, end));
+
+                nearest = to;
+                finishedPasses++;
+
+                if (hasPreview()) forEachBand(pool, (start, end) -> color(to, pixels, start, end));
+            }
+
+            int[] result = nearest;
+            forEachBand(pool, (start, end) -> color(result, pixels, start, end));
+            setDrawnArea(new Rectangle(0, 0, getWidth(), getHeight()));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs a single pass over a band of rows, letting every pixel take over the nearest seed known to the pixels a step away from it.
+     * Pixels further than a step away from the edges, which is nearly all of them, are looked at without checking the bounds of their neighbors.
+     *
+     * @param step  The distance to the pixels to look at
+     * @param from  The nearest seeds as of the previous pass
+     * @param to    The buffer to write the nearest seeds of this pass to
+     * @param start The first row of the band
+     * @param end   The row after the last row of the band
+     */
+    private void jump(int step, int[] from, int[] to, int start, int end) {
+        int width = getWidth(), height = getHeight();
+        int[] offsets = {
+                -step * width - step, -step * width, -step * width + step,
+                -step, step,
+                step * width - step, step * width, step * width + step
+        };
+
+        for (int y = start; y < end; y++) {
+            boolean isInnerRow = y >= step && y < height - step;
+
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                if (!isInnerRow || x < step || x >= width - step) {
+                    to[i] = jumpAtEdge(step, from, x, y);
+                    continue;
+                }
+
+                int best = from[i];
+                long bestDistance = best == NO_SEED ? Long.MAX_VALUE : distanceTo(x, y, best);
+
+                for (int offset : offsets) {
+                    int candidate = from[i + offset];
+                    if (candidate == NO_SEED || candidate == best) continue;
+
+                    long distance = distanceTo(x, y, candidate);
+                    if (distance < bestDistance) {
+                        best = candidate;
+                        bestDistance = distance;
+                    }
+                }
+
+                to[i] = best;
+            }
+        }
+    }
+
+    /**
+     * Finds the nearest seed known to a pixel near the edges, skipping the neighbors that fall outside of the image.
+     *
+     * @param step The distance to the pixels to look at
+     * @param from The nearest seeds as of the previous pass
+     * @param x    The x-coordinate of the pixel
+     * @param y    The y-coordinate of the pixel
+     * @return The index of the nearest seed, or {@link #NO_SEED} if none is known
+     */
+    private int jumpAtEdge(int step, int[] from, int x, int y) {
+        int width = getWidth(), height = getHeight();
+        int best = from[y * width + x];
+        long bestDistance = best == NO_SEED ? Long.MAX_VALUE : distanceTo(x, y, best);
+
+        for (int ny = y - step; ny <= y + step; ny += step) {
+            if (ny < 0 || ny >= height) continue;
+
+            for (int nx = x - step; nx <= x + step; nx += step) {
+                if (nx < 0 || nx >= width) continue;
+
+                int candidate = from[ny * width + nx];
+                if (candidate == NO_SEED || candidate == best) continue;
+
+                long distance = distanceTo(x, y, candidate);
+                if (distance < bestDistance) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Colors a band of rows after their nearest seeds. The nearest seeds may be read from the pixels themselves, as every pixel is independent.
+     *
+     * @param seeds  The nearest seed of every pixel
+     * @param pixels The pixels of the image
+     * @param start  The first row of the band
+     * @param end    The row after the last row of the band
+     */
+    private void color(int[] seeds, int[] pixels, int start, int end) {
+        int width = getWidth();
+
+        for (int y = start; y < end; y++) {
+            for (int x = 0, i = y * width; x < width; x++, i++) {
+                pixels[i] = seeds[i] == NO_SEED ? 0 : colorOf(x, y, seeds[i]);
+            }
+        }
+    }
+
+    /**
+     * @param x    The x-coordinate of the pixel
+     * @param y    The y-coordinate of the pixel
+     * @param seed The index of the seed nearest to the pixel
+     * @return The ARGB color of the pixel
+     */
+    private int colorOf(int x, int y, int seed) {
+        double falloff = coloring.usesDistance() ? Math.min(1, metric.toLength(distanceTo(x, y, seed)) / spacing) : 0;
+        return coloring.color(seedColors[seed], falloff);
+    }
+
+    /**
+     * @param x    The x-coordinate of the pixel
+     * @param y    The y-coordinate of the pixel
+     * @param seed The index of the seed
+     * @return The distance between the pixel and the seed, as measured by the metric
+     */
+    private long distanceTo(int x, int y, int seed) {
+        return metric.distance(x - seedX[seed], y - seedY[seed]);
+    }
+
+    /**
+     * Splits the rows of the image into bands and works through them on a pool of threads, waiting for all of them to be done.
+     *
+     * @param pool The pool of threads to work on
+     * @param task The work to do for every band
+     * @throws CancellationException When interrupted while waiting for the bands
+     */
+    private void forEachBand(ExecutorService pool, BandTask task) {
+        int bands = Math.min(getHeight(), threads * BANDS_PER_THREAD);
+        List<Callable<Void>> work = new ArrayList<>(bands);
+
+        for (int band = 0; band < bands; band++) {
+            int start = (int) ((long) getHeight() * band / bands);
+            int end = (int) ((long) getHeight() * (band + 1) / bands);
+
+            work.add(() -> {
+                task.run(start, end);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : pool.invokeAll(work)) future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Generation was cancelled after " + finishedPasses + " passes");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * A piece of work to do for a band of rows.
+     */
+    private interface BandTask {
+        /**
+         * @param start The first row of the band
+         * @param end   The row after the last row of the band
+         */
+        void run(int start, int end);
+    }
+
+    @Override
+    public String getProgressString() {
+        return isDone ? "Done." : String.format("Finished %d / %d passes...", finishedPasses, steps.length);
+    }
+}
@@ -0,0 +1,101 @@
+package st.photonbur.misc.image.algorithm.voronoi;
+
+import st.photonbur.misc.image.algorithm.AbstractBuilder;
+
+import java.util.Random;
+
+/**
+ * Builds the VoronoiImage using the parameters passed through this class.
+ */
+@SuppressWarnings("UnusedReturnValue")
+class VoronoiImageBuilder extends AbstractBuilder<VoronoiImageBuilder, VoronoiImage> {
+    /**
+     * The amount of seeds to scatter.
+     */
+    private int nSeeds;
+    /**
+     * The seed of the randomizer, making generation reproducible.
+     */
+    private long seed = new Random().nextLong();
+    /**
+     * The way the distance between a pixel and a seed is measured.
+     */
+    private DistanceMetric metric = DistanceMetric.EUCLIDEAN;
+    /**
+     * The way pixels are colored based on their nearest seed.
+     */
+    private VoronoiColoring coloring = VoronoiColoring.FLAT;
+    /**
+     * The amount of threads to spread every pass over.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * @return A properly constructed {@link VoronoiImage} instance
+     * @throws IllegalArgumentException When the image has more pixels than fit in an array, see {@link VoronoiImage#MAX_PIXELS}
+     */
+    @Override
+    public VoronoiImage build() {
+        if ((long) imageWidth * imageHeight > VoronoiImage.MAX_PIXELS) {
+            throw new IllegalArgumentException(String.format("A Voronoi diagram of %dx%d pixels is too large, it can have at most %d pixels",
+                    imageWidth, imageHeight, VoronoiImage.MAX_PIXELS));
+        }
+
+        return new VoronoiImage(imageWidth, imageHeight, nSeeds, seed, metric, coloring, threads, guiFrame);
+    }
+
+    /**
+     * Sets the amount of seeds to scatter, each growing into a cell of its own.
+     *
+     * @param nSeeds The amount of seeds to scatter
+     * @return The instance of this builder
+     */
+    VoronoiImageBuilder setAmountOfSeeds(int nSeeds) {
+        this.nSeeds = nSeeds;
+        return this;
+    }
+
+    /**
+     * Sets the seed of the randomizer, so the same image can be generated again.
+     *
+     * @param seed The seed of the randomizer
+     * @return The instance of this builder
+     */
+    VoronoiImageBuilder setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets the way the distance between a pixel and a seed is measured.
+     *
+     * @param metric The metric to use
+     * @return The instance of this builder
+     */
+    VoronoiImageBuilder setMetric(DistanceMetric metric) {
+        this.metric = metric;
+        return this;
+    }
+
+    /**
+     * Sets the way pixels are colored based on their nearest seed.
+     *
+     * @param coloring The coloring to use
+     * @return The instance of this builder
+     */
+    VoronoiImageBuilder setColoring(VoronoiColoring coloring) {
+        this.coloring = coloring;
+        return this;
+    }
+
+    /**
+     * Sets the amount of threads to spread every pass over.
+     *
+     * @param threads The amount of threads
+     * @return The instance of this builder
+     */
+    VoronoiImageBuilder setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+}
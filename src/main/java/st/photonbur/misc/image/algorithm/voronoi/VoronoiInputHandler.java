@@ -0,0 +1,128 @@
+package st.photonbur.misc.image.algorithm.voronoi;
+
+import st.photonbur.misc.image.algorithm.AbstractInputHandler;
+import st.photonbur.misc.image.misc.InputStep;
+
+public class VoronoiInputHandler extends AbstractInputHandler {
+    // == STEP INIT == //
+    /**
+     * The {@link InputStep} requesting the amount of seeds to scatter.
+     */
+    private final InputStep<Integer, Integer> nSeeds = new InputStep<>(
+            "Amount of seeds",
+            input -> input > 0 && input <= (long) getWidth() * getHeight(),
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * The {@link InputStep} requesting the seed of the randomizer.
+     */
+    private final InputStep<String, String> seed = new InputStep<>(
+            "Seed (leave empty for a random one)",
+            input -> input.isEmpty() || input.matches("-?\\d{1,18}"),
+            String::valueOf,
+            String::valueOf
+    );
+
+    /**
+     * The {@link InputStep} requesting the way the distance to a seed is measured.
+     */
+    private final InputStep<String, DistanceMetric> metric = new InputStep<>(
+            "Distance metric (euclidean/manhattan/chebyshev)",
+            input -> DistanceMetric.findByDisplayName(input) != null,
+            String::valueOf,
+            DistanceMetric::findByDisplayName
+    );
+
+    /**
+     * The {@link InputStep} requesting the way pixels are colored.
+     */
+    private final InputStep<String, VoronoiColoring> coloring = new InputStep<>(
+            "Coloring (flat/shaded/distance)",
+            input -> VoronoiColoring.findByDisplayName(input) != null,
+            String::valueOf,
+            VoronoiColoring::findByDisplayName
+    );
+
+    /**
+     * The {@link InputStep} requesting the amount of threads to generate on.
+     */
+    private final InputStep<Integer, Integer> threads = new InputStep<>(
+            "Amount of threads (0 for one per core)",
+            input -> input >= 0,
+            Integer::parseInt,
+            Integer::parseInt
+    );
+
+    /**
+     * A final copy of the input steps the user is faced with.
+     * This is done so the array won't be created every time it has to be retrieved by the getter.
+     */
+    private final InputStep[] steps = new InputStep[] {
+            imageWidth, imageHeight, nSeeds, seed, metric, coloring, threads, showGUI
+    };
+
+    @Override
+    protected InputStep[] getSteps() {
+        return steps;
+    }
+
+    // == PARAM GETTERS == //
+
+    /**
+     * @return The way pixels are colored
+     */
+    VoronoiColoring getColoring() {
+        return coloring.getResult();
+    }
+
+    /**
+     * @return The height of the image to generate
+     */
+    Integer getHeight() {
+        return imageHeight.getResult();
+    }
+
+    /**
+     * @return The way the distance to a seed is measured
+     */
+    DistanceMetric getMetric() {
+        return metric.getResult();
+    }
+
+    /**
+     * @return The amount of seeds to scatter
+     */
+    Integer getNSeeds() {
+        return nSeeds.getResult();
+    }
+
+    /**
+     * @return The seed of the randomizer, or {@code null} to pick a random one
+     */
+    Long getSeed() {
+        return seed.getResult().isEmpty() ? null : Long.parseLong(seed.getResult());
+    }
+
+    /**
+     * @return The amount of threads to generate on
+     */
+    int getThreads() {
+        return threads.getResult() == 0 ? Runtime.getRuntime().availableProcessors() : threads.getResult();
+    }
+
+    /**
+     * @return The width of the image to generate
+     */
+    Integer getWidth() {
+        return imageWidth.getResult();
+    }
+
+    /**
+     * @return {@code true} if the GUI should be shown during generation, {@code false} otherwise
+     */
+    Boolean doShowGUI() {
+        return showGUI.getResult();
+    }
+}
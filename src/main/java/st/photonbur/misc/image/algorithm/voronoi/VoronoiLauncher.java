@@ -0,0 +1,71 @@
+package st.photonbur.misc.image.algorithm.voronoi;
+
+import st.photonbur.misc.image.algorithm.AbstractLauncher;
+import st.photonbur.misc.image.misc.Utils;
+
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+
+public class VoronoiLauncher extends AbstractLauncher<VoronoiInputHandler> {
+    /**
+     * The default title to give to the preview window.
+     */
+    private static final String DEFAULT_PREVIEW_TITLE = "Voronoi Preview Window";
+
+    public VoronoiLauncher(VoronoiInputHandler params) {
+        super(params);
+    }
+
+    @Override
+    protected void exportImage() throws IOException {
+        // Create the filename to store the image under
+        String fileName = String.format("out/voronoi/%05d.png", Utils.findLastIndexInDirectory("out/voronoi/", "png") + 1);
+
+        // Construct the image
+        VoronoiImageBuilder builder = new VoronoiImageBuilder()
+                .setImageWidth(getParams().getWidth())
+                .setImageHeight(getParams().getHeight())
+                .setAmountOfSeeds(getParams().getNSeeds())
+                .setMetric(getParams().getMetric())
+                .setColoring(getParams().getColoring())
+                .setThreads(getParams().getThreads());
+        if (getParams().getSeed() != null) builder.setSeed(getParams().getSeed());
+        // Add the GUI to the image builder so it can be updated
+        if (getParams().doShowGUI()) builder.setGUIFrame(this);
+
+        VoronoiImage image = builder.build();
+        image.generate();
+
+        // Write the image to file
+        System.out.println("Exporting to " + fileName);
+        File file = new File(fileName);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        ImageIO.write(image, "png", file);
+    }
+
+    @Override
+    public String getDefaultPreviewTitle() {
+        return DEFAULT_PREVIEW_TITLE;
+    }
+
+    @Override
+    public void setup() {
+        // Generate all parameters needed to run the algorithm
+        getParams().generate();
+
+        // Start exporting the image on another thread
+        new Thread(() -> {
+            try {
+                exportImage();
+            } catch (IOException ex) {
+                System.out.println("Error while exporting voronoi image");
+                ex.printStackTrace();
+            }
+        }).start();
+
+        // Set up the GUI if requested by the user
+        if (getParams().doShowGUI()) setupGUI();
+    }
+}
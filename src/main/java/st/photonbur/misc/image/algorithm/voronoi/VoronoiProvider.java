@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.algorithm.voronoi;
+
+import st.photonbur.misc.image.startup.AlgorithmProvider;
+
+/**
+ * Registers the {@code voronoi} type: colors a Voronoi diagram of random seeds, found by jump flooding.
+ */
+public class VoronoiProvider implements AlgorithmProvider {
+    @Override
+    public String getName() {
+        return "voronoi";
+    }
+
+    @Override
+    public void launch() {
+        new VoronoiLauncher(new VoronoiInputHandler()).setup();
+    }
+}
@@ -4,7 +4,6 @@ import st.photonbur.misc.image.misc.BufferedImageWithProperties;
 
 import java.awt.*;
 import java.util.HashMap;
-import java.util.function.BiFunction;
 
 /**
  * The implementation of the {@link ImageRenderer} interface.
@@ -15,7 +14,7 @@ public class ImageRendererImpl implements ImageRenderer {
      * The set of functions that map location to a color.
      * This resulting color will be used to draw on the image canvas.
      */
-    private final HashMap<ImageRenderType, BiFunction<Integer, Integer, Color>> colorFunctions;
+    private final HashMap<ImageRenderType, PixelColorFunction> colorFunctions;
 
     /**
      * The set of images that are currently being rendered.
@@ -25,11 +24,25 @@ public class ImageRendererImpl implements ImageRenderer {
      * The currently used render type.
      */
     private ImageRenderType renderType;
+    /**
+     * The color function belonging to the current render type.
+     * Kept separately so rendering a pixel doesn't need a map lookup.
+     */
+    private PixelColorFunction renderFunction;
+    /**
+     * The image belonging to the current render type.
+     */
+    private BufferedImageWithProperties renderImage;
 
-    ImageRendererImpl(HashMap<ImageRenderType, BiFunction<Integer, Integer, Color>> colorFunctions,
+    ImageRendererImpl(HashMap<ImageRenderType, PixelColorFunction> colorFunctions,
                       HashMap<ImageRenderType, BufferedImageWithProperties> images) {
         this.colorFunctions = colorFunctions;
         this.images = images;
+
+        // Render to the first image until told otherwise, so rendering also works without a GUI selecting a type
+        this.renderType = images.keySet().stream().findFirst().orElse(null);
+        this.renderFunction = colorFunctions.get(renderType);
+        this.renderImage = images.get(renderType);
     }
 
     /**
@@ -60,23 +73,41 @@ public class ImageRendererImpl implements ImageRenderer {
     @Override
     public void render(int x, int y) {
         // Determine the color of the pixel to draw
-        Color color = colorFunctions.get(renderType).apply(x, y);
+        int color = renderFunction.getColor(x, y);
         // Apply to the canvas if applicable
-        if (color != null) images.get(renderType).setRGB(x, y, color.getRGB());
+        if (color != PixelColorFunction.NONE) renderImage.setRGB(x, y, color);
     }
 
     /**
-     * Rerenders a certain area of the image.
-     * This is used to let the rendering of an image "catch up" after it has been idle and not saving to the image.
+     * Renders a certain area of the image in one go.
+     * Rows are drawn in runs of pixels which have a color, rather than pixel by pixel, which makes this a lot cheaper for large areas.
+     * This is also used to let the rendering of an image "catch up" after it has been idle and not saving to the image.
      *
-     * @param bounds The bounds determining what part of the image to redraw
+     * @param bounds The bounds determining what part of the image to draw
      * @see ImageRendererImpl#setRenderType(int, Runnable)
-     * @see ImageRendererImpl#render(int, int)
      */
-    private void rerender(Rectangle bounds) {
-        for (int x = bounds.x; x < bounds.x + bounds.width; x++)
-            for (int y = bounds.y; y < bounds.y + bounds.height; y++)
-                render(x, y);
+    public void render(Rectangle bounds) {
+        PixelColorFunction function = renderFunction;
+        BufferedImageWithProperties image = renderImage;
+        int[] row = new int[bounds.width];
+
+        for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+            for (int i = 0; i < bounds.width; i++) row[i] = function.getColor(bounds.x + i, y);
+
+            // Skip pixels without a color, so they are left as they are
+            for (int start = 0; start < bounds.width; ) {
+                if (row[start] == PixelColorFunction.NONE) {
+                    start++;
+                    continue;
+                }
+
+                int end = start + 1;
+                while (end < bounds.width && row[end] != PixelColorFunction.NONE) end++;
+
+                image.setRGB(bounds.x + start, y, end - start, 1, row, start, bounds.width);
+                start = end;
+            }
+        }
     }
 
     /**
@@ -92,6 +123,8 @@ public class ImageRendererImpl implements ImageRenderer {
 
         // Retreive the new render type
         this.renderType = getSupportedTypes()[typeIndex];
+        this.renderFunction = colorFunctions.get(renderType);
+        this.renderImage = images.get(renderType);
 
         // Apply the drawn area to the newly selected image
         images.get(renderType).setDrawnArea(drawnArea);
@@ -99,7 +132,7 @@ public class ImageRendererImpl implements ImageRenderer {
         // Rerender the new image on a new thread
         Rectangle finalDrawnArea = drawnArea;
         if (finalDrawnArea != null) new Thread(() -> {
-            rerender(finalDrawnArea);
+            render(finalDrawnArea);
             if (callback != null) callback.run();
         }).start();
     }
@@ -0,0 +1,22 @@
+package st.photonbur.misc.image.display.renderer;
+
+/**
+ * Maps a location on the canvas to the color to draw there.
+ */
+@FunctionalInterface
+public interface PixelColorFunction {
+    /**
+     * The value signifying that nothing should be drawn at a location.
+     * Fully transparent black is never drawn by any renderer, so it can safely double as "no color".
+     */
+    int NONE = 0;
+
+    /**
+     * Determines the color of a pixel.
+     *
+     * @param x The x coordinate of the pixel
+     * @param y The y coordinate of the pixel
+     * @return The ARGB color to draw the pixel with, or {@link #NONE} if it should not be drawn
+     */
+    int getColor(int x, int y);
+}
@@ -2,13 +2,16 @@ package st.photonbur.misc.image.misc;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
 
 /**
  * An extension of {@link BufferedImage} which also saves within what bounds has been drawn before.
  */
 public class BufferedImageWithProperties extends BufferedImage {
     /**
-     * The area in which has been drawn before
+     * The area in which has been drawn before.
+     * It is grown in place while drawing, so it is only ever touched while holding the lock on this image.
      */
     private Rectangle drawnArea;
 
@@ -16,11 +19,20 @@ public class BufferedImageWithProperties extends BufferedImage {
         super(width, height, imageType);
     }
 
+    /**
+     * Creates an ARGB image on top of an existing raster, such as one recycled from an image before it.
+     *
+     * @param raster The raster holding the pixels, laid out as a {@link #TYPE_INT_ARGB} image would be
+     */
+    public BufferedImageWithProperties(WritableRaster raster) {
+        super(ColorModel.getRGBdefault(), raster, false, null);
+    }
+
     /**
      * @return Retreives the bounds of the area in which pixels have been placed into this image
      */
-    public Rectangle getDrawnArea() {
-        return drawnArea;
+    public synchronized Rectangle getDrawnArea() {
+        return drawnArea == null ? null : new Rectangle(drawnArea);
     }
 
     /**
@@ -30,7 +42,12 @@ public class BufferedImageWithProperties extends BufferedImage {
      * @param y The y coordinate of the pixel to add to the drawn area
      */
     private void include(int x, int y) {
-        drawnArea = (Rectangle) drawnArea.createUnion(new Rectangle(x, y, 1, 1));
+        if (drawnArea.contains(x, y)) return;
+
+        // Grow the bounds in place, as this happens for a good share of the pixels drawn
+        int minX = Math.min(drawnArea.x, x), minY = Math.min(drawnArea.y, y);
+        int maxX = Math.max(drawnArea.x + drawnArea.width, x + 1), maxY = Math.max(drawnArea.y + drawnArea.height, y + 1);
+        drawnArea.setBounds(minX, minY, maxX - minX, maxY - minY);
     }
 
     /**
@@ -38,8 +55,8 @@ public class BufferedImageWithProperties extends BufferedImage {
      *
      * @param drawnArea The bounds to apply
      */
-    public void setDrawnArea(Rectangle drawnArea) {
-        this.drawnArea = drawnArea;
+    public synchronized void setDrawnArea(Rectangle drawnArea) {
+        this.drawnArea = drawnArea == null ? null : new Rectangle(drawnArea);
     }
 
     /**
@@ -60,4 +77,29 @@ public class BufferedImageWithProperties extends BufferedImage {
             include(x, y);
         }
     }
+
+    /**
+     * Draws a rectangle of pixels on the canvas contained within this image.
+     *
+     * @param startX   The x coordinate of the top left corner of the rectangle
+     * @param startY   The y coordinate of the top left corner of the rectangle
+     * @param w        The width of the rectangle
+     * @param h        The height of the rectangle
+     * @param rgbArray The ints representing the colors to draw the pixels with
+     * @param offset   The position in the array of the first pixel to draw
+     * @param scansize The distance in the array between the starts of two rows
+     */
+    @Override
+    public synchronized void setRGB(int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+        super.setRGB(startX, startY, w, h, rgbArray, offset, scansize);
+        if (w <= 0 || h <= 0) return;
+
+        // Expand the drawn area by the opposite corners of the rectangle
+        if (drawnArea == null) {
+            drawnArea = new Rectangle(startX, startY, w, h);
+        } else {
+            include(startX, startY);
+            include(startX + w - 1, startY + h - 1);
+        }
+    }
 }
@@ -0,0 +1,18 @@
+package st.photonbur.misc.image.misc;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Takes in an image one row at a time, from top to bottom, so images can be exported without ever holding them in memory as a whole.
+ */
+public interface ImageRowWriter extends Closeable {
+    /**
+     * Takes in the next row of the image.
+     *
+     * @param argb   The array holding the pixels of the row as ARGB integers
+     * @param offset The position of the first pixel of the row within {@code argb}
+     * @throws IOException When writing fails, or all rows have been written already
+     */
+    void writeRow(int[] argb, int offset) throws IOException;
+}
@@ -0,0 +1,389 @@
+package st.photonbur.misc.image.misc;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Streams an image that is still being drawn to any amount of remote viewers, as deltas of the tiles that changed.
+ * <p>
+ * A single publishing thread looks at the image a bounded amount of times per second, compares it tile by tile against what it saw before,
+ * and encodes every changed tile as a PNG once. Viewers share these encoded tiles: a viewer that is up to date is sent the latest delta as is,
+ * while a viewer that fell behind skips the frames it missed, and is sent the latest version of every tile that changed since instead.
+ * Neither the thread drawing the image nor the publishing thread ever waits for a viewer.
+ * <p>
+ * The stream is binary, with all integers as 4 byte big-endian values. It starts with the width, height and tile size of the image,
+ * followed by any amount of frames. Every frame consists of its sequence number and its amount of tiles, followed by the tiles.
+ * Every tile consists of the x- and y-coordinate of its top left pixel and the length of its PNG, followed by the PNG itself.
+ * The stream ends once the image is done and the last frame has been sent.
+ * {@link #handleViewer} serves a page showing the stream of the {@code live} path next to it.
+ */
+public class LiveCanvasStream {
+    /**
+     * The width and height of the tiles the image is split into by default.
+     */
+    public static final int DEFAULT_TILE_SIZE = 64;
+    /**
+     * The most frames sent per second by default.
+     */
+    public static final int DEFAULT_FRAME_RATE = 10;
+    /**
+     * The resource holding the page showing the stream.
+     */
+    private static final String VIEWER_PAGE = "live-viewer.html";
+
+    /**
+     * The image being streamed.
+     */
+    private final BufferedImage image;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int columns;
+    private final int rows;
+    /**
+     * The time between two frames, in milliseconds.
+     */
+    private final long frameInterval;
+
+    /**
+     * The image as it was last seen by the publishing thread.
+     * Only touched by the publishing thread.
+     */
+    private final int[] snapshot;
+    /**
+     * The latest PNG of every tile, or {@code null} if the tile hasn't changed yet.
+     */
+    private final byte[][] tiles;
+    /**
+     * The frame in which every tile last changed.
+     */
+    private final long[] changedIn;
+    /**
+     * The latest frame as it was sent to the viewers that were up to date.
+     */
+    private byte[] latestFrame;
+    /**
+     * The sequence number of the latest frame, or 0 if none has been published yet.
+     */
+    private long sequence = 0;
+    /**
+     * The amount of viewers currently connected.
+     */
+    private int viewers = 0;
+
+    /**
+     * The thread publishing the frames, or {@code null} if it hasn't been started yet.
+     */
+    private Thread publisher;
+    /**
+     * Whether the image is done, after which the last frame is published.
+     */
+    private volatile boolean isFinishing = false;
+    /**
+     * Whether the last frame has been published.
+     */
+    private boolean isEnded = false;
+
+    /**
+     * @param image     The image to stream
+     * @param tileSize  The width and height of the tiles to split the image into
+     * @param frameRate The most frames to send per second
+     */
+    public LiveCanvasStream(BufferedImage image, int tileSize, int frameRate) {
+        this.image = image;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.tileSize = tileSize;
+        this.columns = (width + tileSize - 1) / tileSize;
+        this.rows = (height + tileSize - 1) / tileSize;
+        this.frameInterval = 1000 / frameRate;
+
+        this.snapshot = new int[width * height];
+        this.tiles = new byte[columns * rows][];
+        this.changedIn = new long[columns * rows];
+    }
+
+    /**
+     * Marks the image as done. The last frame is published right after, after which the stream ends for every viewer.
+     */
+    public synchronized void finish() {
+        isFinishing = true;
+
+        // Without anyone watching there is no thread around to publish the last frame; it is published once somebody connects
+        if (publisher == null) {
+            isEnded = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Starts the publishing thread, unless it is running already.
+     * If the image was done before anyone connected, the whole image is published as a single frame instead.
+     */
+    private synchronized void startPublisher() {
+        if (publisher != null) return;
+        if (isEnded) {
+            publishFrame();
+            return;
+        }
+
+        publisher = new Thread(() -> {
+            try {
+                while (!isFinishing) {
+                    if (getViewerCount() > 0) publishFrame();
+                    // Sleeping a whole interval after publishing, rather than until the next frame is due,
+                    // keeps the time taken away from generating bounded when encoding is slow
+                    Thread.sleep(frameInterval);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                publishFrame();
+
+                synchronized (this) {
+                    isEnded = true;
+                    notifyAll();
+                }
+            }
+        }, "Live canvas publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    /**
+     * @return The amount of viewers currently connected
+     */
+    public synchronized int getViewerCount() {
+        return viewers;
+    }
+
+    /**
+     * Compares the image against what was seen before, and publishes the tiles that changed as a new frame.
+     * Only the area drawn in so far is looked at, if the image keeps track of it.
+     */
+    private void publishFrame() {
+        Rectangle area = new Rectangle(0, 0, width, height);
+        if (image instanceof BufferedImageWithProperties) {
+            area = ((BufferedImageWithProperties) image).getDrawnArea();
+            if (area == null) return;
+        }
+
+        List<Integer> changed = new ArrayList<>();
+        List<byte[]> pngs = new ArrayList<>();
+        int[] tile = new int[tileSize * tileSize];
+
+        for (int row = area.y / tileSize; row <= (area.y + area.height - 1) / tileSize; row++) {
+            for (int column = area.x / tileSize; column <= (area.x + area.width - 1) / tileSize; column++) {
+                int x = column * tileSize, y = row * tileSize;
+                int w = Math.min(tileSize, width - x), h = Math.min(tileSize, height - y);
+
+                image.getRGB(x, y, w, h, tile, 0, w);
+                if (!takeOver(tile, x, y, w, h)) continue;
+
+                changed.add(row * columns + column);
+                pngs.add(encode(tile, w, h));
+            }
+        }
+
+        if (changed.isEmpty()) return;
+
+        synchronized (this) {
+            sequence++;
+            for (int i = 0; i < changed.size(); i++) {
+                tiles[changed.get(i)] = pngs.get(i);
+                changedIn[changed.get(i)] = sequence;
+            }
+
+            latestFrame = encodeFrame(sequence, changed, pngs);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Copies a tile into the snapshot, if it differs from it.
+     *
+     * @param tile The pixels of the tile
+     * @param x    The x-coordinate of the top left pixel of the tile
+     * @param y    The y-coordinate of the top left pixel of the tile
+     * @param w    The width of the tile
+     * @param h    The height of the tile
+     * @return {@code true} if the tile differed from the snapshot, {@code false} otherwise
+     */
+    private boolean takeOver(int[] tile, int x, int y, int w, int h) {
+        boolean isChanged = false;
+
+        for (int dy = 0; dy < h; dy++) {
+            int offset = (y + dy) * width + x;
+            for (int dx = 0; dx < w; dx++) {
+                if (snapshot[offset + dx] != tile[dy * w + dx]) {
+                    isChanged = true;
+                    break;
+                }
+            }
+            if (isChanged) break;
+        }
+
+        if (isChanged) {
+            for (int dy = 0; dy < h; dy++) System.arraycopy(tile, dy * w, snapshot, (y + dy) * width + x, w);
+        }
+
+        return isChanged;
+    }
+
+    /**
+     * Encodes a tile as PNG, favoring speed over size as every frame is only shown briefly.
+     *
+     * @param tile The pixels of the tile
+     * @param w    The width of the tile
+     * @param h    The height of the tile
+     * @return The PNG of the tile
+     */
+    private static byte[] encode(int[] tile, int w, int h) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (PngStreamWriter png = new PngStreamWriter(out, w, h, Deflater.BEST_SPEED)) {
+            for (int dy = 0; dy < h; dy++) png.writeRow(tile, dy * w);
+        } catch (IOException ex) {
+            // Writing to memory doesn't fail
+            throw new IllegalStateException(ex);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a frame the way it is sent to the viewers.
+     *
+     * @param sequence The sequence number of the frame
+     * @param indices  The indices of the tiles in the frame
+     * @param pngs     The PNGs of the tiles in the frame
+     * @return The encoded frame
+     */
+    private byte[] encodeFrame(long sequence, List<Integer> indices, List<byte[]> pngs) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            out.writeInt((int) sequence);
+            out.writeInt(indices.size());
+            for (int i = 0; i < indices.size(); i++) {
+                out.writeInt((indices.get(i) % columns) * tileSize);
+                out.writeInt((indices.get(i) / columns) * tileSize);
+                out.writeInt(pngs.get(i).length);
+                out.write(pngs.get(i));
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Sends the stream to a viewer until the image is done, or the viewer disconnects.
+     * The publishing thread is started on the first viewer to connect.
+     *
+     * @param out The stream to send to; it is flushed after every frame, but not closed
+     * @throws IOException          When sending fails, usually as the viewer disconnected
+     * @throws InterruptedException When interrupted while waiting for a frame
+     */
+    public void serve(OutputStream out) throws IOException, InterruptedException {
+        synchronized (this) {
+            viewers++;
+        }
+        startPublisher();
+
+        try {
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(width);
+            header.writeInt(height);
+            header.writeInt(tileSize);
+            out.flush();
+
+            long sent = 0;
+            while (true) {
+                byte[] frame;
+                List<Integer> indices = new ArrayList<>();
+                List<byte[]> pngs = new ArrayList<>();
+
+                synchronized (this) {
+                    while (sent == sequence && !isEnded) wait();
+                    if (sent == sequence) return;
+
+                    if (sent == sequence - 1) {
+                        frame = latestFrame;
+                    } else {
+                        // Frames were missed, so gather the latest version of everything that changed since
+                        frame = null;
+                        for (int i = 0; i < tiles.length; i++) {
+                            if (changedIn[i] <= sent) continue;
+
+                            indices.add(i);
+                            pngs.add(tiles[i]);
+                        }
+                    }
+
+                    sent = sequence;
+                }
+
+                out.write(frame != null ? frame : encodeFrame(sent, indices, pngs));
+                out.flush();
+            }
+        } finally {
+            synchronized (this) {
+                viewers--;
+            }
+        }
+    }
+
+    /**
+     * Responds to a request with the stream, using chunked transfer so frames go out as soon as they are published.
+     *
+     * @param exchange The request to respond to
+     * @throws IOException          When sending fails
+     * @throws InterruptedException When interrupted while waiting for a frame
+     */
+    public void handleStream(HttpExchange exchange) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, 0);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            serve(out);
+        } catch (IOException ex) {
+            // The viewer went away, which is nothing out of the ordinary
+        }
+    }
+
+    /**
+     * Responds to a request with a page showing the stream served at the {@code live} path next to the requested one.
+     *
+     * @param exchange The request to respond to
+     * @throws IOException When sending fails
+     */
+    public static void handleViewer(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream page = new ByteArrayOutputStream();
+        try (InputStream in = LiveCanvasStream.class.getResourceAsStream(VIEWER_PAGE)) {
+            if (in == null) throw new IOException("Missing resource " + VIEWER_PAGE);
+
+            byte[] buffer = new byte[1 << 12];
+            for (int n; (n = in.read(buffer)) > 0; ) page.write(buffer, 0, n);
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, page.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            page.writeTo(out);
+        }
+    }
+}
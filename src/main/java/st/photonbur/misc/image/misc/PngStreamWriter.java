@@ -0,0 +1,206 @@
+package st.photonbur.misc.image.misc;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a PNG one row at a time, so images can be written without ever holding them in memory as a whole.
+ * Rows have to be passed from top to bottom, as ARGB integers.
+ */
+public class PngStreamWriter implements ImageRowWriter {
+    /**
+     * The signature every PNG file starts with.
+     */
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    /**
+     * The maximum amount of compressed bytes to put into a single IDAT chunk.
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * The stream the file is written to.
+     */
+    private final DataOutputStream output;
+    /**
+     * The stream compressing the image data, which hands its output to {@link #chunker}.
+     */
+    private final DeflaterOutputStream deflater;
+    /**
+     * Collects compressed image data until it can be written as a chunk.
+     */
+    private final ChunkingStream chunker;
+    /**
+     * The deflater used for compressing the image data.
+     */
+    private final Deflater compressor;
+    /**
+     * The size of the buffers, which is kept below {@link #CHUNK_SIZE} for small images.
+     */
+    private final int bufferSize;
+
+    /**
+     * The width of the image.
+     */
+    private final int width;
+    /**
+     * The height of the image.
+     */
+    private final int height;
+    /**
+     * The scratch space holding a single row, as the filter byte followed by RGBA bytes.
+     */
+    private final byte[] row;
+    /**
+     * The amount of rows written so far.
+     */
+    private int writtenRows = 0;
+
+    public PngStreamWriter(File file, int width, int height) throws IOException {
+        this(new FileOutputStream(file), width, height);
+    }
+
+    /**
+     * @param out    The stream to write the PNG to, which is closed along with this writer
+     * @param width  The width of the image
+     * @param height The height of the image
+     * @throws IOException When writing the header fails
+     */
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+        this(out, width, height, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param out              The stream to write the PNG to, which is closed along with this writer
+     * @param width            The width of the image
+     * @param height           The height of the image
+     * @param compressionLevel The level to compress the image data with, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}
+     * @throws IOException When writing the header fails
+     */
+    public PngStreamWriter(OutputStream out, int width, int height, int compressionLevel) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.row = new byte[1 + width * 4];
+        this.compressor = new Deflater(compressionLevel);
+        // Small images, such as tiles, would otherwise spend more time on allocating buffers than on compressing
+        this.bufferSize = (int) Math.min(CHUNK_SIZE, (long) height * row.length + 64);
+
+        this.output = new DataOutputStream(new BufferedOutputStream(out, bufferSize));
+        this.chunker = new ChunkingStream();
+        this.deflater = new DeflaterOutputStream(chunker, compressor, bufferSize);
+
+        output.write(SIGNATURE);
+
+        // 8 bits per channel, color type 6 (RGBA), default compression, filtering and no interlacing
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream headerData = new DataOutputStream(header);
+        headerData.writeInt(width);
+        headerData.writeInt(height);
+        headerData.write(new byte[] {8, 6, 0, 0, 0});
+        writeChunk("IHDR", header.toByteArray(), header.size());
+    }
+
+    /**
+     * Finishes the image. All rows need to have been written by then.
+     *
+     * @throws IOException When writing to the file fails, or not all rows have been written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (writtenRows != height) throw new IOException("Only " + writtenRows + " of " + height + " rows were written");
+
+            deflater.finish();
+            chunker.flushChunk();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            compressor.end();
+            output.close();
+        }
+    }
+
+    /**
+     * Writes a single chunk to the file.
+     *
+     * @param type   The type of the chunk
+     * @param data   The data of the chunk
+     * @param length The amount of bytes of {@code data} to write
+     * @throws IOException When writing to the file fails
+     */
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        output.writeInt(length);
+        output.write(typeBytes);
+        output.write(data, 0, length);
+        output.writeInt((int) crc.getValue());
+    }
+
+    @Override
+    public void writeRow(int[] argb, int offset) throws IOException {
+        if (writtenRows == height) throw new IOException("All " + height + " rows have been written already");
+
+        // Filter type 0 (none), followed by the channels in RGBA order
+        row[0] = 0;
+        for (int x = 0, i = 1; x < width; x++) {
+            int pixel = argb[offset + x];
+
+            row[i++] = (byte) (pixel >> 16);
+            row[i++] = (byte) (pixel >> 8);
+            row[i++] = (byte) pixel;
+            row[i++] = (byte) (pixel >>> 24);
+        }
+
+        deflater.write(row);
+        writtenRows++;
+    }
+
+    /**
+     * Gathers compressed bytes and writes them out as IDAT chunks of bounded size.
+     */
+    private class ChunkingStream extends OutputStream {
+        private final byte[] buffer = new byte[bufferSize];
+        private int size = 0;
+
+        /**
+         * Writes all gathered bytes as a chunk, if there are any.
+         *
+         * @throws IOException When writing to the file fails
+         */
+        void flushChunk() throws IOException {
+            if (size > 0) writeChunk("IDAT", buffer, size);
+            size = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (size == buffer.length) flushChunk();
+            buffer[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (size == buffer.length) flushChunk();
+
+                int n = Math.min(len, buffer.length - size);
+                System.arraycopy(b, off, buffer, size, n);
+                size += n;
+                off += n;
+                len -= n;
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package st.photonbur.misc.image.misc;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps rendered images on disk, addressed by a hash of the parameters they were rendered with.
+ * <p>
+ * An index of all entries is kept in memory in least recently used order, so lookups never touch the disk.
+ * Once the entries take up more than the allowed size, the least recently used ones are evicted.
+ * Hits are copied out using {@link FileChannel#transferTo}, which lets the OS copy the file without passing it through the JVM.
+ */
+public class RenderCache {
+    /**
+     * The extension of the files in the cache.
+     */
+    private static final String EXTENSION = ".png";
+
+    /**
+     * Writes the content of a new entry.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * The directory holding the entries.
+     */
+    private final File directory;
+    /**
+     * The maximum amount of bytes all entries may take up together.
+     */
+    private final long maxSize;
+
+    /**
+     * The sizes of all entries by their hash, in least recently used order.
+     */
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The amount of bytes all entries take up together.
+     */
+    private long size = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Opens the cache in a directory, picking up the entries left there before.
+     *
+     * @param directory The directory holding the entries
+     * @param maxSize   The maximum amount of bytes all entries may take up together
+     * @throws IOException When the directory could not be created
+     */
+    public RenderCache(File directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+
+        // Restore the order of use from the modification times, which are updated on every hit
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files != null) {
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+            for (File file : files) {
+                String name = file.getName();
+                index.put(name.substring(0, name.length() - EXTENSION.length()), file.length());
+                size += file.length();
+            }
+        }
+
+        synchronized (this) {
+            evict();
+        }
+    }
+
+    /**
+     * Turns the parameters of a render into the key of its entry.
+     *
+     * @param parameters A description of every parameter influencing the render
+     * @return The SHA-256 hash of the description, in hexadecimal
+     */
+    public static String keyOf(String parameters) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(parameters.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) key.append(String.format("%02x", b));
+            return key.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the cache fits within its maximum size again.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+
+            //noinspection ResultOfMethodCallIgnored
+            fileOf(entry.getKey()).delete();
+            size -= entry.getValue();
+            evictions++;
+            it.remove();
+        }
+    }
+
+    /**
+     * @param key The key of the entry
+     * @return The file holding the entry
+     */
+    private File fileOf(String key) {
+        return new File(directory, key + EXTENSION);
+    }
+
+    /**
+     * Looks up whether an entry exists, counting towards the hit and miss statistics.
+     *
+     * @param key The key of the entry
+     * @return {@code true} if the entry exists, {@code false} otherwise
+     */
+    public synchronized boolean lookup(String key) {
+        if (index.get(key) != null) {
+            hits++;
+            return true;
+        }
+
+        misses++;
+        return false;
+    }
+
+    /**
+     * Stores a new entry, replacing any existing entry with the same key.
+     * The entry is written to a temporary file first, so it only becomes visible once complete.
+     *
+     * @param key    The key of the entry
+     * @param writer Writes the content of the entry
+     * @throws IOException When writing the entry fails
+     */
+    public void put(String key, ContentWriter writer) throws IOException {
+        File temporary = File.createTempFile(key, ".tmp", directory);
+
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary.toPath())) {
+                writer.write(out);
+            }
+
+            synchronized (this) {
+                Files.move(temporary.toPath(), fileOf(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                long length = fileOf(key).length();
+                Long previous = index.put(key, length);
+                if (previous != null) size -= previous;
+                size += length;
+
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+    }
+
+    /**
+     * Opens an entry for reading, marking it as most recently used.
+     *
+     * @param key The key of the entry
+     * @return The channel to read the entry from, or {@code null} if it doesn't exist (anymore)
+     */
+    public FileChannel open(String key) {
+        File file;
+        synchronized (this) {
+            if (index.get(key) == null) return null;
+
+            file = fileOf(key);
+            // Persist the order of use, so it survives a restart
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+        }
+
+        // An entry may be evicted right after the lookup; if it is, treat it as not cached
+        try {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Copies an entry into a channel.
+     *
+     * @param key    The key of the entry
+     * @param target The channel to copy to
+     * @return {@code true} if the entry was copied, {@code false} if it doesn't exist (anymore)
+     * @throws IOException When copying fails
+     */
+    public boolean transferTo(String key, WritableByteChannel target) throws IOException {
+        FileChannel source = open(key);
+        if (source == null) return false;
+
+        try {
+            transferAll(source, target);
+        } finally {
+            source.close();
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the full content of an opened entry into a channel.
+     *
+     * @param source The opened entry
+     * @param target The channel to copy to
+     * @throws IOException When copying fails
+     * @see #open(String)
+     */
+    public static void transferAll(FileChannel source, WritableByteChannel target) throws IOException {
+        long position = 0;
+        long length = source.size();
+        while (position < length) position += source.transferTo(position, length - position, target);
+    }
+
+    /**
+     * @return A summary of the hits, misses and size of this cache
+     */
+    public synchronized String getStatistics() {
+        long lookups = hits + misses;
+
+        return String.format(Locale.ROOT, "%d hits, %d misses (%.1f%% hit rate), %d entries taking %.1f of %.1f MB, %d evictions",
+                hits, misses, lookups == 0 ? 0 : hits * 100d / lookups, index.size(), size / 1e6, maxSize / 1e6, evictions);
+    }
+
+    /**
+     * @return The hits, misses and size of this cache as JSON
+     */
+    public synchronized String getStatisticsJson() {
+        return String.format(Locale.ROOT, "{\"hits\":%d,\"misses\":%d,\"entries\":%d,\"size\":%d,\"maxSize\":%d,\"evictions\":%d}",
+                hits, misses, index.size(), size, maxSize, evictions);
+    }
+}
@@ -0,0 +1,243 @@
+package st.photonbur.misc.image.misc;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads an image shared through a memory-mapped file by a {@link SharedCanvasWriter}, possibly while it is still being generated.
+ * This is the reference for reading the file, which other processes can map as well, in any language.
+ * <p>
+ * All values are little-endian. The file starts with a header of {@link #HEADER_SIZE} bytes:
+ * <ul>
+ *     <li>0: the magic bytes {@code PIECANV1}</li>
+ *     <li>8: the width, height and tile size, as 32-bit integers</li>
+ *     <li>24: the amount of pixels generated so far, as a 64-bit integer</li>
+ *     <li>32: 1 once the image is done, 0 before, as a 32-bit integer</li>
+ * </ul>
+ * The header is followed by a 64-bit version per tile, row by row, and then by the pixels of the whole image as ARGB 32-bit integers, row by row.
+ * <p>
+ * Tiles are guarded by their versions as seqlocks: the writer makes the version odd before changing a tile and even again after.
+ * A tile was read consistently if its version was even before reading it, and still the same after.
+ * A writer that dies halfway through writing a tile leaves its version odd for good, so readers give up on a tile that stays locked for too long.
+ * Mapping the pixels directly is fine for a consumer which doesn't mind catching a tile halfway through being updated.
+ */
+public class SharedCanvasReader implements AutoCloseable {
+    /**
+     * The bytes every shared canvas starts with.
+     */
+    static final byte[] MAGIC = "PIECANV1".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * The size of the header, after which the tile versions start.
+     */
+    static final int HEADER_SIZE = 64;
+    static final int WIDTH_OFFSET = 8;
+    static final int HEIGHT_OFFSET = 12;
+    static final int TILE_SIZE_OFFSET = 16;
+    /**
+     * The offset of the progress, aligned to 8 bytes so it is never read halfway through being written.
+     */
+    static final int PROGRESS_OFFSET = 24;
+    static final int DONE_OFFSET = 32;
+    /**
+     * The milliseconds a tile may stay locked by default before the writer is taken to have died.
+     * Writing a tile takes microseconds, so this only runs out once the writer is gone.
+     */
+    public static final long DEFAULT_LOCK_TIMEOUT = 1000;
+
+    /**
+     * Written and read to order memory accesses around a seqlock, see {@link #fence()}.
+     */
+    private static volatile int fence;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final IntBuffer pixels;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int columns;
+    private final int rows;
+    /**
+     * The nanoseconds to keep retrying a tile for before giving up on it.
+     */
+    private long lockTimeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LOCK_TIMEOUT);
+
+    /**
+     * Maps a shared canvas.
+     *
+     * @param canvas The file holding the canvas
+     * @throws IOException When the file could not be mapped, or doesn't hold a shared canvas
+     */
+    public SharedCanvasReader(File canvas) throws IOException {
+        this.file = new RandomAccessFile(canvas, "r");
+
+        try {
+            this.buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (buffer.capacity() < HEADER_SIZE || buffer.get(i) != MAGIC[i]) throw new IOException(canvas + " isn't a shared canvas");
+            }
+
+            this.width = buffer.getInt(WIDTH_OFFSET);
+            this.height = buffer.getInt(HEIGHT_OFFSET);
+            this.tileSize = buffer.getInt(TILE_SIZE_OFFSET);
+            this.columns = (width + tileSize - 1) / tileSize;
+            this.rows = (height + tileSize - 1) / tileSize;
+
+            if (buffer.capacity() != sizeOf(width, height, tileSize)) throw new IOException(canvas + " has been cut short");
+
+            buffer.position(pixelOffset(columns, rows));
+            this.pixels = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @param width    The width of the image
+     * @param height   The height of the image
+     * @param tileSize The width and height of the tiles
+     * @return The size of the file sharing an image of the given size
+     */
+    static long sizeOf(int width, int height, int tileSize) {
+        int columns = (width + tileSize - 1) / tileSize, rows = (height + tileSize - 1) / tileSize;
+        return pixelOffset(columns, rows) + 4L * width * height;
+    }
+
+    /**
+     * @param columns The amount of columns of tiles
+     * @param rows    The amount of rows of tiles
+     * @return The offset at which the pixels start
+     */
+    static int pixelOffset(int columns, int rows) {
+        return HEADER_SIZE + 8 * columns * rows;
+    }
+
+    /**
+     * Keeps the memory accesses before and after from being reordered across it, neither by the compiler nor by the processor.
+     * The project targets Java 8, which has no explicit fences; on HotSpot, writing a volatile field followed by reading it has the same effect.
+     */
+    static void fence() {
+        fence = 0;
+        int ignored = fence;
+    }
+
+    /**
+     * Sets how long to keep retrying a tile that is being written to, before taking the writer to have died while writing it.
+     *
+     * @param lockTimeout The milliseconds to retry for
+     */
+    public void setLockTimeout(long lockTimeout) {
+        this.lockTimeout = TimeUnit.MILLISECONDS.toNanos(lockTimeout);
+    }
+
+    /**
+     * Reads a single tile consistently, retrying for as long as it is being written to.
+     *
+     * @param column The column of the tile
+     * @param row    The row of the tile
+     * @param target The array to copy the pixels into, row by row with a stride of the width of the tile
+     * @return The version of the tile that was read, which is 0 if it was never written to
+     * @throws IOException When the tile couldn't be read within the lock timeout, as the writer died halfway through writing it
+     * @see #setLockTimeout(long)
+     */
+    public long readTile(int column, int row, int[] target) throws IOException {
+        int tile = row * columns + column;
+        int x = column * tileSize, y = row * tileSize;
+        int w = Math.min(tileSize, width - x), h = Math.min(tileSize, height - y);
+        long start = System.nanoTime();
+
+        for (int attempt = 0; ; attempt++) {
+            // Only look at the clock every so often, as a tile is usually read within a few attempts
+            if (attempt % 64 == 63 && System.nanoTime() - start > lockTimeout) {
+                throw new IOException(String.format("Tile %d,%d stayed locked for over %d ms, the writer seems to have died while writing it",
+                        column, row, TimeUnit.NANOSECONDS.toMillis(lockTimeout)));
+            }
+
+            long before = buffer.getLong(HEADER_SIZE + 8 * tile);
+            if ((before & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            fence();
+
+            for (int dy = 0; dy < h; dy++) {
+                for (int dx = 0, i = (y + dy) * width + x; dx < w; dx++, i++) target[dy * w + dx] = pixels.get(i);
+            }
+
+            fence();
+            if (buffer.getLong(HEADER_SIZE + 8 * tile) == before) return before;
+        }
+    }
+
+    /**
+     * Reads the whole image, every tile of it consistently.
+     *
+     * @return The image as it currently is
+     * @throws IOException When a tile couldn't be read within the lock timeout, see {@link #readTile(int, int, int[])}
+     */
+    public BufferedImage readImage() throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] tile = new int[tileSize * tileSize];
+
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                readTile(column, row, tile);
+
+                int x = column * tileSize, y = row * tileSize;
+                int w = Math.min(tileSize, width - x), h = Math.min(tileSize, height - y);
+                image.setRGB(x, y, w, h, tile, 0, w);
+            }
+        }
+
+        return image;
+    }
+
+    /**
+     * @return The amount of pixels generated so far
+     */
+    public long getProgress() {
+        return buffer.getLong(PROGRESS_OFFSET);
+    }
+
+    /**
+     * @return Whether the image is done, after which it won't change anymore
+     */
+    public boolean isDone() {
+        return buffer.getInt(DONE_OFFSET) != 0;
+    }
+
+    /**
+     * @return The pixels of the image as ARGB integers, row by row, mapped directly without any guarding
+     */
+    public IntBuffer getPixels() {
+        return pixels.duplicate();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
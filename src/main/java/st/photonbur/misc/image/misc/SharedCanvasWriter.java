@@ -0,0 +1,220 @@
+package st.photonbur.misc.image.misc;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.LongSupplier;
+
+/**
+ * Shares an image that is still being drawn with other processes, through a memory-mapped file.
+ * Other processes map the same file, and read the image straight from memory without decoding it; see {@link SharedCanvasReader} for the layout.
+ * <p>
+ * A single publishing thread looks at the image a bounded amount of times per second, compares it tile by tile against the file,
+ * and copies over the tiles that changed, guarding each with its seqlock. The thread drawing the image never waits for it.
+ */
+public class SharedCanvasWriter implements AutoCloseable {
+    /**
+     * The width and height of the tiles the image is split into by default.
+     */
+    public static final int DEFAULT_TILE_SIZE = 64;
+    /**
+     * The most times per second the file is updated by default.
+     */
+    public static final int DEFAULT_UPDATE_RATE = 10;
+
+    /**
+     * The image being shared.
+     */
+    private final BufferedImage image;
+    /**
+     * Supplies the amount of pixels generated so far.
+     */
+    private final LongSupplier progress;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+    private final int columns;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final IntBuffer pixels;
+
+    /**
+     * The thread publishing the tiles, or {@code null} if it hasn't been started.
+     */
+    private Thread publisher;
+    /**
+     * Whether the image is done.
+     */
+    private volatile boolean isFinishing = false;
+
+    /**
+     * Creates the file sharing an image, replacing it if it exists.
+     *
+     * @param canvas   The file to share the image through
+     * @param image    The image to share
+     * @param tileSize The width and height of the tiles to split the image into
+     * @param progress Supplies the amount of pixels generated so far
+     * @throws IOException When the file could not be created, or the image is too large to map
+     */
+    public SharedCanvasWriter(File canvas, BufferedImage image, int tileSize, LongSupplier progress) throws IOException {
+        this.image = image;
+        this.progress = progress;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.tileSize = tileSize;
+        this.columns = (width + tileSize - 1) / tileSize;
+        int rows = (height + tileSize - 1) / tileSize;
+
+        long size = SharedCanvasReader.sizeOf(width, height, tileSize);
+        if (size > Integer.MAX_VALUE) throw new IOException("An image of " + width + "x" + height + " is too large to share");
+
+        this.file = new RandomAccessFile(canvas, "rw");
+        try {
+            // Start out from an empty file, so everything that isn't written to reads as 0
+            file.setLength(0);
+            file.setLength(size);
+
+            this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(SharedCanvasReader.WIDTH_OFFSET, width);
+        buffer.putInt(SharedCanvasReader.HEIGHT_OFFSET, height);
+        buffer.putInt(SharedCanvasReader.TILE_SIZE_OFFSET, tileSize);
+
+        buffer.position(SharedCanvasReader.pixelOffset(columns, rows));
+        this.pixels = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+        // The magic goes in last, so a reader never takes a half written header for a canvas
+        SharedCanvasReader.fence();
+        for (int i = 0; i < SharedCanvasReader.MAGIC.length; i++) buffer.put(i, SharedCanvasReader.MAGIC[i]);
+    }
+
+    /**
+     * Starts updating the file as the image is drawn.
+     *
+     * @param updateRate The most times per second to update the file
+     */
+    public synchronized void start(int updateRate) {
+        if (publisher != null) return;
+
+        publisher = new Thread(() -> {
+            try {
+                while (!isFinishing) {
+                    publish();
+                    Thread.sleep(1000 / updateRate);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, "Shared canvas publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    /**
+     * Marks the image as done: the file is brought up to date a last time and flagged as done, after which it doesn't change anymore.
+     *
+     * @throws InterruptedException When interrupted while waiting for the publishing thread to stop
+     */
+    public synchronized void finish() throws InterruptedException {
+        if (isFinishing) return;
+
+        isFinishing = true;
+        if (publisher != null) publisher.join();
+
+        publish();
+        SharedCanvasReader.fence();
+        buffer.putInt(SharedCanvasReader.DONE_OFFSET, 1);
+        buffer.force();
+    }
+
+    /**
+     * Copies every tile which changed since the last time over to the file, and updates the progress.
+     * Only the area drawn in so far is looked at, if the image keeps track of it.
+     */
+    private void publish() {
+        // Read the progress first, so it never claims more than the pixels copied over
+        long generated = progress.getAsLong();
+
+        Rectangle area = new Rectangle(0, 0, width, height);
+        if (image instanceof BufferedImageWithProperties) area = ((BufferedImageWithProperties) image).getDrawnArea();
+
+        if (area != null) {
+            int[] tile = new int[tileSize * tileSize];
+
+            for (int row = area.y / tileSize; row <= (area.y + area.height - 1) / tileSize; row++) {
+                for (int column = area.x / tileSize; column <= (area.x + area.width - 1) / tileSize; column++) {
+                    int x = column * tileSize, y = row * tileSize;
+                    int w = Math.min(tileSize, width - x), h = Math.min(tileSize, height - y);
+
+                    image.getRGB(x, y, w, h, tile, 0, w);
+                    if (isChanged(tile, x, y, w, h)) writeTile(row * columns + column, tile, x, y, w, h);
+                }
+            }
+        }
+
+        SharedCanvasReader.fence();
+        buffer.putLong(SharedCanvasReader.PROGRESS_OFFSET, generated);
+    }
+
+    /**
+     * Checks whether a tile differs from what is in the file.
+     *
+     * @param tile The pixels of the tile
+     * @param x    The x-coordinate of the top left pixel of the tile
+     * @param y    The y-coordinate of the top left pixel of the tile
+     * @param w    The width of the tile
+     * @param h    The height of the tile
+     * @return {@code true} if the tile differs from the file, {@code false} otherwise
+     */
+    private boolean isChanged(int[] tile, int x, int y, int w, int h) {
+        for (int dy = 0; dy < h; dy++) {
+            for (int dx = 0, i = (y + dy) * width + x; dx < w; dx++, i++) {
+                if (pixels.get(i) != tile[dy * w + dx]) return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Copies a tile over to the file, guarded by its seqlock.
+     *
+     * @param index The index of the tile
+     * @param tile  The pixels of the tile
+     * @param x     The x-coordinate of the top left pixel of the tile
+     * @param y     The y-coordinate of the top left pixel of the tile
+     * @param w     The width of the tile
+     * @param h     The height of the tile
+     */
+    private void writeTile(int index, int[] tile, int x, int y, int w, int h) {
+        int versionOffset = SharedCanvasReader.HEADER_SIZE + 8 * index;
+        long version = buffer.getLong(versionOffset);
+
+        buffer.putLong(versionOffset, version + 1);
+        SharedCanvasReader.fence();
+
+        for (int dy = 0; dy < h; dy++) {
+            for (int dx = 0, i = (y + dy) * width + x; dx < w; dx++, i++) pixels.put(i, tile[dy * w + dx]);
+        }
+
+        SharedCanvasReader.fence();
+        buffer.putLong(versionOffset, version + 2);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,460 @@
+package st.photonbur.misc.image.misc;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes an image as a pyramid of PNG tiles, one row at a time, so images far too large for a single PNG can be browsed by a tiled viewer.
+ * <p>
+ * Every level of the pyramid is half the width and height of the one above it, down to a level that fits in a single tile.
+ * The levels are built alongside each other: every level only holds the strip of rows making up its current row of tiles,
+ * and hands every second row to the level below, averaged with the row before it.
+ * Once a strip is full its tiles are copied out and encoded on a pool of threads, while the next strip is filled in.
+ * The amount of tiles waiting to be encoded is bounded, so memory stays in proportion to the width of the image, whatever its height.
+ */
+public class TilePyramidWriter implements ImageRowWriter {
+    /**
+     * The width and height of the tiles by default, which is what most viewers expect.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * Enum specifying the ways the tiles of a pyramid can be laid out on disk.
+     */
+    public enum Layout {
+        /**
+         * Deep Zoom: a {@code <name>.dzi} descriptor next to a {@code <name>_files} directory holding {@code <level>/<column>_<row>.png}.
+         * Level 0 is a single pixel and every level doubles in size up to the image itself; tiles along the edges are cropped.
+         */
+        DEEP_ZOOM("dzi") {
+            @Override
+            int countLevels(int width, int height, int tileSize) {
+                return 33 - Integer.numberOfLeadingZeros(Math.max(width, height) - 1);
+            }
+
+            @Override
+            File getTileFile(File directory, String name, int level, int column, int row) {
+                return new File(directory, String.format("%s_files/%d/%d_%d.png", name, level, column, row));
+            }
+
+            @Override
+            File getDescriptorFile(File directory, String name) {
+                return new File(directory, name + ".dzi");
+            }
+
+            @Override
+            void writeDescriptor(File directory, String name, int width, int height, int tileSize, int levels) throws IOException {
+                writeText(getDescriptorFile(directory, name), String.format(
+                        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                        "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"png\" Overlap=\"0\" TileSize=\"%d\">\n" +
+                        "  <Size Width=\"%d\" Height=\"%d\"/>\n" +
+                        "</Image>\n", tileSize, width, height));
+            }
+        },
+        /**
+         * XYZ: a {@code <name>.json} descriptor next to a {@code <name>} directory holding {@code <zoom>/<x>/<y>.png}.
+         * Zoom 0 fits the whole image in a single tile and every zoom doubles in size up to the image itself;
+         * the image sits in the top left corner and every tile is padded to full size with transparent pixels.
+         */
+        XYZ("xyz") {
+            @Override
+            int countLevels(int width, int height, int tileSize) {
+                int tiles = (Math.max(width, height) + tileSize - 1) / tileSize;
+                return 33 - Integer.numberOfLeadingZeros(tiles - 1);
+            }
+
+            @Override
+            boolean isPadded() {
+                return true;
+            }
+
+            @Override
+            File getTileFile(File directory, String name, int level, int column, int row) {
+                return new File(directory, String.format("%s/%d/%d/%d.png", name, level, column, row));
+            }
+
+            @Override
+            File getDescriptorFile(File directory, String name) {
+                return new File(directory, name + ".json");
+            }
+
+            @Override
+            void writeDescriptor(File directory, String name, int width, int height, int tileSize, int levels) throws IOException {
+                writeText(getDescriptorFile(directory, name), String.format(
+                        "{\"format\":\"png\",\"width\":%d,\"height\":%d,\"tileSize\":%d,\"minzoom\":0,\"maxzoom\":%d}\n",
+                        width, height, tileSize, levels - 1));
+            }
+        };
+
+        /**
+         * The display name corresponding to the enum value.
+         */
+        private final String displayName;
+
+        Layout(String displayName) {
+            this.displayName = displayName;
+        }
+
+        /**
+         * @param width    The width of the image
+         * @param height   The height of the image
+         * @param tileSize The width and height of the tiles
+         * @return The amount of levels in the pyramid of an image of the given size
+         */
+        abstract int countLevels(int width, int height, int tileSize);
+
+        /**
+         * @return Whether tiles along the edges are padded to full size, rather than cropped
+         */
+        boolean isPadded() {
+            return false;
+        }
+
+        /**
+         * @param directory The directory holding the pyramid
+         * @param name      The name of the pyramid
+         * @param level     The level of the tile, 0 being the smallest
+         * @param column    The column of the tile within its level
+         * @param row       The row of the tile within its level
+         * @return The file to write the tile to
+         */
+        abstract File getTileFile(File directory, String name, int level, int column, int row);
+
+        /**
+         * @param directory The directory holding the pyramid
+         * @param name      The name of the pyramid
+         * @return The file describing the pyramid, which a viewer is pointed to
+         */
+        abstract File getDescriptorFile(File directory, String name);
+
+        /**
+         * Writes the file describing the pyramid.
+         *
+         * @param directory The directory holding the pyramid
+         * @param name      The name of the pyramid
+         * @param width     The width of the image
+         * @param height    The height of the image
+         * @param tileSize  The width and height of the tiles
+         * @param levels    The amount of levels in the pyramid
+         * @throws IOException When writing fails
+         */
+        abstract void writeDescriptor(File directory, String name, int width, int height, int tileSize, int levels) throws IOException;
+
+        /**
+         * Looks up the layout belonging to a display name.
+         *
+         * @param displayName The display name to look for, ignoring case
+         * @return The layout with the given display name, or {@code null} if there is none
+         */
+        public static Layout findByDisplayName(String displayName) {
+            for (Layout layout : values()) {
+                if (layout.displayName.equalsIgnoreCase(displayName)) return layout;
+            }
+
+            return null;
+        }
+
+        /**
+         * @return The display name corresponding to this enum value.
+         */
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        private static void writeText(File file, String text) throws IOException {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                out.write(text);
+            }
+        }
+    }
+
+    private final File directory;
+    private final String name;
+    private final Layout layout;
+    private final int width;
+    private final int height;
+    private final int tileSize;
+
+    /**
+     * The levels of the pyramid, from the image itself down to the smallest.
+     */
+    private final Level[] levels;
+    /**
+     * Encodes the tiles.
+     */
+    private final ExecutorService encoders;
+    /**
+     * Bounds the amount of tiles copied out but not encoded yet.
+     */
+    private final Semaphore pendingTiles;
+    /**
+     * The first failure to encode a tile, if any.
+     */
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    /**
+     * The amount of tiles written so far.
+     */
+    private long tileCount = 0;
+
+    /**
+     * @param directory The directory to write the pyramid into
+     * @param name      The name of the pyramid, which its files and directories are named after
+     * @param width     The width of the image
+     * @param height    The height of the image
+     * @param tileSize  The width and height of the tiles
+     * @param layout    The way to lay out the tiles on disk
+     * @param threads   The amount of threads to encode tiles on
+     * @throws IOException When the directories could not be created
+     */
+    public TilePyramidWriter(File directory, String name, int width, int height, int tileSize, Layout layout, int threads) throws IOException {
+        this.directory = directory;
+        this.name = name;
+        this.layout = layout;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+
+        // Every level is half the size of the one above it, rounding up, so none of the image is left out
+        this.levels = new Level[layout.countLevels(width, height, tileSize)];
+        for (int i = 0, w = width, h = height; i < levels.length; i++, w = (w + 1) / 2, h = (h + 1) / 2) {
+            levels[i] = new Level(levels.length - 1 - i, w, h);
+        }
+        for (int i = 0; i < levels.length - 1; i++) levels[i].below = levels[i + 1];
+
+        // Create every directory up front, rather than have the encoding threads race for them
+        for (Level level : levels) {
+            for (int column = 0; column < level.columns; column++) {
+                File parent = layout.getTileFile(directory, name, level.index, column, 0).getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Could not create " + parent);
+            }
+        }
+
+        this.encoders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Tile encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pendingTiles = new Semaphore(2 * threads);
+    }
+
+    @Override
+    public void writeRow(int[] argb, int offset) throws IOException {
+        if (failure.get() != null) throw failure.get();
+        if (levels[0].receivedRows == height) throw new IOException("All " + height + " rows have been written already");
+
+        try {
+            levels[0].accept(argb, offset);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for tiles to be encoded", ex);
+        }
+    }
+
+    /**
+     * Waits for every tile to be encoded, and writes the file describing the pyramid. All rows need to have been written by then.
+     *
+     * @throws IOException When encoding a tile failed, writing the descriptor fails, or not all rows have been written
+     */
+    @Override
+    public void close() throws IOException {
+        encoders.shutdown();
+        try {
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            encoders.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for tiles to be encoded", ex);
+        }
+
+        if (failure.get() != null) throw failure.get();
+        if (levels[0].receivedRows != height) throw new IOException("Only " + levels[0].receivedRows + " of " + height + " rows were written");
+
+        layout.writeDescriptor(directory, name, width, height, tileSize, levels.length);
+    }
+
+    /**
+     * @return The file a viewer should be pointed to
+     */
+    public File getDescriptorFile() {
+        return layout.getDescriptorFile(directory, name);
+    }
+
+    /**
+     * @return The amount of levels in the pyramid
+     */
+    public int getLevelCount() {
+        return levels.length;
+    }
+
+    /**
+     * @return The amount of tiles written so far
+     */
+    public synchronized long getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Averages two rows down to a row of half the width, weighing the colors by their alpha so transparent pixels don't darken their neighbours.
+     *
+     * @param top          The array holding the upper row
+     * @param topOffset    The position of the upper row within {@code top}
+     * @param bottom       The array holding the lower row, or {@code null} if the upper row is the last of an image of odd height
+     * @param bottomOffset The position of the lower row within {@code bottom}
+     * @param width        The width of the rows
+     * @param target       The row to write the result into, which is half the width rounding up
+     */
+    private static void downsample(int[] top, int topOffset, int[] bottom, int bottomOffset, int width, int[] target) {
+        for (int x = 0; x < target.length; x++) {
+            long a = 0, r = 0, g = 0, b = 0;
+            int count = 0;
+
+            for (int dx = 0; dx < 2 && 2 * x + dx < width; dx++) {
+                for (int dy = 0; dy < 2; dy++) {
+                    if (dy == 1 && bottom == null) break;
+
+                    int pixel = dy == 0 ? top[topOffset + 2 * x + dx] : bottom[bottomOffset + 2 * x + dx];
+                    int alpha = pixel >>> 24;
+
+                    a += alpha;
+                    r += alpha * (pixel >> 16 & 0xFF);
+                    g += alpha * (pixel >> 8 & 0xFF);
+                    b += alpha * (pixel & 0xFF);
+                    count++;
+                }
+            }
+
+            target[x] = a == 0 ? 0 : (int) ((a + count / 2) / count) << 24
+                    | (int) ((r + a / 2) / a) << 16
+                    | (int) ((g + a / 2) / a) << 8
+                    | (int) ((b + a / 2) / a);
+        }
+    }
+
+    /**
+     * A single level of the pyramid, holding the rows of its current row of tiles.
+     */
+    private class Level {
+        /**
+         * The number of the level in the pyramid, 0 being the smallest.
+         */
+        final int index;
+        final int width;
+        final int height;
+        final int columns;
+        /**
+         * The rows of the current row of tiles.
+         */
+        final int[] strip;
+        /**
+         * The row waiting to be averaged with the next one into the level below.
+         */
+        final int[] pending;
+        /**
+         * The scratch space holding the averaged row for the level below.
+         */
+        final int[] averaged;
+        /**
+         * The level below, or {@code null} if this is the smallest.
+         */
+        Level below;
+        int receivedRows = 0;
+
+        Level(int index, int width, int height) {
+            this.index = index;
+            this.width = width;
+            this.height = height;
+            this.columns = (width + tileSize - 1) / tileSize;
+            this.strip = new int[width * tileSize];
+            this.pending = new int[width];
+            this.averaged = new int[(width + 1) / 2];
+        }
+
+        /**
+         * Takes in the next row of this level, writing out its row of tiles once complete, and passes it on to the level below.
+         *
+         * @param argb   The array holding the row
+         * @param offset The position of the first pixel of the row within {@code argb}
+         * @throws InterruptedException When interrupted while waiting for tiles to be encoded
+         */
+        void accept(int[] argb, int offset) throws InterruptedException {
+            int stripRow = receivedRows % tileSize;
+            System.arraycopy(argb, offset, strip, stripRow * width, width);
+            receivedRows++;
+
+            if (stripRow == tileSize - 1 || receivedRows == height) flushStrip(stripRow + 1);
+            if (below == null) return;
+
+            // Every second row is averaged with the one before it, and a last row without a partner is averaged on its own
+            if (receivedRows % 2 == 0) {
+                downsample(pending, 0, strip, stripRow * width, width, averaged);
+                below.accept(averaged, 0);
+            } else if (receivedRows == height) {
+                downsample(strip, stripRow * width, null, 0, width, averaged);
+                below.accept(averaged, 0);
+            } else {
+                System.arraycopy(strip, stripRow * width, pending, 0, width);
+            }
+        }
+
+        /**
+         * Copies the tiles out of the strip, and hands them to the encoding threads.
+         *
+         * @param rows The amount of rows in the strip
+         * @throws InterruptedException When interrupted while waiting for tiles to be encoded
+         */
+        private void flushStrip(int rows) throws InterruptedException {
+            int row = (receivedRows - 1) / tileSize;
+
+            for (int column = 0; column < columns; column++) {
+                int x = column * tileSize;
+                int w = layout.isPadded() ? tileSize : Math.min(tileSize, width - x);
+                int h = layout.isPadded() ? tileSize : rows;
+
+                // Padding is left transparent
+                int[] tile = new int[w * h];
+                int copied = Math.min(tileSize, width - x);
+                for (int dy = 0; dy < rows; dy++) System.arraycopy(strip, dy * width + x, tile, dy * w, copied);
+
+                File file = layout.getTileFile(directory, name, index, column, row);
+                pendingTiles.acquire();
+                encoders.execute(() -> {
+                    try {
+                        encode(file, tile, w, h);
+                    } catch (IOException ex) {
+                        failure.compareAndSet(null, ex);
+                    } finally {
+                        pendingTiles.release();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Writes a single tile as PNG.
+     *
+     * @param file The file to write to
+     * @param tile The pixels of the tile
+     * @param w    The width of the tile
+     * @param h    The height of the tile
+     * @throws IOException When writing fails
+     */
+    private void encode(File file, int[] tile, int w, int h) throws IOException {
+        try (PngStreamWriter png = new PngStreamWriter(file, w, h)) {
+            for (int dy = 0; dy < h; dy++) png.writeRow(tile, dy * w);
+        }
+
+        synchronized (this) {
+            tileCount++;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package st.photonbur.misc.image.startup;
+
+/**
+ * Makes an algorithm available to start up with.
+ * <p>
+ * Implementations are found through {@link java.util.ServiceLoader}, by listing them in
+ * {@code META-INF/services/st.photonbur.misc.image.startup.AlgorithmProvider}.
+ * They should be kept free of any state, so looking them up doesn't load the classes of the algorithm itself;
+ * those are only loaded once {@link #launch()} is called.
+ */
+public interface AlgorithmProvider {
+    /**
+     * @return The name to select the algorithm by, which is matched ignoring case
+     */
+    String getName();
+
+    /**
+     * Creates the launcher of the algorithm along with its input handler, and sets it up.
+     * <p>
+     * Nothing is returned on purpose: handing out the launcher as an {@link st.photonbur.misc.image.algorithm.AbstractLauncher}
+     * would make the JVM load the launcher class while verifying the provider, rather than when the algorithm is chosen.
+     */
+    void launch();
+}
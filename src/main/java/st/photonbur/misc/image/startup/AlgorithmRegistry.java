@@ -0,0 +1,61 @@
+package st.photonbur.misc.image.startup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Holds all algorithms that have been registered through an {@link AlgorithmProvider}.
+ * The providers are only looked up on first use, and are kept by their lower case name, so finding one takes a single map lookup.
+ */
+final class AlgorithmRegistry {
+    /**
+     * Defers loading the providers until the registry is used, as the JVM only initializes this class on first access.
+     */
+    private static final class Holder {
+        private static final HashMap<String, AlgorithmProvider> providers = load();
+    }
+
+    private AlgorithmRegistry() { }
+
+    /**
+     * Tries to find the algorithm to generate the image with.
+     *
+     * @param name The name of the algorithm, ignoring case
+     * @return The provider of the algorithm if found, {@code null} otherwise
+     */
+    static AlgorithmProvider find(String name) {
+        return name == null ? null : Holder.providers.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return The names of all registered algorithms, in alphabetical order
+     */
+    static Set<String> getNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(Holder.providers.keySet()));
+    }
+
+    /**
+     * Looks up all providers registered on the class path.
+     *
+     * @return The providers by their lower case name
+     */
+    private static HashMap<String, AlgorithmProvider> load() {
+        HashMap<String, AlgorithmProvider> providers = new HashMap<>();
+
+        for (AlgorithmProvider provider : ServiceLoader.load(AlgorithmProvider.class)) {
+            String name = provider.getName().toLowerCase(Locale.ROOT);
+            AlgorithmProvider previous = providers.put(name, provider);
+
+            if (previous != null) {
+                throw new IllegalStateException(String.format("Both %s and %s are registered as %s",
+                        previous.getClass().getName(), provider.getClass().getName(), name));
+            }
+        }
+
+        return providers;
+    }
+}
@@ -11,11 +11,11 @@ public class StartupInputHandler extends AbstractInputHandler {
     /**
      * The {@link InputStep} requesting the user to select an algorithm.
      */
-    private InputStep<String, StartupLauncher.StartupTypeDefinition> definition = new InputStep<>(
-            "Type - one of:\n - " + String.join("\n - ", StartupLauncher.types.keySet()),
-            input -> StartupLauncher.findStartupDefinition(input) != null,
+    private InputStep<String, AlgorithmProvider> definition = new InputStep<>(
+            "Type - one of:\n - " + String.join("\n - ", AlgorithmRegistry.getNames()),
+            input -> AlgorithmRegistry.find(input) != null,
             input -> input,
-            StartupLauncher::findStartupDefinition
+            AlgorithmRegistry::find
     );
 
     @Override
@@ -26,9 +26,9 @@ public class StartupInputHandler extends AbstractInputHandler {
     // == PARAM GETTERS == //
 
     /**
-     * @return The startup definition reflecting the made choice of algorithm.
+     * @return The provider of the chosen algorithm.
      */
-    StartupLauncher.StartupTypeDefinition getStartupDefinition() {
+    AlgorithmProvider getAlgorithmProvider() {
         return definition.getResult();
     }
 }
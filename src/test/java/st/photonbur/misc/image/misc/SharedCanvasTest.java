@@ -0,0 +1,114 @@
+package st.photonbur.misc.image.misc;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Reads a shared canvas while a {@link SharedCanvasWriterProcess} in another JVM keeps changing it,
+ * checking the seqlocks never hand out a tile caught halfway through being written to.
+ */
+class SharedCanvasTest {
+    private static final int WIDTH = 500;
+    private static final int HEIGHT = 300;
+    private static final int TILE_SIZE = 64;
+    private static final int GENERATIONS = 500;
+
+    @TempDir
+    File directory;
+
+    @Test
+    void tilesReadFromAnotherProcessAreConsistent() throws Exception {
+        File canvas = new File(directory, "canvas.bin");
+        Process writer = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                SharedCanvasWriterProcess.class.getName(),
+                canvas.getPath(), String.valueOf(WIDTH), String.valueOf(HEIGHT), String.valueOf(TILE_SIZE), String.valueOf(GENERATIONS)
+        ).redirectErrorStream(true).start();
+
+        try {
+            BufferedReader output = new BufferedReader(new InputStreamReader(writer.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals(SharedCanvasWriterProcess.READY, output.readLine(), "The writer didn't start");
+
+            int columns = (WIDTH + TILE_SIZE - 1) / TILE_SIZE, rows = (HEIGHT + TILE_SIZE - 1) / TILE_SIZE;
+            int[] tile = new int[TILE_SIZE * TILE_SIZE];
+            long[] versions = new long[columns * rows];
+            long updates = 0;
+
+            try (SharedCanvasReader reader = new SharedCanvasReader(canvas)) {
+                boolean isDone;
+                do {
+                    // Only trust the file to be final if it was done before the tiles were read
+                    isDone = reader.isDone();
+
+                    for (int row = 0; row < rows; row++) {
+                        for (int column = 0; column < columns; column++) {
+                            int index = row * columns + column;
+                            long version = reader.readTile(column, row, tile);
+                            int size = Math.min(TILE_SIZE, WIDTH - column * TILE_SIZE) * Math.min(TILE_SIZE, HEIGHT - row * TILE_SIZE);
+
+                            for (int i = 1; i < size; i++) {
+                                if (tile[i] != tile[0]) fail("Tile " + column + "," + row + " at version " + version + " was read halfway through being written");
+                            }
+
+                            assertTrue(version >= versions[index], "The version of tile " + column + "," + row + " went back");
+                            if (version != versions[index]) updates++;
+                            versions[index] = version;
+
+                            if (isDone) assertEquals(SharedCanvasWriterProcess.colorOf(GENERATIONS, index), tile[0], "Tile " + column + "," + row + " isn't final");
+                        }
+                    }
+                } while (!isDone);
+
+                assertEquals(GENERATIONS, reader.getProgress());
+            }
+
+            // Without tiles changing while they were read, there was nothing to guard against
+            assertTrue(updates > versions.length, "Only " + updates + " tile updates were seen");
+
+            assertTrue(writer.waitFor(30, TimeUnit.SECONDS), "The writer didn't exit");
+            assertEquals(0, writer.exitValue());
+        } finally {
+            writer.destroyForcibly();
+        }
+    }
+
+    @Test
+    void tilesLeftLockedByADeadWriterTimeOut() throws Exception {
+        File canvas = new File(directory, "locked.bin");
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+
+        try (SharedCanvasWriter writer = new SharedCanvasWriter(canvas, image, TILE_SIZE, () -> 0)) {
+            writer.finish();
+        }
+
+        // Leave the first tile locked, as a writer dying halfway through writing it would
+        try (RandomAccessFile file = new RandomAccessFile(canvas, "rw")) {
+            file.seek(SharedCanvasReader.HEADER_SIZE);
+            file.write(new byte[] {1, 0, 0, 0, 0, 0, 0, 0});
+        }
+
+        try (SharedCanvasReader reader = new SharedCanvasReader(canvas)) {
+            reader.setLockTimeout(100);
+            int[] tile = new int[TILE_SIZE * TILE_SIZE];
+
+            assertEquals(0, reader.readTile(1, 0, tile));
+            assertThrows(IOException.class, () -> reader.readTile(0, 0, tile));
+            assertThrows(IOException.class, reader::readImage);
+        }
+    }
+}
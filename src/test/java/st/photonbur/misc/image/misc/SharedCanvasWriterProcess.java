@@ -0,0 +1,81 @@
+package st.photonbur.misc.image.misc;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+/**
+ * Draws an image in a process of its own, and shares it through a {@link SharedCanvasWriter} as fast as it can,
+ * so {@link SharedCanvasTest} can read it from another process while it changes.
+ * <p>
+ * Every generation paints every tile in a single color, so a tile mixing colors was caught halfway through being written to.
+ */
+public class SharedCanvasWriterProcess {
+    /**
+     * Printed once the file is set up and can be read.
+     */
+    static final String READY = "ready";
+
+    /**
+     * @param generation The generation being drawn
+     * @param tile       The index of the tile
+     * @return The color of every pixel of the tile during the generation
+     */
+    static int colorOf(int generation, int tile) {
+        return 0xFF000000 | ((generation * 7919 + tile * 104729) & 0xFFFFFF);
+    }
+
+    /**
+     * @param args The file to share the image through, its width, height and tile size, and the amount of generations to draw
+     * @throws Exception When the file could not be written to
+     */
+    public static void main(String[] args) throws Exception {
+        File canvas = new File(args[0]);
+        int width = Integer.parseInt(args[1]), height = Integer.parseInt(args[2]), tileSize = Integer.parseInt(args[3]);
+        int generations = Integer.parseInt(args[4]);
+        int columns = (width + tileSize - 1) / tileSize, rows = (height + tileSize - 1) / tileSize;
+
+        LockedImage image = new LockedImage(width, height);
+        int[] drawn = new int[1];
+
+        try (SharedCanvasWriter writer = new SharedCanvasWriter(canvas, image, tileSize, () -> drawn[0])) {
+            System.out.println(READY);
+            System.out.flush();
+
+            // Publish as often as possible, to get many tiles written while they are read
+            writer.start(1000);
+
+            for (int generation = 1; generation <= generations; generation++) {
+                synchronized (image) {
+                    for (int row = 0; row < rows; row++) {
+                        for (int column = 0; column < columns; column++) {
+                            int color = colorOf(generation, row * columns + column);
+
+                            for (int y = row * tileSize; y < Math.min(height, (row + 1) * tileSize); y++) {
+                                for (int x = column * tileSize; x < Math.min(width, (column + 1) * tileSize); x++) image.setRGB(x, y, color);
+                            }
+                        }
+                    }
+                    drawn[0] = generation;
+                }
+                Thread.sleep(1);
+            }
+
+            writer.finish();
+        }
+    }
+
+    /**
+     * An image whose tiles can only be copied while it isn't being drawn in,
+     * so the writer never copies a tile mixing two generations and every inconsistency is down to the seqlock.
+     */
+    private static class LockedImage extends BufferedImage {
+        LockedImage(int width, int height) {
+            super(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        @Override
+        public synchronized int[] getRGB(int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+            return super.getRGB(startX, startY, w, h, rgbArray, offset, scansize);
+        }
+    }
+}